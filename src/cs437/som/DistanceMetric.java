@@ -22,4 +22,81 @@ public interface DistanceMetric {
      */
     double distance(double[] v0, double[] v1) throws SOMError;
 
+    /**
+     * Calculate the distance between a vector stored inside a larger array
+     * and a second vector.  The first vector occupies {@code v1.length}
+     * elements of {@code v0} starting at {@code offset}.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The distance between the two vectors.
+     * @throws SOMError If v0 is too short to hold the first vector.
+     */
+    double distance(double[] v0, int offset, double[] v1) throws SOMError;
+
+    /**
+     * Calculate the distance between a single precision vector stored inside
+     * a larger array and a second vector.  The first vector occupies
+     * {@code v1.length} elements of {@code v0} starting at {@code offset}.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The distance between the two vectors.
+     * @throws SOMError If v0 is too short to hold the first vector.
+     */
+    double distance(float[] v0, int offset, double[] v1) throws SOMError;
+
+    /**
+     * Calculate the distance between 2 vectors, unless it is greater than a
+     * bound.  Searches for the closest of many vectors pass the best distance
+     * found so far, so that the computation can stop as soon as a vector
+     * can no longer be the closest.
+     *
+     * @param v0 The first vector.
+     * @param v1 The second vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance between v0 and v1 if it is no greater than
+     * {@code upperBound}; otherwise either the distance or
+     * {@link Double#POSITIVE_INFINITY}.
+     * @throws SOMError If the vector sizes do not match.
+     */
+    double distance(double[] v0, double[] v1, double upperBound)
+            throws SOMError;
+
+    /**
+     * Calculate the distance between a vector stored inside a larger array
+     * and a second vector, unless it is greater than a bound.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance between the two vectors if it is no greater than
+     * {@code upperBound}; otherwise either the distance or
+     * {@link Double#POSITIVE_INFINITY}.
+     * @throws SOMError If v0 is too short to hold the first vector.
+     * @see #distance(double[], double[], double)
+     */
+    double distance(double[] v0, int offset, double[] v1, double upperBound)
+            throws SOMError;
+
+    /**
+     * Calculate the distance between a single precision vector stored inside
+     * a larger array and a second vector, unless it is greater than a bound.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance between the two vectors if it is no greater than
+     * {@code upperBound}; otherwise either the distance or
+     * {@link Double#POSITIVE_INFINITY}.
+     * @throws SOMError If v0 is too short to hold the first vector.
+     * @see #distance(double[], double[], double)
+     */
+    double distance(float[] v0, int offset, double[] v1, double upperBound)
+            throws SOMError;
+
 }
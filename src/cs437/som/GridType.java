@@ -18,6 +18,17 @@ public interface GridType {
      */
     void setNeuronCount(Dimension dimension);
 
+    /**
+     * Enable or disable the grid's distance cache.  Grid types may compute
+     * every distinct distance once, when the neuron count is set, and look
+     * distances up afterwards; the cache is enabled by default, but is only
+     * built for grids small enough for it to be worthwhile.  Disabling it
+     * releases its memory.
+     *
+     * @param enabled Whether distances may be cached.
+     */
+    void setDistanceCacheEnabled(boolean enabled);
+
     /**
      * Calculate the distance between two neurons in the neuron grid.
      *
@@ -26,5 +37,57 @@ public interface GridType {
      * @return The distance between the two neurons across the neuron grid.
      */
     double gridDistance(int neuron0, int neuron1);
-    
+
+    /**
+     * Find every neuron closer than a given radius to a neuron, including the
+     * neuron itself whatever the radius.  Only the neighborhood is visited,
+     * so the cost depends on the radius rather than on the size of the map.
+     * The distances stored are exactly those {@link #gridDistance(int, int)}
+     * would return.
+     *
+     * The neurons are stored in {@code neurons}, with the matching distances
+     * in {@code distances}.  If the arrays are too short, only as many
+     * neurons as fit are stored, but the full count is still returned so that
+     * the caller may grow the arrays and ask again.
+     *
+     * @param neuron The index of the neuron at the center of the neighborhood.
+     * @param radius The neighborhood radius; neurons other than the center at
+     * this distance or farther are excluded.
+     * @param neurons Receives the indexes of the neurons found.
+     * @param distances Receives the grid distances of the neurons found.
+     * @return The number of neurons within the radius.
+     */
+    int neighborsWithin(int neuron, double radius, int[] neurons,
+                        double[] distances);
+
+    /**
+     * Find every neuron closer than a given radius to a neuron, as
+     * {@link #neighborsWithin(int, double, int[], double[])} does, also
+     * storing the distance class of each neuron found: the index of its
+     * distance in {@link #getDistanceClasses()}.  Grids that do not number
+     * their distances leave {@code classes} untouched.
+     *
+     * @param neuron The index of the neuron at the center of the neighborhood.
+     * @param radius The neighborhood radius; neurons other than the center at
+     * this distance or farther are excluded.
+     * @param neurons Receives the indexes of the neurons found.
+     * @param distances Receives the grid distances of the neurons found.
+     * @param classes Receives the distance classes of the neurons found.
+     * @return The number of neurons within the radius.
+     */
+    int neighborsWithin(int neuron, double radius, int[] neurons,
+                        double[] distances, int[] classes);
+
+    /**
+     * Get every distinct distance between neurons in the grid, ascending.
+     * Values that depend only on distance may be computed once for each of
+     * these and looked up by the distance classes
+     * {@link #neighborsWithin(int, double, int[], double[], int[])} reports.
+     * The array is shared and must not be modified.
+     *
+     * @return The distinct grid distances, or {@code null} if the grid does
+     * not number its distances, as when its distance cache is disabled or
+     * not built.
+     */
+    double[] getDistanceClasses();
 }
@@ -6,7 +6,11 @@ package cs437.som;
 public interface NeighborhoodMembershipFunction {
 
     /**
-     * Compute a neuron's membership amount in the BMU's network.
+     * Compute a neuron's membership amount in the BMU's network.  Neurons at
+     * least {@code width} away from the BMU must have no membership: maps
+     * only visit the neurons closer than the width, so nonzero values beyond
+     * it are never seen.  Maps may compute the membership once per distinct
+     * distance in an iteration and reuse it for every neuron at that distance.
      *
      * @param distance The distance from the neuron in question to the BMU.
      * @param width The current width of the BMU's neighborhood.
@@ -56,6 +56,28 @@ public interface SelfOrganizingMap {
      */
     int getBestMatchingNeuron(int[] input);
 
+    /**
+     * Find the best matching neuron (BMU, for Best Matching Unit). Byte
+     * convenience method; bytes are taken as signed values.
+     *
+     * @param input The input vector to match neurons to.
+     * @return The index of the neuron closest to input.
+     */
+    int getBestMatchingNeuron(byte[] input);
+
+    /**
+     * Find the best matching neuron for each of a block of input vectors.
+     * This gives the same results as calling
+     * {@link #getBestMatchingNeuron(double[])} for each input, except that
+     * maps may compute distances in a different order for speed, so inputs
+     * almost exactly between two neurons may match either of them.
+     *
+     * @param inputs The input vectors to match neurons to.
+     * @return The index of the neuron closest to each input, in the order of
+     * {@code inputs}.
+     */
+    int[] getBestMatchingNeurons(double[][] inputs);
+
     /**
      * Measure the distance from a neuron (specifically, its weight vector) to
      * an input vector.
@@ -27,4 +27,21 @@ public interface TrainableSelfOrganizingMap extends SelfOrganizingMap {
      * @param data The vector to train with.
      */
     void trainWith(int[] data);
+
+    /**
+     * Train the map with a vector. Byte convenience method; bytes are taken
+     * as signed values.
+     *
+     * @param data The vector to train with.
+     */
+    void trainWith(byte[] data);
+
+    /**
+     * Take an immutable copy of the map for matching inputs once training is
+     * done.  The copy may be shared between any number of threads without
+     * synchronization, and later training of this map does not affect it.
+     *
+     * @return The frozen map.
+     */
+    SelfOrganizingMap freeze();
 }
@@ -1,14 +1,14 @@
 package cs437.som.demo;
 
 import cs437.som.Dimension;
-import cs437.som.TrainableSelfOrganizingMap;
 import cs437.som.distancemetrics.EuclideanDistanceMetric;
 import cs437.som.membership.LinearNeighborhoodMembershipFunction;
 import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
 import cs437.som.network.CustomizableSOM;
+import cs437.som.network.NetworkBase;
+import cs437.som.util.RandomSource;
 import cs437.som.visualization.SOM2dPlotter;
 
-import java.security.SecureRandom;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -22,14 +22,14 @@ public class BasicMapDemo {
     private static final double nearnessOffest = 0.5;
     private static final int MAPPING_LINE_WIDTH = 330;
 
-    private TrainableSelfOrganizingMap som = null;
+    private NetworkBase som = null;
     private final Logger logger = Logger.getLogger("BasicMapDemo");
 
     /**
      * Create a new SOM demo.
      * @param map An untrained SOM to watch.
      */
-    public BasicMapDemo(TrainableSelfOrganizingMap map) {
+    public BasicMapDemo(NetworkBase map) {
         som = map;
     }
 
@@ -39,19 +39,22 @@ public class BasicMapDemo {
      */
     public void run() {
         int iterations = som.getExpectedIterations();
-        Random r = new SecureRandom();
+        Random r = new RandomSource();
 
         logger.info("Before Training");
         log10x10Map();
 
         SOM2dPlotter plot = new SOM2dPlotter(som);
+        som.setSnapshotInterval(1);
         for (int i = 0; i < iterations; i++) {
             double[] in = {r.nextDouble() * 10, r.nextDouble() * 10};
             som.trainWith(in);
-            plot.draw();
+            plot.draw(som.getSnapshot());
             try { Thread.sleep(iterDelay); } catch (InterruptedException ignored) { }
         }
 
+        som.setSnapshotInterval(0);
+
         logger.info("After training");
         log10x10Map();
 
@@ -88,7 +91,7 @@ public class BasicMapDemo {
         sb.append(System.lineSeparator());
         sb.append("  \t 1  2  3  4  5  6  7  8  9 10");
 
-        Random r = new SecureRandom();
+        Random r = new RandomSource();
         for (double i = 1.0; i < tenByTenStep; i += 1.0) {
             sb.append(String.format(System.lineSeparator() + "%2d\t", (int) Math.round(i)));
             for (double j = 1.0; j < tenByTenStep; j += 1.0) {
@@ -0,0 +1,131 @@
+package cs437.som.demo;
+
+/**
+ * Counts how often each color occurs, without boxing, and remembers the order
+ * in which the colors were first seen.
+ */
+final class ColorCounts {
+    private int[] colors = new int[16];
+    private long[] counts = new long[16];
+    private int size = 0;
+
+    /** Open addressed hash table of indexes into colors, plus one; 0 is an
+     * empty slot. */
+    private int[] slots = new int[32];
+
+    /** The index of the color added last, which images often repeat. */
+    private int last = -1;
+
+    /**
+     * Count one occurrence of a color.
+     *
+     * @param color The color.
+     */
+    void add(int color) {
+        if (last >= 0 && colors[last] == color) {
+            counts[last]++;
+        } else {
+            last = find(color);
+            counts[last]++;
+        }
+    }
+
+    /**
+     * Count several occurrences of a color.
+     *
+     * @param color The color.
+     * @param occurrences The number of occurrences.
+     */
+    void add(int color, long occurrences) {
+        int index = find(color);
+        counts[index] += occurrences;
+    }
+
+    /**
+     * Add the counts of other colors, in the order they were first seen
+     * there.
+     *
+     * @param other The counts to add.
+     */
+    void addAll(ColorCounts other) {
+        for (int i = 0; i < other.size; i++) {
+            int index = find(other.colors[i]);
+            counts[index] += other.counts[i];
+        }
+    }
+
+    /**
+     * @return The number of different colors counted.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i The index of a color, in the order colors were first seen.
+     * @return The color.
+     */
+    int color(int i) {
+        return colors[i];
+    }
+
+    /**
+     * @param i The index of a color, in the order colors were first seen.
+     * @return The number of times the color was counted.
+     */
+    long count(int i) {
+        return counts[i];
+    }
+
+    /* Find a color's index, adding it with a count of 0 if it is new. */
+    private int find(int color) {
+        int mask = slots.length - 1;
+        int slot = hash(color) & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (colors[index] == color) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == colors.length) {
+            int[] grownColors = new int[size * 2];
+            long[] grownCounts = new long[size * 2];
+            System.arraycopy(colors, 0, grownColors, 0, size);
+            System.arraycopy(counts, 0, grownCounts, 0, size);
+            colors = grownColors;
+            counts = grownCounts;
+        }
+        colors[size] = color;
+        size++;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            slots[slot] = size;
+        }
+        return size - 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(colors[i]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    private static int hash(int color) {
+        int h = color * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "ColorCounts{size=" + size + '}';
+    }
+}
@@ -1,18 +1,20 @@
 package cs437.som.demo;
 
 import cs437.som.Dimension;
-import cs437.som.TrainableSelfOrganizingMap;
 import cs437.som.distancemetrics.EuclideanDistanceMetric;
 import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
 import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
 import cs437.som.network.CustomizableSOM;
+import cs437.som.network.FrozenSOM;
+import cs437.som.network.NetworkBase;
+import cs437.som.network.OffHeapSOM;
 import cs437.som.topology.OffsetHexagonalGrid;
+import cs437.som.util.RandomSource;
 import cs437.som.visualization.ColorProgression;
 import cs437.som.visualization.GreenToRedHeat;
 import cs437.som.visualization.SOMColorPlotter;
 import cs437.som.visualization.SOMHeatMap;
 
-import java.security.SecureRandom;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -20,13 +22,19 @@ import static java.lang.Thread.sleep;
 
 /**
  * Demonstrates maps with 3-dimensional inputs with a visualization during training.
+ *
+ * The map trains on a thread of its own and publishes a snapshot every few
+ * iterations; the visuals are drawn from the latest snapshot, so they never
+ * show a neuron part way through an update and never hold up training.
  */
 public class ColorMapDemo {
     private final Logger logger = Logger.getLogger("ColorMapDemo");
     private static final int MAP_DIMENSION = 300;
+    private static final int SNAPSHOT_INTERVAL = 10;
+    private static final int POLL_DELAY = 10; /* ms */
 
-    private final TrainableSelfOrganizingMap som;
-    private final Random r = new SecureRandom();
+    private final NetworkBase som;
+    private final Random r = new RandomSource();
     private final SOMColorPlotter plot;
 
     private SOMHeatMap heatMap;
@@ -37,7 +45,7 @@ public class ColorMapDemo {
      * Create a new SOM demo.
      * @param map An untrained SOM to watch.
      */
-    public ColorMapDemo(TrainableSelfOrganizingMap map) {
+    public ColorMapDemo(NetworkBase map) {
         som = map;
         plot = new SOMColorPlotter(som);
         heatMap = new SOMHeatMap(som);
@@ -48,32 +56,59 @@ public class ColorMapDemo {
      * Run the demonstration.
      */
     public void run() {
-        int iterations = som.getExpectedIterations();
+        final int iterations = som.getExpectedIterations();
 
         logger.info("Before Training");
         double[] heatMapSample = {1,0,0}; // show red component in heat map
 
-        // Train the SOM on the samples, repeatedly update the visuals
-        for (int i = 0; i < iterations; i++) {
-            double[] in = samples[r.nextInt(samples.length)];
-            som.trainWith(in);
-            plot.draw();
-            heatMap.refresh(heatMapSample);
-            heatMap.draw();
+        // Train the SOM on the samples, updating the visuals from each new
+        // snapshot as it is published
+        som.setSnapshotInterval(SNAPSHOT_INTERVAL);
+        Thread trainer = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < iterations; i++) {
+                    som.trainWith(samples[r.nextInt(samples.length)]);
+                }
+            }
+        }, "ColorMapDemo trainer");
+        trainer.start();
+
+        FrozenSOM drawn = null;
+        while (trainer.isAlive()) {
+            FrozenSOM snapshot = som.getSnapshot();
+            if (snapshot == drawn) {
+                try { sleep(POLL_DELAY); } catch (InterruptedException ignored) { }
+                continue;
+            }
+            draw(snapshot, heatMapSample);
+            drawn = snapshot;
         }
+        try { trainer.join(); } catch (InterruptedException ignored) { }
+        som.setSnapshotInterval(0);
+        FrozenSOM trained = som.publishSnapshot();
+        draw(trained, heatMapSample);
 
         logger.info("After training");
         // Iterate though component heat maps
         double[][] rgb = {{1,0,0},{0,1,0},{0,0,1}};
         while (heatMap.isEnabled()) {
             for (double[] arr : rgb) {
-                heatMap.refresh(arr);
+                heatMap.refresh(trained, arr);
                 heatMap.draw();
                 try { sleep(1000); } catch (InterruptedException ignored) { }
             }
         }
     }
 
+    /**
+     * Draw a snapshot of the SOM in both visuals.
+     */
+    private void draw(FrozenSOM snapshot, double[] heatMapSample) {
+        plot.draw(snapshot);
+        heatMap.refresh(snapshot, heatMapSample);
+        heatMap.draw();
+    }
+
     /**
      * Cause the ColorMapDemo to randomize the training samples.
      */
@@ -107,11 +142,14 @@ public class ColorMapDemo {
     public static void main(String[] args) {
         boolean randomSamples = false;
         boolean colorHeatmap = false;
+        boolean offHeap = false;
         for (String arg : args) {
             if (arg.compareTo("-r") == 0) {
                     randomSamples = true;
             } else if (arg.compareTo("-c") == 0) {
                     colorHeatmap = true;
+            } else if (arg.compareTo("-o") == 0) {
+                    offHeap = true;
             } else if (arg.compareTo("-rc") == 0 || arg.compareTo("-cr") == 0) {
                     randomSamples = true;
                     colorHeatmap = true;
@@ -122,13 +160,16 @@ public class ColorMapDemo {
         }
         
         Dimension dimension = new Dimension(MAP_DIMENSION, MAP_DIMENSION);
-        CustomizableSOM som = new CustomizableSOM(dimension, 3, 1000);
+        CustomizableSOM som = offHeap
+                ? new OffHeapSOM(dimension, 3, 1000)
+                : new CustomizableSOM(dimension, 3, 1000);
         som.setDistanceMetricStrategy(new EuclideanDistanceMetric());
         som.setNeighborhoodWidthFunctionStrategy(
                 new LinearDecayNeighborhoodWidthFunction((2.0 / 3) * MAP_DIMENSION));
         som.setNeighborhoodMembershipFunctionStrategy(
                 new GeometricNeighborhoodMembershipFunction(0.75));
         som.setGridTypeStrategy(new OffsetHexagonalGrid());
+        som.setParallelUpdate(true);
         ColorMapDemo cmd = new ColorMapDemo(som);
         if (colorHeatmap)
             cmd.useColorProgression(new GreenToRedHeat());
@@ -136,6 +177,10 @@ public class ColorMapDemo {
             cmd.randomizeSamples();
 
         cmd.run();
+
+        if (som instanceof OffHeapSOM) {
+            ((OffHeapSOM) som).close();
+        }
     }
 
     @Override
@@ -143,6 +143,7 @@ public class EdgeDetectionRunner implements PropertyChangeListener {
         int iterations = Integer.parseInt(iterationCountInput.getText());
         TrainableSelfOrganizingMap som = mapConfig.createSOM(9, iterations);
         ed = EdgeDetector.trainRandomlyFromMap(som, iterations);
+        ed.compile();
     }
 
     /**
@@ -152,6 +153,7 @@ public class EdgeDetectionRunner implements PropertyChangeListener {
         int iterations = EdgeDetector.threeRaiseNine;
         TrainableSelfOrganizingMap som = mapConfig.createSOM(9, iterations);
         ed = EdgeDetector.trainExhaustivelyFromMap(som);
+        ed.compile();
     }
 
     /**
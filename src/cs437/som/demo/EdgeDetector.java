@@ -1,16 +1,24 @@
 package cs437.som.demo;
 
 import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.util.RandomSource;
 import cs437.som.util.SOMBuilder;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
-import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
 import java.util.logging.Level;
@@ -29,6 +37,23 @@ public class EdgeDetector {
     private static final int TWO_BYTE_SHIFT = 16;
     private static final int ONE_BYTE_SHIFT = 8;
     private static final int FRAME_LOCATION_OFFSET = 400;
+    private static final int RGB_MASK = 0xFFFFFF;
+    private static final int OPAQUE = 0xFF000000;
+
+    /** Roughly how many pixels a strip of a streamed image holds. */
+    private static final int STRIP_PIXELS = 1 << 22;
+
+    /**
+     * The share of the heap, as a divisor, that strips may take when the
+     * reader decodes from the top of the image for every strip.
+     */
+    private static final int SEQUENTIAL_HEAP_SHARE = 4;
+
+    /**
+     * The most bytes a strip takes per pixel while it is mapped: decoded,
+     * copied out of the decoded image, and mapped to neurons.
+     */
+    private static final int STRIP_BYTES_PER_PIXEL = 16;
 
     /** The ED's SOM */
     private TrainableSelfOrganizingMap som = null;
@@ -42,6 +67,14 @@ public class EdgeDetector {
     /** The number of possible colors that can be stored in 24 bits (2^25 - 1) */
     private static final int possibleColors = 33554431;
 
+    /** The best matching neuron for each possible difference matrix, indexed
+     * as by {@link #permutation(int, int[])}, or null if not compiled.
+     */
+    private int[] bmuTable = null;
+
+    /** Whether images are processed in parallel. */
+    private boolean parallel = true;
+
     /**
      * Create an empty EdgeDetector.
      */
@@ -84,9 +117,29 @@ public class EdgeDetector {
      */
     public static EdgeDetector trainRandomlyFromMap(TrainableSelfOrganizingMap map,
                                                     int samples) {
+        return trainRandomly(map, samples, new RandomSource());
+    }
+
+    /**
+     * Create an EdgeDetector with a given map and train it with random samples
+     * of possible inputs, chosen reproducibly from a seed.
+     *
+     * @param map The SOM the EdgeDetector will use.  The EdgeDetector assumes
+     * ownership of the SOM.
+     * @param samples The number of input samples to train with.
+     * @param seed The seed to choose the samples with.
+     * @return A randomly trained EdgeDetector.
+     */
+    public static EdgeDetector trainRandomlyFromMap(TrainableSelfOrganizingMap map,
+                                                    int samples, long seed) {
+        return trainRandomly(map, samples, new RandomSource(seed));
+    }
+
+    private static EdgeDetector trainRandomly(TrainableSelfOrganizingMap map,
+                                              int samples, Random r) {
         EdgeDetector ed = new EdgeDetector();
         ed.som = map;
-        ed.trainWithRandomPermutations(samples);
+        ed.trainWithRandomPermutations(samples, r);
         return ed;
     }
 
@@ -95,37 +148,30 @@ public class EdgeDetector {
      * the possible inputs it may see.
      *
      * @param n The number of sample inputs to use for training.
+     * @param r The source of randomness.
      */
-    private void trainWithRandomPermutations(int n) {
-        int[][] matrices = generateRandomPermutations(n);
-        log.info("Training.");
-        for (int[] matrix : matrices) {
+    private void trainWithRandomPermutations(int n, Random r) {
+        int[] matrix = new int[9];
+        bmuTable = null;
+
+        log.info("Training with " + n + " random matrices.");
+        for (int i = 0; i < n; i++) {
+            randomPermutation(r, matrix);
             som.trainWith(matrix);
         }
         log.info("Training complete.");
     }
 
     /**
-     * Generate a random sampling of input matrices.
+     * Fill in a random input matrix.
      *
-     * @param n The number of samples to produce.
-     * @return An array (size n) of double[9], each of which represents a 3x3
-     * matrix in row major form.
-     */
-    private int[][] generateRandomPermutations(int n) {
-        int[][] permutations = new int[n][9];
-        Random r = new SecureRandom();
-
-        log.info("Generating " + n + " random matrices.");
-        for (int i = 0; i < permutations.length; i++) {
-            permutations[i] = new int[] {
-                    r.nextInt(3) - 1, r.nextInt(3) - 1, r.nextInt(3) - 1,
-                    r.nextInt(3) - 1, r.nextInt(3) - 1, r.nextInt(3) - 1,
-                    r.nextInt(3) - 1, r.nextInt(3) - 1, r.nextInt(3) - 1
-            };
+     * @param r The source of randomness.
+     * @param matrix The array to fill with a 3x3 matrix in row major form.
+     */
+    private static void randomPermutation(Random r, int[] matrix) {
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = r.nextInt(3) - 1;
         }
-
-        return permutations;
     }
 
     /**
@@ -133,37 +179,57 @@ public class EdgeDetector {
      * matrix being shown to it once.
      */
     public void trainExhaustively() {
-        int[][] matrices = generateAllPermutations();
+        int[] matrix = new int[9];
+        bmuTable = null;
         log.info("Training.");
-        for (int[] matrix : matrices) {
+        for (int i = 0; i < threeRaiseNine; i++) {
+            permutation(i, matrix);
             som.trainWith(matrix);
         }
         log.info("Training complete.");
     }
 
     /**
-     * Generate all possible input matrices.
+     * Fill in one of the possible input matrices.
      *
-     * @return An array (size 19683, or 3^9) of double[9], each of which
-     * represents a 3x3 matrix in row major form.
+     * @param index Which of the 19683 (3^9) matrices to produce.
+     * @param matrix The array to fill with a 3x3 matrix in row major form.
      */
-	private int[][] generateAllPermutations() {
-        int[] possibleValues  = { -1, 0, 1 };
-        int rows = threeRaiseNine;
-        int cols = 9;
-
-		int[][] permutations = new int[rows][cols];
+    private static void permutation(int index, int[] matrix) {
+        // Digits 0, 1 and 2 stand for the possible values -1, 0 and 1.
+        int factor = 1;
+        for (int j = 0; j < matrix.length; j++) {
+            matrix[j] = index / factor % 3 - 1;
+            factor *= 3;
+        }
+    }
 
-        for (int i = 0; i < rows; i++) {
-            int factor = 1;
-            for (int j = 0; j < cols; j++) {
-				permutations[i][j] = possibleValues[i / factor % possibleValues.length];
-				factor *= possibleValues.length;
-			}
-		}
+    /**
+     * Look up the best matching neuron for every possible difference matrix,
+     * so that {@link #runOnImage(BufferedImage)} maps each pixel with a table
+     * lookup rather than a search of the map.  Call this once training is
+     * done; training again discards the table.
+     */
+    public void compile() {
+        int[] matrix = new int[9];
+        int[] table = new int[threeRaiseNine];
+        log.info("Compiling.");
+        for (int i = 0; i < threeRaiseNine; i++) {
+            permutation(i, matrix);
+            table[i] = som.getBestMatchingNeuron(matrix);
+        }
+        bmuTable = table;
+    }
 
-		return permutations;
-	}
+    /**
+     * Choose whether images are processed on several threads at once.  They
+     * are by default.
+     *
+     * @param enabled Whether to process bands of rows in parallel.
+     */
+    public void setParallel(boolean enabled) {
+        parallel = enabled;
+    }
 
     /**
      * Detect the edges in an image.
@@ -172,27 +238,445 @@ public class EdgeDetector {
      * @return A new image where the pixels correspond to colors assigned to
      * the individual neurons of the self-organizing map.
      */
-    public BufferedImage runOnImage(BufferedImage image) {
-        int height = image.getHeight();
-        int width = image.getWidth();
+    public BufferedImage runOnImage(final BufferedImage image) {
+        final int height = image.getHeight();
+        final int width = image.getWidth();
 
         log.info("Processing " + width + 'x' + height + " image.");
 
         BufferedImage out = new BufferedImage(width, height,
                 BufferedImage.TYPE_INT_RGB);
-        int colorStep = possibleColors / som.getNeuronCount();
+        final int colorStep = possibleColors / som.getNeuronCount();
+
+        // Colors are written straight into the output's raster, which keeps
+        // the low 24 bits of each, as out.setRGB would.
+        final int[] outData =
+                ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        final int[] table = bmuTable;
+
+        ImageBands.forEach(height, parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                int first = Math.max(from, 1);
+                if (first >= to) {
+                    return;
+                }
+                ImageBands.Pixels pixels = ImageBands.read(image, first - 1,
+                        Math.min(height, to + 1));
+                int[] matrix = table == null ? new int[9] : null;
+
+                for (int y = first; y < to; y++) {
+                    for (int x = 1; x < width; x++) {
+                        int index = getDifferenceIndex(pixels, width, height,
+                                x, y);
+                        int best = bestMatch(index, table, matrix);
+                        outData[y * width + x] = (colorStep * best) & RGB_MASK;
+                    }
+                }
+            }
+        });
+
+        return out;
+    }
+
+    /**
+     * Detect the edges in an image in one mapping pass, giving the same
+     * image as {@link #normalizeImage(BufferedImage)} gives for the output of
+     * {@link #runOnImage(BufferedImage)}.
+     *
+     * While mapping, each pixel's neuron is stored in the output in place of
+     * its color, and the hits on each neuron are counted.  The counts decide
+     * which neurons' colors are the most common, and a second pass turns
+     * every neuron into black or white with a lookup.  No color image is
+     * made, and no color is counted in a {@code HashMap}.
+     *
+     * @param image The image to process.
+     * @return A black and white image where the white pixels indicate an edge
+     * in the original image.
+     */
+    public BufferedImage detectEdges(final BufferedImage image) {
+        final int height = image.getHeight();
+        final int width = image.getWidth();
+
+        log.info("Detecting edges in " + width + 'x' + height + " image.");
 
-        for (int y = 1; y < height; y++) {
-            for (int x = 1; x < width; x++) {
-                int[] differenceMatrix = getDifferenceMatrix(image, x, y);
-                int best = som.getBestMatchingNeuron(differenceMatrix);
-                out.setRGB(x, y, colorStep * best);
+        BufferedImage out = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        final int[] outData =
+                ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        final int[] table = bmuTable;
+        final HitCounts[] bandHits = new HitCounts[ImageBands.count(height)];
+
+        ImageBands.forEach(height, parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                ImageBands.Pixels pixels = ImageBands.read(image,
+                        Math.max(from - 1, 0), Math.min(height, to + 1));
+                bandHits[band] = mapToNeurons(pixels, width, height, from, to,
+                        table, outData, from * width);
             }
-        }
+        });
+
+        final int[] shades = shades(bandHits);
+        ImageBands.forEach(height, parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                for (int i = from * width; i < to * width; i++) {
+                    outData[i] = shades[outData[i]];
+                }
+            }
+        });
+
+        return out;
+    }
+
+    /**
+     * Compute the difference matrix index of every pixel of an image, as the
+     * first half of {@link #detectEdges(BufferedImage)}.
+     *
+     * @param image The image to process.
+     * @return The index of each pixel's difference matrix, in row major
+     * order, or -1 for the pixels along the top and left edges, which are
+     * not mapped.
+     */
+    int[] differenceIndexes(final BufferedImage image) {
+        final int height = image.getHeight();
+        final int width = image.getWidth();
+        final int[] indexes = new int[width * height];
+        ImageBands.forEach(height, parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                ImageBands.Pixels pixels = ImageBands.read(image,
+                        Math.max(from - 1, 0), Math.min(height, to + 1));
+                for (int y = from; y < to; y++) {
+                    int row = y * width;
+                    for (int x = 0; x < width; x++) {
+                        indexes[row + x] = x > 0 && y > 0
+                                ? getDifferenceIndex(pixels, width, height,
+                                        x, y)
+                                : -1;
+                    }
+                }
+            }
+        });
+        return indexes;
+    }
+
+    /**
+     * Map difference matrix indexes to neurons and then to black and white,
+     * as the second half of {@link #detectEdges(BufferedImage)}.
+     *
+     * @param indexes The indexes from {@link #differenceIndexes}.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return A black and white image where the white pixels indicate an edge
+     * in the original image.
+     */
+    BufferedImage mapDifferences(final int[] indexes, final int width,
+                                 int height) {
+        BufferedImage out = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        final int[] outData =
+                ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        final int[] table = bmuTable;
+        final int unmapped = som.getNeuronCount();
+        final HitCounts[] bandHits = new HitCounts[ImageBands.count(height)];
+
+        ImageBands.forEach(height, parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                HitCounts hits = new HitCounts(unmapped + 1);
+                int[] matrix = table == null ? new int[9] : null;
+                for (int i = from * width; i < to * width; i++) {
+                    int neuron = indexes[i] < 0 ? unmapped
+                            : bestMatch(indexes[i], table, matrix);
+                    outData[i] = neuron;
+                    hits.hit(neuron, i);
+                }
+                bandHits[band] = hits;
+            }
+        });
+
+        final int[] shades = shades(bandHits);
+        ImageBands.forEach(height, parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                for (int i = from * width; i < to * width; i++) {
+                    outData[i] = shades[outData[i]];
+                }
+            }
+        });
 
         return out;
     }
 
+    /**
+     * Detect the edges in an image too large to decode at once, as
+     * {@link #detectEdges(BufferedImage)} would.  The image is read once, in
+     * strips of rows through source region reads, each with the row above
+     * and below it.  Each pixel's neuron is spilled to a temporary file, one
+     * or two bytes a pixel for maps of up to 65536 neurons, while the
+     * neurons' hits are counted; the output is then computed from the file a
+     * strip at a time as the writer asks for its rows.
+     *
+     * Memory use depends on the width of the image and not its height, as
+     * long as the reader decodes source regions without decoding the whole
+     * image and the writer asks for rows as it encodes them; PNG and TIFF
+     * writers do.  Readers that cannot seek to a region, such as those for
+     * PNG and JPEG, decode from the top for every strip, so for them strips
+     * are made as tall as a quarter of the heap allows, and a warning is
+     * logged if the image still takes more than one.
+     *
+     * @param reader A reader with the image as its input; image 0 is used.
+     * @param writer A writer with the destination as its output.
+     * @throws IOException If reading or writing throws.
+     */
+    public void detectEdges(ImageReader reader, ImageWriter writer)
+            throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        long rows = STRIP_PIXELS / width;
+        if (!reader.isRandomAccessEasy(0)) {
+            long budget = Runtime.getRuntime().maxMemory()
+                    / SEQUENTIAL_HEAP_SHARE / STRIP_BYTES_PER_PIXEL;
+            rows = Math.max(rows, budget / width);
+            if (rows < height) {
+                log.warning("The reader decodes from the top of the image "
+                        + "for each strip; reading " + width + 'x' + height
+                        + " image in " + ((height + rows - 1) / rows)
+                        + " strips.");
+            }
+        }
+        if (rows >= height) {
+            rows = height;
+        } else {
+            rows = Math.max(ImageBands.BAND_ROWS,
+                    rows / ImageBands.BAND_ROWS * ImageBands.BAND_ROWS);
+        }
+        detectEdges(reader, writer, (int) rows);
+    }
+
+    /**
+     * Detect the edges in an image too large to decode at once, in strips
+     * of a given height.
+     *
+     * @param reader A reader with the image as its input; image 0 is used.
+     * @param writer A writer with the destination as its output.
+     * @param stripRows The number of rows in a strip.
+     * @throws IOException If reading or writing throws.
+     */
+    void detectEdges(ImageReader reader, ImageWriter writer,
+                     final int stripRows) throws IOException {
+        final int width = reader.getWidth(0);
+        final int height = reader.getHeight(0);
+
+        log.info("Detecting edges in " + width + 'x' + height
+                + " image in strips of " + stripRows + " rows.");
+
+        final NeuronSpill spill =
+                new NeuronSpill(width, som.getNeuronCount() + 1);
+        try {
+            int[] neurons = new int[stripRows * width];
+            HitCounts hits = null;
+            for (int from = 0; from < height; from += stripRows) {
+                int to = Math.min(height, from + stripRows);
+                HitCounts stripHits = mapStrip(reader, width, height, from,
+                        to, neurons);
+                spill.write(from, to, neurons);
+                if (hits == null) {
+                    hits = stripHits;
+                } else {
+                    hits.addAll(stripHits);
+                }
+            }
+            final int[] shades = shades(new HitCounts[]{hits});
+
+            StripImage output = new StripImage(width, height, stripRows,
+                    new StripImage.Strips() {
+                        public void fill(int from, int to, int[] pixels) {
+                            try {
+                                spill.read(from, to, pixels);
+                            } catch (IOException e) {
+                                throw new StripReadError(e);
+                            }
+                            int count = (to - from) * width;
+                            for (int i = 0; i < count; i++) {
+                                pixels[i] = shades[pixels[i]];
+                            }
+                        }
+                    });
+            try {
+                writer.write(output);
+            } catch (StripReadError e) {
+                throw (IOException) e.getCause();
+            }
+        } finally {
+            spill.close();
+        }
+    }
+
+    /** Carries a spill read failure out of the writer's request for a strip. */
+    private static final class StripReadError extends RuntimeException {
+        private static final long serialVersionUID = 0L;
+
+        StripReadError(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Detect the edges in an image file too large to decode at once.
+     *
+     * @param input The image file.
+     * @param output The file to write the edges to.
+     * @param formatName The format to write, such as "png".
+     * @throws IOException If the input cannot be read or the output written.
+     * @see #detectEdges(ImageReader, ImageWriter)
+     */
+    public void detectEdges(File input, File output, String formatName)
+            throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(input);
+        if (in == null) {
+            throw new IOException("Cannot open " + input + '.');
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("No reader for " + input + '.');
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                Iterator<ImageWriter> writers =
+                        ImageIO.getImageWritersByFormatName(formatName);
+                if (!writers.hasNext()) {
+                    throw new IOException("No writer for " + formatName + '.');
+                }
+                ImageWriter writer = writers.next();
+                try {
+                    output.delete();
+                    ImageOutputStream out =
+                            ImageIO.createImageOutputStream(output);
+                    try {
+                        writer.setOutput(out);
+                        detectEdges(reader, writer);
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    writer.dispose();
+                }
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read one strip of an image with its halo rows and map it to neurons,
+     * as {@link #mapToNeurons} does.
+     *
+     * @param reader The image's reader.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param from The first row of the strip.
+     * @param to The row after the last row of the strip.
+     * @param neurons Where to store the neurons, from the strip's first row.
+     * @return The strip's hits.
+     * @throws IOException If reading throws.
+     */
+    private HitCounts mapStrip(ImageReader reader, final int width,
+                               final int height, int from, int to,
+                               final int[] neurons) throws IOException {
+        final int top = Math.max(from - 1, 0);
+        int bottom = Math.min(height, to + 1);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, top, width, bottom - top));
+        BufferedImage strip = reader.read(0, param);
+        final ImageBands.Pixels pixels =
+                ImageBands.read(strip, 0, bottom - top).below(top);
+
+        final int first = from;
+        final int[] table = bmuTable;
+        final HitCounts[] bandHits = new HitCounts[ImageBands.count(to - from)];
+        ImageBands.forEach(to - from, parallel, new ImageBands.Band() {
+            public void process(int band, int bandFrom, int bandTo) {
+                bandHits[band] = mapToNeurons(pixels, width, height,
+                        first + bandFrom, first + bandTo, table, neurons,
+                        bandFrom * width);
+            }
+        });
+
+        HitCounts hits = bandHits[0];
+        for (int i = 1; i < bandHits.length; i++) {
+            hits.addAll(bandHits[i]);
+        }
+        return hits;
+    }
+
+    /**
+     * Map rows of an image to neurons for {@link #detectEdges}.  Pixels
+     * {@link #runOnImage(BufferedImage)} leaves unmapped, along the top and
+     * left edges, are given one more neuron, whose color is black.
+     *
+     * @param pixels The rows, with the row above and below them.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param from The first row to map.
+     * @param to The row after the last row to map.
+     * @param table The compiled table, or {@code null} to search the map.
+     * @param neurons Where to store each pixel's neuron, in row major order.
+     * @param offset The index in neurons of the first row's first pixel.
+     * @return The neurons' hits.
+     */
+    private HitCounts mapToNeurons(ImageBands.Pixels pixels, int width,
+                                   int height, int from, int to, int[] table,
+                                   int[] neurons, int offset) {
+        int unmapped = som.getNeuronCount();
+        HitCounts hits = new HitCounts(unmapped + 1);
+        int[] matrix = table == null ? new int[9] : null;
+        for (int y = from; y < to; y++) {
+            int row = offset + (y - from) * width;
+            for (int x = 0; x < width; x++) {
+                int neuron = unmapped;
+                if (x > 0 && y > 0) {
+                    neuron = bestMatch(getDifferenceIndex(pixels, width,
+                            height, x, y), table, matrix);
+                }
+                neurons[row + x] = neuron;
+                hits.hit(neuron, (long) y * width + x);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Decide which neurons' pixels are background.  Colors are counted as a
+     * pass over {@link #runOnImage(BufferedImage)}'s output would count
+     * them.
+     *
+     * @param bands The hits on each neuron, including the unmapped pixels.
+     * @return The output color, black or white, for each neuron.
+     */
+    private int[] shades(HitCounts[] bands) {
+        int unmapped = som.getNeuronCount();
+        HitCounts hits = new HitCounts(unmapped + 1);
+        for (HitCounts band : bands) {
+            hits.addAll(band);
+        }
+
+        int colorStep = possibleColors / som.getNeuronCount();
+        int[] colors = new int[unmapped + 1];
+        for (int i = 0; i < unmapped; i++) {
+            colors[i] = OPAQUE | ((colorStep * i) & RGB_MASK);
+        }
+        colors[unmapped] = OPAQUE;
+        int mostCommonColor = mostCommonColor(hits.colorCounts(colors));
+
+        int[] shades = new int[unmapped + 1];
+        for (int i = 0; i <= unmapped; i++) {
+            shades[i] = (colors[i] == mostCommonColor
+                    ? Color.black.getRGB() : Color.white.getRGB()) & RGB_MASK;
+        }
+        return shades;
+    }
+
     /**
      * Normalize an image produced in a previous processing.
      *
@@ -210,54 +694,90 @@ public class EdgeDetector {
      * @return A black and white image where the white pixels indicate an edge
      * in the original image.
      */
-    public BufferedImage normalizeImage(BufferedImage image) {
+    public BufferedImage normalizeImage(final BufferedImage image) {
         log.info("Normalizing.");
-        int mostCommonColor = findMostCommonColor(image);
+        final int mostCommonColor = findMostCommonColor(image);
 
         log.fine("Rewriting colors.");
-        BufferedImage out = new BufferedImage(image.getWidth(),
+        final int width = image.getWidth();
+        final BufferedImage out = new BufferedImage(width,
                 image.getHeight(), image.getType());
-        int black = Color.black.getRGB();
-        int white = Color.white.getRGB();
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int color = image.getRGB(x, y);
-                if (color == mostCommonColor)
-                    out.setRGB(x, y, black);
-                else
-                    out.setRGB(x, y, white);
+        final int black = Color.black.getRGB();
+        final int white = Color.white.getRGB();
+        ImageBands.forEach(image.getHeight(), parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                ImageBands.Pixels pixels = ImageBands.read(image, from, to);
+                int[] rows = new int[(to - from) * width];
+                for (int y = from; y < to; y++) {
+                    int row = (y - from) * width;
+                    for (int x = 0; x < width; x++) {
+                        if (pixels.get(x, y) == mostCommonColor)
+                            rows[row + x] = black;
+                        else
+                            rows[row + x] = white;
+                    }
+                }
+                ImageBands.write(out, from, to, rows);
             }
-        }
+        });
 
         return out;
     }
 
     /**
-     * Compute the most common color in an image.
+     * Compute the most common color in an image.  Colors that are equally
+     * common are decided as if every pixel had been counted in one
+     * {@code HashMap}, in order.
      *
      * @param image The input image.
      * @return The most common color as a 24-bit RGB value;
      */
-    private int findMostCommonColor(BufferedImage image) {
-        Map<Integer, Integer> colorFrequency =
-                new HashMap<Integer, Integer>(som.getNeuronCount());
-        
+    private int findMostCommonColor(final BufferedImage image) {
+        final int width = image.getWidth();
+        final ColorCounts[] bands =
+                new ColorCounts[ImageBands.count(image.getHeight())];
+
         log.fine("Computing color frequencies.");
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int color = image.getRGB(x, y);
-                if (colorFrequency.containsKey(color))
-                    colorFrequency.put(color, colorFrequency.get(color) + 1);
-                else
-                    colorFrequency.put(color, 1);
+        ImageBands.forEach(image.getHeight(), parallel, new ImageBands.Band() {
+            public void process(int band, int from, int to) {
+                ImageBands.Pixels pixels = ImageBands.read(image, from, to);
+                ColorCounts counts = new ColorCounts();
+                for (int y = from; y < to; y++) {
+                    for (int x = 0; x < width; x++) {
+                        counts.add(pixels.get(x, y));
+                    }
+                }
+                bands[band] = counts;
             }
+        });
+
+        ColorCounts counts = new ColorCounts();
+        for (ColorCounts band : bands) {
+            counts.addAll(band);
+        }
+        return mostCommonColor(counts);
+    }
+
+    /**
+     * Find the most common of some counted colors.  Colors that are equally
+     * common are decided as if the colors had been counted in a
+     * {@code HashMap}, in the order they were first seen.
+     *
+     * @param counts The color counts.
+     * @return The most common color.
+     */
+    private int mostCommonColor(ColorCounts counts) {
+        Map<Integer, Long> colorFrequency =
+                new HashMap<Integer, Long>(som.getNeuronCount());
+        for (int i = 0; i < counts.size(); i++) {
+            colorFrequency.put(counts.color(i), counts.count(i));
         }
 
         log.fine("Finding most common color.");
         int mostCommonColor = -1;
-        int max = 0;
+        long max = 0;
         for (Integer integer : colorFrequency.keySet()) {
-            int count = colorFrequency.get(integer);
+            long count = colorFrequency.get(integer);
             if (count > max) {
                 max = count;
                 mostCommonColor = integer;
@@ -267,77 +787,85 @@ public class EdgeDetector {
     }
 
     /**
-     * Create a "difference" matrix from a point in an image.  The matrix is a
-     * 3x3 grid of numbers.  The central number represents the point in
+     * Find the best matching neuron for a difference matrix.
+     *
+     * @param index The index of the matrix.
+     * @param table The compiled table, or {@code null} to search the map.
+     * @param matrix Room for the matrix when searching the map.
+     * @return The index of the best matching neuron.
+     */
+    private int bestMatch(int index, int[] table, int[] matrix) {
+        if (table != null) {
+            return table[index];
+        }
+        permutation(index, matrix);
+        return som.getBestMatchingNeuron(matrix);
+    }
+
+    /**
+     * Compute the index of a point's "difference" matrix among the possible
+     * matrices, as ordered by {@link #permutation(int, int[])}.  The matrix
+     * is a 3x3 grid of numbers.  The central number represents the point in
      * question.  The remaining numbers in the matrix are -1 if the point in
      * the image having the same positional relationship as then number in the
      * matrix does not exist (ie., it would be off the image), or 1 if the
      * Euclidean distance of the red, green, and blue values of the color are
      * greater than {@code MINIMUM_COLOR_DISTANCE} from the reference pixel.
+     * A pixel whose color reads as -1 (opaque white) is taken to be off the
+     * image.
      *
-     * @param img The image to extract data from.
-     * @param x The x-axis coordinate of the point to process.
-     * @param y The y-axis coordinate of the point to process.
-     * @return The matrix as described above.
+     * The matrix is never built: each element is a base 3 digit of the index,
+     * the first element least significant, with -1, 0 and 1 as the digits 0,
+     * 1 and 2.
+     *
+     * @param pixels The rows of the image around the point.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param x The x-axis coordinate of the point to process; at least 1.
+     * @param y The y-axis coordinate of the point to process; at least 1.
+     * @return The index of the difference matrix of (x, y).
      */
-    private int[] getDifferenceMatrix(BufferedImage img, int x, int y) {
-        int[] matrix = new int[9];
-
-        int center = getPixelColor(img, x, y);
-
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                int pixel = getPixelColor(img, x + j - 1, y + i - 1);
-                if (pixel == -1) {
-                    matrix[i * 3 + j] = -1;
-                } else {
-                    double difference = colorDistance(center, pixel);
-                    if (difference < MINIMUM_COLOR_DISTANCE) {
-                        matrix[i * 3 + j] = 0;
-                    } else {
-                        matrix[i * 3 + j] = 1;
+    private static int getDifferenceIndex(ImageBands.Pixels pixels, int width,
+                                          int height, int x, int y) {
+        int center = pixels.get(x, y);
+
+        int index = 0;
+        int factor = 1;
+        for (int i = y - 1; i <= y + 1; i++) {
+            for (int j = x - 1; j <= x + 1; j++) {
+                if (i < height && j < width) {
+                    int pixel = pixels.get(j, i);
+                    if (pixel != -1) {
+                        // Integer distances are below the minimum exactly
+                        // when their squares are below its square.
+                        index += colorDistanceSquared(center, pixel)
+                                < MINIMUM_COLOR_DISTANCE * MINIMUM_COLOR_DISTANCE
+                                ? factor : 2 * factor;
                     }
                 }
+                factor *= 3;
             }
         }
-
-        return matrix;
-    }
-
-    /**
-     * Retrieve the color of a single pixel in an image.
-     *
-     * @param image The image in question.
-     * @param x The x-axis location of the pixel.
-     * @param y The y-axis location of the pixel.
-     * @return The color, as a 32-bit ARGB value, at (x, y) or -1 if that
-     * location would be outside of the boundaries of the image.
-     */
-    private int getPixelColor(BufferedImage image, int x, int y) {
-        if (x < 0 || x > image.getWidth() - 1 || y < 0 || y > image.getHeight() - 1)
-            return -1;
-        return image.getRGB(x, y);
+        return index;
     }
 
     /**
-     * Calculate the Euclidean difference between two colors using their RGB
-     * values as elements of a 3-dimensional vector.
+     * Calculate the squared Euclidean difference between two colors using
+     * their RGB values as elements of a 3-dimensional vector.
      *
      * @param one The first color as a 32-bit ARGB value (the alpha will be
      * ignored).
      * @param two The second color as a 32-bit ARGB value (the alpha will be
      * ignored).
-     * @return The distance between one and two.
+     * @return The squared distance between one and two.
      */
-    private double colorDistance(int one, int two) {
-        int r1 = (one >> TWO_BYTE_SHIFT) & BYTEMASK;
-        int g1 = (one >> ONE_BYTE_SHIFT) & BYTEMASK;
-        int b1 = one & BYTEMASK;
-        int r2 = (two >> TWO_BYTE_SHIFT) & BYTEMASK;
-        int g2 = (two >> ONE_BYTE_SHIFT) & BYTEMASK;
-        int b2 = two & BYTEMASK;
-        int dr = r1 - r2, dg = g1 - g2, db = b1 - b2;
-        return Math.sqrt(dr * dr + dg * dg + db * db);
+    private static int colorDistanceSquared(int one, int two) {
+        int dr = ((one >> TWO_BYTE_SHIFT) & BYTEMASK)
+                - ((two >> TWO_BYTE_SHIFT) & BYTEMASK);
+        int dg = ((one >> ONE_BYTE_SHIFT) & BYTEMASK)
+                - ((two >> ONE_BYTE_SHIFT) & BYTEMASK);
+        int db = (one & BYTEMASK) - (two & BYTEMASK);
+        return dr * dr + dg * dg + db * db;
     }
 
     @Override
@@ -352,7 +880,8 @@ public class EdgeDetector {
             return;
         }
 
-        ed.trainWithRandomPermutations(100);
+        ed.trainWithRandomPermutations(100, new RandomSource());
+        ed.compile();
 
         Class<EdgeDetector> edc = EdgeDetector.class;
         BufferedImage original = ImageIO.read(edc.getResourceAsStream("image.jpg"));
@@ -0,0 +1,511 @@
+package cs437.som.demo;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import cs437.som.network.CustomizableSOM;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Detects the edges in a sequence of frames, such as the frames of a video
+ * stored as PNG or JPEG images, with an {@link EdgeDetector}.
+ *
+ * Each frame goes through four stages: decoding, extracting the difference
+ * matrices, mapping them to neurons, and encoding the edges.  Every stage has
+ * its own thread, and the stages are connected by bounded queues, so that
+ * reading and writing files overlaps with the computation and no more than a
+ * few frames are held in memory at once.  Each frame gives the same image as
+ * {@link EdgeDetector#detectEdges(BufferedImage)}.
+ *
+ * Each stage keeps {@link StageMetrics}: how many frames it has processed,
+ * how long it has spent working, waiting for frames and waiting to hand them
+ * on, and how deep the queue in front of it has been.  The stage that is
+ * busy nearly all of the time, with a full queue in front of it, is the
+ * bottleneck.
+ *
+ * A pipeline runs one sequence of frames at a time.
+ */
+public class FramePipeline {
+    /** Better than standard out... */
+    private static final Logger log = Logger.getLogger("FramePipeline");
+
+    /** Follows the last frame through the pipeline. */
+    private static final Frame END = new Frame(null, null);
+
+    private static final String[] STAGE_NAMES =
+            {"decode", "extract", "map", "encode"};
+
+    private final EdgeDetector detector;
+    private final int queueCapacity;
+
+    private volatile List<StageMetrics> metrics =
+            Collections.emptyList();
+    private Throwable failure = null;
+    private Thread[] threads = null;
+
+    /**
+     * Create a pipeline.
+     *
+     * @param detector The edge detector to run on each frame; compiling it
+     * first is recommended.
+     * @param queueCapacity The number of frames each queue between two
+     * stages holds.
+     */
+    public FramePipeline(EdgeDetector detector, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new SOMError("Queue capacity must be positive: "
+                    + queueCapacity);
+        }
+        this.detector = detector;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Detect the edges in every PNG and JPEG image in a directory, in the
+     * order of their names.
+     *
+     * @param inputDirectory The directory of frames.
+     * @param outputDirectory The directory to write each frame's edges to,
+     * as a PNG image with the same base name as the frame.
+     * @throws IOException If a frame cannot be read or written, or if two
+     * frames have the same base name.
+     * @see #run(List, File)
+     */
+    public void run(File inputDirectory, File outputDirectory)
+            throws IOException {
+        File[] files = inputDirectory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                String name = file.getName().toLowerCase();
+                return file.isFile() && (name.endsWith(".png")
+                        || name.endsWith(".jpg") || name.endsWith(".jpeg"));
+            }
+        });
+        if (files == null) {
+            throw new IOException("Cannot list " + inputDirectory + '.');
+        }
+        Arrays.sort(files);
+        run(Arrays.asList(files), outputDirectory);
+    }
+
+    /**
+     * Detect the edges in a sequence of frames.  If any frame fails, the
+     * remaining frames are abandoned.
+     *
+     * @param frames The frames, in the order to process them.
+     * @param outputDirectory The directory to write each frame's edges to,
+     * as a PNG image with the same base name as the frame.
+     * @throws IOException If a frame cannot be read or written, or if two
+     * frames have the same base name, such as {@code a.png} and
+     * {@code a.jpg}, in which case no frame is processed.
+     */
+    public void run(List<File> frames, File outputDirectory)
+            throws IOException {
+        BlockingQueue<Frame> pending =
+                new ArrayBlockingQueue<Frame>(frames.size() + 1);
+        Map<String, File> outputs = new HashMap<String, File>();
+        for (File file : frames) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            String output = (dot > 0 ? name.substring(0, dot) : name) + ".png";
+            File previous = outputs.put(output, file);
+            if (previous != null) {
+                throw new IOException(previous + " and " + file
+                        + " would both be written to " + output + '.');
+            }
+            pending.add(new Frame(file, new File(outputDirectory, output)));
+        }
+        pending.add(END);
+
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + outputDirectory + '.');
+        }
+
+        List<BlockingQueue<Frame>> queues =
+                new ArrayList<BlockingQueue<Frame>>();
+        queues.add(pending);
+        for (int i = 1; i < STAGE_NAMES.length; i++) {
+            queues.add(new ArrayBlockingQueue<Frame>(queueCapacity));
+        }
+        queues.add(null);
+
+        List<StageMetrics> stageMetrics = new ArrayList<StageMetrics>();
+        Thread[] stageThreads = new Thread[STAGE_NAMES.length];
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            StageMetrics m = new StageMetrics(STAGE_NAMES[i],
+                    i == 0 ? frames.size() + 1 : queueCapacity);
+            stageMetrics.add(m);
+            stageThreads[i] = new Thread(new Stage(i, queues.get(i),
+                    queues.get(i + 1), m), "FramePipeline-" + STAGE_NAMES[i]);
+            stageThreads[i].setDaemon(true);
+        }
+
+        synchronized (this) {
+            failure = null;
+            threads = stageThreads;
+        }
+        metrics = Collections.unmodifiableList(stageMetrics);
+        log.info("Detecting edges in " + frames.size() + " frames.");
+        for (Thread thread : stageThreads) {
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : stageThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : stageThreads) {
+                thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while running.");
+        }
+
+        for (StageMetrics m : stageMetrics) {
+            log.info(m.toString());
+        }
+
+        Throwable failed;
+        synchronized (this) {
+            failed = failure;
+            threads = null;
+        }
+        if (failed instanceof IOException) {
+            throw (IOException) failed;
+        } else if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        } else if (failed instanceof Error) {
+            throw (Error) failed;
+        }
+    }
+
+    /**
+     * Get the metrics of the stages of the current run, or of the last run
+     * if none is running.  They may be read while the pipeline runs.
+     *
+     * @return Each stage's metrics, in the order of the stages.
+     */
+    public List<StageMetrics> getMetrics() {
+        return metrics;
+    }
+
+    /* Record the first failure and stop every stage. */
+    private synchronized void fail(Throwable t) {
+        if (failure == null) {
+            failure = t;
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /* Do one stage's work on a frame. */
+    private void process(int stage, Frame frame) throws IOException {
+        switch (stage) {
+            case 0:
+                frame.image = ImageIO.read(frame.input);
+                if (frame.image == null) {
+                    throw new IOException("Cannot decode " + frame.input + '.');
+                }
+                break;
+            case 1:
+                frame.width = frame.image.getWidth();
+                frame.height = frame.image.getHeight();
+                frame.indexes = detector.differenceIndexes(frame.image);
+                frame.image = null;
+                break;
+            case 2:
+                frame.image = detector.mapDifferences(frame.indexes,
+                        frame.width, frame.height);
+                frame.indexes = null;
+                break;
+            default:
+                if (!ImageIO.write(frame.image, "png", frame.output)) {
+                    throw new IOException("Cannot encode " + frame.output
+                            + '.');
+                }
+                frame.image = null;
+                break;
+        }
+    }
+
+    /**
+     * A frame on its way through the pipeline.  Each stage replaces what the
+     * stage before it made, so that a frame holds one image or one set of
+     * indexes at a time.
+     */
+    private static final class Frame {
+        final File input;
+        final File output;
+        BufferedImage image = null;
+        int[] indexes = null;
+        int width = 0;
+        int height = 0;
+
+        Frame(File input, File output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Moves frames from one queue through one stage to the next queue.
+     */
+    private final class Stage implements Runnable {
+        private final int stage;
+        private final BlockingQueue<Frame> in;
+        private final BlockingQueue<Frame> out;
+        private final StageMetrics metrics;
+
+        Stage(int stage, BlockingQueue<Frame> in, BlockingQueue<Frame> out,
+              StageMetrics metrics) {
+            this.stage = stage;
+            this.in = in;
+            this.out = out;
+            this.metrics = metrics;
+        }
+
+        public void run() {
+            metrics.start();
+            try {
+                while (true) {
+                    int depth = in.size();
+                    long waiting = System.nanoTime();
+                    Frame frame = in.take();
+                    long started = System.nanoTime();
+                    if (frame == END) {
+                        metrics.starved(started - waiting);
+                        if (out != null) {
+                            out.put(END);
+                        }
+                        return;
+                    }
+
+                    process(stage, frame);
+                    long finished = System.nanoTime();
+                    if (out != null) {
+                        out.put(frame);
+                    }
+                    metrics.processed(depth, started - waiting,
+                            finished - started,
+                            System.nanoTime() - finished);
+                }
+            } catch (InterruptedException e) {
+                // Another stage failed, or the run was interrupted.
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(e);
+            } catch (Error e) {
+                fail(e);
+            } finally {
+                metrics.stop();
+            }
+        }
+    }
+
+    /**
+     * What one stage of a pipeline has done.  The values are updated by the
+     * stage's thread as it goes, and may be read from any thread.
+     */
+    public static final class StageMetrics {
+        private final String name;
+        private final int queueCapacity;
+
+        private volatile long frames = 0;
+        private volatile long busyNanos = 0;
+        private volatile long starvedNanos = 0;
+        private volatile long blockedNanos = 0;
+        private volatile long queueDepthSum = 0;
+        private volatile int maxQueueDepth = 0;
+        private volatile long startNanos = 0;
+        private volatile long stopNanos = 0;
+
+        StageMetrics(String name, int queueCapacity) {
+            this.name = name;
+            this.queueCapacity = queueCapacity;
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+        }
+
+        void stop() {
+            stopNanos = System.nanoTime();
+        }
+
+        void starved(long nanos) {
+            starvedNanos += nanos;
+        }
+
+        void processed(int queueDepth, long starved, long busy,
+                       long blocked) {
+            starvedNanos += starved;
+            busyNanos += busy;
+            blockedNanos += blocked;
+            queueDepthSum += queueDepth;
+            maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+            frames++;
+        }
+
+        /**
+         * @return The name of the stage.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of frames the stage has processed.
+         */
+        public long getFrames() {
+            return frames;
+        }
+
+        /**
+         * @return The time the stage has spent processing frames, in
+         * nanoseconds.
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * @return The time the stage has spent waiting for the stage before
+         * it, in nanoseconds.
+         */
+        public long getStarvedNanos() {
+            return starvedNanos;
+        }
+
+        /**
+         * @return The time the stage has spent waiting for room in the queue
+         * after it, in nanoseconds.
+         */
+        public long getBlockedNanos() {
+            return blockedNanos;
+        }
+
+        /**
+         * @return The time since the stage started, or that it ran for if it
+         * has stopped, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            if (startNanos == 0) {
+                return 0;
+            }
+            long stop = stopNanos;
+            return (stop == 0 ? System.nanoTime() : stop) - startNanos;
+        }
+
+        /**
+         * @return The number of frames processed per second of the stage's
+         * elapsed time.
+         */
+        public double getThroughput() {
+            long elapsed = getElapsedNanos();
+            return elapsed == 0 ? 0 : frames * 1e9 / elapsed;
+        }
+
+        /**
+         * @return The fraction of the stage's elapsed time spent processing
+         * frames.
+         */
+        public double getUtilization() {
+            long elapsed = getElapsedNanos();
+            return elapsed == 0 ? 0 : (double) busyNanos / elapsed;
+        }
+
+        /**
+         * @return The number of frames the queue in front of the stage can
+         * hold.  The first stage's queue holds every frame to process.
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /**
+         * @return The mean number of frames waiting in front of the stage
+         * when it went to take a frame.
+         */
+        public double getMeanQueueDepth() {
+            long n = frames;
+            return n == 0 ? 0 : (double) queueDepthSum / n;
+        }
+
+        /**
+         * @return The most frames waiting in front of the stage when it went
+         * to take a frame.
+         */
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        @Override
+        public String toString() {
+            long elapsed = Math.max(getElapsedNanos(), 1);
+            return String.format("%-7s %,6d frames %8.2f frames/s  busy %3.0f%%"
+                    + "  starved %3.0f%%  blocked %3.0f%%  queue %.1f"
+                    + " (max %d of %d)", name, frames, getThroughput(),
+                    100.0 * busyNanos / elapsed,
+                    100.0 * starvedNanos / elapsed,
+                    100.0 * blockedNanos / elapsed, getMeanQueueDepth(),
+                    maxQueueDepth, queueCapacity);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FramePipeline{detector=" + detector + ", queueCapacity="
+                + queueCapacity + '}';
+    }
+
+    /**
+     * Detect the edges in a directory of frames with a randomly trained
+     * detector, and print what each stage did.
+     *
+     * @param args The directory of frames, the directory to write the edges
+     * to, and optionally the capacity of the queues between stages.
+     * @throws IOException If a frame cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FramePipeline <frame directory> "
+                    + "<output directory> [queue capacity]");
+            return;
+        }
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(
+                new CustomizableSOM(new Dimension(10, 10), 9, 5000), 5000);
+        ed.compile();
+
+        FramePipeline pipeline = new FramePipeline(ed, capacity);
+        long start = System.nanoTime();
+        pipeline.run(new File(args[0]), new File(args[1]));
+        long elapsed = System.nanoTime() - start;
+
+        long frames = pipeline.getMetrics().get(0).getFrames();
+        System.out.printf("%d frames in %,d ms (%.2f frames/s)%n", frames,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                frames * 1e9 / Math.max(elapsed, 1));
+        for (StageMetrics m : pipeline.getMetrics()) {
+            System.out.println(m);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cs437.som.demo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Counts how many pixels each neuron was chosen for, and remembers the first
+ * pixel each neuron was chosen for, in row major order.
+ */
+final class HitCounts {
+    private final long[] hits;
+    private final long[] firstHits;
+
+    /**
+     * Create empty counts.
+     *
+     * @param neurons The number of neurons counted.
+     */
+    HitCounts(int neurons) {
+        hits = new long[neurons];
+        firstHits = new long[neurons];
+        Arrays.fill(firstHits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Count a hit on a neuron.
+     *
+     * @param neuron The neuron.
+     * @param pixel The index of the pixel, in row major order.
+     */
+    void hit(int neuron, long pixel) {
+        if (hits[neuron]++ == 0) {
+            firstHits[neuron] = Math.min(firstHits[neuron], pixel);
+        }
+    }
+
+    /**
+     * Add the hits counted elsewhere.
+     *
+     * @param other The hits to add.
+     */
+    void addAll(HitCounts other) {
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] += other.hits[i];
+            firstHits[i] = Math.min(firstHits[i], other.firstHits[i]);
+        }
+    }
+
+    /**
+     * Count the colors of the hits, with the colors in the order they first
+     * appear in the image.
+     *
+     * @param colors The color of each neuron.
+     * @return The color counts.
+     */
+    ColorCounts colorCounts(int[] colors) {
+        Integer[] order = new Integer[hits.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                long first = firstHits[a];
+                long second = firstHits[b];
+                return first < second ? -1 : first > second ? 1 : a - b;
+            }
+        });
+
+        ColorCounts counts = new ColorCounts();
+        for (int neuron : order) {
+            if (hits[neuron] > 0) {
+                counts.add(colors[neuron], hits[neuron]);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "HitCounts{neurons=" + hits.length + '}';
+    }
+}
@@ -0,0 +1,220 @@
+package cs437.som.demo;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits images into bands of whole rows that are processed in parallel on a
+ * shared fork/join pool, and gives direct access to the pixels of each band.
+ *
+ * The pixels of images kept as one int per pixel are read from, and written
+ * to, the raster's backing array; other images are converted a band at a
+ * time.  Either way the values seen are those {@link BufferedImage#getRGB}
+ * returns.
+ */
+final class ImageBands {
+    /** The pool shared by every image operation. */
+    static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** The number of rows in a band. */
+    static final int BAND_ROWS = 32;
+
+    private ImageBands() {
+    }
+
+    /**
+     * Work done on one band of rows.
+     */
+    interface Band {
+        /**
+         * Process one band.  Bands may be processed in any order, and at the
+         * same time as each other.
+         *
+         * @param band The index of the band, counting from the top.
+         * @param from The first row of the band.
+         * @param to The row after the last row of the band.
+         */
+        void process(int band, int from, int to);
+    }
+
+    /**
+     * Count the bands an image is split into.
+     *
+     * @param height The height of the image.
+     * @return The number of bands.
+     */
+    static int count(int height) {
+        return (height + BAND_ROWS - 1) / BAND_ROWS;
+    }
+
+    /**
+     * Process every band of an image.
+     *
+     * @param height The height of the image.
+     * @param parallel Whether to process bands on the shared pool; if not,
+     * they are processed in order on the calling thread.
+     * @param band The work to do on each band.
+     */
+    static void forEach(int height, boolean parallel, Band band) {
+        int bands = count(height);
+        if (parallel && bands > 1) {
+            POOL.invoke(new BandTask(band, height, 0, bands));
+        } else {
+            for (int i = 0; i < bands; i++) {
+                band.process(i, i * BAND_ROWS,
+                        Math.min(height, (i + 1) * BAND_ROWS));
+            }
+        }
+    }
+
+    private static final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 0L;
+
+        private final Band band;
+        private final int height;
+        private final int first;
+        private final int last;
+
+        BandTask(Band band, int height, int first, int last) {
+            this.band = band;
+            this.height = height;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                band.process(first, first * BAND_ROWS,
+                        Math.min(height, (first + 1) * BAND_ROWS));
+                return;
+            }
+
+            int middle = (first + last) >>> 1;
+            invokeAll(new BandTask(band, height, first, middle),
+                    new BandTask(band, height, middle, last));
+        }
+    }
+
+    /**
+     * Get the backing array of an image kept as one int per pixel in the
+     * standard layout.
+     *
+     * @param image The image.
+     * @return The pixels, or {@code null} if the image is of another type.
+     */
+    private static int[] backingArray(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB
+                && type != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt)
+                || !(raster.getSampleModel()
+                instanceof SinglePixelPackedSampleModel)) {
+            return null;
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * The pixels of some rows of an image, as {@link BufferedImage#getRGB}
+     * returns them.  Pixel (x, y) is
+     * {@code data[offset + y * stride + x] | alpha}.
+     */
+    static final class Pixels {
+        final int[] data;
+        final int offset;
+        final int stride;
+        final int alpha;
+
+        private Pixels(int[] data, int offset, int stride, int alpha) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.alpha = alpha;
+        }
+
+        int get(int x, int y) {
+            return data[offset + y * stride + x] | alpha;
+        }
+
+        /**
+         * Read these rows as rows lower down a larger image.
+         *
+         * @param rows The number of rows above these ones.
+         * @return The same pixels, with row 0 renumbered as row {@code rows}.
+         */
+        Pixels below(int rows) {
+            return new Pixels(data, offset - rows * stride, stride, alpha);
+        }
+    }
+
+    /**
+     * Read some rows of an image.  Images kept as one int per pixel are read
+     * in place; other images have the rows copied out.
+     *
+     * @param image The image.
+     * @param from The first row needed.
+     * @param to The row after the last row needed.
+     * @return The rows' pixels.
+     */
+    static Pixels read(BufferedImage image, int from, int to) {
+        int[] data = backingArray(image);
+        if (data != null) {
+            WritableRaster raster = image.getRaster();
+            SinglePixelPackedSampleModel model =
+                    (SinglePixelPackedSampleModel) raster.getSampleModel();
+            int offset = model.getOffset(
+                    -raster.getSampleModelTranslateX(),
+                    -raster.getSampleModelTranslateY())
+                    + raster.getDataBuffer().getOffset();
+            int alpha = image.getType() == BufferedImage.TYPE_INT_RGB
+                    ? 0xFF000000 : 0;
+            return new Pixels(data, offset, model.getScanlineStride(), alpha);
+        }
+
+        int width = image.getWidth();
+        int[] rows = image.getRGB(0, from, width, to - from, null, 0, width);
+        return new Pixels(rows, -from * width, width, 0);
+    }
+
+    /**
+     * Write some rows of an image, as {@link BufferedImage#setRGB} would.
+     *
+     * @param image The image.
+     * @param from The first row to write.
+     * @param to The row after the last row to write.
+     * @param rows The new pixels of the rows, without gaps between rows.
+     */
+    static void write(BufferedImage image, int from, int to, int[] rows) {
+        int width = image.getWidth();
+        int[] data = backingArray(image);
+        if (data == null) {
+            image.setRGB(0, from, width, to - from, rows, 0, width);
+            return;
+        }
+
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel model =
+                (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int stride = model.getScanlineStride();
+        int offset = model.getOffset(-raster.getSampleModelTranslateX(),
+                -raster.getSampleModelTranslateY())
+                + raster.getDataBuffer().getOffset();
+        int mask = image.getType() == BufferedImage.TYPE_INT_RGB
+                ? 0x00FFFFFF : 0xFFFFFFFF;
+        for (int y = from; y < to; y++) {
+            int source = (y - from) * width;
+            int target = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                data[target + x] = rows[source + x] & mask;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package cs437.som.demo;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A temporary file holding the neuron each pixel of an image was mapped to,
+ * kept between the two passes of a streamed edge detection so that the image
+ * is decoded only once.  Each neuron takes one byte if there are at most 256
+ * of them, two if there are at most 65536, and four otherwise.  Rows are
+ * stored in order, without gaps, so any run of rows can be read back with
+ * one positional read.
+ */
+final class NeuronSpill {
+    private final File file;
+    private final RandomAccessFile access;
+    private final FileChannel channel;
+    private final int width;
+    private final int bytesPerPixel;
+    private ByteBuffer buffer = null;
+
+    /**
+     * Create an empty spill file.
+     *
+     * @param width The width of the image.
+     * @param neurons The number of distinct neurons pixels may map to.
+     * @throws IOException If the file cannot be created.
+     */
+    NeuronSpill(int width, int neurons) throws IOException {
+        this.width = width;
+        if (neurons <= 1 << Byte.SIZE) {
+            bytesPerPixel = 1;
+        } else if (neurons <= 1 << Short.SIZE) {
+            bytesPerPixel = 2;
+        } else {
+            bytesPerPixel = 4;
+        }
+
+        file = File.createTempFile("edges", ".neurons");
+        file.deleteOnExit();
+        try {
+            access = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        channel = access.getChannel();
+    }
+
+    /**
+     * @return The number of bytes each pixel takes in the file.
+     */
+    int bytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    /**
+     * Store the neurons of some rows.
+     *
+     * @param from The first row.
+     * @param to The row after the last row.
+     * @param neurons The rows' neurons, without gaps between rows.
+     * @throws IOException If writing throws.
+     */
+    void write(int from, int to, int[] neurons) throws IOException {
+        int count = (to - from) * width;
+        ByteBuffer bytes = buffer(count);
+        switch (bytesPerPixel) {
+            case 1:
+                for (int i = 0; i < count; i++) {
+                    bytes.put((byte) neurons[i]);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < count; i++) {
+                    bytes.putShort((short) neurons[i]);
+                }
+                break;
+            default:
+                bytes.asIntBuffer().put(neurons, 0, count);
+                bytes.position(bytes.limit());
+                break;
+        }
+        bytes.flip();
+
+        long position = offset(from);
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    /**
+     * Read back the neurons of some rows.
+     *
+     * @param from The first row.
+     * @param to The row after the last row.
+     * @param neurons Where to store the rows' neurons, without gaps between
+     * rows.
+     * @throws IOException If reading throws or the rows were never written.
+     */
+    void read(int from, int to, int[] neurons) throws IOException {
+        int count = (to - from) * width;
+        ByteBuffer bytes = buffer(count);
+        long position = offset(from);
+        while (bytes.hasRemaining()) {
+            int read = channel.read(bytes, position);
+            if (read < 0) {
+                throw new EOFException("Rows " + from + " to " + to
+                        + " were not spilled.");
+            }
+            position += read;
+        }
+        bytes.flip();
+
+        switch (bytesPerPixel) {
+            case 1:
+                for (int i = 0; i < count; i++) {
+                    neurons[i] = bytes.get() & 0xFF;
+                }
+                break;
+            case 2:
+                for (int i = 0; i < count; i++) {
+                    neurons[i] = bytes.getShort() & 0xFFFF;
+                }
+                break;
+            default:
+                bytes.asIntBuffer().get(neurons, 0, count);
+                break;
+        }
+    }
+
+    /**
+     * Close and delete the file.
+     *
+     * @throws IOException If closing throws.
+     */
+    void close() throws IOException {
+        try {
+            access.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private long offset(int row) {
+        return (long) row * width * bytesPerPixel;
+    }
+
+    /* A cleared buffer with room for exactly count pixels. */
+    private ByteBuffer buffer(int count) {
+        int bytes = count * bytesPerPixel;
+        if (buffer == null || buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        buffer.limit(bytes);
+        return buffer;
+    }
+}
@@ -0,0 +1,194 @@
+package cs437.som.demo;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * An RGB image whose pixels are computed a strip of rows at a time, when they
+ * are asked for, so that an image writer can encode an image that is never
+ * held in memory at once.  Each strip is a tile; only the last strip computed
+ * is kept.
+ */
+final class StripImage implements RenderedImage {
+    /**
+     * Computes the pixels of a strip.
+     */
+    interface Strips {
+        /**
+         * Compute the pixels of some rows.
+         *
+         * @param from The first row.
+         * @param to The row after the last row.
+         * @param pixels Where to store the rows' RGB values, without gaps
+         * between rows.
+         */
+        void fill(int from, int to, int[] pixels);
+    }
+
+    private final int width;
+    private final int height;
+    private final int stripRows;
+    private final Strips strips;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+
+    private WritableRaster strip = null;
+    private int stripIndex = -1;
+
+    /**
+     * Create an image.
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param stripRows The number of rows in a strip.
+     * @param strips Computes the strips' pixels.
+     */
+    StripImage(int width, int height, int stripRows, Strips strips) {
+        this.width = width;
+        this.height = height;
+        this.stripRows = stripRows;
+        this.strips = strips;
+        BufferedImage pattern =
+                new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        colorModel = pattern.getColorModel();
+        sampleModel = pattern.getSampleModel()
+                .createCompatibleSampleModel(width, stripRows);
+    }
+
+    /* Compute a strip, unless it is the one computed last. */
+    private synchronized Raster strip(int index) {
+        if (index != stripIndex) {
+            if (strip == null) {
+                strip = Raster.createWritableRaster(sampleModel, null);
+            }
+            int from = index * stripRows;
+            int to = Math.min(height, from + stripRows);
+            strips.fill(from, to,
+                    ((DataBufferInt) strip.getDataBuffer()).getData());
+            stripIndex = index;
+        }
+        return strip.createTranslatedChild(0, index * stripRows);
+    }
+
+    public Raster getTile(int tileX, int tileY) {
+        return strip(tileY);
+    }
+
+    public Raster getData() {
+        return getData(getBounds());
+    }
+
+    public Raster getData(Rectangle rect) {
+        Rectangle region = rect.intersection(getBounds());
+        WritableRaster data = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(region.width,
+                        region.height), new Point(region.x, region.y));
+        return copyData(data, region);
+    }
+
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            return (WritableRaster) getData();
+        }
+        return copyData(raster, raster.getBounds().intersection(getBounds()));
+    }
+
+    private WritableRaster copyData(WritableRaster raster, Rectangle region) {
+        int first = region.y / stripRows;
+        int last = (region.y + region.height - 1) / stripRows;
+        for (int i = first; i <= last; i++) {
+            Raster source = strip(i);
+            Rectangle overlap = source.getBounds().intersection(region);
+            raster.setRect(source.createChild(overlap.x, overlap.y,
+                    overlap.width, overlap.height, overlap.x, overlap.y, null));
+        }
+        return raster;
+    }
+
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMinX() {
+        return 0;
+    }
+
+    public int getMinY() {
+        return 0;
+    }
+
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    public int getNumYTiles() {
+        return (height + stripRows - 1) / stripRows;
+    }
+
+    public int getMinTileX() {
+        return 0;
+    }
+
+    public int getMinTileY() {
+        return 0;
+    }
+
+    public int getTileWidth() {
+        return width;
+    }
+
+    public int getTileHeight() {
+        return stripRows;
+    }
+
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    private Rectangle getBounds() {
+        return new Rectangle(0, 0, width, height);
+    }
+
+    @Override
+    public String toString() {
+        return "StripImage{" + width + 'x' + height + ", stripRows="
+                + stripRows + '}';
+    }
+}
@@ -2,6 +2,7 @@ package cs437.som.distancemetrics;
 
 import cs437.som.DistanceMetric;
 import cs437.som.SOMError;
+import cs437.som.util.VectorKernels;
 
 /**
  * Chebyshev distance strategy.
@@ -30,10 +31,126 @@ public class ChebyshevDistanceMetric implements DistanceMetric {
             throw new SOMError("ChebyshevDistanceMetric: input vector lengths do not match.");
         }
 
+        return distance(v0, 0, v1);
+    }
+
+    /**
+     * Calculate the Chebyshev distance between a vector stored inside a larger
+     * array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The distance between the two vectors.
+     * @throws cs437.som.SOMError If v0 is too short to hold the first vector.
+     */
+    public double distance(double[] v0, int offset, double[] v1) throws SOMError {
+        if (offset < 0 || offset + v1.length > v0.length) {
+            throw new SOMError("ChebyshevDistanceMetric: vector extends past the end of the array.");
+        }
+
+        return VectorKernels.chebyshev(v0, offset, v1);
+    }
+
+    /**
+     * Calculate the Chebyshev distance between a single precision vector stored
+     * inside a larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The distance between the two vectors.
+     * @throws cs437.som.SOMError If v0 is too short to hold the first vector.
+     */
+    public double distance(float[] v0, int offset, double[] v1) throws SOMError {
+        if (offset < 0 || offset + v1.length > v0.length) {
+            throw new SOMError("ChebyshevDistanceMetric: vector extends past the end of the array.");
+        }
+
+        return VectorKernels.chebyshev(v0, offset, v1);
+    }
+
+    /**
+     * Calculate the Chebyshev distance between 2 vectors, unless it is greater
+     * than a bound.
+     *
+     * @param v0 The first vector.
+     * @param v1 The second vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance between v0 and v1, or
+     * {@link Double#POSITIVE_INFINITY} if it is greater than
+     * {@code upperBound}.
+     * @throws cs437.som.SOMError If the vector sizes do not match.
+     */
+    public double distance(double[] v0, double[] v1, double upperBound)
+            throws SOMError {
+        if (v0.length != v1.length) {
+            throw new SOMError("ChebyshevDistanceMetric: input vector lengths do not match.");
+        }
+
+        return distance(v0, 0, v1, upperBound);
+    }
+
+    /**
+     * Calculate the Chebyshev distance between a vector stored inside a
+     * larger array and a second vector, unless it is greater than a bound.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance between the two vectors, or
+     * {@link Double#POSITIVE_INFINITY} if it is greater than
+     * {@code upperBound}.
+     * @throws cs437.som.SOMError If v0 is too short to hold the first vector.
+     */
+    public double distance(double[] v0, int offset, double[] v1,
+                           double upperBound) throws SOMError {
+        if (offset < 0 || offset + v1.length > v0.length) {
+            throw new SOMError("ChebyshevDistanceMetric: vector extends past the end of the array.");
+        }
+
+        double max = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            double difference = Math.abs(v0[offset + i] - v1[i]);
+            if (difference > max) {
+                if (difference > upperBound) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                max = difference;
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Calculate the Chebyshev distance between a single precision vector stored
+     * inside a larger array and a second vector, unless it is greater than a
+     * bound.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance between the two vectors, or
+     * {@link Double#POSITIVE_INFINITY} if it is greater than
+     * {@code upperBound}.
+     * @throws cs437.som.SOMError If v0 is too short to hold the first vector.
+     */
+    public double distance(float[] v0, int offset, double[] v1,
+                           double upperBound) throws SOMError {
+        if (offset < 0 || offset + v1.length > v0.length) {
+            throw new SOMError("ChebyshevDistanceMetric: vector extends past the end of the array.");
+        }
+
         double max = 0.0;
-        for (int i = 0; i < v0.length; i++) {
-            double difference = Math.abs(v0[i] - v1[i]);
+        for (int i = 0; i < v1.length; i++) {
+            double difference = Math.abs(v0[offset + i] - v1[i]);
             if (difference > max) {
+                if (difference > upperBound) {
+                    return Double.POSITIVE_INFINITY;
+                }
                 max = difference;
             }
         }
@@ -1,6 +1,7 @@
 package cs437.som.learningrate;
 
 import cs437.som.LearningRateFunction;
+import cs437.som.util.TextMapFormat;
 
 /**
  * Hyperbolic learning rate strategy.
@@ -46,8 +47,8 @@ public class HyperbolicLearningRateFunction implements LearningRateFunction {
     }
 
     public HyperbolicLearningRateFunction(String parameters) {
-        String[] arguments = parameters.split("\\s*", 2);
-        initialRate = Double.parseDouble(arguments[0]);
-        finalRate = Double.parseDouble(arguments[1]);
+        String arguments = parameters.trim();
+        initialRate = Double.parseDouble(TextMapFormat.firstWord(arguments));
+        finalRate = Double.parseDouble(TextMapFormat.afterFirstWord(arguments));
     }
 }
@@ -21,4 +21,9 @@ public class ExponentialNeighborhoodMembershipFunction implements NeighborhoodMe
         else
             return 0;
     }
+
+    @Override
+    public String toString() {
+        return "ExponentialNeighborhoodMembershipFunction";
+    }
 }
@@ -15,4 +15,9 @@ public class LinearNeighborhoodMembershipFunction implements NeighborhoodMembers
         else
             return 0;
     }
+
+    @Override
+    public String toString() {
+        return "LinearNeighborhoodMembershipFunction";
+    }
 }
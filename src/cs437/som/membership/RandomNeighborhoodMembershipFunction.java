@@ -1,24 +1,77 @@
 package cs437.som.membership;
 
 import cs437.som.NeighborhoodMembershipFunction;
-
-import java.security.SecureRandom;
-import java.util.Random;
+import cs437.som.util.RandomSource;
 
 /**
  * Random neighborhood membership strategy.
  *
  * Returns a random double in [0, 1] if the neuron is in the BMU's neighborhood
- * or 0 if it is not.
+ * or 0 if it is not.  A {@link cs437.som.network.CustomizableSOM} using this
+ * strategy has it draw from the map's own random source, so that its
+ * memberships are replayed along with the rest of a training run; parallel
+ * neighborhood updates draw every membership on the training thread, in
+ * neighbor order, so they replay too.  Several training threads may still
+ * draw at once, so each draw holds the source's lock.  Threads that must not
+ * depend on each other's order can each take a {@link #split()} instead.
  */
 public class RandomNeighborhoodMembershipFunction implements NeighborhoodMembershipFunction {
-    private Random r = new SecureRandom();
+    private volatile RandomSource r;
+
+    /**
+     * Create a random membership strategy with a seed that differs from run
+     * to run.
+     */
+    public RandomNeighborhoodMembershipFunction() {
+        r = new RandomSource();
+    }
+
+    /**
+     * Create a random membership strategy with a given seed.
+     *
+     * @param seed The seed for the memberships.
+     */
+    public RandomNeighborhoodMembershipFunction(long seed) {
+        r = new RandomSource(seed);
+    }
+
+    /**
+     * Draw memberships from another random source.
+     *
+     * @param source The random source to draw from.
+     */
+    public void setRandomSource(RandomSource source) {
+        r = source;
+    }
+
+    /**
+     * Create a random membership strategy drawing from a stream independent
+     * of this one's.  The new stream's seed is drawn from this strategy's
+     * source, so splits taken in the same order from the same state are the
+     * same.
+     *
+     * @return A new random membership strategy.
+     */
+    public RandomNeighborhoodMembershipFunction split() {
+        RandomSource source = r;
+        synchronized (source) {
+            return new RandomNeighborhoodMembershipFunction(source.nextLong());
+        }
+    }
 
     @Override
     public double neighborhoodMembership(double distance, double width) {
-        if (distance < width)
-            return r.nextDouble();
-        else
+        if (distance < width) {
+            RandomSource source = r;
+            synchronized (source) {
+                return source.nextDouble();
+            }
+        } else
             return 0;
     }
+
+    @Override
+    public String toString() {
+        return "RandomNeighborhoodMembershipFunction";
+    }
 }
@@ -2,14 +2,13 @@ package cs437.som.neighborhood;
 
 import cs437.som.NeighborhoodWidthFunction;
 import cs437.som.SOMError;
-import cs437.som.util.Reflector;
+import cs437.som.util.StrategyRegistry;
+import cs437.som.util.TextMapFormat;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Collects a series of neighborhood width functions to be used sequentially in
@@ -33,6 +32,10 @@ public class CompoundNeighborhood implements NeighborhoodWidthFunction {
     private int nextTransition = -1;
     private int expectedIterations = 0;
 
+    /* Functions read from a file do not know their expected iterations, so
+     * they take the map's. */
+    private boolean childrenNeedIterations = false;
+
     private NeighborhoodWidthFunction currentFunction = null;
     private final Map<Integer, NeighborhoodWidthFunction> widthFunctions
             = new TreeMap<Integer, NeighborhoodWidthFunction>();
@@ -46,6 +49,12 @@ public class CompoundNeighborhood implements NeighborhoodWidthFunction {
     }
 
     public void setExpectedIterations(int expectedIterations) {
+        if (childrenNeedIterations) {
+            for (NeighborhoodWidthFunction function : widthFunctions.values()) {
+                function.setExpectedIterations(expectedIterations);
+            }
+            childrenNeedIterations = false;
+        }
         if (nextTransition == -1) {
             nextTransition = expectedIterations;
             this.expectedIterations = expectedIterations;
@@ -120,7 +129,11 @@ public class CompoundNeighborhood implements NeighborhoodWidthFunction {
     }
 
     /**
-     * Load a CompoundNeighborhood from a stream reader.
+     * Load a CompoundNeighborhood from a stream reader.  Each line up to an
+     * "end" line holds the iteration a function starts at, the function's
+     * class name and its parameters, as written by {@link #toString()}.  The
+     * functions read are given the expected iterations the compound is first
+     * given.
      *
      * @param reader The stream to read from.
      * @return A CompoundNeighborhood read from {@code reader}.
@@ -128,31 +141,63 @@ public class CompoundNeighborhood implements NeighborhoodWidthFunction {
      */
     public static NeighborhoodWidthFunction parse(BufferedReader reader)
             throws IOException {
-        Pattern neighborhhodRegEx = Pattern.compile("\\s*(\\d*)\\s*(\\w*)\\s*(.*)");
-        Pattern endLineRegEx = Pattern.compile("\\s*end.*", Pattern.CASE_INSENSITIVE);
+        return parse(reader, StrategyRegistry.getDefault());
+    }
 
-        CompoundNeighborhood cnw = new CompoundNeighborhood();
+    /**
+     * Load a CompoundNeighborhood from a stream reader, creating its
+     * functions through a given registry.
+     *
+     * @param reader The stream to read from.
+     * @param registry The registry to create the functions from.
+     * @return A CompoundNeighborhood read from {@code reader}.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static NeighborhoodWidthFunction parse(BufferedReader reader,
+                                                  StrategyRegistry registry)
+            throws IOException {
+        CompoundNeighborhood cnw = null;
         String line = reader.readLine();
-        while (! endLineRegEx.matcher(line).matches()) {
-            Matcher nwMatch = neighborhhodRegEx.matcher(line);
-
-            if (!nwMatch.matches()) {
+        while (line != null && !isEndLine(line)) {
+            String entry = line.trim();
+            String start = TextMapFormat.firstWord(entry);
+            String function = TextMapFormat.afterFirstWord(entry);
+            if (start.length() == 0 || function.length() == 0) {
                 throw new SOMError("Bad input while parsing neighborhood "
                         + "functions: " + line);
             }
 
-            NeighborhoodWidthFunction nw = (NeighborhoodWidthFunction)
-                    Reflector.instantiateFromString("cs437.som.neighborhood",
-                            nwMatch.group(2), nwMatch.group(3));
-
-            int startsAt = Integer.parseInt(nwMatch.group(1));
-            cnw.addNeighborhood(nw, startsAt);
+            NeighborhoodWidthFunction nw = registry.create(
+                    NeighborhoodWidthFunction.class,
+                    TextMapFormat.firstWord(function),
+                    TextMapFormat.afterFirstWord(function));
+
+            int startsAt = TextMapFormat.parseInt(start, 0, start.length());
+            if (cnw == null && startsAt == 0) {
+                cnw = new CompoundNeighborhood(nw);
+            } else {
+                if (cnw == null) {
+                    cnw = new CompoundNeighborhood();
+                }
+                cnw.addNeighborhood(nw, startsAt);
+            }
             line = reader.readLine();
         }
 
+        if (line == null) {
+            throw new SOMError("CompoundNeighborhood has no end line.");
+        }
+        if (cnw == null) {
+            cnw = new CompoundNeighborhood();
+        }
+        cnw.childrenNeedIterations = true;
         return cnw;
     }
 
+    private static boolean isEndLine(String line) {
+        return line.trim().regionMatches(true, 0, "end", 0, 3);
+    }
+
     public CompoundNeighborhood(String parameters) {
         // todo IMPLEMENT!!!
         throw new UnsupportedOperationException(
@@ -1,6 +1,7 @@
 package cs437.som.neighborhood;
 
 import cs437.som.NeighborhoodWidthFunction;
+import cs437.som.util.TextMapFormat;
 
 /**
  * Hyperbolic neighborhood width strategy for self-organizing map.
@@ -49,9 +50,9 @@ public class HyperbolicNeighborhoodWidthFunction
     }
 
     public HyperbolicNeighborhoodWidthFunction(String parameters) {
-        String[] arguments = parameters.split("\\s*", 2);
-        initialWidth = Double.parseDouble(arguments[0]);
-        finalWidth = Double.parseDouble(arguments[1]);
+        String arguments = parameters.trim();
+        initialWidth = Double.parseDouble(TextMapFormat.firstWord(arguments));
+        finalWidth = Double.parseDouble(TextMapFormat.afterFirstWord(arguments));
         widthRatio = finalWidth / initialWidth;
     }
 }
@@ -1,12 +1,12 @@
 package cs437.som.network;
 
 import cs437.som.Dimension;
+import cs437.som.topology.SkewHexagonalGrid;
 import cs437.som.util.SOMFileReader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.util.Arrays;
 
 /**
  * A simple self-organizing map, using a hexagonal grid for the neurons.
@@ -19,7 +19,7 @@ import java.util.Arrays;
  *
  * public static void main(String[] args) {
  *     TrainableSelfOrganizingMap som = new BasicHexGridSOM(7, 2, iterations);
- *     Random r = new SecureRandom();
+ *     Random r = new RandomSource();
  *
  *     for (int i = 0; i < iterations; i++) {
  *         double[] in = {r.nextDouble() * 10, r.nextDouble() * 10};
@@ -33,6 +33,7 @@ import java.util.Arrays;
  * </pre>
  */
 public class BasicHexGridSOM extends NetworkBase {
+    private final SkewHexagonalGrid grid = new SkewHexagonalGrid();
 
     /**
      * Create a new BasicHexGridSOM.
@@ -44,46 +45,43 @@ public class BasicHexGridSOM extends NetworkBase {
     public BasicHexGridSOM(Dimension gridSize, int inputVectorSize,
                            int expectedIterations) {
         super(gridSize, inputVectorSize, expectedIterations);
+        grid.setNeuronCount(gridSize);
     }
 
-    @Override
-    protected double neuronDistance(int neuron0, int neuron1) {
-        int row0 = neuron0 / gridSize.x;
-        int col0 = neuron0 % gridSize.x;
-        int row1 = neuron1 / gridSize.x;
-        int col1 = neuron1 % gridSize.x;
-
-        int dx = row1 - row0;
-        int dy = col1 - col0;
-
-        int distance;
-        if (sign(dx) == sign(dy)) {
-            distance = Math.abs(dx + dy);
-        } else {
-            distance = Math.max(Math.abs(dx), Math.abs(dy));
-        }
-
-        return distance;
+    /**
+     * Create a BasicHexGridSOM whose weights are already in a store.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputVectorSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     * @param store The store holding the neuron weights.
+     */
+    BasicHexGridSOM(Dimension gridSize, int inputVectorSize,
+                    int expectedIterations, WeightStore store) {
+        super(gridSize, inputVectorSize, expectedIterations, store, false);
+        grid.setNeuronCount(gridSize);
     }
 
-    private int sign(int n) {
-        return (n >= 0) ? 1 : -1;
+    @Override
+    protected double neuronDistance(int neuron0, int neuron1) {
+        return grid.gridDistance(neuron0, neuron1);
     }
 
     @Override
     public String toString() {
         return "BasicHexGridSOM{time=" + time +
-                ", weightMatrix=" +
-                (weightMatrix == null ? null : Arrays.deepToString(weightMatrix)) +
+                ", weights=" +
+                (weights == null ? null : weightString()) +
                 ", neuronCount=" + neuronCount +
                 ", inputSize=" + inputVectorSize + '}';
     }
 
     @Override
-    public void write(OutputStreamWriter destination) throws IOException {
+    protected void writeHeader(OutputStreamWriter destination, int time,
+                               long randomSeed, long randomState)
+            throws IOException {
         destination.write(String.format("Map type: BasicHexGridSOM%n"));
-        super.write(destination);
-        destination.flush();
+        super.writeHeader(destination, time, randomSeed, randomState);
     }
 
     /**
@@ -97,11 +95,21 @@ public class BasicHexGridSOM extends NetworkBase {
      */
     public static BasicHexGridSOM read(BufferedReader input) throws IOException {
         SOMFileReader sfr = new SOMFileReader();
-                sfr.parse(input);
+        sfr.parse(input);
+        return create(sfr, sfr.getWeights());
+    }
 
-        BasicHexGridSOM bhgsom = new BasicHexGridSOM(
-                sfr.getDimension(), sfr.getInputVectorSize(), sfr.getIterations());
-        bhgsom.weightMatrix = sfr.getWeights();
-        return bhgsom;
+    /**
+     * Build a BasicHexGridSOM from its parsed description and weights.
+     *
+     * @param sfr The parsed description.
+     * @param weights The map's weights.
+     * @return The map.
+     */
+    static BasicHexGridSOM create(SOMFileReader sfr, WeightStore weights) {
+        BasicHexGridSOM som = new BasicHexGridSOM(
+                sfr.getDimension(), sfr.getInputVectorSize(), sfr.getIterations(), weights);
+        som.readTrainingState(sfr);
+        return som;
     }
 }
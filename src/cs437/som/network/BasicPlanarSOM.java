@@ -6,7 +6,6 @@ import cs437.som.util.SOMFileReader;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.util.Arrays;
 
 /**
  * A basic self-organizing map where the neurons are arranged by their weights.
@@ -19,7 +18,7 @@ import java.util.Arrays;
  *
  * public static void main(String[] args) {
  *     TrainableSelfOrganizingMap som = new BasicPlanarSOM(7, 2, iterations);
- *     Random r = new SecureRandom();
+ *     Random r = new RandomSource();
  *
  *     for (int i = 0; i < iterations; i++) {
  *         double[] in = {r.nextDouble() * 10, r.nextDouble() * 10};
@@ -46,11 +45,25 @@ public class BasicPlanarSOM extends NetworkBase {
         super(new Dimension(neuronCount, 1), inputVectorSize, expectedIterations);
     }
 
+    /**
+     * Create a BasicPlanarSOM whose weights are already in a store.
+     *
+     * @param neuronCount The number of neurons to employ.
+     * @param inputVectorSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     * @param store The store holding the neuron weights.
+     */
+    BasicPlanarSOM(int neuronCount, int inputVectorSize, int expectedIterations,
+                   WeightStore store) {
+        super(new Dimension(neuronCount, 1), inputVectorSize,
+                expectedIterations, store, false);
+    }
+
     @Override
     protected double neuronDistance(int neuron0, int neuron1) {
         double sum = 0.0;
         for (int i = 0; i < inputVectorSize; i++) {
-            double difference = weightMatrix[neuron0][i] - weightMatrix[neuron1][i];
+            double difference = weights.get(neuron0, i) - weights.get(neuron1, i);
             sum += difference * difference;
         }
         return Math.sqrt(sum);
@@ -65,16 +78,15 @@ public class BasicPlanarSOM extends NetworkBase {
 
     @Override
     public String toString() {
-        return "BasicPlanarSOM{weightMatrix=" +
-                (weightMatrix == null ? null : Arrays.toString(weightMatrix))
-                + '}';
+        return "BasicPlanarSOM{weights=" + weights + '}';
     }
 
     @Override
-    public void write(OutputStreamWriter destination) throws IOException {
+    protected void writeHeader(OutputStreamWriter destination, int time,
+                               long randomSeed, long randomState)
+            throws IOException {
         destination.write(String.format("Map type: BasicPlanarSOM%n"));
-        super.write(destination);
-        destination.flush();
+        super.writeHeader(destination, time, randomSeed, randomState);
     }
 
     /**
@@ -89,11 +101,21 @@ public class BasicPlanarSOM extends NetworkBase {
     public static BasicPlanarSOM read(BufferedReader input) throws IOException {
         SOMFileReader sfr = new SOMFileReader();
         sfr.parse(input);
+        return create(sfr, sfr.getWeights());
+    }
 
-        BasicPlanarSOM bpsom = new BasicPlanarSOM(
-                sfr.getDimension().x, sfr.getInputVectorSize(), sfr.getIterations());
-        bpsom.weightMatrix = sfr.getWeights();
-        return bpsom;
+    /**
+     * Build a BasicPlanarSOM from its parsed description and weights.
+     *
+     * @param sfr The parsed description.
+     * @param weights The map's weights.
+     * @return The map.
+     */
+    static BasicPlanarSOM create(SOMFileReader sfr, WeightStore weights) {
+        BasicPlanarSOM som = new BasicPlanarSOM(
+                sfr.getDimension().x, sfr.getInputVectorSize(), sfr.getIterations(), weights);
+        som.readTrainingState(sfr);
+        return som;
     }
 
 }
@@ -1,12 +1,12 @@
 package cs437.som.network;
 
 import cs437.som.Dimension;
+import cs437.som.topology.SquareGrid;
 import cs437.som.util.SOMFileReader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.util.Arrays;
 
 /**
  * A simple self-organizing map, using a square grid for the neurons.
@@ -19,7 +19,7 @@ import java.util.Arrays;
  *
  * public static void main(String[] args) {
  *     TrainableSelfOrganizingMap som = new BasicSquareGridSOM(7, 2, iterations);
- *     Random r = new SecureRandom();
+ *     Random r = new RandomSource();
  *
  *     for (int i = 0; i < iterations; i++) {
  *         double[] in = {r.nextDouble() * 10, r.nextDouble() * 10};
@@ -33,6 +33,7 @@ import java.util.Arrays;
  * </pre>
  */
 public class BasicSquareGridSOM extends NetworkBase {
+    private final SquareGrid grid = new SquareGrid();
 
     /**
      * Create a new BasicSquareGridSOM.
@@ -44,35 +45,42 @@ public class BasicSquareGridSOM extends NetworkBase {
     public BasicSquareGridSOM(Dimension gridSize, int inputVectorSize,
                               int expectedIterations) {
         super(gridSize, inputVectorSize, expectedIterations);
+        grid.setNeuronCount(gridSize);
+    }
+
+    /**
+     * Create a BasicSquareGridSOM whose weights are already in a store.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputVectorSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     * @param store The store holding the neuron weights.
+     */
+    BasicSquareGridSOM(Dimension gridSize, int inputVectorSize,
+                       int expectedIterations, WeightStore store) {
+        super(gridSize, inputVectorSize, expectedIterations, store, false);
+        grid.setNeuronCount(gridSize);
     }
 
     @Override
     protected double neuronDistance(int neuron0, int neuron1) {
-        int row0 = neuron0 / gridSize.x;
-        int col0 = neuron0 % gridSize.x;
-        int row1 = neuron1 / gridSize.x;
-        int col1 = neuron1 % gridSize.x;
-
-        int dr = row1 - row0;
-        int dc = col1 - col0;
-
-        return Math.sqrt((dr * dr) + (dc * dc));
+        return grid.gridDistance(neuron0, neuron1);
     }
 
     @Override
     public String toString() {
         return "BasicSquareGridSOM{time=" + time +
-                ", weightMatrix=" +
-                (weightMatrix == null ? null : Arrays.asList(weightMatrix)) +
+                ", weights=" + weights +
                 ", neuronCount=" + neuronCount +
                 ", inputSize=" + inputVectorSize + '}';
     }
 
     @Override
-    public void write(OutputStreamWriter destination) throws IOException {
+    protected void writeHeader(OutputStreamWriter destination, int time,
+                               long randomSeed, long randomState)
+            throws IOException {
         destination.write(String.format("Map type: BasicSquareGridSOM%n"));
-        super.write(destination);
-        destination.flush();
+        super.writeHeader(destination, time, randomSeed, randomState);
     }
 
     /**
@@ -86,11 +94,21 @@ public class BasicSquareGridSOM extends NetworkBase {
      */
     public static BasicSquareGridSOM read(BufferedReader input) throws IOException {
         SOMFileReader sfr = new SOMFileReader();
-                sfr.parse(input);
+        sfr.parse(input);
+        return create(sfr, sfr.getWeights());
+    }
 
-        BasicSquareGridSOM bsgsom = new BasicSquareGridSOM(
-                sfr.getDimension(), sfr.getInputVectorSize(), sfr.getIterations());
-        bsgsom.weightMatrix = sfr.getWeights();
-        return bsgsom;
+    /**
+     * Build a BasicSquareGridSOM from its parsed description and weights.
+     *
+     * @param sfr The parsed description.
+     * @param weights The map's weights.
+     * @return The map.
+     */
+    static BasicSquareGridSOM create(SOMFileReader sfr, WeightStore weights) {
+        BasicSquareGridSOM som = new BasicSquareGridSOM(
+                sfr.getDimension(), sfr.getInputVectorSize(), sfr.getIterations(), weights);
+        som.readTrainingState(sfr);
+        return som;
     }
 }
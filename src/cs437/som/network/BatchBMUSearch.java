@@ -0,0 +1,154 @@
+package cs437.som.network;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Best matching unit search for a block of inputs on a map that matches by
+ * Euclidean distance.
+ *
+ * The squared distance from an input x to a neuron's weights w expands to
+ * ||x||^2 - 2x.w + ||w||^2.  The first term is the same for every neuron, so
+ * the closest neuron is the one with the smallest ||w||^2 - 2x.w, which needs
+ * only one dot product per neuron once the weight norms are known.  Neurons
+ * are visited in blocks small enough to stay in cache while a whole block of
+ * inputs is matched against them, rather than streaming the entire map from
+ * memory once per input.
+ *
+ * The input blocks are independent, so large batches may be split across the
+ * shared fork/join pool.
+ */
+class BatchBMUSearch extends RecursiveAction {
+    private static final long serialVersionUID = 0L;
+
+    /** The number of inputs matched against each block of neurons. */
+    private static final int INPUT_BLOCK = 64;
+
+    /** The number of weights in a block of neurons (256 KB of doubles). */
+    private static final int NEURON_BLOCK_WEIGHTS = 32768;
+
+    private final WeightStore weights;
+    private final double[] norms;
+    private final double[][] inputs;
+    private final int[] results;
+    private final int from;
+    private final int to;
+    private final boolean parallel;
+
+    private BatchBMUSearch(WeightStore weights, double[] norms,
+                           double[][] inputs, int[] results, int from, int to,
+                           boolean parallel) {
+        this.weights = weights;
+        this.norms = norms;
+        this.inputs = inputs;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Find the closest neuron to each of a block of inputs.  Exact ties
+     * resolve to the lowest neuron index, as in the sequential search.
+     *
+     * @param weights The weights to search.
+     * @param norms The squared norm of each neuron's weight vector.
+     * @param inputs The input vectors to match.
+     * @param parallel Whether to split the inputs across the shared pool.
+     * @return The index of the best matching neuron for each input.
+     */
+    static int[] find(WeightStore weights, double[] norms, double[][] inputs,
+                      boolean parallel) {
+        int[] results = new int[inputs.length];
+        BatchBMUSearch search = new BatchBMUSearch(weights, norms, inputs,
+                results, 0, inputs.length, parallel);
+        if (parallel) {
+            ParallelBMUSearch.POOL.invoke(search);
+        } else {
+            search.compute();
+        }
+        return results;
+    }
+
+    /**
+     * The squared norms of a store's weight vectors, as of a given version of
+     * the weights.
+     */
+    static final class Norms {
+        final WeightStore weights;
+        final long version;
+        final double[] values;
+
+        Norms(WeightStore weights, long version) {
+            this.weights = weights;
+            this.version = version;
+
+            int neurons = weights.getNeuronCount();
+            int length = weights.getVectorLength();
+            values = new double[neurons];
+            for (int i = 0; i < neurons; i++) {
+                double sum = 0.0;
+                for (int j = 0; j < length; j++) {
+                    double w = weights.get(i, j);
+                    sum += w * w;
+                }
+                values[i] = sum;
+            }
+        }
+
+        /**
+         * Check whether these norms still describe a map's weights.
+         *
+         * @param current The map's weight store.
+         * @param currentVersion The version of the map's weights.
+         * @return {@code true} if the norms can be reused.
+         */
+        boolean describe(WeightStore current, long currentVersion) {
+            return weights == current && version == currentVersion;
+        }
+    }
+
+    @Override
+    protected void compute() {
+        int blocks = (to - from + INPUT_BLOCK - 1) / INPUT_BLOCK;
+        if (!parallel || blocks <= 1) {
+            for (int start = from; start < to; start += INPUT_BLOCK) {
+                searchBlock(start, Math.min(to, start + INPUT_BLOCK));
+            }
+            return;
+        }
+
+        int middle = from + (blocks / 2) * INPUT_BLOCK;
+        invokeAll(new BatchBMUSearch(weights, norms, inputs, results, from,
+                        middle, true),
+                new BatchBMUSearch(weights, norms, inputs, results, middle, to,
+                        true));
+    }
+
+    private void searchBlock(int start, int end) {
+        int neurons = weights.getNeuronCount();
+        int blockSize = Math.max(1,
+                NEURON_BLOCK_WEIGHTS / Math.max(1, weights.getVectorLength()));
+        double[] lowest = new double[end - start];
+        for (int i = 0; i < lowest.length; i++) {
+            lowest[i] = Double.POSITIVE_INFINITY;
+        }
+
+        for (int first = 0; first < neurons; first += blockSize) {
+            int last = Math.min(neurons, first + blockSize);
+            for (int i = start; i < end; i++) {
+                double[] input = inputs[i];
+                double low = lowest[i - start];
+                int best = results[i];
+                for (int n = first; n < last; n++) {
+                    double score = norms[n] - 2.0 * weights.dot(n, input);
+                    if (score < low) {
+                        low = score;
+                        best = n;
+                    }
+                }
+                lowest[i - start] = low;
+                results[i] = best;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package cs437.som.network;
+
+import cs437.som.SOMError;
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Trains a {@link CustomizableSOM} with Kohonen's batch map algorithm.
+ *
+ * Rather than nudging the neurons towards one sample at a time, each epoch
+ * matches every sample in a data set to its best matching unit and then
+ * replaces every neuron's weights with the neighborhood-weighted mean of the
+ * samples:
+ * <pre>
+ *     w_j = \frac{\sum_i h(j, c_i) x_i}{\sum_i h(j, c_i)}
+ * where
+ *     c_i    is the best matching unit of sample x_i
+ *     h(j,c) is neuron j's membership in c's neighborhood
+ * </pre>
+ * The samples matched to each neuron are first summed, so the second step
+ * visits each neuron's neighborhood once rather than once per sample.  The
+ * matching, the sums and the new weights are each split across the shared
+ * fork/join pool; every neuron's sums are added in sample order whatever the
+ * number of threads, and random memberships are drawn from a stream of each
+ * neuron's own, split from the map's in neuron order, so results do not
+ * depend on the machine.
+ *
+ * The map's grid type, neighborhood width and membership strategies are used
+ * as configured; the learning rate does not take part.  A neuron's own
+ * samples always count towards its mean, so once the width has shrunk to
+ * nothing each neuron takes the mean of the samples it matched, as in
+ * k-means, rather than keeping its weights.  An epoch advances
+ * the map's iteration count by the number of samples, so schedules set up
+ * for online training over the same data apply unchanged.
+ */
+public class BatchTrainer {
+    /** The fewest samples or neurons a single task will handle. */
+    private static final int MINIMUM_GRAIN = 256;
+
+    /** The number of tasks per worker thread to split the work into. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final CustomizableSOM map;
+    private boolean parallel = true;
+
+    /**
+     * Create a batch trainer for a map.
+     *
+     * @param map The map to train.
+     */
+    public BatchTrainer(CustomizableSOM map) {
+        this.map = map;
+    }
+
+    /**
+     * Enable or disable splitting epochs across threads.  Epochs are
+     * parallel by default.
+     *
+     * @param enabled Whether to train in parallel.
+     */
+    public void setParallel(boolean enabled) {
+        parallel = enabled;
+    }
+
+    /**
+     * Train the map for a number of epochs over a data set.
+     *
+     * @param data The samples to train with.
+     * @param epochs The number of epochs to run.
+     * @return The quantization error at the start of each epoch.
+     */
+    public double[] train(double[][] data, int epochs) {
+        double[] errors = new double[epochs];
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            errors[epoch] = trainEpoch(data);
+        }
+        return errors;
+    }
+
+    /**
+     * Run one batch epoch over a data set.
+     *
+     * @param data The samples to train with.
+     * @return The quantization error of the map before the epoch: the mean
+     * distance from each sample to its best matching unit.
+     * @throws SOMError if the data set is empty or a sample's length does
+     * not match the map's input size.
+     */
+    public double trainEpoch(double[][] data) {
+        if (data.length == 0) {
+            throw new SOMError("Cannot train on an empty data set.");
+        }
+        for (double[] sample : data) {
+            map.checkInput(sample);
+        }
+
+        Epoch epoch = new Epoch(data);
+        epoch.match();
+        epoch.group();
+        run(new EpochTask(epoch, EpochTask.SUM, 0, map.neuronCount,
+                grain(map.neuronCount)));
+        run(new EpochTask(epoch, EpochTask.UPDATE, 0, map.neuronCount,
+                grain(map.neuronCount)));
+        map.weightsModified();
+
+        int start = map.time;
+        map.time += data.length;
+        map.publishSnapshotIfDue(start, map.time);
+        return epoch.totalError() / data.length;
+    }
+
+    private int grain(int size) {
+        int tasks = ParallelBMUSearch.POOL.getParallelism() * TASKS_PER_THREAD;
+        return Math.max(MINIMUM_GRAIN, size / tasks);
+    }
+
+    private void run(EpochTask task) {
+        if (parallel) {
+            ParallelBMUSearch.POOL.invoke(task);
+        } else {
+            task.compute();
+        }
+    }
+
+    /**
+     * The state of one epoch: each sample's best matching unit, the samples
+     * grouped by best matching unit, and each neuron's sums.
+     */
+    private final class Epoch {
+        final double[][] data;
+        final int[] bmus;
+        final double[] errors;
+
+        /* The samples matched to neuron n are order[first[n]..first[n+1]). */
+        final int[] order;
+        final int[] first;
+
+        /* The sum of the samples matched to each neuron, neuron major. */
+        final double[] sums;
+
+        final double width;
+        final boolean memoize;
+
+        /* Each neuron's random memberships, or null if they are not random. */
+        final RandomNeighborhoodMembershipFunction[] memberships;
+
+        Epoch(double[][] data) {
+            this.data = data;
+            bmus = new int[data.length];
+            errors = new double[data.length];
+            order = new int[data.length];
+            first = new int[map.neuronCount + 1];
+            sums = new double[map.neuronCount * map.inputVectorSize];
+            width = map.neighborhoodWidth.neighborhoodWidth(map.time);
+            memoize = !(map.neighborhoodMembership
+                    instanceof RandomNeighborhoodMembershipFunction);
+            memberships = memoize ? null : split(
+                    (RandomNeighborhoodMembershipFunction)
+                            map.neighborhoodMembership);
+        }
+
+        /* Split the map's random memberships once per neuron, in order. */
+        private RandomNeighborhoodMembershipFunction[] split(
+                RandomNeighborhoodMembershipFunction membership) {
+            RandomNeighborhoodMembershipFunction[] splits =
+                    new RandomNeighborhoodMembershipFunction[map.neuronCount];
+            for (int n = 0; n < splits.length; n++) {
+                splits[n] = membership.split();
+            }
+            return splits;
+        }
+
+        void match() {
+            if (map.matchesByEuclideanDistance()) {
+                BatchBMUSearch.Norms norms =
+                        new BatchBMUSearch.Norms(map.weights,
+                                map.weightVersion());
+                int[] found = BatchBMUSearch.find(map.weights, norms.values,
+                        data, parallel);
+                System.arraycopy(found, 0, bmus, 0, found.length);
+                run(new EpochTask(this, EpochTask.MEASURE, 0, data.length,
+                        grain(data.length)));
+            } else {
+                run(new EpochTask(this, EpochTask.MATCH, 0, data.length,
+                        grain(data.length)));
+            }
+        }
+
+        /* Counting sort of the samples by best matching unit. */
+        void group() {
+            for (int bmu : bmus) {
+                first[bmu + 1]++;
+            }
+            for (int n = 0; n < map.neuronCount; n++) {
+                first[n + 1] += first[n];
+            }
+            int[] next = first.clone();
+            for (int i = 0; i < bmus.length; i++) {
+                order[next[bmus[i]]++] = i;
+            }
+        }
+
+        double totalError() {
+            double total = 0.0;
+            for (double error : errors) {
+                total += error;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * One phase of an epoch over a range of samples or neurons.
+     */
+    private final class EpochTask extends RecursiveAction {
+        private static final long serialVersionUID = 0L;
+
+        /** Find the best matching unit of each sample. */
+        static final int MATCH = 0;
+
+        /** Measure each sample's distance to its known best matching unit. */
+        static final int MEASURE = 1;
+
+        /** Sum the samples matched to each neuron. */
+        static final int SUM = 2;
+
+        /** Replace each neuron's weights with its neighborhood's mean. */
+        static final int UPDATE = 3;
+
+        private final Epoch epoch;
+        private final int phase;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        EpochTask(Epoch epoch, int phase, int from, int to, int grain) {
+            this.epoch = epoch;
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (!parallel || to - from <= grain) {
+                switch (phase) {
+                    case MATCH:
+                    case MEASURE:
+                        match();
+                        break;
+                    case SUM:
+                        sum();
+                        break;
+                    default:
+                        update();
+                        break;
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new EpochTask(epoch, phase, from, middle, grain),
+                    new EpochTask(epoch, phase, middle, to, grain));
+        }
+
+        private void match() {
+            for (int i = from; i < to; i++) {
+                if (phase == MATCH) {
+                    epoch.bmus[i] = map.getBestMatchingNeuron(epoch.data[i]);
+                }
+                epoch.errors[i] =
+                        map.distanceToInput(epoch.bmus[i], epoch.data[i]);
+            }
+        }
+
+        private void sum() {
+            int length = map.inputVectorSize;
+            for (int n = from; n < to; n++) {
+                int offset = n * length;
+                for (int k = epoch.first[n]; k < epoch.first[n + 1]; k++) {
+                    double[] sample = epoch.data[epoch.order[k]];
+                    for (int j = 0; j < length; j++) {
+                        epoch.sums[offset + j] += sample[j];
+                    }
+                }
+            }
+        }
+
+        private void update() {
+            int length = map.inputVectorSize;
+            double[] mean = new double[length];
+            TrainingStep step = new TrainingStep();
+            step.begin(map.time, 0.0, epoch.width, map.neighborhoodMembership,
+                    epoch.memoize, map.gridType);
+
+            for (int n = from; n < to; n++) {
+                if (epoch.memberships != null) {
+                    step.begin(map.time, 0.0, epoch.width,
+                            epoch.memberships[n], false, map.gridType);
+                }
+                int count = step.findNeighbors(map.gridType, n);
+
+                double total = 0.0;
+                for (int j = 0; j < length; j++) {
+                    mean[j] = 0.0;
+                }
+                for (int k = 0; k < count; k++) {
+                    int c = step.neighbor(k);
+                    int matched = epoch.first[c + 1] - epoch.first[c];
+                    if (matched == 0) {
+                        continue;
+                    }
+                    double membership = step.neighborMembership(k);
+                    if (c == n && !(membership > 0)) {
+                        membership = 1.0;
+                    }
+                    if (membership > 0) {
+                        total += membership * matched;
+                        int offset = c * length;
+                        for (int j = 0; j < length; j++) {
+                            mean[j] += membership * epoch.sums[offset + j];
+                        }
+                    }
+                }
+
+                // Neurons with no samples in their neighborhood keep their
+                // weights.
+                if (total > 0) {
+                    for (int j = 0; j < length; j++) {
+                        map.weights.set(n, j, mean[j] / total);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package cs437.som.network;
+
+import cs437.som.SOMError;
+import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.util.MapType;
+import cs437.som.util.SOMFileReader;
+import cs437.som.util.StrategyRegistry;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads and writes self-organizing maps in a compact binary format.
+ *
+ * A binary map file starts with a 16 byte preamble: the magic bytes
+ * {@code SOMB}, the format version, and the length of the header that
+ * follows.  The header is the text a map writes ahead of its weight matrix in
+ * the text format (the map type, strategies, size and training progress) in
+ * UTF-8.  The weights follow, starting at the next multiple of 8 bytes, as
+ * raw little-endian doubles or, for single precision maps, floats, one neuron
+ * after another.  All integers in the preamble are little-endian.
+ *
+ * Writing streams the weights through a file channel without formatting
+ * them.  Reading memory maps the weights, so a map can be queried without
+ * first copying it onto the heap; see {@link MappedWeightStore}.  Reading an
+ * {@link OffHeapSOM} copies its weights off of the heap instead.
+ * {@link cs437.som.util.FileReader} recognizes binary files and reads them
+ * this way.
+ */
+public final class BinaryMapFile {
+    /** The version of the format written. */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'S', 'O', 'M', 'B'};
+    private static final int PREAMBLE_BYTES = 16;
+    private static final int WEIGHT_ALIGNMENT = 8;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private BinaryMapFile() {
+    }
+
+    /**
+     * Write a map to a file in the binary format, replacing the file's
+     * contents.
+     *
+     * @param map The map to write.
+     * @param file The file to write to.
+     * @throws IOException if writing fails.
+     */
+    public static void write(NetworkBase map, File file) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(0);
+            write(map, output.getChannel());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Write a map to a channel in the binary format, starting at the
+     * channel's current position.
+     *
+     * @param map The map to write.
+     * @param channel The channel to write to.
+     * @throws IOException if writing fails.
+     */
+    public static void write(NetworkBase map, FileChannel channel)
+            throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(text, UTF8);
+        map.writeHeader(writer);
+        writer.flush();
+        byte[] header = text.toByteArray();
+
+        ByteBuffer preamble = ByteBuffer.allocate(
+                weightOffset(header.length)).order(ByteOrder.LITTLE_ENDIAN);
+        preamble.put(MAGIC);
+        preamble.putInt(VERSION);
+        preamble.putInt(header.length);
+        preamble.putInt(0);
+        preamble.put(header);
+        preamble.clear();
+        writeFully(channel, preamble);
+
+        WeightStore weights = map.weights;
+        boolean single = weights.getPrecision() == WeightPrecision.SINGLE;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < map.neuronCount; i++) {
+            for (int j = 0; j < map.inputVectorSize; j++) {
+                if (buffer.remaining() < Double.SIZE / Byte.SIZE) {
+                    buffer.flip();
+                    writeFully(channel, buffer);
+                    buffer.clear();
+                }
+                if (single) {
+                    buffer.putFloat((float) weights.get(i, j));
+                } else {
+                    buffer.putDouble(weights.get(i, j));
+                }
+            }
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    /**
+     * Read a map from a binary map file.  The weights are mapped read-only
+     * rather than read, so the map can be queried at once.  Training the map
+     * never changes the file: the first change to a chunk of the weights
+     * copies the whole chunk, up to 1 GB, into a direct buffer, so the first
+     * training step on a large loaded map copies that much.
+     *
+     * @param file The file to read.
+     * @return The map stored in {@code file}.
+     * @throws IOException if reading fails.
+     * @throws SOMError if the file is not a binary map file or is damaged.
+     */
+    public static TrainableSelfOrganizingMap read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            return read(input.getChannel());
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Check whether a file is a binary map file.
+     *
+     * @param file The file to inspect.
+     * @return {@code true} if the file starts with the binary format's magic
+     * bytes.
+     * @throws IOException if reading fails.
+     */
+    public static boolean isBinary(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            for (byte b : MAGIC) {
+                if (input.read() != b) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static TrainableSelfOrganizingMap read(FileChannel channel)
+            throws IOException {
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, preamble, 0);
+        for (byte b : MAGIC) {
+            if (preamble.get() != b) {
+                throw new SOMError("Not a binary map file.");
+            }
+        }
+        int version = preamble.getInt();
+        if (version != VERSION) {
+            throw new SOMError("Unsupported binary map file version: "
+                    + version);
+        }
+        int headerLength = preamble.getInt();
+        if (headerLength < 0
+                || PREAMBLE_BYTES + (long) headerLength > channel.size()) {
+            throw new SOMError("Binary map file is damaged.");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        readFully(channel, header, PREAMBLE_BYTES);
+        BufferedReader text = new BufferedReader(new StringReader(
+                new String(header.array(), UTF8)));
+        String type = typeName(text.readLine());
+        long offset = weightOffset(headerLength);
+
+        MapType mapType = StrategyRegistry.getDefault().getMapType(type);
+        SOMFileReader sfr = mapType.createReader();
+        sfr.parseHeader(text);
+        return mapType.create(sfr, map(channel, offset, sfr));
+    }
+
+    private static String typeName(String line) {
+        int colon = line == null ? -1 : line.indexOf(':');
+        if (colon < 0) {
+            throw new SOMError(
+                    "Binary map header is malformed: first line must be a map type statement.");
+        }
+        return line.substring(colon + 1).trim();
+    }
+
+    private static WeightStore map(FileChannel channel, long offset,
+                                   SOMFileReader sfr) throws IOException {
+        int neurons = sfr.getDimension().area;
+        int length = sfr.getInputVectorSize();
+        WeightPrecision precision = sfr.getPrecision();
+        long elementBytes = precision == WeightPrecision.SINGLE
+                ? Float.SIZE / Byte.SIZE : Double.SIZE / Byte.SIZE;
+        if (channel.size() < offset + elementBytes * neurons * length) {
+            throw new SOMError("Binary map file is truncated.");
+        }
+        return new MappedWeightStore(channel, offset, neurons, length,
+                precision);
+    }
+
+    private static int weightOffset(int headerLength) {
+        int end = PREAMBLE_BYTES + headerLength;
+        return (end + WEIGHT_ALIGNMENT - 1) / WEIGHT_ALIGNMENT * WEIGHT_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+                                  long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new SOMError("Binary map file is truncated.");
+            }
+        }
+        buffer.flip();
+    }
+}
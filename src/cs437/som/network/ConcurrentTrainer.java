@@ -0,0 +1,128 @@
+package cs437.som.network;
+
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
+import cs437.som.util.RandomSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Online training of a {@link CustomizableSOM} by several threads at once,
+ * in the style of Hogwild! stochastic gradient descent.
+ *
+ * Any number of threads may call {@link #trainWith(double[])} concurrently.
+ * Each call claims the next iteration from an atomic counter, evaluates the
+ * learning rate and neighborhood width schedules for that iteration, and
+ * then searches for the best matching unit and updates its neighborhood
+ * without taking any lock.  Threads therefore see each other's updates
+ * partway through, and an update may occasionally be lost when two threads
+ * adjust the same weight at once.
+ *
+ * The damage is bounded: every update moves a weight part of the way from
+ * its current value towards the input, so whichever writes win, each weight
+ * stays between its earlier values and the inputs seen, and the map cannot
+ * diverge.  When the neighborhoods of concurrent samples rarely overlap, as
+ * on large maps late in training, the result is close to that of training on
+ * one thread.
+ *
+ * The map itself must not be trained through its own {@code trainWith}
+ * methods while a concurrent trainer is in use.  Ties for best matching unit
+ * are broken randomly, each thread drawing from its own split of the map's
+ * random source so that threads never contend for it.
+ *
+ * Snapshots are published as the map's {@link
+ * NetworkBase#setSnapshotInterval(int) snapshot interval} asks, by the
+ * thread whose iteration carries the map's count past a multiple of it.
+ * The other threads keep training while it copies the weights, so a
+ * snapshot may hold a vector part way through an update.
+ */
+public class ConcurrentTrainer {
+    private final CustomizableSOM map;
+    private final AtomicInteger iterations;
+    private final boolean memoize;
+    private final Object timeLock = new Object();
+
+    private final ThreadLocal<TrainingStep> steps =
+            new ThreadLocal<TrainingStep>() {
+                @Override
+                protected TrainingStep initialValue() {
+                    return new TrainingStep();
+                }
+            };
+
+    private final ThreadLocal<RandomSource> tieBreakers =
+            new ThreadLocal<RandomSource>() {
+                @Override
+                protected RandomSource initialValue() {
+                    RandomSource source = map.getRandomSource();
+                    synchronized (source) {
+                        return source.split();
+                    }
+                }
+            };
+
+    /**
+     * Create a concurrent trainer for a map, continuing from the map's
+     * current iteration.
+     *
+     * @param map The map to train.
+     */
+    public ConcurrentTrainer(CustomizableSOM map) {
+        this.map = map;
+        iterations = new AtomicInteger(map.time);
+        memoize = !(map.neighborhoodMembership
+                instanceof RandomNeighborhoodMembershipFunction);
+    }
+
+    /**
+     * Train the map with one input vector.  Safe to call from any number of
+     * threads at once.
+     *
+     * @param data The input vector to train with.
+     */
+    public void trainWith(double[] data) {
+        map.checkInput(data);
+
+        int time = iterations.getAndIncrement();
+        TrainingStep step = steps.get();
+        step.begin(time, map.learningRate.learningRate(time),
+                map.neighborhoodWidth.neighborhoodWidth(time),
+                map.neighborhoodMembership, memoize, map.gridType);
+
+        int best = map.getBMUDuringTraining(data, tieBreakers.get());
+        map.adjustNeuronWeights(best, data);
+
+        int count = step.findNeighbors(map.gridType, best);
+        for (int k = 0; k < count; k++) {
+            int i = step.neighbor(k);
+            double membership = step.neighborMembership(k);
+            if (i != best && membership > 0) {
+                map.weights.adjust(i, data, step.learningRate() * membership);
+            }
+        }
+
+        map.weightsModified();
+        publishTime(time + 1);
+    }
+
+    /**
+     * @return The number of iterations claimed so far, including those
+     * before the trainer was created.
+     */
+    public int getTime() {
+        return iterations.get();
+    }
+
+    /* Advance the map's iteration count, never moving it backwards when
+     * iterations finish out of order, and publish a snapshot if the count
+     * passed a multiple of the snapshot interval.  Snapshots are published
+     * under the lock so that an older one never replaces a newer one. */
+    private void publishTime(int time) {
+        synchronized (timeLock) {
+            int previous = map.time;
+            if (previous < time) {
+                map.time = time;
+                map.publishSnapshotIfDue(previous, time);
+            }
+        }
+    }
+}
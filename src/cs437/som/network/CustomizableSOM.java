@@ -3,10 +3,12 @@ package cs437.som.network;
 import cs437.som.*;
 import cs437.som.distancemetrics.EuclideanDistanceMetric;
 import cs437.som.membership.ConstantNeighborhoodMembershipFunction;
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
 import cs437.som.learningrate.ConstantLearningRateFunction;
 import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
 import cs437.som.topology.SquareGrid;
 import cs437.som.util.CustomSOMFileReader;
+import cs437.som.util.RandomSource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -16,6 +18,11 @@ import java.io.OutputStreamWriter;
  * A fully customizable self-organizing map.
  */
 public class CustomizableSOM extends NetworkBase {
+    /**
+     * The default neighborhood size at which neighborhood updates begin to be
+     * split across threads.
+     */
+    public static final int DEFAULT_PARALLEL_UPDATE_THRESHOLD = 8192;
 
     /**
      * The distance metric strategy being employed by the CustomizableSOM.
@@ -42,6 +49,15 @@ public class CustomizableSOM extends NetworkBase {
      */
     protected GridType gridType = null;
 
+    /**
+     * The schedule values, memberships and neighborhood of the current
+     * iteration.
+     */
+    private final TrainingStep step = new TrainingStep();
+
+    private boolean parallelUpdate = false;
+    private int parallelUpdateThreshold = DEFAULT_PARALLEL_UPDATE_THRESHOLD;
+
     /**
      * Create a new CustomizableSOM.
      *
@@ -50,7 +66,50 @@ public class CustomizableSOM extends NetworkBase {
      * @param expectedIterations The expected number of training iterations.
      */
     public CustomizableSOM(Dimension gridSize, int inputSize, int expectedIterations) {
-        super(gridSize, inputSize, expectedIterations);
+        this(gridSize, inputSize, expectedIterations, WeightPrecision.DOUBLE);
+    }
+
+    /**
+     * Create a new CustomizableSOM that keeps its weights in a given
+     * precision.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     * @param precision The precision to store the neuron weights in.
+     */
+    public CustomizableSOM(Dimension gridSize, int inputSize,
+                           int expectedIterations, WeightPrecision precision) {
+        this(gridSize, inputSize, expectedIterations,
+                precision.createStore(gridSize.area, inputSize));
+    }
+
+    /**
+     * Create a new CustomizableSOM that keeps its weights in a given store.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     * @param store The store to keep the neuron weights in.
+     */
+    protected CustomizableSOM(Dimension gridSize, int inputSize,
+                              int expectedIterations, WeightStore store) {
+        this(gridSize, inputSize, expectedIterations, store, true);
+    }
+
+    /**
+     * Create a new CustomizableSOM that keeps its weights in a given store,
+     * optionally leaving the store's weights as they are.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     * @param store The store to keep the neuron weights in.
+     * @param randomize Whether to randomize the store's weights.
+     */
+    CustomizableSOM(Dimension gridSize, int inputSize, int expectedIterations,
+                    WeightStore store, boolean randomize) {
+        super(gridSize, inputSize, expectedIterations, store, randomize);
 
         setDistanceMetricStrategy(new EuclideanDistanceMetric());
         setLearningRateFunctionStrategy(
@@ -112,9 +171,18 @@ public class CustomizableSOM extends NetworkBase {
         }
     }
 
+    /**
+     * Provide a neighborhood membership strategy object to the
+     * CustomizableSOM.  Ownership of {@code strategy} is transferred to the
+     * CustomizableSOM.  A {@link RandomNeighborhoodMembershipFunction} draws
+     * its memberships from the map's random source.
+     *
+     * @param strategy A configured NeighborhoodMembershipFunction.
+     */
     public void setNeighborhoodMembershipFunctionStrategy(NeighborhoodMembershipFunction strategy) {
         if (time == 0) {
             neighborhoodMembership = strategy;
+            shareRandomSource();
         } else {
             throw new SOMError("Cannot change neighborhood membership strategy after training has begun.");
         }
@@ -136,19 +204,46 @@ public class CustomizableSOM extends NetworkBase {
     }
 
     @Override
-    public int getBestMatchingNeuron(double[] input) {
-        checkInput(input);
-
-        int bestMatch = 0;
-        double lowestDistance2 = distanceMetric.distance(weightMatrix[0], input);
-        for (int i = 1; i < neuronCount; i++) {
-            double distance2temp = distanceMetric.distance(weightMatrix[i], input);
-            if (distance2temp < lowestDistance2) {
-                lowestDistance2 = distance2temp;
-                bestMatch = i;
-            }
+    public void setRandomSource(RandomSource source) {
+        super.setRandomSource(source);
+        shareRandomSource();
+    }
+
+    /**
+     * Let a random membership strategy draw from the map's random source, so
+     * that its memberships are reproduced along with the rest of training.
+     */
+    private void shareRandomSource() {
+        if (neighborhoodMembership instanceof RandomNeighborhoodMembershipFunction) {
+            ((RandomNeighborhoodMembershipFunction) neighborhoodMembership)
+                    .setRandomSource(getRandomSource());
         }
-        return bestMatch;
+    }
+
+    /**
+     * Enable or disable parallel neighborhood updates.  When enabled,
+     * training steps whose neighborhood holds at least as many neurons as
+     * the parallel update threshold split the update across a shared
+     * fork/join pool, so {@link #adjustNeuronWeights(int, double[], double)}
+     * may then be called from several threads at once.  Updates are
+     * sequential by default.
+     *
+     * @param enabled Whether to update neighborhoods in parallel.
+     */
+    public void setParallelUpdate(boolean enabled) {
+        parallelUpdate = enabled;
+    }
+
+    /**
+     * Set the neighborhood size below which updates stay sequential even
+     * when parallel updates are enabled.  Neighborhoods shrink as training
+     * goes on, so early, wide neighborhoods are updated in parallel and late,
+     * narrow ones are not.
+     *
+     * @param neurons The smallest neighborhood to update in parallel.
+     */
+    public void setParallelUpdateThreshold(int neurons) {
+        parallelUpdateThreshold = neurons;
     }
 
     /**
@@ -159,20 +254,54 @@ public class CustomizableSOM extends NetworkBase {
      * @param membership The neuron's membership in the BMU's neighborhood.
      */
     protected void adjustNeuronWeights(int neuron, double[] input, double membership) {
-        for (int i = 0; i < weightMatrix[neuron].length; i++) {
-            double delta = input[i] - weightMatrix[neuron][i];
-            delta *= learningRate.learningRate(time);
-            delta *= membership;
+        weights.adjust(neuron, input, currentStep().learningRate() * membership);
+    }
 
-            weightMatrix[neuron][i] += delta;
+    /**
+     * Get the training step for the current iteration, evaluating the
+     * learning rate and neighborhood width schedules if the iteration has
+     * just begun.
+     *
+     * @return The current iteration's training step.
+     */
+    private TrainingStep currentStep() {
+        if (step.time() != time) {
+            step.begin(time, learningRate.learningRate(time),
+                    neighborhoodWidth.neighborhoodWidth(time),
+                    neighborhoodMembership,
+                    !(neighborhoodMembership
+                            instanceof RandomNeighborhoodMembershipFunction),
+                    gridType);
         }
+        return step;
     }
 
+    /**
+     * Adjust the neurons in a neuron's neighborhood.  Only the neurons the grid
+     * type finds within the current neighborhood width are visited, so the
+     * cost follows the size of the neighborhood rather than of the map.  The
+     * schedules are evaluated once per iteration, and memberships once per
+     * distinct grid distance, when the iteration begins.  Wide neighborhoods
+     * may be updated in parallel; see {@link #setParallelUpdate(boolean)}.
+     *
+     * @param neuron The index of the neuron who's neighborhood will be examined.
+     * @param input The input vector to adjust towards.
+     */
     @Override
     protected void adjustNeighborsOf(int neuron, double[] input) {
-        for (int i = 0; i < neuronCount; i++) {
-            double membership = neighborhoodMembership.neighborhoodMembership(
-                    gridType.gridDistance(neuron, i), neighborhoodWidth.neighborhoodWidth(time));
+        TrainingStep current = currentStep();
+        int count = current.findNeighbors(gridType, neuron);
+        if (parallelUpdate && count >= parallelUpdateThreshold) {
+            NeighborhoodUpdate.adjust(this, current, neuron, input, count);
+            if (profile != null) {
+                profile.countParallelUpdate();
+            }
+            return;
+        }
+
+        for (int k = 0; k < count; k++) {
+            int i = current.neighbor(k);
+            double membership = current.neighborMembership(k);
 
             if (i != neuron && membership > 0) {
                 adjustNeuronWeights(i, input, membership);
@@ -188,7 +317,23 @@ public class CustomizableSOM extends NetworkBase {
 
     @Override
     public double distanceToInput(int neuron, double[] input) {
-        return distanceMetric.distance(weightMatrix[neuron], input);
+        return weights.distance(neuron, input, distanceMetric);
+    }
+
+    @Override
+    protected double distanceToInput(int neuron, double[] input,
+                                     double upperBound) {
+        return weights.distance(neuron, input, distanceMetric, upperBound);
+    }
+
+    @Override
+    protected DistanceMetric inputMetric() {
+        return distanceMetric;
+    }
+
+    @Override
+    protected boolean matchesByEuclideanDistance() {
+        return distanceMetric instanceof EuclideanDistanceMetric;
     }
 
     @Override
@@ -198,6 +343,7 @@ public class CustomizableSOM extends NetworkBase {
                 ", inputSize=" + inputVectorSize +
                 ", time=" + time +
                 ", expectedIterations=" + expectedIterations +
+                ", precision=" + getPrecision() +
                 ", distanceMetric=" + distanceMetric +
                 ", learningRate=" +
                 learningRate +
@@ -207,9 +353,26 @@ public class CustomizableSOM extends NetworkBase {
     }
 
     @Override
-    public void write(OutputStreamWriter destination) throws IOException {
+    protected void writeHeader(OutputStreamWriter destination, int time,
+                               long randomSeed, long randomState)
+            throws IOException {
         destination.write(String.format("Map type: CustomizableSOM%n"));
+        writeConfiguration(destination, time, randomSeed, randomState);
+    }
 
+    /**
+     * Write the header lines following the map type line: the strategies and
+     * the training progress.
+     *
+     * @param destination Where to write to.
+     * @param time The number of training iterations completed.
+     * @param randomSeed The seed of the map's random source.
+     * @param randomState The state of the map's random source.
+     * @throws IOException If writing throws.
+     */
+    protected void writeConfiguration(OutputStreamWriter destination,
+                                      int time, long randomSeed,
+                                      long randomState) throws IOException {
         destination.write(String.format("Distance metric: %s%n",
                 distanceMetric));
         destination.write(String.format("Learning rate function: %s%n",
@@ -221,11 +384,7 @@ public class CustomizableSOM extends NetworkBase {
         destination.write(String.format("Membership: %s%n",
                 neighborhoodMembership));
 
-        destination.write(String.format("Iterations: %d of %d%n", time,
-                expectedIterations));
-
-        super.write(destination);
-        destination.flush();
+        super.writeHeader(destination, time, randomSeed, randomState);
     }
 
     /**
@@ -240,28 +399,47 @@ public class CustomizableSOM extends NetworkBase {
     public static CustomizableSOM read(BufferedReader input) throws IOException {
         CustomSOMFileReader sfr = new CustomSOMFileReader();
         sfr.parse(input);
+        return create(sfr, sfr.getWeights());
+    }
 
-        CustomizableSOM bpsom = new CustomizableSOM(
-                sfr.getDimension(), sfr.getInputVectorSize(), sfr.getIterations());
-        bpsom.weightMatrix = sfr.getWeights();
+    /**
+     * Build a CustomizableSOM from its parsed description and weights.
+     *
+     * @param sfr The parsed description.
+     * @param weights The map's weights.
+     * @return The map.
+     */
+    static CustomizableSOM create(CustomSOMFileReader sfr, WeightStore weights) {
+        CustomizableSOM som = new CustomizableSOM(sfr.getDimension(),
+                sfr.getInputVectorSize(), sfr.getIterations(), weights, false);
+        som.readConfiguration(sfr);
+        return som;
+    }
 
+    /**
+     * Take on the strategies and training progress read from a stream.  The
+     * strategies are set up for this map's size and expected iterations just
+     * as the strategy setters would.
+     *
+     * @param sfr A reader that has parsed a CustomizableSOM.
+     */
+    protected void readConfiguration(CustomSOMFileReader sfr) {
         if (sfr.getDistanceMetric() != null)
-            bpsom.distanceMetric = sfr.getDistanceMetric();
+            setDistanceMetricStrategy(sfr.getDistanceMetric());
 
         if (sfr.getLearningRate() != null)
-            bpsom.learningRate = sfr.getLearningRate();
+            setLearningRateFunctionStrategy(sfr.getLearningRate());
 
         if (sfr.getGridType() != null)
-            bpsom.gridType = sfr.getGridType();
+            setGridTypeStrategy(sfr.getGridType());
 
         if (sfr.getNeighborhoodWidth() != null)
-            bpsom.neighborhoodWidth = sfr.getNeighborhoodWidth();
+            setNeighborhoodWidthFunctionStrategy(sfr.getNeighborhoodWidth());
 
         if (sfr.getMembershipFunction() != null)
-            bpsom.neighborhoodMembership = sfr.getMembershipFunction();
-
-        bpsom.time = sfr.getTime();
+            setNeighborhoodMembershipFunctionStrategy(sfr.getMembershipFunction());
 
-        return bpsom;
+        readTrainingState(sfr);
+        shareRandomSource();
     }
 }
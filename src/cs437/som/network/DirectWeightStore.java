@@ -0,0 +1,333 @@
+package cs437.som.network;
+
+import cs437.som.DistanceMetric;
+import cs437.som.SOMError;
+import cs437.som.util.VectorKernels;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A weight store that keeps the neuron weights outside of the Java heap, in
+ * direct byte buffers.
+ *
+ * The weights are laid out row-major, as in {@link FlatWeightStore}, but split
+ * into chunks of whole rows so that maps larger than a single buffer (2 GB)
+ * can be held.  Off-heap weights do not count against the heap size and are
+ * never moved or scanned by the garbage collector.
+ *
+ * A closed store cannot be used: every access afterwards throws a
+ * {@link SOMError}.  Closing frees the memory at once rather than leaving it
+ * to the garbage collector.  Each access counts itself in for its duration,
+ * so a close waits for the accesses that began before it and makes all later
+ * ones fail, and no thread ever reads freed memory.
+ */
+public class DirectWeightStore implements WeightStore, Closeable {
+    /** The largest chunk allocated, in bytes. */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    /** The number of in-flight counters; a power of two. */
+    private static final int COUNTERS = 16;
+
+    /** The spacing of the counters, so that each has its own cache line. */
+    private static final int COUNTER_STRIDE = 16;
+
+    private final int neuronCount;
+    private final int vectorLength;
+
+    /** log2 of the number of neurons per chunk. */
+    private final int chunkShift;
+    private final int chunkMask;
+
+    /** The chunks' memory, kept to be freed on close. */
+    private final ByteBuffer[] chunks;
+    private final DoubleBuffer[] views;
+
+    /** The accesses under way, spread by thread to keep threads apart. */
+    private final AtomicIntegerArray inFlight =
+            new AtomicIntegerArray(COUNTERS * COUNTER_STRIDE);
+    private volatile boolean closed = false;
+
+    private final ThreadLocal<double[]> scratch = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[vectorLength];
+        }
+    };
+
+    /**
+     * Create an off-heap weight store with all weights set to 0.
+     *
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     */
+    public DirectWeightStore(int neuronCount, int vectorLength) {
+        this.neuronCount = neuronCount;
+        this.vectorLength = vectorLength;
+
+        int rowBytes = vectorLength * (Double.SIZE / Byte.SIZE);
+        int rowsPerChunk = Integer.highestOneBit(
+                Math.max(1, MAX_CHUNK_BYTES / rowBytes));
+        chunkShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+        chunkMask = rowsPerChunk - 1;
+
+        int chunkCount = (neuronCount + rowsPerChunk - 1) >> chunkShift;
+        chunks = new ByteBuffer[chunkCount];
+        views = new DoubleBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            int rows = Math.min(rowsPerChunk, neuronCount - (i << chunkShift));
+            chunks[i] = ByteBuffer.allocateDirect(rows * rowBytes)
+                    .order(ByteOrder.nativeOrder());
+            views[i] = chunks[i].asDoubleBuffer();
+        }
+    }
+
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+    public int getVectorLength() {
+        return vectorLength;
+    }
+
+    public WeightPrecision getPrecision() {
+        return WeightPrecision.DOUBLE;
+    }
+
+    public double get(int neuron, int component) {
+        int counter = enter();
+        try {
+            return views[neuron >> chunkShift].get(
+                    (neuron & chunkMask) * vectorLength + component);
+        } finally {
+            exit(counter);
+        }
+    }
+
+    public void set(int neuron, int component, double value) {
+        int counter = enter();
+        try {
+            views[neuron >> chunkShift].put(
+                    (neuron & chunkMask) * vectorLength + component, value);
+        } finally {
+            exit(counter);
+        }
+    }
+
+    public double squaredDistance(int neuron, double[] input) {
+        int counter = enter();
+        try {
+            DoubleBuffer w = views[neuron >> chunkShift];
+            int offset = (neuron & chunkMask) * vectorLength;
+            double sum = 0.0;
+            for (int i = 0; i < vectorLength; i++) {
+                double difference = input[i] - w.get(offset + i);
+                sum += difference * difference;
+            }
+            return sum;
+        } finally {
+            exit(counter);
+        }
+    }
+
+    public double squaredDistance(int neuron, double[] input, double limit) {
+        int counter = enter();
+        try {
+            DoubleBuffer w = views[neuron >> chunkShift];
+            int offset = (neuron & chunkMask) * vectorLength;
+            double sum = 0.0;
+            for (int i = 0; i < vectorLength; i++) {
+                double difference = input[i] - w.get(offset + i);
+                sum += difference * difference;
+                if ((i & (VectorKernels.CHECK_INTERVAL - 1))
+                        == VectorKernels.CHECK_INTERVAL - 1 && sum > limit) {
+                    return sum;
+                }
+            }
+            return sum;
+        } finally {
+            exit(counter);
+        }
+    }
+
+    public double dot(int neuron, double[] input) {
+        int counter = enter();
+        try {
+            DoubleBuffer w = views[neuron >> chunkShift];
+            int offset = (neuron & chunkMask) * vectorLength;
+            double sum = 0.0;
+            for (int i = 0; i < vectorLength; i++) {
+                sum += input[i] * w.get(offset + i);
+            }
+            return sum;
+        } finally {
+            exit(counter);
+        }
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric) {
+        return metric.distance(copyRow(neuron), 0, input);
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric,
+                           double upperBound) {
+        return metric.distance(copyRow(neuron), 0, input, upperBound);
+    }
+
+    public void adjust(int neuron, double[] input, double rate) {
+        int counter = enter();
+        try {
+            DoubleBuffer w = views[neuron >> chunkShift];
+            int offset = (neuron & chunkMask) * vectorLength;
+            for (int i = 0; i < vectorLength; i++) {
+                double weight = w.get(offset + i);
+                w.put(offset + i, weight + rate * (input[i] - weight));
+            }
+        } finally {
+            exit(counter);
+        }
+    }
+
+    /**
+     * Copy a neuron's weights into this thread's scratch row, for metrics
+     * that work on arrays.
+     *
+     * @param neuron The index of the neuron to copy.
+     * @return The scratch row holding the neuron's weights.
+     */
+    private double[] copyRow(int neuron) {
+        double[] row = scratch.get();
+        int counter = enter();
+        try {
+            DoubleBuffer w = views[neuron >> chunkShift];
+            int offset = (neuron & chunkMask) * vectorLength;
+            for (int i = 0; i < vectorLength; i++) {
+                row[i] = w.get(offset + i);
+            }
+        } finally {
+            exit(counter);
+        }
+        return row;
+    }
+
+    /**
+     * Check whether the store has been closed.
+     *
+     * @return {@code true} if the store has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close the store and free its memory.  Accesses already under way in
+     * other threads are waited for; any access afterwards throws a
+     * {@link SOMError}.  Closing a closed store has no effect.
+     */
+    public void close() {
+        synchronized (inFlight) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        // An access counts itself in before it checks the flag, and the
+        // flag is set before the counts are read, so every access either
+        // sees the flag or is seen here.
+        for (int i = 0; i < COUNTERS; i++) {
+            while (inFlight.get(i * COUNTER_STRIDE) != 0) {
+                Thread.yield();
+            }
+        }
+        for (ByteBuffer chunk : chunks) {
+            free(chunk);
+        }
+    }
+
+    /**
+     * Count an access in.  Every call that returns must be paired with a
+     * call to {@link #exit} once the access no longer touches the weights.
+     *
+     * @return The counter the access was counted in.
+     * @throws SOMError if the store has been closed.
+     */
+    private int enter() {
+        int counter = (int) Thread.currentThread().getId()
+                & (COUNTERS - 1);
+        int index = counter * COUNTER_STRIDE;
+        inFlight.incrementAndGet(index);
+        if (closed) {
+            inFlight.decrementAndGet(index);
+            throw new SOMError("Weight store has been closed.");
+        }
+        return index;
+    }
+
+    /**
+     * Count an access out.
+     *
+     * @param counter The counter returned by {@link #enter}.
+     */
+    private void exit(int counter) {
+        inFlight.decrementAndGet(counter);
+    }
+
+    /**
+     * Free a direct buffer's memory without waiting for it to be collected.
+     * If the running JVM offers no way to do so, the buffer is left for the
+     * garbage collector.
+     *
+     * @param buffer The direct buffer to free.
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            // Java 9 and later.
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner =
+                    unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (NoSuchMethodException e) {
+            // Fall through to the Java 7 and 8 mechanism.
+        } catch (Exception e) {
+            return;
+        }
+
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception ignored) {
+            // Left to the garbage collector.
+        }
+    }
+
+    /**
+     * Verify that the store has not been closed.
+     *
+     * @throws SOMError if the store has been closed.
+     */
+    void checkOpen() {
+        if (closed) {
+            throw new SOMError("Weight store has been closed.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectWeightStore{neuronCount=" + neuronCount +
+                ", vectorLength=" + vectorLength +
+                ", closed=" + isClosed() + '}';
+    }
+}
@@ -0,0 +1,97 @@
+package cs437.som.network;
+
+import cs437.som.DistanceMetric;
+import cs437.som.util.VectorKernels;
+
+/**
+ * A weight store that keeps every neuron's weights in a single row-major
+ * {@code double} array.  The weight for component c of neuron n is found at
+ * {@code n * vectorLength + c}.
+ *
+ * Keeping the weights contiguous avoids an object (and a pointer chase) per
+ * neuron and lets a scan over all neurons walk memory sequentially.
+ */
+public class FlatWeightStore implements WeightStore {
+    private final int neuronCount;
+    private final int vectorLength;
+    private final double[] weights;
+
+    /**
+     * Create a weight store with all weights set to 0.
+     *
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     */
+    public FlatWeightStore(int neuronCount, int vectorLength) {
+        this.neuronCount = neuronCount;
+        this.vectorLength = vectorLength;
+        weights = new double[neuronCount * vectorLength];
+    }
+
+    /**
+     * Create a weight store over an existing array, which is used in place.
+     *
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     * @param weights The weights, in row-major order.
+     */
+    FlatWeightStore(int neuronCount, int vectorLength, double[] weights) {
+        this.neuronCount = neuronCount;
+        this.vectorLength = vectorLength;
+        this.weights = weights;
+    }
+
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+    public int getVectorLength() {
+        return vectorLength;
+    }
+
+    public WeightPrecision getPrecision() {
+        return WeightPrecision.DOUBLE;
+    }
+
+    public double get(int neuron, int component) {
+        return weights[neuron * vectorLength + component];
+    }
+
+    public void set(int neuron, int component, double value) {
+        weights[neuron * vectorLength + component] = value;
+    }
+
+    public double squaredDistance(int neuron, double[] input) {
+        return VectorKernels.squaredDistance(weights, neuron * vectorLength,
+                input);
+    }
+
+    public double squaredDistance(int neuron, double[] input, double limit) {
+        return VectorKernels.squaredDistance(weights, neuron * vectorLength,
+                input, limit);
+    }
+
+    public double dot(int neuron, double[] input) {
+        return VectorKernels.dot(weights, neuron * vectorLength, input);
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric) {
+        return metric.distance(weights, neuron * vectorLength, input);
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric,
+                           double upperBound) {
+        return metric.distance(weights, neuron * vectorLength, input,
+                upperBound);
+    }
+
+    public void adjust(int neuron, double[] input, double rate) {
+        VectorKernels.adjust(weights, neuron * vectorLength, input, rate);
+    }
+
+    @Override
+    public String toString() {
+        return "FlatWeightStore{neuronCount=" + neuronCount +
+                ", vectorLength=" + vectorLength + '}';
+    }
+}
@@ -0,0 +1,85 @@
+package cs437.som.network;
+
+import cs437.som.DistanceMetric;
+import cs437.som.util.VectorKernels;
+
+/**
+ * A weight store that keeps every neuron's weights in a single row-major
+ * {@code float} array.  The weight for component c of neuron n is found at
+ * {@code n * vectorLength + c}.
+ *
+ * This store uses half the memory of {@link FlatWeightStore}, and so halves
+ * the memory traffic of a scan over all neurons.  Arithmetic is done in
+ * {@code double} and rounded when stored.
+ */
+public class FloatWeightStore implements WeightStore {
+    private final int neuronCount;
+    private final int vectorLength;
+    private final float[] weights;
+
+    /**
+     * Create a weight store with all weights set to 0.
+     *
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     */
+    public FloatWeightStore(int neuronCount, int vectorLength) {
+        this.neuronCount = neuronCount;
+        this.vectorLength = vectorLength;
+        weights = new float[neuronCount * vectorLength];
+    }
+
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+    public int getVectorLength() {
+        return vectorLength;
+    }
+
+    public WeightPrecision getPrecision() {
+        return WeightPrecision.SINGLE;
+    }
+
+    public double get(int neuron, int component) {
+        return weights[neuron * vectorLength + component];
+    }
+
+    public void set(int neuron, int component, double value) {
+        weights[neuron * vectorLength + component] = (float) value;
+    }
+
+    public double squaredDistance(int neuron, double[] input) {
+        return VectorKernels.squaredDistance(weights, neuron * vectorLength,
+                input);
+    }
+
+    public double squaredDistance(int neuron, double[] input, double limit) {
+        return VectorKernels.squaredDistance(weights, neuron * vectorLength,
+                input, limit);
+    }
+
+    public double dot(int neuron, double[] input) {
+        return VectorKernels.dot(weights, neuron * vectorLength, input);
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric) {
+        return metric.distance(weights, neuron * vectorLength, input);
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric,
+                           double upperBound) {
+        return metric.distance(weights, neuron * vectorLength, input,
+                upperBound);
+    }
+
+    public void adjust(int neuron, double[] input, double rate) {
+        VectorKernels.adjust(weights, neuron * vectorLength, input, rate);
+    }
+
+    @Override
+    public String toString() {
+        return "FloatWeightStore{neuronCount=" + neuronCount +
+                ", vectorLength=" + vectorLength + '}';
+    }
+}
@@ -0,0 +1,333 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
+import cs437.som.SOMError;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.util.VectorKernels;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * An immutable copy of a trained map, for matching inputs only.  Frozen maps
+ * are made by {@link NetworkBase#freeze()}.
+ *
+ * The weights are copied into a single row-major array that is never written
+ * again, so a frozen map may be shared between any number of threads without
+ * synchronization.  The distance metric is looked at once, when the map is
+ * frozen: the built-in metrics are matched by loops written for that metric
+ * alone, with the same arithmetic and early exits as the map they were
+ * copied from, so that both always pick the same neurons.  Other metrics are
+ * called through the {@link DistanceMetric} interface as before, and must be
+ * safe to call from several threads at once.  The squared weight norms used
+ * by batch searches of Euclidean maps are computed up front.
+ *
+ * Writing a frozen map writes the map it was frozen from, as it was then;
+ * reading the file back gives a trainable map again.  The description of the
+ * map is formatted when it is frozen, so a frozen map keeps no reference to
+ * the map it came from.
+ */
+public final class FrozenSOM implements SelfOrganizingMap {
+    private static final int SQUARED_EUCLIDEAN = 0;
+    private static final int EUCLIDEAN = 1;
+    private static final int MANHATTAN = 2;
+    private static final int CHEBYSHEV = 3;
+    private static final int OTHER = 4;
+
+    private final Dimension gridSize;
+    private final int neuronCount;
+    private final int inputLength;
+    private final double[] weights;
+    private final FlatWeightStore store;
+    private final double[] norms;
+    private final DistanceMetric metric;
+    private final int kernel;
+    private final String header;
+    private final boolean parallelSearch;
+    private final int parallelThreshold;
+
+    /** Each thread's copy of the last int or byte input it matched. */
+    private final ThreadLocal<double[]> convertedInput =
+            new ThreadLocal<double[]>() {
+                @Override
+                protected double[] initialValue() {
+                    return new double[inputLength];
+                }
+            };
+
+    /**
+     * Freeze a map's weights.
+     *
+     * @param gridSize The map's grid dimensions.
+     * @param source The map's weights, which are copied.
+     * @param metric The map's distance metric, or {@code null} for the
+     * squared Euclidean distance.
+     * @param header The lines describing the map, up to its weights.
+     * @param parallelSearch Whether large batches are split across threads.
+     * @param parallelThreshold The smallest batch to split, in input-neuron
+     * pairs.
+     * @throws SOMError If the weights are too many for one array.
+     */
+    FrozenSOM(Dimension gridSize, WeightStore source, DistanceMetric metric,
+              String header, boolean parallelSearch, int parallelThreshold) {
+        this.gridSize = gridSize;
+        this.metric = metric;
+        this.header = header;
+        this.parallelSearch = parallelSearch;
+        this.parallelThreshold = parallelThreshold;
+        neuronCount = source.getNeuronCount();
+        inputLength = source.getVectorLength();
+
+        long size = (long) neuronCount * inputLength;
+        if (size > Integer.MAX_VALUE) {
+            throw new SOMError("The map is too large to freeze.");
+        }
+        weights = new double[(int) size];
+        for (int i = 0; i < neuronCount; i++) {
+            for (int j = 0; j < inputLength; j++) {
+                weights[i * inputLength + j] = source.get(i, j);
+            }
+        }
+        store = new FlatWeightStore(neuronCount, inputLength, weights);
+
+        if (metric == null) {
+            kernel = SQUARED_EUCLIDEAN;
+        } else if (metric.getClass() == EuclideanDistanceMetric.class) {
+            kernel = EUCLIDEAN;
+        } else if (metric.getClass() == ManhattanDistanceMetric.class) {
+            kernel = MANHATTAN;
+        } else if (metric.getClass() == ChebyshevDistanceMetric.class) {
+            kernel = CHEBYSHEV;
+        } else {
+            kernel = OTHER;
+        }
+
+        if (metric == null || metric instanceof EuclideanDistanceMetric) {
+            norms = new BatchBMUSearch.Norms(store, 0).values;
+        } else {
+            norms = null;
+        }
+    }
+
+    public int getInputLength() {
+        return inputLength;
+    }
+
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+    public Dimension getGridSize() {
+        return gridSize;
+    }
+
+    public double getWeight(int neuron, int weightIndex) {
+        return weights[neuron * inputLength + weightIndex];
+    }
+
+    public int getBestMatchingNeuron(double[] input) {
+        checkInput(input);
+        switch (kernel) {
+            case SQUARED_EUCLIDEAN:
+                return nearestBySquaredDistance(input);
+            case EUCLIDEAN:
+                return nearestByEuclideanDistance(input);
+            case MANHATTAN:
+                return nearestByManhattanDistance(input);
+            case CHEBYSHEV:
+                return nearestByChebyshevDistance(input);
+            default:
+                return nearestByMetric(input);
+        }
+    }
+
+    public int getBestMatchingNeuron(int[] input) {
+        if (input.length != inputLength) {
+            throw new SOMError(
+                    "Input vector length does not match network input size.");
+        }
+        double[] converted = convertedInput.get();
+        for (int i = 0; i < input.length; i++) {
+            converted[i] = input[i];
+        }
+        return getBestMatchingNeuron(converted);
+    }
+
+    public int getBestMatchingNeuron(byte[] input) {
+        if (input.length != inputLength) {
+            throw new SOMError(
+                    "Input vector length does not match network input size.");
+        }
+        double[] converted = convertedInput.get();
+        for (int i = 0; i < input.length; i++) {
+            converted[i] = input[i];
+        }
+        return getBestMatchingNeuron(converted);
+    }
+
+    /**
+     * Find the best matching neuron for each of a block of input vectors.
+     * Euclidean maps compare ||w||^2 - 2x.w using the norms computed when the
+     * map was frozen; large batches are split across threads if the map was
+     * searching in parallel when it was frozen.
+     *
+     * @param inputs The input vectors to match neurons to.
+     * @return The index of the neuron closest to each input.
+     */
+    public int[] getBestMatchingNeurons(double[][] inputs) {
+        for (double[] input : inputs) {
+            checkInput(input);
+        }
+
+        if (norms == null) {
+            int[] results = new int[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                results[i] = getBestMatchingNeuron(inputs[i]);
+            }
+            return results;
+        }
+
+        boolean parallel = parallelSearch
+                && (long) inputs.length * neuronCount >= parallelThreshold;
+        return BatchBMUSearch.find(store, norms, inputs, parallel);
+    }
+
+    public double distanceToInput(int neuron, double[] input) {
+        checkInput(input);
+        int offset = neuron * inputLength;
+        switch (kernel) {
+            case SQUARED_EUCLIDEAN:
+                return VectorKernels.squaredDistance(weights, offset, input);
+            case EUCLIDEAN:
+                return Math.sqrt(
+                        VectorKernels.squaredDistance(weights, offset, input));
+            case MANHATTAN:
+                return VectorKernels.manhattan(weights, offset, input);
+            case CHEBYSHEV:
+                return VectorKernels.chebyshev(weights, offset, input);
+            default:
+                return metric.distance(weights, offset, input);
+        }
+    }
+
+    public void write(OutputStreamWriter destination) throws IOException {
+        destination.write(header);
+        NetworkBase.writeWeights(destination, store);
+        destination.flush();
+    }
+
+    private void checkInput(double[] input) throws SOMError {
+        if (input.length != inputLength) {
+            throw new SOMError(
+                    "Input vector length does not match network input size.");
+        }
+    }
+
+    private int nearestBySquaredDistance(double[] input) {
+        int bestMatch = 0;
+        double lowest = VectorKernels.squaredDistance(weights, 0, input);
+        for (int i = 1, offset = inputLength; i < neuronCount;
+             i++, offset += inputLength) {
+            double distance = VectorKernels.squaredDistance(weights, offset,
+                    input, lowest);
+            if (distance < lowest) {
+                lowest = distance;
+                bestMatch = i;
+            }
+        }
+        return bestMatch;
+    }
+
+    /*
+     * The square root is only taken for neurons whose squared distance is
+     * within the best so far; the bound and the comparison are those of
+     * EuclideanDistanceMetric, so ties resolve as they do in the source map.
+     */
+    private int nearestByEuclideanDistance(double[] input) {
+        int bestMatch = 0;
+        double lowest = Math.sqrt(
+                VectorKernels.squaredDistance(weights, 0, input));
+        double limit = Math.nextUp(lowest * lowest);
+        for (int i = 1, offset = inputLength; i < neuronCount;
+             i++, offset += inputLength) {
+            double sum = VectorKernels.squaredDistance(weights, offset, input,
+                    limit);
+            if (sum <= limit) {
+                double distance = Math.sqrt(sum);
+                if (distance < lowest) {
+                    lowest = distance;
+                    limit = Math.nextUp(lowest * lowest);
+                    bestMatch = i;
+                }
+            }
+        }
+        return bestMatch;
+    }
+
+    private int nearestByManhattanDistance(double[] input) {
+        int bestMatch = 0;
+        double lowest = VectorKernels.manhattan(weights, 0, input);
+        for (int i = 1, offset = inputLength; i < neuronCount;
+             i++, offset += inputLength) {
+            double distance = VectorKernels.manhattan(weights, offset, input,
+                    lowest);
+            if (distance < lowest) {
+                lowest = distance;
+                bestMatch = i;
+            }
+        }
+        return bestMatch;
+    }
+
+    private int nearestByChebyshevDistance(double[] input) {
+        int bestMatch = 0;
+        double lowest = VectorKernels.chebyshev(weights, 0, input);
+        for (int i = 1, offset = inputLength; i < neuronCount;
+             i++, offset += inputLength) {
+            double max = 0.0;
+            int j = 0;
+            for (; j < inputLength; j++) {
+                double difference = Math.abs(weights[offset + j] - input[j]);
+                if (difference > max) {
+                    if (difference >= lowest) {
+                        break;
+                    }
+                    max = difference;
+                }
+            }
+            if (j == inputLength && max < lowest) {
+                lowest = max;
+                bestMatch = i;
+            }
+        }
+        return bestMatch;
+    }
+
+    private int nearestByMetric(double[] input) {
+        int bestMatch = 0;
+        double lowest = metric.distance(weights, 0, input);
+        for (int i = 1, offset = inputLength; i < neuronCount;
+             i++, offset += inputLength) {
+            double distance = metric.distance(weights, offset, input, lowest);
+            if (distance < lowest) {
+                lowest = distance;
+                bestMatch = i;
+            }
+        }
+        return bestMatch;
+    }
+
+    @Override
+    public String toString() {
+        return "FrozenSOM{" +
+                "dimensions=" + gridSize +
+                ", inputLength=" + inputLength +
+                ", distanceMetric=" +
+                (metric == null ? "squared Euclidean" : metric) +
+                '}';
+    }
+}
@@ -0,0 +1,236 @@
+package cs437.som.network;
+
+import cs437.som.DistanceMetric;
+import cs437.som.util.VectorKernels;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A weight store that reads the neuron weights straight out of a memory
+ * mapped binary map file.
+ *
+ * The weights are laid out row-major and little-endian, in double or single
+ * precision, as {@link BinaryMapFile} writes them.  Nothing is copied when the
+ * store is created: the operating system pages the weights in as neurons are
+ * visited, so a map much larger than the heap can be queried as soon as it is
+ * opened.  The file is mapped read-only; the first change to a chunk of the
+ * weights copies that chunk into a direct buffer, so training a loaded map
+ * changes only the map in memory, never the file.  Files larger than a
+ * single mapping (2 GB) are mapped in chunks of whole rows.
+ *
+ * The mapping is released when the store is garbage collected.
+ */
+class MappedWeightStore implements WeightStore {
+    /** The largest chunk mapped, in bytes. */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final int neuronCount;
+    private final int vectorLength;
+    private final WeightPrecision precision;
+    private final int elementBytes;
+
+    /** log2 of the number of neurons per chunk. */
+    private final int chunkShift;
+    private final int chunkMask;
+
+    /* Replaced as a whole when a chunk is copied, so that every thread
+     * sees either the mapped chunk or its complete copy. */
+    private volatile ByteBuffer[] chunks;
+
+    private final ThreadLocal<double[]> scratch = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[vectorLength];
+        }
+    };
+
+    /**
+     * Map a weight matrix from a file.
+     *
+     * @param channel The file to map.  It may be closed once the store has
+     * been created.
+     * @param position The offset of the first weight in the file.
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     * @param precision The precision the weights are stored in.
+     * @throws IOException if the file cannot be mapped.
+     */
+    MappedWeightStore(FileChannel channel, long position, int neuronCount,
+                      int vectorLength, WeightPrecision precision)
+            throws IOException {
+        this.neuronCount = neuronCount;
+        this.vectorLength = vectorLength;
+        this.precision = precision;
+        elementBytes = precision == WeightPrecision.SINGLE
+                ? Float.SIZE / Byte.SIZE : Double.SIZE / Byte.SIZE;
+
+        int rowBytes = Math.max(1, vectorLength * elementBytes);
+        int rowsPerChunk = Integer.highestOneBit(
+                Math.max(1, MAX_CHUNK_BYTES / rowBytes));
+        chunkShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+        chunkMask = rowsPerChunk - 1;
+
+        int chunkCount = (neuronCount + rowsPerChunk - 1) >> chunkShift;
+        ByteBuffer[] mapped = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            long first = (long) i << chunkShift;
+            int rows = (int) Math.min(rowsPerChunk, neuronCount - first);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position + first * rowBytes, (long) rows * rowBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        chunks = mapped;
+    }
+
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+    public int getVectorLength() {
+        return vectorLength;
+    }
+
+    public WeightPrecision getPrecision() {
+        return precision;
+    }
+
+    public double get(int neuron, int component) {
+        return read(chunks[neuron >> chunkShift],
+                (neuron & chunkMask) * vectorLength + component);
+    }
+
+    public void set(int neuron, int component, double value) {
+        write(writableChunk(neuron >> chunkShift),
+                (neuron & chunkMask) * vectorLength + component, value);
+    }
+
+    public double squaredDistance(int neuron, double[] input) {
+        ByteBuffer w = chunks[neuron >> chunkShift];
+        int offset = (neuron & chunkMask) * vectorLength;
+        double sum = 0.0;
+        for (int i = 0; i < vectorLength; i++) {
+            double difference = input[i] - read(w, offset + i);
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+    public double squaredDistance(int neuron, double[] input, double limit) {
+        ByteBuffer w = chunks[neuron >> chunkShift];
+        int offset = (neuron & chunkMask) * vectorLength;
+        double sum = 0.0;
+        for (int i = 0; i < vectorLength; i++) {
+            double difference = input[i] - read(w, offset + i);
+            sum += difference * difference;
+            if ((i & (VectorKernels.CHECK_INTERVAL - 1))
+                    == VectorKernels.CHECK_INTERVAL - 1 && sum > limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    public double dot(int neuron, double[] input) {
+        ByteBuffer w = chunks[neuron >> chunkShift];
+        int offset = (neuron & chunkMask) * vectorLength;
+        double sum = 0.0;
+        for (int i = 0; i < vectorLength; i++) {
+            sum += input[i] * read(w, offset + i);
+        }
+        return sum;
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric) {
+        return metric.distance(copyRow(neuron), 0, input);
+    }
+
+    public double distance(int neuron, double[] input, DistanceMetric metric,
+                           double upperBound) {
+        return metric.distance(copyRow(neuron), 0, input, upperBound);
+    }
+
+    public void adjust(int neuron, double[] input, double rate) {
+        ByteBuffer w = writableChunk(neuron >> chunkShift);
+        int offset = (neuron & chunkMask) * vectorLength;
+        for (int i = 0; i < vectorLength; i++) {
+            double weight = read(w, offset + i);
+            write(w, offset + i, weight + rate * (input[i] - weight));
+        }
+    }
+
+    /**
+     * Get a chunk that may be written to, copying it out of the file the
+     * first time.
+     *
+     * @param chunk The index of the chunk.
+     * @return The writable chunk.
+     */
+    private ByteBuffer writableChunk(int chunk) {
+        ByteBuffer buffer = chunks[chunk];
+        if (buffer.isReadOnly()) {
+            buffer = copyChunk(chunk);
+        }
+        return buffer;
+    }
+
+    private synchronized ByteBuffer copyChunk(int chunk) {
+        ByteBuffer[] current = chunks;
+        if (!current[chunk].isReadOnly()) {
+            return current[chunk];
+        }
+
+        ByteBuffer source = current[chunk].duplicate();
+        source.clear();
+        ByteBuffer copy = ByteBuffer.allocateDirect(source.capacity())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(source);
+        copy.clear();
+
+        ByteBuffer[] next = current.clone();
+        next[chunk] = copy;
+        chunks = next;
+        return copy;
+    }
+
+    private double read(ByteBuffer chunk, int element) {
+        if (elementBytes == Double.SIZE / Byte.SIZE) {
+            return chunk.getDouble(element << 3);
+        }
+        return chunk.getFloat(element << 2);
+    }
+
+    private void write(ByteBuffer chunk, int element, double value) {
+        if (elementBytes == Double.SIZE / Byte.SIZE) {
+            chunk.putDouble(element << 3, value);
+        } else {
+            chunk.putFloat(element << 2, (float) value);
+        }
+    }
+
+    /**
+     * Copy a neuron's weights into this thread's scratch row, for metrics
+     * that work on arrays.
+     *
+     * @param neuron The index of the neuron to copy.
+     * @return The scratch row holding the neuron's weights.
+     */
+    private double[] copyRow(int neuron) {
+        ByteBuffer w = chunks[neuron >> chunkShift];
+        int offset = (neuron & chunkMask) * vectorLength;
+        double[] row = scratch.get();
+        for (int i = 0; i < vectorLength; i++) {
+            row[i] = read(w, offset + i);
+        }
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedWeightStore{neuronCount=" + neuronCount +
+                ", vectorLength=" + vectorLength +
+                ", precision=" + precision + '}';
+    }
+}
@@ -0,0 +1,84 @@
+package cs437.som.network;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Adjusts the neurons of a wide neighborhood on the shared fork/join pool.
+ *
+ * The neighborhood's neurons are found in stripes of grid rows, so each
+ * task adjusts a contiguous run of them and no two tasks touch the same
+ * neuron.  The workers only read the map's {@link TrainingStep}: its
+ * learning rate, and its memberships, which come from the kernel computed
+ * when the step began or are found by the training thread, in neighbor
+ * order, before the update is split.  Random memberships are therefore
+ * drawn in the same order as in a sequential update.
+ */
+class NeighborhoodUpdate extends RecursiveAction {
+    private static final long serialVersionUID = 0L;
+
+    /** The fewest neurons a single task will adjust. */
+    private static final int MINIMUM_GRAIN = 1024;
+
+    /** The number of tasks per worker thread to split the neurons into. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final CustomizableSOM map;
+    private final TrainingStep step;
+    private final int center;
+    private final double[] input;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    private NeighborhoodUpdate(CustomizableSOM map, TrainingStep step,
+                               int center, double[] input, int from, int to,
+                               int grain) {
+        this.map = map;
+        this.step = step;
+        this.center = center;
+        this.input = input;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+    }
+
+    /**
+     * Adjust every neuron a training step found in a neighborhood except its
+     * center.
+     *
+     * @param map The map being trained.
+     * @param step The step that found the neighborhood.
+     * @param center The neuron at the center of the neighborhood.
+     * @param input The input vector to adjust towards.
+     * @param count The number of neurons the step found.
+     */
+    static void adjust(CustomizableSOM map, TrainingStep step, int center,
+                       double[] input, int count) {
+        step.shareMemberships(count);
+        int tasks = ParallelBMUSearch.POOL.getParallelism() * TASKS_PER_THREAD;
+        int grain = Math.max(MINIMUM_GRAIN, count / tasks);
+        ParallelBMUSearch.POOL.invoke(new NeighborhoodUpdate(map, step,
+                center, input, 0, count, grain));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= grain) {
+            double learningRate = step.learningRate();
+            for (int k = from; k < to; k++) {
+                int i = step.neighbor(k);
+                double membership = step.sharedMembership(k);
+                if (i != center && membership > 0) {
+                    map.weights.adjust(i, input, learningRate * membership);
+                }
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        invokeAll(new NeighborhoodUpdate(map, step, center, input, from,
+                        middle, grain),
+                new NeighborhoodUpdate(map, step, center, input, middle, to,
+                        grain));
+    }
+}
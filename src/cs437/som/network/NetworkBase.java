@@ -1,16 +1,19 @@
 package cs437.som.network;
 
 import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
 import cs437.som.SOMError;
 import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.util.NumberWriter;
+import cs437.som.util.RandomSource;
+import cs437.som.util.SOMFileReader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.security.SecureRandom;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Common functionality for basic self-organizing maps.
@@ -21,6 +24,18 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
      */
     public static final double DEFAULT_LEARNING_RATE = 0.1;
 
+    /**
+     * The default neuron count at which parallel best matching unit searches
+     * begin to be used.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+
+    /**
+     * Distances closer than this to the best distance found during training
+     * are considered ties.
+     */
+    static final double TIE_TOLERANCE = 1.0e-6;
+
     /**
      * The initial, default neighborhood width.
      */
@@ -47,16 +62,40 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
     protected final int expectedIterations;
 
     /**
-     * A matrix of the neurons input weights.  The "left" index is the neuron
-     * and the "right" index is the input weight.
+     * The neurons' input weights.
      */
-    protected double[][] weightMatrix;
+    protected WeightStore weights;
 
     /**
      * The dimensions of the map's neuron grid.
      */
     protected final Dimension gridSize;
-    private Random random;
+
+    /** The source of the initial weights and of training's tie-breaks. */
+    private RandomSource random;
+
+    private boolean parallelSearch = false;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /** Times training steps when not null. */
+    TrainingProfile profile = null;
+    private volatile BatchBMUSearch.Norms weightNorms;
+
+    /** Counts the changes to the weights; see {@link #weightsModified()}. */
+    private final AtomicLong weightVersion = new AtomicLong();
+
+    /** Iterations between published snapshots, or 0 for none. */
+    private int snapshotInterval = 0;
+    private volatile FrozenSOM snapshot;
+
+    /** Each thread's copy of the last int or byte input it matched. */
+    private final ThreadLocal<double[]> convertedInput =
+            new ThreadLocal<double[]>() {
+                @Override
+                protected double[] initialValue() {
+                    return new double[inputVectorSize];
+                }
+            };
 
     /**
      * Constructs the common functionality for SOMs.
@@ -67,6 +106,57 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
      */
     protected NetworkBase(Dimension gridSize, int inputVectorSize,
                           int expectedIterations) {
+        this(gridSize, inputVectorSize, expectedIterations,
+                WeightPrecision.DOUBLE);
+    }
+
+    /**
+     * Constructs the common functionality for SOMs, keeping the weights in a
+     * given precision.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputVectorSize The length of expected input vectors
+     * @param expectedIterations The expected count of iterations for training.
+     * @param precision The precision to store the neuron weights in.
+     */
+    protected NetworkBase(Dimension gridSize, int inputVectorSize,
+                          int expectedIterations, WeightPrecision precision) {
+        this(gridSize, inputVectorSize, expectedIterations,
+                precision.createStore(gridSize.area, inputVectorSize));
+    }
+
+    /**
+     * Constructs the common functionality for SOMs, keeping the weights in a
+     * given store.  The store's weights are randomized.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputVectorSize The length of expected input vectors
+     * @param expectedIterations The expected count of iterations for training.
+     * @param store The store to keep the neuron weights in.  It must hold
+     * {@code gridSize.area} vectors of length {@code inputVectorSize}.
+     */
+    protected NetworkBase(Dimension gridSize, int inputVectorSize,
+                          int expectedIterations, WeightStore store) {
+        this(gridSize, inputVectorSize, expectedIterations, store, true);
+    }
+
+    /**
+     * Constructs the common functionality for SOMs, keeping the weights in a
+     * given store and optionally leaving its weights as they are.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputVectorSize The length of expected input vectors
+     * @param expectedIterations The expected count of iterations for training.
+     * @param store The store to keep the neuron weights in.
+     * @param randomize Whether to randomize the store's weights.
+     */
+    NetworkBase(Dimension gridSize, int inputVectorSize,
+                int expectedIterations, WeightStore store, boolean randomize) {
+        if (store.getNeuronCount() != gridSize.area
+                || store.getVectorLength() != inputVectorSize) {
+            throw new SOMError("Weight store does not match the map's size.");
+        }
+
         this.inputVectorSize = inputVectorSize;
         this.expectedIterations = expectedIterations;
         this.gridSize = gridSize;
@@ -74,17 +164,24 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
 
         initialNeighborhoodWidth = Math.min(gridSize.x, gridSize.y) / 3;
 
-        weightMatrix = new double[neuronCount][inputVectorSize];
-        initialize();
+        weights = store;
+        random = new RandomSource();
+        if (randomize) {
+            initialize();
+        }
     }
 
     public int getBestMatchingNeuron(double[] input) {
         checkInput(input);
 
+        if (searchInParallel()) {
+            return ParallelBMUSearch.find(this, input);
+        }
+
         int bestMatch = 0;
         double lowestDistance2 = distanceToInput(0, input);
         for (int i = 1; i < neuronCount; i++) {
-            double distance2temp = distanceToInput(i, input);
+            double distance2temp = distanceToInput(i, input, lowestDistance2);
             if (distance2temp < lowestDistance2) {
                 lowestDistance2 = distance2temp;
                 bestMatch = i;
@@ -93,29 +190,176 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
         return bestMatch;
     }
 
+    /**
+     * Find the best matching neuron for each of a block of input vectors.
+     * Maps that match by Euclidean distance compare ||w||^2 - 2x.w rather
+     * than the full distance.  The weight norms are cached with the version
+     * of the weights they were computed from (see {@link #weightsModified()})
+     * and reused by every batch until the weights change.  Large batches are
+     * split across threads when parallel searching is enabled.
+     *
+     * @param inputs The input vectors to match neurons to.
+     * @return The index of the neuron closest to each input.
+     */
+    public int[] getBestMatchingNeurons(double[][] inputs) {
+        for (double[] input : inputs) {
+            checkInput(input);
+        }
+
+        if (!matchesByEuclideanDistance()) {
+            int[] results = new int[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                results[i] = getBestMatchingNeuron(inputs[i]);
+            }
+            return results;
+        }
+
+        // The version is read before the norms are computed, so that any
+        // change made while they are computed makes them stale.
+        long version = weightVersion.get();
+        BatchBMUSearch.Norms norms = weightNorms;
+        if (norms == null || !norms.describe(weights, version)) {
+            norms = new BatchBMUSearch.Norms(weights, version);
+            weightNorms = norms;
+        }
+        boolean parallel = parallelSearch
+                && (long) inputs.length * neuronCount >= parallelThreshold;
+        return BatchBMUSearch.find(weights, norms.values, inputs, parallel);
+    }
+
+    /**
+     * Decide whether {@link #distanceToInput(int, double[])} orders neurons
+     * the same way as the Euclidean distance, so that batch searches may use
+     * the dot product form.  Subclasses that measure distance differently
+     * must override this to return {@code false}.
+     *
+     * @return {@code true} if the map matches by Euclidean distance.
+     */
+    protected boolean matchesByEuclideanDistance() {
+        return true;
+    }
+
     protected int getBMUDuringTraining(double[] input) {
-        List<Integer> bmuList = new ArrayList<Integer>(10);
+        return getBMUDuringTraining(input, random);
+    }
+
+    /**
+     * Find the best matching neuron for an input vector during training,
+     * breaking ties with a given source of randomness.
+     *
+     * @param input The input vector.
+     * @param random The source of the random tie-break.
+     * @return The index of the chosen neuron.
+     */
+    int getBMUDuringTraining(double[] input, Random random) {
+        if (searchInParallel()) {
+            return ParallelBMUSearch.findForTraining(this, input, random);
+        }
+
+        // Ties are broken by reservoir sampling: the k-th neuron found tied
+        // replaces the choice with probability 1/k, which picks each of the
+        // tied neurons with equal probability without collecting them.
+        int chosen = 0;
+        int ties = 1;
         double lowestDistance2 = distanceToInput(0, input);
-        bmuList.add(0);
         for (int i = 1; i < neuronCount; i++) {
-            double distance2temp = distanceToInput(i, input);
-            if (Math.abs(distance2temp - lowestDistance2) < /*0.1/time*/1.0e-6) {
-                bmuList.add(i);
+            double distance2temp = distanceToInput(i, input,
+                    lowestDistance2 + TIE_TOLERANCE);
+            if (Math.abs(distance2temp - lowestDistance2) < TIE_TOLERANCE) {
+                ties++;
+                if (random.nextInt(ties) == 0) {
+                    chosen = i;
+                }
             } else if (distance2temp < lowestDistance2) {
                 lowestDistance2 = distance2temp;
-                bmuList.clear();
-                bmuList.add(i);
+                chosen = i;
+                ties = 1;
             }
         }
-        return bmuList.get(random.nextInt(bmuList.size()));
+        return chosen;
     }
 
     public int getBestMatchingNeuron(int[] input) {
-        double[] dbls = new double[input.length];
+        return getBestMatchingNeuron(convert(input));
+    }
+
+    public int getBestMatchingNeuron(byte[] input) {
+        return getBestMatchingNeuron(convert(input));
+    }
+
+    /**
+     * Copy an int input vector into this thread's conversion buffer.
+     *
+     * @param input The input vector.
+     * @return The input as doubles, valid until this thread's next
+     * conversion.
+     * @throws SOMError when the length of input does not match the expected
+     * length.
+     */
+    private double[] convert(int[] input) {
+        if (input.length != inputVectorSize) {
+            throw new SOMError(
+                    "Input vector length does not match network input size.");
+        }
+        double[] converted = convertedInput.get();
+        for (int i = 0; i < input.length; i++) {
+            converted[i] = input[i];
+        }
+        return converted;
+    }
+
+    /**
+     * Copy a byte input vector into this thread's conversion buffer.  Bytes
+     * are taken as signed values.
+     *
+     * @param input The input vector.
+     * @return The input as doubles, valid until this thread's next
+     * conversion.
+     * @throws SOMError when the length of input does not match the expected
+     * length.
+     */
+    private double[] convert(byte[] input) {
+        if (input.length != inputVectorSize) {
+            throw new SOMError(
+                    "Input vector length does not match network input size.");
+        }
+        double[] converted = convertedInput.get();
         for (int i = 0; i < input.length; i++) {
-            dbls[i] = input[i];
+            converted[i] = input[i];
         }
-        return getBestMatchingNeuron(dbls);
+        return converted;
+    }
+
+    /**
+     * Enable or disable parallel best matching unit searches.  When enabled,
+     * maps with at least as many neurons as the parallel search threshold
+     * split their searches across a shared fork/join pool.  Searches are
+     * sequential by default.
+     *
+     * @param enabled Whether to search in parallel.
+     */
+    public void setParallelSearch(boolean enabled) {
+        parallelSearch = enabled;
+    }
+
+    /**
+     * Set the neuron count below which best matching unit searches stay
+     * sequential even when parallel searching is enabled, so that small maps
+     * do not pay for forking tasks.
+     *
+     * @param neurons The smallest map size to search in parallel.
+     */
+    public void setParallelSearchThreshold(int neurons) {
+        parallelThreshold = neurons;
+    }
+
+    /**
+     * Decide whether this map's best matching unit searches run in parallel.
+     *
+     * @return {@code true} if searches should be split across threads.
+     */
+    protected boolean searchInParallel() {
+        return parallelSearch && neuronCount >= parallelThreshold;
     }
 
     public int getExpectedIterations() {
@@ -134,25 +378,58 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
         return inputVectorSize;
     }
 
+    /**
+     * Get the precision the map keeps its neuron weights in.
+     *
+     * @return The map's weight precision.
+     */
+    public WeightPrecision getPrecision() {
+        return weights.getPrecision();
+    }
+
     public double getWeight(int neuron, int weightIndex) {
-        return weightMatrix[neuron][weightIndex];
+        return weights.get(neuron, weightIndex);
     }
 
     public void trainWith(double[] data) {
         checkInput(data);
 
-        int best = getBMUDuringTraining(data);
-        adjustNeuronWeights(best, data);
-        adjustNeighborsOf(best, data);
+        if (profile == null) {
+            int best = getBMUDuringTraining(data);
+            adjustNeuronWeights(best, data);
+            adjustNeighborsOf(best, data);
+        } else {
+            long start = System.nanoTime();
+            int best = getBMUDuringTraining(data);
+            long searched = System.nanoTime();
+            adjustNeuronWeights(best, data);
+            adjustNeighborsOf(best, data);
+            profile.record(searched - start, System.nanoTime() - searched);
+        }
+        weightsModified();
         time++;
+        if (snapshotInterval > 0 && time % snapshotInterval == 0) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Time the best matching unit search and the neighborhood update of
+     * every later training step.
+     *
+     * @param profile The profile to accumulate times in, or {@code null} to
+     * stop timing.
+     */
+    public void setTrainingProfile(TrainingProfile profile) {
+        this.profile = profile;
     }
 
     public void trainWith(int[] data) {
-        double[] dbls = new double[data.length];
-        for (int i = 0; i < data.length; i++) {
-            dbls[i] = data[i];
-        }
-        trainWith(dbls);
+        trainWith(convert(data));
+    }
+
+    public void trainWith(byte[] data) {
+        trainWith(convert(data));
     }
 
     /**
@@ -162,16 +439,34 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
      * weights top to bottom).
      */
     public String weightString() {
-        StringBuilder sb = new StringBuilder(weightMatrix.length * 3);
+        StringBuilder sb = new StringBuilder(neuronCount * 3);
 
-        for (double[] aWeightMatrix : weightMatrix) {
-            sb.append(Arrays.toString(aWeightMatrix));
+        for (int i = 0; i < neuronCount; i++) {
+            appendWeightVector(sb, i);
             sb.append(System.lineSeparator());
         }
         sb.append(System.lineSeparator());
         return sb.toString();
     }
 
+    /**
+     * Append a neuron's weight vector to a string builder, formatted as by
+     * {@link Arrays#toString(double[])}.
+     *
+     * @param sb The builder to append to.
+     * @param neuron The index of the neuron whose weights will be appended.
+     */
+    protected void appendWeightVector(StringBuilder sb, int neuron) {
+        sb.append('[');
+        for (int i = 0; i < inputVectorSize; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(weights.get(neuron, i));
+        }
+        sb.append(']');
+    }
+
     /**
      * Calculate the learning rate (alpha in most equations) for the current
      * iteration. The current iteration will be taken from the object's current
@@ -199,13 +494,91 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
     }
 
     /**
-     * Initializes the neuron's weight matrix to all random doubles.
+     * Initializes the neuron's weight matrix to all random doubles drawn from
+     * the map's random source.
      */
     private void initialize() {
-        random = new SecureRandom();
         for (int i = 0; i < neuronCount; i++) {
             for (int j = 0; j < inputVectorSize; j++) {
-                weightMatrix[i][j] = random.nextDouble();
+                weights.set(i, j, random.nextDouble());
+            }
+        }
+        weightsModified();
+    }
+
+    /**
+     * Record that the weights have changed, so that values cached from them,
+     * such as the weight norms used by batch searches, are recomputed.  Every
+     * path that writes the weights calls this once its writes are done; the
+     * training iteration alone cannot tell, since weights also change when
+     * the map is reseeded and when a concurrent trainer's late updates land.
+     */
+    protected final void weightsModified() {
+        weightVersion.incrementAndGet();
+    }
+
+    /**
+     * @return The version of the weights, which changes whenever
+     * {@link #weightsModified()} is called.
+     */
+    final long weightVersion() {
+        return weightVersion.get();
+    }
+
+    /**
+     * Give the map a new source of random numbers and draw new initial
+     * weights from it.  The source also breaks ties for the best matching
+     * unit during training, so two maps of the same kind given sources with
+     * the same seed and trained with the same inputs end up identical.
+     * Ownership of {@code source} is transferred to the map.
+     *
+     * @param source The random source to use.
+     * @throws SOMError if training has begun.
+     */
+    public void setRandomSource(RandomSource source) {
+        if (time == 0) {
+            random = source;
+            initialize();
+        } else {
+            throw new SOMError("Cannot change the random source after training has begun.");
+        }
+    }
+
+    /**
+     * Seed the map's random source and draw new initial weights from it.
+     *
+     * @param seed The seed.
+     * @throws SOMError if training has begun.
+     * @see #setRandomSource(RandomSource)
+     */
+    public void setRandomSeed(long seed) {
+        setRandomSource(new RandomSource(seed));
+    }
+
+    /**
+     * Get the map's source of random numbers.  Its seed and state are saved
+     * with the map.
+     *
+     * @return The map's random source.
+     */
+    public RandomSource getRandomSource() {
+        return random;
+    }
+
+    /**
+     * Take on the training progress read from a stream: the iteration count
+     * and, if the stream has them, the random source's seed and state.
+     * Training a map read back this way continues exactly as the saved map
+     * would have.
+     *
+     * @param sfr A reader that has parsed a map.
+     */
+    protected void readTrainingState(SOMFileReader sfr) {
+        time = sfr.getTime();
+        if (sfr.getRandomSeed() != null) {
+            random = new RandomSource(sfr.getRandomSeed());
+            if (sfr.getRandomState() != null) {
+                random.setState(sfr.getRandomState());
             }
         }
     }
@@ -217,10 +590,7 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
      * @param input The input vector to adjust towards.
      */
     protected void adjustNeuronWeights(int neuron, double[] input) {
-        for (int i = 0; i < weightMatrix[neuron].length; i++) {
-            double delta = input[i] - weightMatrix[neuron][i];
-            weightMatrix[neuron][i] += learningRate() * delta;
-        }
+        weights.adjust(neuron, input, learningRate());
     }
 
     /**
@@ -285,12 +655,27 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
      * @return The distance from the neuron to the vector.
      */
     public double distanceToInput(int neuron, double[] input) {
-        double sum = 0.0;
-        for (int i = 0; i < inputVectorSize; i++) {
-            double difference = input[i] - weightMatrix[neuron][i];
-            sum += difference * difference;
-        }
-        return sum;
+        return weights.squaredDistance(neuron, input);
+    }
+
+    /**
+     * Measure the distance from a neuron to an input vector, stopping early
+     * once it is known to be greater than a bound.  Best matching unit
+     * searches pass the best distance found so far, so that most of the
+     * arithmetic for neurons that cannot win is skipped.  Subclasses that
+     * override {@link #distanceToInput(int, double[])} must override this
+     * too.
+     *
+     * @param neuron The index of the neuron in question.
+     * @param input The input vector.
+     * @param upperBound The largest distance of interest.
+     * @return The distance from the neuron to the vector if it is no greater
+     * than {@code upperBound}; otherwise some value greater than
+     * {@code upperBound}.
+     */
+    protected double distanceToInput(int neuron, double[] input,
+                                     double upperBound) {
+        return weights.squaredDistance(neuron, input, upperBound);
     }
 
     @Override
@@ -305,14 +690,173 @@ public abstract class NetworkBase implements TrainableSelfOrganizingMap {
     }
 
     public void write(OutputStreamWriter destination) throws IOException {
+        writeHeader(destination);
+        writeWeights(destination, weights);
+        destination.flush();
+    }
+
+    /**
+     * Take an immutable copy of the map for matching inputs.  The copy
+     * measures distances as this map does when it is frozen, and is not
+     * affected by any later training.
+     *
+     * @return The frozen map.
+     * @throws SOMError If the weights are too many to copy into one array.
+     */
+    public FrozenSOM freeze() {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try {
+            OutputStreamWriter writer = new OutputStreamWriter(header, "UTF-8");
+            writeHeader(writer);
+            writer.flush();
+            return new FrozenSOM(gridSize, weights, inputMetric(),
+                    header.toString("UTF-8"), parallelSearch,
+                    parallelThreshold);
+        } catch (IOException e) {
+            throw new SOMError("Cannot describe the map: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Publish snapshots of the map while it trains.  Every given number of
+     * training iterations, the trainer freezes the map and publishes the
+     * copy, which other threads pick up with {@link #getSnapshot()}.  Readers
+     * never see a vector half way through an update and never block the
+     * trainer; the trainer pays for one copy of the weights per snapshot.  A
+     * first snapshot is published straight away.  Batch and concurrent
+     * trainers publish snapshots too; see {@link ConcurrentTrainer} for what
+     * its snapshots may hold.
+     *
+     * Call this from the training thread, or before training starts.
+     *
+     * @param iterations The iterations between snapshots, or 0 to stop
+     * publishing them.
+     * @throws SOMError If iterations is negative.
+     */
+    public void setSnapshotInterval(int iterations) {
+        if (iterations < 0) {
+            throw new SOMError("Snapshot interval cannot be negative.");
+        }
+        snapshotInterval = iterations;
+        if (iterations > 0) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Freeze the map and publish the copy as its latest snapshot.  Call this
+     * from the training thread, or while the map is not training.
+     *
+     * @return The published snapshot.
+     */
+    public FrozenSOM publishSnapshot() {
+        FrozenSOM frozen = freeze();
+        snapshot = frozen;
+        return frozen;
+    }
+
+    /**
+     * Get the latest published snapshot of the map.  Safe to call from any
+     * thread while the map trains.
+     *
+     * @return The latest snapshot, or {@code null} if none has been published.
+     * @see #setSnapshotInterval(int)
+     */
+    public FrozenSOM getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Publish a snapshot if training from one iteration to another passed a
+     * multiple of the snapshot interval.
+     *
+     * @param from The iteration training started from.
+     * @param to The iteration training reached.
+     */
+    void publishSnapshotIfDue(int from, int to) {
+        if (snapshotInterval > 0
+                && from / snapshotInterval != to / snapshotInterval) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Get the metric {@link #distanceToInput(int, double[])} measures with,
+     * for {@link #freeze()}.  Subclasses that measure distance differently
+     * must override this.
+     *
+     * @return The distance metric, or {@code null} for the squared Euclidean
+     * distance.
+     */
+    protected DistanceMetric inputMetric() {
+        return null;
+    }
+
+    /**
+     * Write everything describing the map but its weights, with the map's
+     * current training progress.
+     *
+     * @param destination Where to write to.
+     * @throws IOException If writing throws.
+     */
+    protected void writeHeader(OutputStreamWriter destination)
+            throws IOException {
+        writeHeader(destination, time, random.getSeed(), random.getState());
+    }
+
+    /**
+     * Write everything describing the map but its weights, with a given
+     * training progress.  Subclasses write their map type line and settings,
+     * and then call this.
+     *
+     * @param destination Where to write to.
+     * @param time The number of training iterations completed.
+     * @param randomSeed The seed of the map's random source.
+     * @param randomState The state of the map's random source.
+     * @throws IOException If writing throws.
+     */
+    protected void writeHeader(OutputStreamWriter destination, int time,
+                               long randomSeed, long randomState)
+            throws IOException {
         destination.write(String.format("Grid dimensions: %d, %d%n",
                 gridSize.x, gridSize.y));
         destination.write(String.format("Input length: %d%n", inputVectorSize));
-        destination.write(String.format("Weights:%n"));
-        for (double[] doubles : weightMatrix) {
-            destination.write(String.format("\t%s%n", Arrays.toString(doubles)));
+        if (weights.getPrecision() != WeightPrecision.DOUBLE) {
+            destination.write(String.format("Precision: %s%n",
+                    weights.getPrecision()));
+        }
+        destination.write(String.format("Iterations: %d of %d%n", time,
+                expectedIterations));
+        destination.write(String.format("Random seed: %d%n", randomSeed));
+        destination.write(String.format("Random state: %d%n", randomState));
+    }
+
+    /**
+     * Write a weight matrix, one neuron per line, formatted as by
+     * {@link #appendWeightVector(StringBuilder, int)}.
+     *
+     * @param destination Where to write to.
+     * @param weights The weights to write.
+     * @throws IOException If writing throws.
+     */
+    static void writeWeights(OutputStreamWriter destination,
+                             WeightStore weights) throws IOException {
+        int neuronCount = weights.getNeuronCount();
+        int inputVectorSize = weights.getVectorLength();
+        NumberWriter numbers = new NumberWriter(destination);
+        numbers.append("Weights:").newLine();
+        for (int i = 0; i < neuronCount; i++) {
+            numbers.append('\t').append('[');
+            for (int j = 0; j < inputVectorSize; j++) {
+                if (j > 0) {
+                    numbers.append(", ");
+                }
+                numbers.append(weights.get(i, j));
+            }
+            numbers.append(']').newLine();
         }
-        destination.write(String.format("end weights%n"));
+        numbers.append("end weights").newLine();
+        numbers.flush();
     }
 
 }
@@ -0,0 +1,69 @@
+package cs437.som.network;
+
+import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.util.CustomSOMFileReader;
+import cs437.som.util.MapType;
+import cs437.som.util.SOMFileReader;
+import cs437.som.util.StrategyRegistry;
+
+/**
+ * Registers the map types of this package, so that both the text and the
+ * binary readers can build them by name.  The default
+ * {@link StrategyRegistry} always includes them.
+ */
+public final class NetworkMapTypes implements StrategyRegistry.Provider {
+    public void registerWith(final StrategyRegistry registry) {
+        registry.registerMapType("CustomizableSOM", new MapType() {
+            public SOMFileReader createReader() {
+                return new CustomSOMFileReader(registry);
+            }
+
+            public TrainableSelfOrganizingMap create(SOMFileReader description,
+                                                     WeightStore weights) {
+                return CustomizableSOM.create(
+                        (CustomSOMFileReader) description, weights);
+            }
+        });
+        registry.registerMapType("OffHeapSOM", new MapType() {
+            public SOMFileReader createReader() {
+                return OffHeapSOM.createReader(registry);
+            }
+
+            public TrainableSelfOrganizingMap create(SOMFileReader description,
+                                                     WeightStore weights) {
+                return OffHeapSOM.create(
+                        (CustomSOMFileReader) description, weights);
+            }
+        });
+        registry.registerMapType("BasicSquareGridSOM", new BasicMapType() {
+            public TrainableSelfOrganizingMap create(SOMFileReader description,
+                                                     WeightStore weights) {
+                return BasicSquareGridSOM.create(description, weights);
+            }
+        });
+        registry.registerMapType("BasicHexGridSOM", new BasicMapType() {
+            public TrainableSelfOrganizingMap create(SOMFileReader description,
+                                                     WeightStore weights) {
+                return BasicHexGridSOM.create(description, weights);
+            }
+        });
+        registry.registerMapType("BasicPlanarSOM", new BasicMapType() {
+            public TrainableSelfOrganizingMap create(SOMFileReader description,
+                                                     WeightStore weights) {
+                return BasicPlanarSOM.create(description, weights);
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkMapTypes";
+    }
+
+    /** A map type described by the common lines only. */
+    private abstract static class BasicMapType implements MapType {
+        public SOMFileReader createReader() {
+            return new SOMFileReader();
+        }
+    }
+}
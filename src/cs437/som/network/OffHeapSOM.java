@@ -0,0 +1,210 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.util.CustomSOMFileReader;
+import cs437.som.util.StrategyRegistry;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * A fully customizable self-organizing map whose neuron weights are kept off
+ * of the Java heap.
+ *
+ * An OffHeapSOM accepts the same strategies as {@link CustomizableSOM}, but
+ * very large maps (a 4096x4096 color map holds 400 MB of weights) neither
+ * need a large heap nor cause long garbage collection pauses.  Closing the
+ * map frees its weights at once; it cannot be used afterwards.
+ *
+ * <pre>
+ * {@code
+ * OffHeapSOM som = new OffHeapSOM(new Dimension(4096, 4096), 3, iterations);
+ * try {
+ *     som.setGridTypeStrategy(new OffsetHexagonalGrid());
+ *     for (int i = 0; i < iterations; i++) {
+ *         som.trainWith(nextSample());
+ *     }
+ *     som.write(output);
+ * } finally {
+ *     som.close();
+ * }
+ * }
+ * </pre>
+ */
+public class OffHeapSOM extends CustomizableSOM implements Closeable {
+    private final DirectWeightStore store;
+
+    /**
+     * Create a new OffHeapSOM.
+     *
+     * @param gridSize The neuron grid dimensions.
+     * @param inputSize The input vector size.
+     * @param expectedIterations The expected number of training iterations.
+     */
+    public OffHeapSOM(Dimension gridSize, int inputSize, int expectedIterations) {
+        this(gridSize, inputSize, expectedIterations,
+                new DirectWeightStore(gridSize.area, inputSize), true);
+    }
+
+    private OffHeapSOM(Dimension gridSize, int inputSize, int expectedIterations,
+                       DirectWeightStore store, boolean randomize) {
+        super(gridSize, inputSize, expectedIterations, store, randomize);
+        this.store = store;
+    }
+
+    @Override
+    public void trainWith(double[] data) {
+        store.checkOpen();
+        super.trainWith(data);
+    }
+
+    @Override
+    public int getBestMatchingNeuron(double[] input) {
+        store.checkOpen();
+        return super.getBestMatchingNeuron(input);
+    }
+
+    @Override
+    public int[] getBestMatchingNeurons(double[][] inputs) {
+        store.checkOpen();
+        return super.getBestMatchingNeurons(inputs);
+    }
+
+    @Override
+    public FrozenSOM freeze() {
+        store.checkOpen();
+        return super.freeze();
+    }
+
+    @Override
+    public double getWeight(int neuron, int weightIndex) {
+        store.checkOpen();
+        return super.getWeight(neuron, weightIndex);
+    }
+
+    @Override
+    public double distanceToInput(int neuron, double[] input) {
+        store.checkOpen();
+        return super.distanceToInput(neuron, input);
+    }
+
+    @Override
+    protected double distanceToInput(int neuron, double[] input,
+                                     double upperBound) {
+        store.checkOpen();
+        return super.distanceToInput(neuron, input, upperBound);
+    }
+
+    /**
+     * Check whether the map's weights have been released.
+     *
+     * @return {@code true} if the map has been closed.
+     */
+    public boolean isClosed() {
+        return store.isClosed();
+    }
+
+    /**
+     * Close the map and free its off-heap weights.  Searches and updates
+     * already under way in other threads are finished first; the map cannot
+     * be trained, queried or written afterwards.  Closing a closed map has
+     * no effect.
+     */
+    public void close() {
+        store.close();
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapSOM{neuronCount=" + neuronCount +
+                ", gridSize=" + gridSize +
+                ", inputSize=" + inputVectorSize +
+                ", time=" + time +
+                ", expectedIterations=" + expectedIterations +
+                ", distanceMetric=" + distanceMetric +
+                ", learningRate=" + learningRate +
+                ", neighborhoodWidth=" + neighborhoodWidth +
+                ", closed=" + isClosed() +
+                '}';
+    }
+
+    @Override
+    protected void writeHeader(OutputStreamWriter destination)
+            throws IOException {
+        store.checkOpen();
+        super.writeHeader(destination);
+    }
+
+    @Override
+    protected void writeHeader(OutputStreamWriter destination, int time,
+                               long randomSeed, long randomState)
+            throws IOException {
+        destination.write(String.format("Map type: OffHeapSOM%n"));
+        writeConfiguration(destination, time, randomSeed, randomState);
+    }
+
+    /**
+     * Read an OffHeapSOM from an input stream.  The weight matrix is parsed
+     * straight into off-heap memory.
+     *
+     * @param input The stream to read from.  This stream should be passed in
+     * as soon as it is known to represent an OffHeapSOM.
+     * @return An OffHeapSOM as represented by the contents of {@code input}.
+     * @throws IOException if something fails while reading the stream.
+     */
+    public static OffHeapSOM read(BufferedReader input) throws IOException {
+        CustomSOMFileReader sfr = createReader(StrategyRegistry.getDefault());
+        sfr.parse(input);
+        return create(sfr, sfr.getWeights());
+    }
+
+    /**
+     * Create a reader that parses an OffHeapSOM's weight matrix into an
+     * off-heap store, so that reading a map never needs a heap array as
+     * large as the map.
+     *
+     * @param registry The registry to create strategies from.
+     * @return A new reader.
+     */
+    static CustomSOMFileReader createReader(StrategyRegistry registry) {
+        return new CustomSOMFileReader(registry) {
+            @Override
+            protected WeightStore createWeightStore(int neuronCount,
+                                                    int vectorLength) {
+                return new DirectWeightStore(neuronCount, vectorLength);
+            }
+        };
+    }
+
+    /**
+     * Create an OffHeapSOM from a parsed configuration.  Off-heap weights,
+     * as parsed by {@link #createReader}, are taken over as they are; other
+     * weights, such as those mapped from a binary file, are copied off of
+     * the heap.
+     *
+     * @param sfr A reader that has parsed an OffHeapSOM's configuration.
+     * @param parsed The map's weights.
+     * @return An OffHeapSOM with the given configuration and weights.
+     */
+    static OffHeapSOM create(CustomSOMFileReader sfr, WeightStore parsed) {
+        DirectWeightStore store;
+        if (parsed instanceof DirectWeightStore) {
+            store = (DirectWeightStore) parsed;
+        } else {
+            store = new DirectWeightStore(parsed.getNeuronCount(),
+                    parsed.getVectorLength());
+            for (int i = 0; i < store.getNeuronCount(); i++) {
+                for (int j = 0; j < store.getVectorLength(); j++) {
+                    store.set(i, j, parsed.get(i, j));
+                }
+            }
+        }
+
+        OffHeapSOM ohsom = new OffHeapSOM(sfr.getDimension(),
+                sfr.getInputVectorSize(), sfr.getIterations(), store, false);
+        ohsom.readConfiguration(sfr);
+        return ohsom;
+    }
+}
@@ -0,0 +1,163 @@
+package cs437.som.network;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Best matching unit search that splits a map's neurons into ranges, scans
+ * them on a fork/join pool and reduces the ranges' results to the overall
+ * minimum.
+ *
+ * When searching during training, neurons whose distance is within
+ * {@link NetworkBase#TIE_TOLERANCE} of the minimum are collected, so the
+ * caller can break the tie randomly just as the sequential search does.
+ */
+class ParallelBMUSearch extends RecursiveTask<ParallelBMUSearch.Result> {
+    private static final long serialVersionUID = 0L;
+
+    /** The fewest neurons a single task will scan. */
+    private static final int MINIMUM_GRAIN = 1024;
+
+    /** The number of tasks per worker thread to split the neurons into. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /** The pool shared by every map's parallel searches. */
+    static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final NetworkBase map;
+    private final double[] input;
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final boolean collectTies;
+
+    private ParallelBMUSearch(NetworkBase map, double[] input, int from, int to,
+                              int grain, boolean collectTies) {
+        this.map = map;
+        this.input = input;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.collectTies = collectTies;
+    }
+
+    /**
+     * Find the neuron closest to an input vector.  Exact ties resolve to the
+     * lowest neuron index, as in the sequential search.
+     *
+     * @param map The map to search.
+     * @param input The input vector to match.
+     * @return The index of the best matching neuron.
+     */
+    static int find(NetworkBase map, double[] input) {
+        return POOL.invoke(create(map, input, false)).best;
+    }
+
+    /**
+     * Find the neuron closest to an input vector, choosing randomly between
+     * neurons that tie for closest.
+     *
+     * @param map The map to search.
+     * @param input The input vector to match.
+     * @param random The source of the random tie-break.
+     * @return The index of the chosen best matching neuron.
+     */
+    static int findForTraining(NetworkBase map, double[] input, Random random) {
+        Result result = POOL.invoke(create(map, input, true));
+        return result.ties[random.nextInt(result.tieCount)];
+    }
+
+    private static ParallelBMUSearch create(NetworkBase map, double[] input,
+                                            boolean collectTies) {
+        int tasks = POOL.getParallelism() * TASKS_PER_THREAD;
+        int grain = Math.max(MINIMUM_GRAIN, map.neuronCount / tasks);
+        return new ParallelBMUSearch(map, input, 0, map.neuronCount, grain,
+                collectTies);
+    }
+
+    @Override
+    protected Result compute() {
+        if (to - from <= grain) {
+            return scan();
+        }
+
+        int middle = (from + to) >>> 1;
+        ParallelBMUSearch left = new ParallelBMUSearch(map, input, from, middle,
+                grain, collectTies);
+        ParallelBMUSearch right = new ParallelBMUSearch(map, input, middle, to,
+                grain, collectTies);
+        left.fork();
+        Result rightResult = right.compute();
+        return left.join().merge(rightResult, collectTies);
+    }
+
+    private Result scan() {
+        Result result = new Result(from, map.distanceToInput(from, input));
+        for (int i = from + 1; i < to; i++) {
+            double bound = collectTies
+                    ? result.lowest + NetworkBase.TIE_TOLERANCE : result.lowest;
+            double distance = map.distanceToInput(i, input, bound);
+            if (collectTies) {
+                if (Math.abs(distance - result.lowest) < NetworkBase.TIE_TOLERANCE) {
+                    result.addTie(i);
+                } else if (distance < result.lowest) {
+                    result.reset(i, distance);
+                }
+            } else if (distance < result.lowest) {
+                result.reset(i, distance);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The closest neuron found in a range of neurons and, when collecting
+     * ties, every neuron tied with it.
+     */
+    static final class Result {
+        private double lowest;
+        private int best;
+        private int[] ties;
+        private int tieCount;
+
+        Result(int neuron, double distance) {
+            ties = new int[4];
+            reset(neuron, distance);
+        }
+
+        void reset(int neuron, double distance) {
+            lowest = distance;
+            best = neuron;
+            ties[0] = neuron;
+            tieCount = 1;
+        }
+
+        void addTie(int neuron) {
+            if (tieCount == ties.length) {
+                int[] larger = new int[ties.length * 2];
+                System.arraycopy(ties, 0, larger, 0, tieCount);
+                ties = larger;
+            }
+            ties[tieCount++] = neuron;
+        }
+
+        /**
+         * Combine this result with the result of the range following it.
+         *
+         * @param next The following range's result.
+         * @param collectTies Whether ties are being collected.
+         * @return The combined result.
+         */
+        Result merge(Result next, boolean collectTies) {
+            if (collectTies
+                    && Math.abs(next.lowest - lowest) < NetworkBase.TIE_TOLERANCE) {
+                for (int i = 0; i < next.tieCount; i++) {
+                    addTie(next.ties[i]);
+                }
+                return this;
+            }
+            return next.lowest < lowest ? next : this;
+        }
+    }
+}
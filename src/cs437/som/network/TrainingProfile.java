@@ -0,0 +1,90 @@
+package cs437.som.network;
+
+/**
+ * Accumulates how long a map's training steps spend searching for the best
+ * matching unit and updating its neighborhood.
+ *
+ * Attach a profile to a map with
+ * {@link NetworkBase#setTrainingProfile(TrainingProfile)}; every later
+ * {@code trainWith} call is timed until the profile is detached.  Profiles
+ * are not thread safe.
+ */
+public class TrainingProfile {
+    private long samples = 0;
+    private long searchNanos = 0;
+    private long updateNanos = 0;
+    private long parallelUpdates = 0;
+
+    /**
+     * Record one training step.
+     *
+     * @param search The time spent searching for the BMU, in nanoseconds.
+     * @param update The time spent updating the neighborhood, in nanoseconds.
+     */
+    void record(long search, long update) {
+        samples++;
+        searchNanos += search;
+        updateNanos += update;
+    }
+
+    /**
+     * Record that a step's neighborhood update was split across threads.
+     */
+    void countParallelUpdate() {
+        parallelUpdates++;
+    }
+
+    /**
+     * @return The number of training steps recorded.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return The total time spent searching for BMUs, in nanoseconds.
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return The total time spent updating neighborhoods, in nanoseconds.
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    /**
+     * @return The number of steps whose neighborhood update ran in parallel.
+     */
+    public long getParallelUpdates() {
+        return parallelUpdates;
+    }
+
+    /**
+     * @return The fraction of the recorded time spent searching for BMUs.
+     */
+    public double getSearchFraction() {
+        long total = searchNanos + updateNanos;
+        return (total == 0) ? 0.0 : searchNanos / (double) total;
+    }
+
+    /**
+     * Forget every step recorded so far.
+     */
+    public void reset() {
+        samples = 0;
+        searchNanos = 0;
+        updateNanos = 0;
+        parallelUpdates = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TrainingProfile{samples=%d, search=%.1f ms (%.0f%%)"
+                + ", update=%.1f ms, parallelUpdates=%d}", samples,
+                searchNanos / 1.0e6, 100 * getSearchFraction(),
+                updateNanos / 1.0e6, parallelUpdates);
+    }
+}
@@ -0,0 +1,314 @@
+package cs437.som.network;
+
+import cs437.som.GridType;
+import cs437.som.NeighborhoodMembershipFunction;
+
+import java.util.Arrays;
+
+/**
+ * The values a training iteration shares across all of the neurons it
+ * updates.
+ *
+ * The learning rate and neighborhood width depend only on the iteration, so
+ * they are evaluated once when the step begins rather than once per neuron
+ * (or once per weight).  Neighborhood membership depends only on a neuron's
+ * grid distance from the BMU and the width, and a neighborhood has far fewer
+ * distinct distances than neurons.  When the grid numbers its distances (see
+ * {@link GridType#getDistanceClasses()}), the membership of every distance
+ * inside the width is computed when the step begins, and each neighbor's
+ * membership is read from that kernel by its distance class.  Otherwise each
+ * membership is computed the first time its distance is seen and looked up
+ * from then on.  Membership functions that are not a function of the
+ * distance, such as
+ * {@link cs437.som.membership.RandomNeighborhoodMembershipFunction}, are
+ * evaluated for every neuron instead.
+ *
+ * A step also holds the buffers its neighborhood is found in.  Steps are not
+ * thread safe; each thread that trains needs its own.  Once a neighborhood
+ * has been found and {@link #shareMemberships(int)} called, though, other
+ * threads may read it, and its memberships through
+ * {@link #sharedMembership(int)}, until the step searches again.
+ */
+final class TrainingStep {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int time = -1;
+    private double learningRate = 0.0;
+    private double width = 0.0;
+    private NeighborhoodMembershipFunction membership = null;
+    private boolean memoize = false;
+
+    private int[] neighbors = new int[64];
+    private double[] neighborDistances = new double[64];
+    private int[] neighborClasses = new int[64];
+
+    /* The memberships found by shareMemberships, when there is no kernel. */
+    private double[] shared = new double[64];
+
+    /* The grid's distance classes the kernel was computed for, if any, and
+     * whether the last search found its neighbors' classes. */
+    private double[] kernelDistances = null;
+    private double[] kernel = new double[64];
+    private boolean classified = false;
+
+    /* An open addressed table of membership by distance.  Entries belong to
+     * the current step only if their stamp matches the generation, so a new
+     * step need not clear the table. */
+    private long[] distances = new long[INITIAL_CAPACITY];
+    private double[] memberships = new double[INITIAL_CAPACITY];
+    private int[] stamps = new int[INITIAL_CAPACITY];
+    private int generation = 0;
+    private int size = 0;
+
+    /**
+     * Start a new training iteration.
+     *
+     * @param time The iteration.
+     * @param learningRate The learning rate for the iteration.
+     * @param width The neighborhood width for the iteration.
+     * @param membership The neighborhood membership function.
+     * @param memoize Whether membership depends only on distance and width,
+     * so that it may be computed once per distinct distance.
+     */
+    void begin(int time, double learningRate, double width,
+               NeighborhoodMembershipFunction membership, boolean memoize) {
+        begin(time, learningRate, width, membership, memoize, null);
+    }
+
+    /**
+     * Start a new training iteration on a grid, computing the membership of
+     * every distance inside the width up front if the grid numbers its
+     * distances and membership depends only on distance.
+     *
+     * @param time The iteration.
+     * @param learningRate The learning rate for the iteration.
+     * @param width The neighborhood width for the iteration.
+     * @param membership The neighborhood membership function.
+     * @param memoize Whether membership depends only on distance and width,
+     * so that it may be computed once per distinct distance.
+     * @param grid The grid the iteration's neighborhoods are found in, or
+     * {@code null}.
+     */
+    void begin(int time, double learningRate, double width,
+               NeighborhoodMembershipFunction membership, boolean memoize,
+               GridType grid) {
+        this.time = time;
+        this.learningRate = learningRate;
+        this.width = width;
+        this.membership = membership;
+        this.memoize = memoize;
+
+        size = 0;
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+
+        kernelDistances = null;
+        classified = false;
+        if (memoize && grid != null) {
+            computeKernel(grid.getDistanceClasses());
+        }
+    }
+
+    /*
+     * Compute the membership of each distance class closer than the width,
+     * and of distance 0, since a neighborhood always holds its center.  The
+     * classes are ascending, so those are a prefix of the array.
+     */
+    private void computeKernel(double[] classes) {
+        if (classes == null) {
+            return;
+        }
+
+        int count = 1;
+        while (count < classes.length && classes[count] < width) {
+            count++;
+        }
+        if (count > kernel.length) {
+            kernel = new double[Math.max(count, 2 * kernel.length)];
+        }
+        for (int c = 0; c < count; c++) {
+            kernel[c] = membership.neighborhoodMembership(classes[c], width);
+        }
+        kernelDistances = classes;
+    }
+
+    /**
+     * @return The iteration this step was begun for, or -1 if none has been.
+     */
+    int time() {
+        return time;
+    }
+
+    /**
+     * @return The learning rate for this iteration.
+     */
+    double learningRate() {
+        return learningRate;
+    }
+
+    /**
+     * @return The neighborhood width for this iteration.
+     */
+    double width() {
+        return width;
+    }
+
+    /**
+     * Find the neurons within this iteration's neighborhood width of a
+     * neuron, including the neuron itself.
+     *
+     * @param grid The grid to search.
+     * @param neuron The neuron at the center of the neighborhood.
+     * @return The number of neurons found; they may be read with
+     * {@link #neighbor(int)}, {@link #neighborDistance(int)} and
+     * {@link #neighborMembership(int)}.
+     */
+    int findNeighbors(GridType grid, int neuron) {
+        // The kernel only applies if the grid still numbers its distances
+        // as it did when the step began.
+        classified = kernelDistances != null
+                && grid.getDistanceClasses() == kernelDistances;
+        int[] classes = classified ? neighborClasses : null;
+
+        int count = grid.neighborsWithin(neuron, width, neighbors,
+                neighborDistances, classes);
+        if (count > neighbors.length) {
+            neighbors = new int[count];
+            neighborDistances = new double[count];
+            neighborClasses = new int[count];
+            classes = classified ? neighborClasses : null;
+            count = grid.neighborsWithin(neuron, width, neighbors,
+                    neighborDistances, classes);
+        }
+        return count;
+    }
+
+    /**
+     * @param k The index of a neuron found by the last search.
+     * @return The neuron.
+     */
+    int neighbor(int k) {
+        return neighbors[k];
+    }
+
+    /**
+     * @param k The index of a neuron found by the last search.
+     * @return The neuron's grid distance from the center of the neighborhood.
+     */
+    double neighborDistance(int k) {
+        return neighborDistances[k];
+    }
+
+    /**
+     * @param k The index of a neuron found by the last search.
+     * @return The neuron's neighborhood membership, exactly as the membership
+     * function gives it for the neuron's distance.
+     */
+    double neighborMembership(int k) {
+        if (classified) {
+            return kernel[neighborClasses[k]];
+        }
+        return membership(neighborDistances[k]);
+    }
+
+    /**
+     * Find the memberships of the neurons found by the last search, so that
+     * other threads may read them with {@link #sharedMembership(int)}.
+     * Without a kernel, each is found here, in the order the neurons were
+     * found, as a sequential update finds them; a membership function that
+     * draws random numbers draws the same ones in the same order.
+     *
+     * @param count The number of neurons found by the last search.
+     */
+    void shareMemberships(int count) {
+        if (classified) {
+            return;
+        }
+        if (count > shared.length) {
+            shared = new double[Math.max(count, 2 * shared.length)];
+        }
+        for (int k = 0; k < count; k++) {
+            shared[k] = neighborMembership(k);
+        }
+    }
+
+    /**
+     * Read a neuron's neighborhood membership without touching the memo, so
+     * that several threads may ask at once.  The kernel is only read; without
+     * one, the membership found by {@link #shareMemberships(int)} is.
+     *
+     * @param k The index of a neuron found by the last search.
+     * @return The neuron's neighborhood membership, exactly as the membership
+     * function gives it for the neuron's distance.
+     */
+    double sharedMembership(int k) {
+        if (classified) {
+            return kernel[neighborClasses[k]];
+        }
+        return shared[k];
+    }
+
+    /**
+     * Find the neighborhood membership of a neuron at a given grid distance
+     * from the BMU.
+     *
+     * @param distance The grid distance from the BMU.
+     * @return The membership, exactly as the membership function gives it.
+     */
+    double membership(double distance) {
+        if (!memoize) {
+            return membership.neighborhoodMembership(distance, width);
+        }
+
+        long key = Double.doubleToLongBits(distance);
+        int mask = distances.length - 1;
+        int slot = hash(key) & mask;
+        while (stamps[slot] == generation) {
+            if (distances[slot] == key) {
+                return memberships[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        double value = membership.neighborhoodMembership(distance, width);
+        distances[slot] = key;
+        memberships[slot] = value;
+        stamps[slot] = generation;
+        if (++size * 2 > distances.length) {
+            grow();
+        }
+        return value;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        long[] oldDistances = distances;
+        double[] oldMemberships = memberships;
+        int[] oldStamps = stamps;
+        int current = generation;
+
+        distances = new long[oldDistances.length * 2];
+        memberships = new double[oldMemberships.length * 2];
+        stamps = new int[oldStamps.length * 2];
+        generation = 1;
+
+        int mask = distances.length - 1;
+        for (int i = 0; i < oldDistances.length; i++) {
+            if (oldStamps[i] == current) {
+                int slot = hash(oldDistances[i]) & mask;
+                while (stamps[slot] == generation) {
+                    slot = (slot + 1) & mask;
+                }
+                distances[slot] = oldDistances[i];
+                memberships[slot] = oldMemberships[i];
+                stamps[slot] = generation;
+            }
+        }
+    }
+}
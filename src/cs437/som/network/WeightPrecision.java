@@ -0,0 +1,65 @@
+package cs437.som.network;
+
+import cs437.som.SOMError;
+
+/**
+ * The floating point precision a map keeps its neuron weights in.
+ */
+public enum WeightPrecision {
+    /**
+     * Weights are stored as 64-bit {@code double}s.
+     */
+    DOUBLE("double") {
+        @Override
+        public WeightStore createStore(int neuronCount, int vectorLength) {
+            return new FlatWeightStore(neuronCount, vectorLength);
+        }
+    },
+
+    /**
+     * Weights are stored as 32-bit {@code float}s, halving the memory used by
+     * a map at the cost of precision.
+     */
+    SINGLE("single") {
+        @Override
+        public WeightStore createStore(int neuronCount, int vectorLength) {
+            return new FloatWeightStore(neuronCount, vectorLength);
+        }
+    };
+
+    private final String name;
+
+    WeightPrecision(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create an empty weight store of this precision.
+     *
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     * @return A new weight store with all weights set to 0.
+     */
+    public abstract WeightStore createStore(int neuronCount, int vectorLength);
+
+    /**
+     * Find a precision by the name used for it in map files.
+     *
+     * @param name The precision's name, ignoring case.
+     * @return The matching precision.
+     * @throws SOMError If no precision has that name.
+     */
+    public static WeightPrecision fromString(String name) {
+        for (WeightPrecision precision : values()) {
+            if (precision.name.equalsIgnoreCase(name)) {
+                return precision;
+            }
+        }
+        throw new SOMError("Unknown weight precision: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,123 @@
+package cs437.som.network;
+
+import cs437.som.DistanceMetric;
+
+/**
+ * Storage strategy for the input weights of a map's neurons.
+ *
+ * A weight store holds one weight vector per neuron, each of the same length
+ * (the map's input vector length).  Maps do not touch the weights directly;
+ * matching and adaptation go through the store so that the layout of the
+ * weights in memory can be changed without changing the maps.
+ */
+public interface WeightStore {
+
+    /**
+     * Get the number of neurons whose weights are held in the store.
+     *
+     * @return The number of weight vectors in the store.
+     */
+    int getNeuronCount();
+
+    /**
+     * Get the length of each neuron's weight vector.
+     *
+     * @return The length of a single weight vector.
+     */
+    int getVectorLength();
+
+    /**
+     * Get the precision the store keeps its weights in.
+     *
+     * @return The store's weight precision.
+     */
+    WeightPrecision getPrecision();
+
+    /**
+     * Read a single weight.
+     *
+     * @param neuron The neuron's index.
+     * @param component The component's index in the weight vector.
+     * @return The weight corresponding to the neuron and component.
+     */
+    double get(int neuron, int component);
+
+    /**
+     * Write a single weight.
+     *
+     * @param neuron The neuron's index.
+     * @param component The component's index in the weight vector.
+     * @param value The new weight.
+     */
+    void set(int neuron, int component, double value);
+
+    /**
+     * Calculate the squared Euclidean distance between a neuron's weight
+     * vector and an input vector.
+     *
+     * @param neuron The index of the neuron in question.
+     * @param input The input vector.
+     * @return The squared distance from the neuron to the vector.
+     */
+    double squaredDistance(int neuron, double[] input);
+
+    /**
+     * Calculate the squared Euclidean distance between a neuron's weight
+     * vector and an input vector, giving up once the sum passes a limit.
+     *
+     * @param neuron The index of the neuron in question.
+     * @param input The input vector.
+     * @param limit The squared distance beyond which the result is no longer
+     * needed.
+     * @return The squared distance from the neuron to the vector, or some
+     * value greater than {@code limit} if the distance is.
+     */
+    double squaredDistance(int neuron, double[] input, double limit);
+
+    /**
+     * Calculate the dot product of a neuron's weight vector and an input
+     * vector.
+     *
+     * @param neuron The index of the neuron in question.
+     * @param input The input vector.
+     * @return The dot product of the neuron's weights and the vector.
+     */
+    double dot(int neuron, double[] input);
+
+    /**
+     * Measure the distance between a neuron's weight vector and an input
+     * vector with a distance metric.
+     *
+     * @param neuron The index of the neuron in question.
+     * @param input The input vector.
+     * @param metric The metric to measure with.
+     * @return The distance from the neuron to the vector.
+     */
+    double distance(int neuron, double[] input, DistanceMetric metric);
+
+    /**
+     * Measure the distance between a neuron's weight vector and an input
+     * vector with a distance metric, unless it is greater than a bound.
+     *
+     * @param neuron The index of the neuron in question.
+     * @param input The input vector.
+     * @param metric The metric to measure with.
+     * @param upperBound The largest distance of interest.
+     * @return The distance from the neuron to the vector if it is no greater
+     * than {@code upperBound}; otherwise either the distance or
+     * {@link Double#POSITIVE_INFINITY}.
+     * @see DistanceMetric#distance(double[], double[], double)
+     */
+    double distance(int neuron, double[] input, DistanceMetric metric,
+                    double upperBound);
+
+    /**
+     * Move a neuron's weight vector towards an input vector.  Each weight w
+     * is replaced by {@code w + rate * (input - w)}.
+     *
+     * @param neuron The index of the neuron to adjust.
+     * @param input The input vector to adjust towards.
+     * @param rate The fraction of the difference to move by.
+     */
+    void adjust(int neuron, double[] input, double rate);
+}
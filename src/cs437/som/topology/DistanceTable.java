@@ -0,0 +1,176 @@
+package cs437.som.topology;
+
+import java.util.Arrays;
+
+/**
+ * A table of grid distances keyed by the row and column offset between two
+ * neurons.
+ *
+ * On most grids the distance between two neurons depends only on how far
+ * apart they are, not on where they are, so a grid of R rows and C columns
+ * has only about 2R x 2C distinct distances.  The grid types fill a table
+ * once when they learn their size, and then look distances up instead of
+ * computing them.  The table also keeps each neuron's row and column, so a
+ * lookup needs no division.
+ *
+ * Row offsets run from -R to R and column offsets from 1 - C to C - 1, which
+ * also covers the one-past-the-end neuron index the grid types accept.  Grids
+ * whose distances also depend on the parity of the first neuron's column
+ * (offset hexagonal grids) keep a second layer of offsets for odd columns.
+ *
+ * Once filled, the table is {@link #classify() classified}: the distinct
+ * distances are sorted, and each offset keeps the index of its distance, its
+ * distance class, rather than the distance itself.  Values that depend only
+ * on distance can then be computed once per class and looked up by index.
+ */
+final class DistanceTable {
+    /**
+     * The largest table built, in entries (16 MB once classified, 32 MB while
+     * it is filled); larger grids compute their distances as before.  This
+     * covers square maps up to about 1000 by 1000.
+     */
+    static final int MAX_ENTRIES = 1 << 22;
+
+    private final int height;
+    private final int width;
+    private final boolean byColumnParity;
+    private final int span;
+    private final int layerSize;
+    private final int[] rows;
+    private final int[] columns;
+
+    /* The distances while the table is filled; null once it is classified. */
+    private double[] distances;
+
+    /* The distance class of each offset, and the distance of each class. */
+    private int[] classes = null;
+    private double[] distinct = null;
+
+    /**
+     * Create a table for a grid, with every distance set to 0, ready to be
+     * filled.
+     *
+     * @param width The number of columns in the grid.
+     * @param height The number of rows in the grid.
+     * @param byColumnParity Whether distances depend on the parity of the
+     * first neuron's column.
+     */
+    DistanceTable(int width, int height, boolean byColumnParity) {
+        this.width = width;
+        this.height = height;
+        this.byColumnParity = byColumnParity;
+        span = 2 * width - 1;
+        layerSize = (2 * height + 1) * span;
+        distances = new double[(byColumnParity ? 2 : 1) * layerSize];
+
+        int neurons = width * height + 1;
+        rows = new int[neurons];
+        columns = new int[neurons];
+        for (int i = 0; i < neurons; i++) {
+            rows[i] = i / width;
+            columns[i] = i % width;
+        }
+    }
+
+    /**
+     * Check whether a table for a grid is small enough to build.
+     *
+     * @param width The number of columns in the grid.
+     * @param height The number of rows in the grid.
+     * @param byColumnParity Whether distances depend on the parity of the
+     * first neuron's column.
+     * @return {@code true} if the table would hold at most
+     * {@link #MAX_ENTRIES} distances.
+     */
+    static boolean fits(int width, int height, boolean byColumnParity) {
+        long entries = (2L * height + 1) * (2L * width - 1);
+        return (byColumnParity ? 2 * entries : entries) <= MAX_ENTRIES;
+    }
+
+    /**
+     * Number the distinct distances, ascending, once every distance has been
+     * set.  The table cannot be changed afterwards.
+     */
+    void classify() {
+        double[] sorted = distances.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || Double.compare(sorted[i], sorted[count - 1]) != 0) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        distinct = Arrays.copyOf(sorted, count);
+
+        classes = new int[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            classes[i] = Arrays.binarySearch(distinct, distances[i]);
+        }
+        distances = null;
+    }
+
+    /**
+     * Record the distance for an offset.
+     *
+     * @param parity The parity of the first neuron's column; ignored unless
+     * the table is keyed by column parity.
+     * @param dr The row offset.
+     * @param dc The column offset.
+     * @param distance The distance between neurons that far apart.
+     */
+    void set(int parity, int dr, int dc, double distance) {
+        distances[index(parity, dr, dc)] = distance;
+    }
+
+    /**
+     * Look up the distance for an offset.
+     *
+     * @param parity The parity of the first neuron's column; ignored unless
+     * the table is keyed by column parity.
+     * @param dr The row offset.
+     * @param dc The column offset.
+     * @return The distance between neurons that far apart.
+     */
+    double get(int parity, int dr, int dc) {
+        return distinct[classes[index(parity, dr, dc)]];
+    }
+
+    /**
+     * Look up the distance class for an offset.
+     *
+     * @param parity The parity of the first neuron's column; ignored unless
+     * the table is keyed by column parity.
+     * @param dr The row offset.
+     * @param dc The column offset.
+     * @return The index of the offset's distance in {@link #distances()}.
+     */
+    int classOf(int parity, int dr, int dc) {
+        return classes[index(parity, dr, dc)];
+    }
+
+    /**
+     * @return The distinct distances in the table, ascending, indexed by
+     * distance class.  The array is shared and must not be modified.
+     */
+    double[] distances() {
+        return distinct;
+    }
+
+    /**
+     * Look up the distance between two neurons.
+     *
+     * @param neuron0 The index of the first neuron.
+     * @param neuron1 The index of the second neuron.
+     * @return The distance between the two neurons.
+     */
+    double between(int neuron0, int neuron1) {
+        int col0 = columns[neuron0];
+        return distinct[classes[index(col0 & 1, rows[neuron1] - rows[neuron0],
+                columns[neuron1] - col0)]];
+    }
+
+    private int index(int parity, int dr, int dc) {
+        int layer = byColumnParity ? (parity & 1) * layerSize : 0;
+        return layer + (dr + height) * span + (dc + width - 1);
+    }
+}
@@ -11,11 +11,43 @@ import cs437.som.SOMError;
 public class Moore implements GridType {
     private int neuronCount = 0;
     private int width = 0;
+    private int height = 0;
+    private boolean cacheEnabled = true;
+    private DistanceTable table = null;
 
     @Override
     public void setNeuronCount(Dimension dimension) {
         width = dimension.x;
-        neuronCount = width * dimension.y;
+        height = dimension.y;
+        neuronCount = width * height;
+        buildTable();
+    }
+
+    @Override
+    public void setDistanceCacheEnabled(boolean enabled) {
+        cacheEnabled = enabled;
+        buildTable();
+    }
+
+    /**
+     * Fill the distance table, keyed by row and column offset, if the cache
+     * is enabled and the table is small enough.
+     */
+    private void buildTable() {
+        table = null;
+        if (!cacheEnabled || neuronCount == 0
+                || !DistanceTable.fits(width, height, false)) {
+            return;
+        }
+
+        DistanceTable distances = new DistanceTable(width, height, false);
+        for (int dr = -height; dr <= height; dr++) {
+            for (int dc = 1 - width; dc < width; dc++) {
+                distances.set(0, dr, dc, offsetDistance(dr, dc));
+            }
+        }
+        distances.classify();
+        table = distances;
     }
 
     @Override
@@ -28,17 +60,60 @@ public class Moore implements GridType {
             throw new SOMError("Invalid neuron index: " + neuron1);
         }
 
-        int row0 = neuron0 / width;
-        int col0 = neuron0 % width;
-        int row1 = neuron1 / width;
-        int col1 = neuron1 % width;
+        if (table != null) {
+            return table.between(neuron0, neuron1);
+        }
+
+        return offsetDistance((neuron1 / width) - (neuron0 / width),
+                (neuron1 % width) - (neuron0 % width));
+    }
 
-        int dr = Math.abs(row1 - row0);
-        int dc = Math.abs(col1 - col0);
+    private static double offsetDistance(int dr, int dc) {
+        dr = Math.abs(dr);
+        dc = Math.abs(dc);
 
         return (dr > dc) ? dr : dc;
     }
 
+    /**
+     * The Moore neighborhood within a radius is a square, so every neuron in
+     * it is visited without testing distances.
+     */
+    @Override
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances) {
+        return neighborsWithin(neuron, radius, neurons, distances, null);
+    }
+
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances, int[] classes) {
+        if (neuron < 0 || neuron >= neuronCount) {
+            throw new SOMError("Invalid neuron index: " + neuron);
+        }
+
+        int row0 = neuron / width;
+        int col0 = neuron % width;
+        int reach = Neighbors.reach(radius, Math.max(width, height));
+        int count = 0;
+        for (int row = Math.max(0, row0 - reach);
+             row <= Math.min(height - 1, row0 + reach); row++) {
+            int dr = Math.abs(row - row0);
+            for (int col = Math.max(0, col0 - reach);
+                 col <= Math.min(width - 1, col0 + reach); col++) {
+                int dc = Math.abs(col - col0);
+                count = Neighbors.add(count, row * width + col,
+                        (dr > dc) ? dr : dc,
+                        Neighbors.classOf(table, 0, row - row0, col - col0,
+                                classes), neurons, distances, classes);
+            }
+        }
+        return count;
+    }
+
+    public double[] getDistanceClasses() {
+        return (table != null) ? table.distances() : null;
+    }
+
     @Override
     public String toString() {
         return "Moore";
@@ -0,0 +1,73 @@
+package cs437.som.topology;
+
+/**
+ * Helpers shared by the grid types' neighborhood enumerations.
+ */
+final class Neighbors {
+    private Neighbors() {
+    }
+
+    /**
+     * Find the largest row or column offset a neuron closer than a radius
+     * can have.  Every grid type's distance is at least as large as the
+     * row and column offsets it covers, and the integer offsets closer than
+     * the radius are at most {@code ceil(radius) - 1}.
+     *
+     * @param radius The neighborhood radius.
+     * @param limit The largest offset worth considering (the larger grid
+     * dimension), which keeps large radii from overflowing.
+     * @return The largest offset to visit, or 0 if only the center, which is
+     * always included, need be visited.
+     */
+    static int reach(double radius, int limit) {
+        if (!(radius > 0.0)) {
+            return 0;
+        }
+        return (int) Math.min(Math.ceil(radius) - 1.0, limit);
+    }
+
+    /**
+     * Look up a neuron's distance class, if it is wanted and the grid has a
+     * distance table.
+     *
+     * @param table The grid's distance table, or {@code null}.
+     * @param parity The parity of the center neuron's column.
+     * @param dr The row offset of the neuron from the center.
+     * @param dc The column offset of the neuron from the center.
+     * @param classes The array of distance classes found, or {@code null}.
+     * @return The neuron's distance class, or -1.
+     */
+    static int classOf(DistanceTable table, int parity, int dr, int dc,
+                       int[] classes) {
+        if (classes == null || table == null) {
+            return -1;
+        }
+        return table.classOf(parity, dr, dc);
+    }
+
+    /**
+     * Store a neuron, its distance and its distance class, if there is room.
+     *
+     * @param count The number of neurons found so far.
+     * @param neuron The neuron to store.
+     * @param distance The neuron's grid distance.
+     * @param distanceClass The neuron's distance class, or -1 if the grid
+     * does not number its distances.
+     * @param neurons The array of neurons found.
+     * @param distances The array of distances found.
+     * @param classes The array of distance classes found, or {@code null}.
+     * @return The new number of neurons found.
+     */
+    static int add(int count, int neuron, double distance, int distanceClass,
+                   int[] neurons, double[] distances, int[] classes) {
+        if (count < neurons.length && count < distances.length) {
+            neurons[count] = neuron;
+            distances[count] = distance;
+            if (classes != null && distanceClass >= 0
+                    && count < classes.length) {
+                classes[count] = distanceClass;
+            }
+        }
+        return count + 1;
+    }
+}
@@ -25,11 +25,51 @@ import cs437.som.SOMError;
 public class OffsetHexagonalGrid implements GridType {
     private int neuronCount = 0;
     private int width = 0;
+    private int height = 0;
+    private boolean cacheEnabled = true;
+    private DistanceTable table = null;
 
     @Override
     public void setNeuronCount(Dimension dimension) {
         width = dimension.x;
-        neuronCount = width * dimension.y;
+        height = dimension.y;
+        neuronCount = width * height;
+        buildTable();
+    }
+
+    @Override
+    public void setDistanceCacheEnabled(boolean enabled) {
+        cacheEnabled = enabled;
+        buildTable();
+    }
+
+    /**
+     * Fill the distance table if the cache is enabled and the table is
+     * small enough.  Every other column is offset, so the distance for a
+     * given row and column offset depends on whether the first neuron's
+     * column is odd or even, and the table is keyed by that parity too.
+     */
+    private void buildTable() {
+        table = null;
+        if (!cacheEnabled || neuronCount == 0
+                || !DistanceTable.fits(width, height, true)) {
+            return;
+        }
+
+        DistanceTable distances = new DistanceTable(width, height, true);
+        for (int parity = 0; parity < 2; parity++) {
+            // Any column of the right parity gives the same distances; this
+            // one keeps every column offset non-negative.
+            int col0 = 2 * width + parity;
+            for (int dr = -height; dr <= height; dr++) {
+                for (int dc = 1 - width; dc < width; dc++) {
+                    distances.set(parity, dr, dc,
+                            computeDistance(0, col0, dr, col0 + dc));
+                }
+            }
+        }
+        distances.classify();
+        table = distances;
     }
 
     @Override
@@ -42,12 +82,70 @@ public class OffsetHexagonalGrid implements GridType {
             throw new SOMError("Invalid neuron index: " + neuron1);
         }
 
+        if (table != null) {
+            return table.between(neuron0, neuron1);
+        }
+
+        return distance(neuron0 / width, neuron0 % width,
+                neuron1 / width, neuron1 % width);
+    }
+
+    /**
+     * A neuron within reach R is at most R columns away, and, since every
+     * other column is offset by half a cell, at most R + (R + 1) / 2 rows
+     * away.  That box is visited and each neuron's distance tested.
+     */
+    @Override
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances) {
+        return neighborsWithin(neuron, radius, neurons, distances, null);
+    }
+
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances, int[] classes) {
+        if (neuron < 0 || neuron >= neuronCount) {
+            throw new SOMError("Invalid neuron index: " + neuron);
+        }
+
+        int row0 = neuron / width;
+        int col0 = neuron % width;
+        int reach = Neighbors.reach(radius, width + height);
+        int rowReach = reach + (reach + 1) / 2;
+        int count = 0;
+        for (int row = Math.max(0, row0 - rowReach);
+             row <= Math.min(height - 1, row0 + rowReach); row++) {
+            for (int col = Math.max(0, col0 - reach);
+                 col <= Math.min(width - 1, col0 + reach); col++) {
+                double distance = distance(row0, col0, row, col);
+                if (distance < radius || row * width + col == neuron) {
+                    count = Neighbors.add(count, row * width + col, distance,
+                            Neighbors.classOf(table, col0, row - row0,
+                                    col - col0, classes),
+                            neurons, distances, classes);
+                }
+            }
+        }
+        return count;
+    }
+
+    public double[] getDistanceClasses() {
+        return (table != null) ? table.distances() : null;
+    }
+
+    private double distance(int row0, int col0, int row1, int col1) {
+        if (table != null) {
+            return table.get(col0, row1 - row0, col1 - col0);
+        }
+        return computeDistance(row0, col0, row1, col1);
+    }
+
+    private static int computeDistance(int row0, int col0, int row1, int col1) {
         // I had a lot of problems here until I stumbled across
         // http://www.gamedev.net/topic/610847-measuring-distance-on-hex-grid/
-        int x0 = neuron0 % width;
-        int x1 = neuron1 % width;
-        int y0 = (neuron0 / width) - (x0 / 2);
-        int y1 = (neuron1 / width) - (x1 / 2);
+        int x0 = col0;
+        int x1 = col1;
+        int y0 = row0 - (x0 / 2);
+        int y1 = row1 - (x1 / 2);
 
         int dx = x1 - x0;
         int dy = y1 - y0;
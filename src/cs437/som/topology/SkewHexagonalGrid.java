@@ -30,10 +30,41 @@ import cs437.som.SOMError;
 public class SkewHexagonalGrid implements GridType {
     private int neuronCount = 0;
     private int width = 0;
+    private int height = 0;
+    private boolean cacheEnabled = true;
+    private DistanceTable table = null;
 
     public void setNeuronCount(Dimension dimension) {
         width = dimension.x;
-        neuronCount = width * dimension.y;
+        height = dimension.y;
+        neuronCount = width * height;
+        buildTable();
+    }
+
+    public void setDistanceCacheEnabled(boolean enabled) {
+        cacheEnabled = enabled;
+        buildTable();
+    }
+
+    /**
+     * Fill the distance table, keyed by row and column offset, if the cache
+     * is enabled and the table is small enough.
+     */
+    private void buildTable() {
+        table = null;
+        if (!cacheEnabled || neuronCount == 0
+                || !DistanceTable.fits(width, height, false)) {
+            return;
+        }
+
+        DistanceTable distances = new DistanceTable(width, height, false);
+        for (int dr = -height; dr <= height; dr++) {
+            for (int dc = 1 - width; dc < width; dc++) {
+                distances.set(0, dr, dc, offsetDistance(dr, dc));
+            }
+        }
+        distances.classify();
+        table = distances;
     }
 
     public double gridDistance(int neuron0, int neuron1) {
@@ -45,14 +76,65 @@ public class SkewHexagonalGrid implements GridType {
             throw new SOMError("Invalid neuron index: " + neuron1);
         }
 
-        int row0 = neuron0 / width;
-        int col0 = neuron0 % width;
-        int row1 = neuron1 / width;
-        int col1 = neuron1 % width;
+        if (table != null) {
+            return table.between(neuron0, neuron1);
+        }
 
-        int dx = row1 - row0;
-        int dy = col1 - col0;
+        return distance(neuron0 / width, neuron0 % width,
+                neuron1 / width, neuron1 % width);
+    }
+
+    /**
+     * Moving a row down and a column right at once costs 2 on this grid,
+     * while moving a row down and a column left costs 1, so each row's span of
+     * columns is skewed: for a row offset dr, the columns within reach R run
+     * from -R to R - dr below the center and from -R - dr to R above it.
+     */
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances) {
+        return neighborsWithin(neuron, radius, neurons, distances, null);
+    }
+
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances, int[] classes) {
+        if (neuron < 0 || neuron >= neuronCount) {
+            throw new SOMError("Invalid neuron index: " + neuron);
+        }
+
+        int row0 = neuron / width;
+        int col0 = neuron % width;
+        int reach = Neighbors.reach(radius, width + height);
+        int count = 0;
+        for (int row = Math.max(0, row0 - reach);
+             row <= Math.min(height - 1, row0 + reach); row++) {
+            int dr = row - row0;
+            int first = (dr >= 0) ? -reach : -reach - dr;
+            int last = (dr >= 0) ? reach - dr : reach;
+            for (int col = Math.max(0, col0 + first);
+                 col <= Math.min(width - 1, col0 + last); col++) {
+                double distance = distance(row0, col0, row, col);
+                if (distance < radius || row * width + col == neuron) {
+                    count = Neighbors.add(count, row * width + col, distance,
+                            Neighbors.classOf(table, 0, dr, col - col0,
+                                    classes), neurons, distances, classes);
+                }
+            }
+        }
+        return count;
+    }
+
+    public double[] getDistanceClasses() {
+        return (table != null) ? table.distances() : null;
+    }
+
+    private double distance(int row0, int col0, int row1, int col1) {
+        int dr = row1 - row0;
+        int dc = col1 - col0;
+
+        return (table != null) ? table.get(0, dr, dc) : offsetDistance(dr, dc);
+    }
 
+    private static int offsetDistance(int dx, int dy) {
         int distance;
         if (sign(dx) == sign(dy)) {
             distance = Math.abs(dx + dy);
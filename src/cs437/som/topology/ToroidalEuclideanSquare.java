@@ -25,12 +25,44 @@ public class ToroidalEuclideanSquare implements GridType {
     private int neuronCount = 0;
     private int width = 0;
     private int height = 0;
+    private boolean cacheEnabled = true;
+    private DistanceTable table = null;
 
     @Override
     public void setNeuronCount(Dimension dimension) {
         width = dimension.x;
         height = dimension.y;
         neuronCount = width * dimension.y;
+        buildTable();
+    }
+
+    @Override
+    public void setDistanceCacheEnabled(boolean enabled) {
+        cacheEnabled = enabled;
+        buildTable();
+    }
+
+    /**
+     * Fill the distance table, keyed by row and column offset, if the cache
+     * is enabled and the table is small enough.  The offsets are wrapped
+     * around the grid as the table is filled.
+     */
+    private void buildTable() {
+        table = null;
+        if (!cacheEnabled || neuronCount == 0
+                || !DistanceTable.fits(width, height, false)) {
+            return;
+        }
+
+        DistanceTable distances = new DistanceTable(width, height, false);
+        for (int dy = -height; dy <= height; dy++) {
+            for (int dx = 1 - width; dx < width; dx++) {
+                distances.set(0, dy, dx,
+                        wrappedDistance(Math.abs(dx), Math.abs(dy)));
+            }
+        }
+        distances.classify();
+        table = distances;
     }
 
     @Override
@@ -43,16 +75,78 @@ public class ToroidalEuclideanSquare implements GridType {
             throw new SOMError("Invalid neuron index: " + neuron1);
         }
 
-        int x0 = neuron0 % width;
-        int x1 = neuron1 % width;
-        int y0 = neuron0 / width;
-        int y1 = neuron1 / width;
+        if (table != null) {
+            return table.between(neuron0, neuron1);
+        }
+
+        return distance(neuron0 % width, neuron0 / width,
+                neuron1 % width, neuron1 / width);
+    }
+
+    /**
+     * The neighborhood wraps around the edges of the grid; each column and
+     * row within reach is visited once, even when the reach is more than half
+     * the grid.
+     */
+    @Override
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances) {
+        return neighborsWithin(neuron, radius, neurons, distances, null);
+    }
+
+    public int neighborsWithin(int neuron, double radius, int[] neurons,
+                               double[] distances, int[] classes) {
+        if (neuron < 0 || neuron >= neuronCount) {
+            throw new SOMError("Invalid neuron index: " + neuron);
+        }
+
+        int x0 = neuron % width;
+        int y0 = neuron / width;
+        int reach = Neighbors.reach(radius, Math.max(width, height));
+        int columns = Math.min(width, 2 * reach + 1);
+        int rows = Math.min(height, 2 * reach + 1);
+        int count = 0;
+        for (int j = 0; j < rows; j++) {
+            int y = wrap(y0 - reach + j, height);
+            for (int i = 0; i < columns; i++) {
+                int x = wrap(x0 - reach + i, width);
+                double distance = distance(x0, y0, x, y);
+                if (distance < radius || y * width + x == neuron) {
+                    count = Neighbors.add(count, y * width + x, distance,
+                            Neighbors.classOf(table, 0, y - y0, x - x0,
+                                    classes), neurons, distances, classes);
+                }
+            }
+        }
+        return count;
+    }
+
+    public double[] getDistanceClasses() {
+        return (table != null) ? table.distances() : null;
+    }
+
+    private static int wrap(int coordinate, int size) {
+        int wrapped = coordinate % size;
+        return (wrapped < 0) ? wrapped + size : wrapped;
+    }
+
+    private double distance(int x0, int y0, int x1, int y1) {
+        if (table != null) {
+            return table.get(0, y1 - y0, x1 - x0);
+        }
+        return wrappedDistance(Math.abs(x1 - x0), Math.abs(y1 - y0));
+    }
 
-        double dx = Math.abs(x1 - x0);
+    /*
+     * Offsets of d and size - d are the same distance apart, so either may be
+     * given here.
+     */
+    private double wrappedDistance(int offsetX, int offsetY) {
+        double dx = offsetX;
         if (dx > width / 2) {
             dx = width - dx;
         }
-        double dy = Math.abs(y1 - y0);
+        double dy = offsetY;
         if (dy > height / 2) {
             dy = height - dy;
         }
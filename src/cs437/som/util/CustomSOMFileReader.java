@@ -4,70 +4,63 @@ import cs437.som.*;
 import cs437.som.neighborhood.CompoundNeighborhood;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Provides for reading in CustomizableSOMs from input streams.
+ * Provides for reading in CustomizableSOMs from input streams.  Strategies are
+ * created by name through a {@link StrategyRegistry}.
  */
 public class CustomSOMFileReader extends SOMFileReader {
-    private static final Pattern distanceMetricRegEx = Pattern.compile(
-            "distance\\s*(?:metric)?\\s*:\\s*(\\w*)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern learningRateRegEx = Pattern.compile(
-            "learning\\s*(?:rate)?\\s*(?:function)?\\s*:\\s*(\\w*)\\s*(.*)",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern neighborhoodRegEx = Pattern.compile(
-            "neighborhood\\s*(?:width)?\\s*(?:function)?\\s*:\\s*(?:(\\w*)\\s*(.*)|(CompoundNeighborhood)\\s*(begin))",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern gridTypeRegEx = Pattern.compile(
-            "(?:grid)?\\s*type\\s*:\\s*(\\w*)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern iterationsRegEx = Pattern.compile(
-            "iterations\\s*:\\s*(\\d*)\\s*of\\s*(\\d*)",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern membershipRegEx = Pattern.compile(
-            "membership\\s*:\\s*(\\w*)\\s*(.*)?", Pattern.CASE_INSENSITIVE);
-
-    private int time = 0;
+    private final StrategyRegistry registry;
+
     private DistanceMetric distanceMetric = null;
     private LearningRateFunction learningRate = null;
     private NeighborhoodWidthFunction neighborhoodWidth = null;
     private GridType gridType = null;
     private NeighborhoodMembershipFunction membership = null;
 
+    /**
+     * Create a reader that finds strategies in the default registry.
+     */
+    public CustomSOMFileReader() {
+        this(StrategyRegistry.getDefault());
+    }
+
+    /**
+     * Create a reader that finds strategies in a given registry.
+     *
+     * @param registry The registry to create strategies from.
+     */
+    public CustomSOMFileReader(StrategyRegistry registry) {
+        this.registry = registry;
+    }
+
     @Override
     protected void unmatchedLine(String line) throws IOException {
-        if (!matchIterations(line)
-                && !matchDistanceMetric(line)
-                && !matchGridType(line)
-                && !matchLearningRate(line)
-                && !matchMemgership(line)) {
-            matchNeighborhood(line);
+        String key = TextMapFormat.key(line);
+        if (key == null) {
+            return;
         }
-    }
 
-    @Override
-    protected boolean matchIterations(String line) {
-        Matcher iterationsMatch = iterationsRegEx.matcher(line);
-        if (iterationsMatch.matches()) {
-            time = Integer.parseInt(iterationsMatch.group(1));
-            iterations = Integer.parseInt(iterationsMatch.group(2));
-            return true;
+        String value = TextMapFormat.value(line);
+        if (!matchDistanceMetric(key, value)
+                && !matchGridType(key, value)
+                && !matchLearningRate(key, value)
+                && !matchMembership(key, value)) {
+            matchNeighborhood(key, value);
         }
-        return false;
     }
 
     /**
      * Match a distance metric line.
      *
-     * @param line The input's line to attempt to match and extract from.
+     * @param key The line's key.
+     * @param value The line's value.
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
-    private boolean matchDistanceMetric(String line) {
-        Matcher distanceMatch = distanceMetricRegEx.matcher(line);
-        if (distanceMatch.matches()) {
-            distanceMetric = (DistanceMetric)
-                    Reflector.instantiateClass("cs437.som.distancemetrics",
-                            distanceMatch.group(1));
+    private boolean matchDistanceMetric(String key, String value) {
+        if ("distance".equals(key) || "distancemetric".equals(key)) {
+            distanceMetric = registry.create(DistanceMetric.class,
+                    TextMapFormat.firstWord(value), "");
             return true;
         }
         return false;
@@ -76,16 +69,17 @@ public class CustomSOMFileReader extends SOMFileReader {
     /**
      * Match a learning rate function line.
      *
-     * @param line The input's line to attempt to match and extract from.
+     * @param key The line's key.
+     * @param value The line's value.
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
-    private boolean matchLearningRate(String line) {
-        Matcher learningRateMatch = learningRateRegEx.matcher(line);
-        if (learningRateMatch.matches()) {
-            learningRate = (LearningRateFunction)
-                    Reflector.instantiateFromString("cs437.som.learningrate",
-                            learningRateMatch.group(1),
-                            learningRateMatch.group(2));
+    private boolean matchLearningRate(String key, String value) {
+        if ("learning".equals(key) || "learningrate".equals(key)
+                || "learningfunction".equals(key)
+                || "learningratefunction".equals(key)) {
+            learningRate = registry.create(LearningRateFunction.class,
+                    TextMapFormat.firstWord(value),
+                    TextMapFormat.afterFirstWord(value));
             return true;
         }
         return false;
@@ -94,46 +88,43 @@ public class CustomSOMFileReader extends SOMFileReader {
     /**
      * Match a neighborhood membership function line.
      *
-     * @param line The input's line to attempt to match and extract from.
+     * @param key The line's key.
+     * @param value The line's value.
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
-    private boolean matchMemgership(String line) {
-        Matcher membershipMatch = membershipRegEx.matcher(line);
-        if (membershipMatch.matches()) {
-            if (membershipMatch.groupCount() == 2) {
-                membership = (NeighborhoodMembershipFunction)
-                        Reflector.instantiateFromDoubleString("cs437.som.membership",
-                                membershipMatch.group(1), membershipMatch.group(2));
-            } else {
-                membership = (NeighborhoodMembershipFunction)
-                        Reflector.instantiateClass("cs437.som.membership",
-                                membershipMatch.group(1));
-            }
-            return true;
+    private boolean matchMembership(String key, String value) {
+        if (!"membership".equals(key)) {
+            return false;
         }
 
-        return false;
+        membership = registry.create(NeighborhoodMembershipFunction.class,
+                TextMapFormat.firstWord(value),
+                TextMapFormat.afterFirstWord(value));
+        return true;
     }
 
-
     /**
-     * Match a neighborhood function line.
+     * Match a neighborhood function line.  A compound neighborhood continues
+     * over the following lines, up to its "end" line.
      *
-     * @param line The input's line to attempt to match and extract from.
+     * @param key The line's key.
+     * @param value The line's value.
      * @return {@code true} if the line is matched, {@code false} otherwise.
      * @throws java.io.IOException if I/O fails.
      */
-    private boolean matchNeighborhood(String line) throws IOException {
-        Matcher neighborhoodMatch = neighborhoodRegEx.matcher(line);
-        if (neighborhoodMatch.matches()) {
-            if (neighborhoodMatch.group(1)
-                    .compareToIgnoreCase("CompoundNeighborhood") == 0) {
-                neighborhoodWidth = CompoundNeighborhood.parse(inputReader);
+    private boolean matchNeighborhood(String key, String value)
+            throws IOException {
+        if ("neighborhood".equals(key) || "neighborhoodwidth".equals(key)
+                || "neighborhoodfunction".equals(key)
+                || "neighborhoodwidthfunction".equals(key)) {
+            String name = TextMapFormat.firstWord(value);
+            if (name.compareToIgnoreCase("CompoundNeighborhood") == 0) {
+                neighborhoodWidth = CompoundNeighborhood.parse(inputReader,
+                        registry);
             } else {
-                neighborhoodWidth = (NeighborhoodWidthFunction)
-                        Reflector.instantiateFromString("cs437.som.neighborhood",
-                                neighborhoodMatch.group(1),
-                                neighborhoodMatch.group(2));
+                neighborhoodWidth = registry.create(
+                        NeighborhoodWidthFunction.class, name,
+                        TextMapFormat.afterFirstWord(value));
             }
             return true;
         }
@@ -143,29 +134,19 @@ public class CustomSOMFileReader extends SOMFileReader {
     /**
      * Match a grid type line.
      *
-     * @param line The input's line to attempt to match and extract from.
+     * @param key The line's key.
+     * @param value The line's value.
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
-    private boolean matchGridType(String line) {
-        Matcher gridTypeMatch = gridTypeRegEx.matcher(line);
-        if (gridTypeMatch.matches()) {
-            gridType = (GridType)
-                    Reflector.instantiateClass("cs437.som.topology",
-                            gridTypeMatch.group(1));
+    private boolean matchGridType(String key, String value) {
+        if ("type".equals(key) || "gridtype".equals(key)) {
+            gridType = registry.create(GridType.class,
+                    TextMapFormat.firstWord(value), "");
             return true;
         }
         return false;
     }
 
-    /**
-     * Return the parsed time count.
-     *
-     * @return The time count from the input stream.
-     */
-    public int getTime() {
-        return time;
-    }
-
     /**
      * Return the parsed distance metric.
      *
@@ -2,52 +2,45 @@ package cs437.som.util;
 
 import cs437.som.SOMError;
 import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.network.BinaryMapFile;
 
 import java.io.*;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.regex.Pattern;
 
 /**
- * Reads a self-organizing map from a file.
+ * Reads a self-organizing map from a file, in either the text format or the
+ * binary format of {@link BinaryMapFile}.
  */
 public class FileReader {
-    private static final Pattern COLON_SPLIT = Pattern.compile(":");
+    private static final int BUFFER_CHARS = 1 << 16;
     private TrainableSelfOrganizingMap tsom = null;
 
     /**
      * Begin reading a SOM from a file.
      *
      * This method reads the first line, which must be a map type specifier.
-     * That type specifier is used to create an object of that map type
-     * through reflection.  The remainder of the input processing is then
-     * delegated to that SOM.
+     * That type specifier is used to find the map type in the default
+     * {@link StrategyRegistry}, which reads the remainder of the input and
+     * builds the map.
      *
      * @param input The input file.
      * @throws IOException if an I/O error occurs.
      */
     private FileReader(File input) throws IOException {
         BufferedReader isr = new BufferedReader(
-                new InputStreamReader(new FileInputStream(input)));
-        String[] kv = COLON_SPLIT.split(isr.readLine());
-        if (kv.length != 2) {
-            throw new SOMError(
-                    "Input file is malformed: first line must be a map type statement.");
-        }
-
-        String className = "cs437.som.network." + kv[1].trim();
+                new InputStreamReader(new FileInputStream(input)), BUFFER_CHARS);
         try {
-            Class<?> mapType = Class.forName(className);
-            Method readMethod = mapType.getMethod("read", BufferedReader.class);
-            tsom = (TrainableSelfOrganizingMap) readMethod.invoke(mapType, isr);
-        } catch (ClassNotFoundException e) {
-            throw new SOMError("Map type " + className + " cannot be found.");
-        } catch (NoSuchMethodException e) {
-            throw new SOMError("Map type " + className + " cannot be loaded from a file.");
-        } catch (InvocationTargetException e) {
-            throw new SOMError(e.getCause().getMessage());
-        } catch (IllegalAccessException e) {
-            throw new SOMError("Internal error while parsing: " + e.getMessage());
+            String line = isr.readLine();
+            if (line == null || line.indexOf(':') < 0) {
+                throw new SOMError(
+                        "Input file is malformed: first line must be a map type statement.");
+            }
+            MapType mapType = StrategyRegistry.getDefault().getMapType(
+                    TextMapFormat.value(line));
+            SOMFileReader sfr = mapType.createReader();
+            sfr.parse(isr);
+            tsom = mapType.create(sfr, sfr.getWeights());
+        } finally {
+            isr.close();
         }
     }
 
@@ -60,6 +53,9 @@ public class FileReader {
      */
     public static TrainableSelfOrganizingMap read(File file)
             throws IOException {
+        if (BinaryMapFile.isBinary(file)) {
+            return BinaryMapFile.read(file);
+        }
         FileReader fileReader = new FileReader(file);
         return fileReader.tsom;
     }
@@ -0,0 +1,35 @@
+package cs437.som.util;
+
+import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.network.WeightStore;
+
+/**
+ * Builds one type of self-organizing map from a stored description.
+ *
+ * Both the text and the binary readers start by parsing the lines describing
+ * a map with the reader the map type provides.  The text reader then parses
+ * the weight matrix, while the binary reader maps the weights straight from
+ * the file; either way the map is built from the parsed description and the
+ * weights by {@link #create(SOMFileReader, WeightStore)}.  Map types are
+ * found by the name on a file's "Map type" line through a
+ * {@link StrategyRegistry}.
+ */
+public interface MapType {
+    /**
+     * Create a reader for the lines describing a map of this type.
+     *
+     * @return A new reader.
+     */
+    SOMFileReader createReader();
+
+    /**
+     * Build a map from its parsed description and weights.
+     *
+     * @param description The reader returned by {@link #createReader()},
+     * after it has parsed a map's description.
+     * @param weights The map's weights.
+     * @return The map.
+     */
+    TrainableSelfOrganizingMap create(SOMFileReader description,
+                                      WeightStore weights);
+}
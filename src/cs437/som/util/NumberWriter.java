@@ -0,0 +1,113 @@
+package cs437.som.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes numbers and text to a writer through a buffer of its own.
+ *
+ * Numbers are appended to the buffer directly, in the same form as
+ * {@link Double#toString(double)}, so writing a weight matrix creates no
+ * string per number or per line.  The buffer is handed to the underlying
+ * writer in large blocks.  Call {@link #flush()} when done; it does not
+ * flush the underlying writer.
+ */
+public final class NumberWriter {
+    private static final int BLOCK_CHARS = 1 << 15;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final StringBuilder pending = new StringBuilder(BLOCK_CHARS * 2);
+    private char[] block = new char[BLOCK_CHARS * 2];
+
+    /**
+     * Create a writer that writes through to another.
+     *
+     * @param out The writer to write to.
+     */
+    public NumberWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Write a number as {@link Double#toString(double)} would.
+     *
+     * @param value The number.
+     * @return This writer.
+     * @throws IOException if writing to the underlying writer fails.
+     */
+    public NumberWriter append(double value) throws IOException {
+        pending.append(value);
+        return spill();
+    }
+
+    /**
+     * Write an integer.
+     *
+     * @param value The integer.
+     * @return This writer.
+     * @throws IOException if writing to the underlying writer fails.
+     */
+    public NumberWriter append(long value) throws IOException {
+        pending.append(value);
+        return spill();
+    }
+
+    /**
+     * Write a character.
+     *
+     * @param c The character.
+     * @return This writer.
+     * @throws IOException if writing to the underlying writer fails.
+     */
+    public NumberWriter append(char c) throws IOException {
+        pending.append(c);
+        return spill();
+    }
+
+    /**
+     * Write some text.
+     *
+     * @param text The text.
+     * @return This writer.
+     * @throws IOException if writing to the underlying writer fails.
+     */
+    public NumberWriter append(String text) throws IOException {
+        pending.append(text);
+        return spill();
+    }
+
+    /**
+     * End the current line with the platform's line separator, as
+     * {@code %n} does.
+     *
+     * @return This writer.
+     * @throws IOException if writing to the underlying writer fails.
+     */
+    public NumberWriter newLine() throws IOException {
+        pending.append(LINE_SEPARATOR);
+        return spill();
+    }
+
+    /**
+     * Hand everything buffered so far to the underlying writer.
+     *
+     * @throws IOException if writing to the underlying writer fails.
+     */
+    public void flush() throws IOException {
+        int length = pending.length();
+        if (length > block.length) {
+            block = new char[length];
+        }
+        pending.getChars(0, length, block, 0);
+        out.write(block, 0, length);
+        pending.setLength(0);
+    }
+
+    private NumberWriter spill() throws IOException {
+        if (pending.length() >= BLOCK_CHARS) {
+            flush();
+        }
+        return this;
+    }
+}
@@ -0,0 +1,152 @@
+package cs437.som.util;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast, seedable and splittable source of random numbers.
+ *
+ * The generator is Steele, Lea and Flood's SplitMix64: the state advances by
+ * a fixed odd constant on every call, and each output is a mix of the new
+ * state.  Generating a number therefore costs a handful of multiplies and
+ * shifts, never blocks waiting for entropy, and never allocates.  The whole
+ * state is one {@code long}, so it can be saved with a map and restored to
+ * replay a training run exactly.
+ *
+ * Sources are not thread safe.  Threads that need random numbers of their own
+ * should each take a {@link #split()} of a shared source, which gives an
+ * independent stream without any locking.
+ *
+ * The class extends {@link Random} so that it can be passed anywhere a
+ * {@code Random} is expected; the inherited methods all draw from the
+ * SplitMix64 stream.
+ */
+public final class RandomSource extends Random {
+    private static final long serialVersionUID = 0L;
+
+    /** The golden ratio scaled to 64 bits; the step between states. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** Varies the seeds of sources created within the same nanosecond. */
+    private static final AtomicLong seedUniquifier =
+            new AtomicLong(0x5DEECE66DL);
+
+    private long seed;
+    private long state;
+
+    /**
+     * Create a source with a seed that differs from run to run.
+     */
+    public RandomSource() {
+        this(mix(System.nanoTime() ^ seedUniquifier.addAndGet(GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Create a source with a given seed.  Sources with the same seed produce
+     * the same numbers.
+     *
+     * @param seed The seed.
+     */
+    public RandomSource(long seed) {
+        super(seed);
+        this.seed = seed;
+        state = seed;
+    }
+
+    /**
+     * Restart this source from a new seed.
+     *
+     * @param seed The seed.
+     */
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+        state = seed;
+    }
+
+    /**
+     * @return The seed this source was created or last reseeded with.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get this source's current state.  A source set to this state will
+     * produce the same numbers from then on as this one.
+     *
+     * @return The current state.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Move this source to a state previously taken from
+     * {@link #getState()}.
+     *
+     * @param state The state to continue from.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Create a new source whose numbers are independent of this one's.  The
+     * new source's seed is drawn from this source, so splits of sources with
+     * the same seed are themselves the same.
+     *
+     * @return A new source.
+     */
+    public RandomSource split() {
+        return new RandomSource(nextLong());
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Generate a normally distributed number by the polar method.  Unlike
+     * {@link Random#nextGaussian()}, the second number of each pair is
+     * discarded rather than kept for the next call, so that the state alone
+     * describes the source.
+     *
+     * @return A number drawn from the standard normal distribution.
+     */
+    @Override
+    public double nextGaussian() {
+        double v1;
+        double v2;
+        double s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        return v1 * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -79,7 +79,7 @@ public class Reflector {
         Object object;
         try {
             Class<?> clsObj = Class.forName(className);
-            Constructor<?> ctor = clsObj.getConstructor(Double.class);
+            Constructor<?> ctor = clsObj.getConstructor(double.class);
             double argument = Double.parseDouble(doubleStr);
             object = ctor.newInstance(argument);
         } catch (ClassNotFoundException e) {
@@ -2,31 +2,32 @@ package cs437.som.util;
 
 import cs437.som.Dimension;
 import cs437.som.SOMError;
+import cs437.som.network.WeightPrecision;
+import cs437.som.network.WeightStore;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Provides for reading in self-organizing maps from files.
+ *
+ * Lines are recognized by their keys, without regard to case or whitespace,
+ * and values are parsed by hand with {@link TextMapFormat}.  The weight
+ * matrix is read line by line straight into the map's weight store, so a map
+ * is read in one pass and the reader never asks the stream whether more input
+ * is {@link BufferedReader#ready() ready}.
  */
 public class SOMFileReader {
-    private static final Pattern dimensionRegEx = Pattern.compile(
-            "(?:grid)?\\s*dimensions\\s*:\\s*(\\d+)\\s*,\\s*(\\d+)",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern inputVectorSizeRegEx = Pattern.compile(
-            "(?:input)?\\s*length\\s*:\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern iterationsRegEx = Pattern.compile(
-            "iterations\\s*:\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern weightRegEx = Pattern.compile(
-            "weights\\s*(?::)", Pattern.CASE_INSENSITIVE);
-
     private Dimension dimension = null;
     private int inputVectorSize = 0;
+    private WeightPrecision precision = WeightPrecision.DOUBLE;
     protected int iterations = 0;
+    protected int time = 0;
+    private Long randomSeed = null;
+    private Long randomState = null;
 
-    private double[][] weights = null;
+    private WeightStore weights = null;
+    private boolean matrixFollows = false;
     protected BufferedReader inputReader = null;
 
     /**
@@ -34,20 +35,40 @@ public class SOMFileReader {
      *
      * @param input The input stream.
      * @throws IOException When an I/O error occurs.
+     * @throws SOMError if the description is incomplete, or the weight
+     * matrix is missing or has fewer rows than the map has neurons.
      */
     public void parse(BufferedReader input) throws IOException {
+        parseHeader(input);
+        if (!matrixFollows) {
+            throw new SOMError("A map's configuration must be followed by "
+                    + "its weight matrix.");
+        }
+        readWeightMatrix(input);
+    }
+
+    /**
+     * Parse the description of a self-organizing map, up to its weight
+     * matrix or the end of the stream, whichever comes first.  Binary map
+     * files store their description this way, ahead of the raw weights.
+     *
+     * @param input The input stream.
+     * @throws IOException When an I/O error occurs.
+     */
+    public void parseHeader(BufferedReader input) throws IOException {
         this.inputReader = input;
         String line = input.readLine();
-        Matcher match = weightRegEx.matcher(line);
-        while (!match.matches() && input.ready()) {
+        matrixFollows = false;
+        while (line != null && !(matrixFollows = isWeightsLine(line))) {
             if (!matchDimension(line)
                     && !matchInputVectorSize(line)
-                    && !matchIterations(line)) {
+                    && !matchPrecision(line)
+                    && !matchIterations(line)
+                    && !matchRandomSource(line)) {
                 unmatchedLine(line);
             }
 
             line = input.readLine();
-            match = weightRegEx.matcher(line);
         }
 
         if (dimension == null || inputVectorSize < 1) {
@@ -56,8 +77,6 @@ public class SOMFileReader {
                             + "a map's configuration%nand they must appear before "
                             + "the weight matrix."));
         }
-
-        readWeightMatrix(input);
     }
 
     /**
@@ -72,15 +91,51 @@ public class SOMFileReader {
     }
 
     /**
-     * Match an iteration line.
+     * Match an iteration line, either "Iterations: N" giving the expected
+     * iteration count, or "Iterations: T of N" also giving the number of
+     * iterations trained so far.
      *
      * @param line The input's line to attempt to match and extract from.
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
     protected boolean matchIterations(String line) {
-        Matcher iterationsMatch = iterationsRegEx.matcher(line);
-        if (iterationsMatch.matches()) {
-            iterations = Integer.parseInt(iterationsMatch.group(1));
+        if (!"iterations".equals(TextMapFormat.key(line))) {
+            return false;
+        }
+
+        String value = TextMapFormat.value(line);
+        int end = 0;
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        int first = TextMapFormat.parseInt(value, 0, end);
+        String rest = value.substring(end).trim();
+        if (rest.length() == 0) {
+            iterations = first;
+        } else if (rest.regionMatches(true, 0, "of", 0, 2)) {
+            String total = rest.substring(2).trim();
+            time = first;
+            iterations = TextMapFormat.parseInt(total, 0, total.length());
+        } else {
+            throw new SOMError("Bad iteration count: " + line);
+        }
+        return true;
+    }
+
+    /**
+     * Match a random seed or random state line.
+     *
+     * @param line The input's line to attempt to match and extract from.
+     * @return {@code true} if the line is matched, {@code false} otherwise.
+     */
+    private boolean matchRandomSource(String line) {
+        String key = TextMapFormat.key(line);
+        if ("randomseed".equals(key)) {
+            randomSeed = TextMapFormat.parseLong(TextMapFormat.value(line));
+            return true;
+        }
+        if ("randomstate".equals(key)) {
+            randomState = TextMapFormat.parseLong(TextMapFormat.value(line));
             return true;
         }
         return false;
@@ -93,9 +148,24 @@ public class SOMFileReader {
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
     private boolean matchInputVectorSize(String line) {
-        Matcher inputMatch = inputVectorSizeRegEx.matcher(line);
-        if (inputMatch.matches()) {
-            inputVectorSize = Integer.parseInt(inputMatch.group(1));
+        String key = TextMapFormat.key(line);
+        if ("inputlength".equals(key) || "length".equals(key)) {
+            String value = TextMapFormat.value(line);
+            inputVectorSize = TextMapFormat.parseInt(value, 0, value.length());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Match a weight precision line.
+     *
+     * @param line The input's line to attempt to match and extract from.
+     * @return {@code true} if the line is matched, {@code false} otherwise.
+     */
+    private boolean matchPrecision(String line) {
+        if ("precision".equals(TextMapFormat.key(line))) {
+            precision = WeightPrecision.fromString(TextMapFormat.value(line));
             return true;
         }
         return false;
@@ -108,42 +178,90 @@ public class SOMFileReader {
      * @return {@code true} if the line is matched, {@code false} otherwise.
      */
     private boolean matchDimension(String line) {
-        Matcher dimMatch = dimensionRegEx.matcher(line);
-        if (dimMatch.matches()) {
-            dimension = new Dimension(Integer.parseInt(dimMatch.group(1)),
-                    Integer.parseInt(dimMatch.group(2)));
+        String key = TextMapFormat.key(line);
+        if ("griddimensions".equals(key) || "dimensions".equals(key)) {
+            String value = TextMapFormat.value(line);
+            int comma = value.indexOf(',');
+            if (comma < 0) {
+                throw new SOMError("Bad grid dimensions: " + line);
+            }
+            String x = value.substring(0, comma).trim();
+            String y = value.substring(comma + 1).trim();
+            dimension = new Dimension(TextMapFormat.parseInt(x, 0, x.length()),
+                    TextMapFormat.parseInt(y, 0, y.length()));
             return true;
         }
         return false;
     }
 
+    /**
+     * Check for the line that starts the weight matrix.
+     *
+     * @param line The input's line to check.
+     * @return {@code true} if the line is "Weights:".
+     */
+    private static boolean isWeightsLine(String line) {
+        return "weights".equals(TextMapFormat.key(line))
+                && TextMapFormat.value(line).length() == 0;
+    }
+
     /**
      * Read a weight matrix from a stored map.
      *
      * @param input The input to read from
      * @throws java.io.IOException if something fails while reading the stream.
+     * @throws SOMError if the matrix ends before every neuron has a row.
      */
     protected void readWeightMatrix(BufferedReader input) throws IOException {
-        Pattern endTagRegEx = Pattern.compile("end\\s*(?:weights)",
-                Pattern.CASE_INSENSITIVE);
-        Pattern weightVectorRegEx = Pattern.compile(
-                "([+-]?[0-9]*\\.?[0-9]+(?:[Ee][+-]?[0-9]+)?)(?:,?\\s*)?");
-
-        weights = new double[dimension.area][inputVectorSize];
+        weights = createWeightStore(dimension.area, inputVectorSize);
+        double[] row = new double[inputVectorSize];
 
         String line = input.readLine();
         int readLines = 0;
-        while (readLines < dimension.area && input.ready() &&
-                !endTagRegEx.matcher(line).matches()) {
-            Matcher weightMatch = weightVectorRegEx.matcher(line);
+        while (readLines < dimension.area && line != null
+                && !isEndLine(line)) {
+            TextMapFormat.parseVector(line, row);
             for (int i = 0; i < inputVectorSize; i++) {
-                weightMatch.find();
-                weights[readLines][i] =
-                        Double.parseDouble(weightMatch.group(1));
+                weights.set(readLines, i, row[i]);
             }
             line = input.readLine();
             readLines++;
         }
+
+        if (readLines < dimension.area) {
+            throw new SOMError(String.format("The weight matrix is truncated: "
+                    + "%d of %d rows were read.", readLines, dimension.area));
+        }
+    }
+
+    /**
+     * Create the store that the weight matrix is read into.  The default is
+     * a heap store of the precision the map was written with; map types
+     * that keep their weights elsewhere override this so that the weights
+     * are read straight into their own store.
+     *
+     * @param neuronCount The number of neurons.
+     * @param vectorLength The length of each neuron's weight vector.
+     * @return An empty weight store.
+     */
+    protected WeightStore createWeightStore(int neuronCount, int vectorLength) {
+        return precision.createStore(neuronCount, vectorLength);
+    }
+
+    /**
+     * Check for the line that ends the weight matrix without normalizing
+     * every weight vector on the way.
+     *
+     * @param line The input's line to check.
+     * @return {@code true} if the line is "end weights".
+     */
+    private static boolean isEndLine(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i < line.length() && Character.toLowerCase(line.charAt(i)) == 'e'
+                && "endweights".equals(TextMapFormat.normalize(line));
     }
 
     /**
@@ -164,6 +282,16 @@ public class SOMFileReader {
         return inputVectorSize;
     }
 
+    /**
+     * Retrieve the parsed weight precision.  Maps without a precision line
+     * are stored in double precision.
+     *
+     * @return The weight precision from the input stream.
+     */
+    public WeightPrecision getPrecision() {
+        return precision;
+    }
+
     /**
      * Return the parsed iteration count.
      *
@@ -173,17 +301,46 @@ public class SOMFileReader {
         return iterations;
     }
 
+    /**
+     * Return the parsed number of iterations trained so far.
+     *
+     * @return The time count from the input stream, or 0 if it has none.
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Return the parsed seed of the map's random source.
+     *
+     * @return The random seed from the input stream, or {@code null} if it
+     * has none.
+     */
+    public Long getRandomSeed() {
+        return randomSeed;
+    }
+
+    /**
+     * Return the parsed state of the map's random source.
+     *
+     * @return The random state from the input stream, or {@code null} if it
+     * has none.
+     */
+    public Long getRandomState() {
+        return randomState;
+    }
+
     @Override
     public String toString() {
         return "SOMFileReader";
     }
 
     /**
-     * Get the parsed weight vector.
+     * Get the parsed weights.
      *
-     * @return The weight vector from the input stream.
+     * @return The neuron weights from the input stream.
      */
-    public double[][] getWeights() {
+    public WeightStore getWeights() {
         return weights;
     }
 }
@@ -0,0 +1,392 @@
+package cs437.som.util;
+
+import cs437.som.DistanceMetric;
+import cs437.som.GridType;
+import cs437.som.LearningRateFunction;
+import cs437.som.NeighborhoodMembershipFunction;
+import cs437.som.NeighborhoodWidthFunction;
+import cs437.som.SOMError;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.learningrate.ConstantLearningRateFunction;
+import cs437.som.learningrate.ExponentialDecayLearningRateFunction;
+import cs437.som.learningrate.HyperbolicLearningRateFunction;
+import cs437.som.membership.ConstantNeighborhoodMembershipFunction;
+import cs437.som.membership.ExponentialNeighborhoodMembershipFunction;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.membership.LinearNeighborhoodMembershipFunction;
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.ConstantNeighborhoodWidthFunction;
+import cs437.som.neighborhood.ExponentialDecayNeighborhoodWidth;
+import cs437.som.neighborhood.GaussianNeighborhoodWidthFunction;
+import cs437.som.neighborhood.HyperbolicNeighborhoodWidthFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.neighborhood.MexicanHatNeighborhoodWidthFunction;
+import cs437.som.network.NetworkMapTypes;
+import cs437.som.topology.Moore;
+import cs437.som.topology.OffsetHexagonalGrid;
+import cs437.som.topology.SkewHexagonalGrid;
+import cs437.som.topology.SquareGrid;
+import cs437.som.topology.ToroidalEuclideanSquare;
+import cs437.som.topology.VonNeumann;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates strategies and map types from the names they are stored under.
+ *
+ * Each kind of strategy (distance metric, learning rate function, neighborhood
+ * width function, neighborhood membership function and grid type) has its own
+ * set of factories, keyed by the name written in a map file, usually the
+ * strategy's simple class name.  A factory is given the rest of the line as
+ * its parameters.  Classes registered by class have their constructors looked
+ * up once; after that, creating a strategy is a map lookup and a constructor
+ * call.  Names that have not been registered are looked up in the package the
+ * built-in strategies of that kind live in, as map files have always been
+ * read, and cached on success.
+ *
+ * Map types are registered the same way, by the name on a file's "Map type"
+ * line; see {@link MapType}.
+ *
+ * {@link #getDefault()} holds the built-in strategies and map types, along
+ * with those of every {@link Provider} on the class path, found with
+ * {@link ServiceLoader}.  A provider is listed by its class name in the file
+ * {@code META-INF/services/cs437.som.util.StrategyRegistry$Provider}.
+ *
+ * Registries are safe to use from several threads at once.
+ */
+public final class StrategyRegistry {
+    /**
+     * Creates a strategy from the parameters stored with it.
+     *
+     * @param <T> The kind of strategy created.
+     */
+    public interface Factory<T> {
+        /**
+         * Create a strategy.
+         *
+         * @param parameters The text following the strategy's name, trimmed;
+         * empty if there is none.
+         * @return The new strategy.
+         */
+        T create(String parameters);
+    }
+
+    /**
+     * Adds strategies or map types to registries.  Implementations are found
+     * with {@link ServiceLoader} and must have a public no argument
+     * constructor.
+     */
+    public interface Provider {
+        /**
+         * Register strategies or map types.
+         *
+         * @param registry The registry to add to.
+         */
+        void registerWith(StrategyRegistry registry);
+    }
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Factory<?>>> factories =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Factory<?>>>();
+    private final ConcurrentMap<Class<?>, String> packages =
+            new ConcurrentHashMap<Class<?>, String>();
+    private final ConcurrentMap<String, MapType> mapTypes =
+            new ConcurrentHashMap<String, MapType>();
+
+    /**
+     * Create an empty registry.
+     */
+    public StrategyRegistry() {
+    }
+
+    /**
+     * Get the registry of the built-in strategies and map types and those of
+     * the providers on the class path.
+     *
+     * @return The shared default registry.
+     */
+    public static StrategyRegistry getDefault() {
+        return DefaultHolder.registry;
+    }
+
+    /**
+     * Register a factory for a strategy.
+     *
+     * @param kind The kind of strategy, such as {@code DistanceMetric.class}.
+     * @param name The name the strategy is stored under.
+     * @param factory The factory creating the strategy.
+     * @param <T> The kind of strategy.
+     */
+    public <T> void register(Class<T> kind, String name,
+                             Factory<? extends T> factory) {
+        factoriesOf(kind).put(name, factory);
+    }
+
+    /**
+     * Register a strategy class under its simple name.  The class is created
+     * with its no argument constructor when there are no parameters, and
+     * otherwise with its {@code String} constructor or, failing that, its
+     * {@code double} constructor.
+     *
+     * @param kind The kind of strategy, such as {@code DistanceMetric.class}.
+     * @param implementation The strategy class.
+     * @param <T> The kind of strategy.
+     */
+    public <T> void register(Class<T> kind, Class<? extends T> implementation) {
+        register(kind, implementation.getSimpleName(), implementation);
+    }
+
+    /**
+     * Register a strategy class under a given name, created as by
+     * {@link #register(Class, Class)}.
+     *
+     * @param kind The kind of strategy, such as {@code DistanceMetric.class}.
+     * @param name The name the strategy is stored under.
+     * @param implementation The strategy class.
+     * @param <T> The kind of strategy.
+     */
+    public <T> void register(Class<T> kind, String name,
+                             Class<? extends T> implementation) {
+        register(kind, name, new ConstructorFactory<T>(implementation));
+    }
+
+    /**
+     * Set the package in which to look for strategies of a kind whose names
+     * have not been registered.
+     *
+     * @param kind The kind of strategy.
+     * @param pkg The package name, such as {@code cs437.som.topology}.
+     */
+    public void setSearchPackage(Class<?> kind, String pkg) {
+        packages.put(kind, pkg);
+    }
+
+    /**
+     * Register a map type.
+     *
+     * @param name The name on the "Map type" line of the type's files.
+     * @param type The map type.
+     */
+    public void registerMapType(String name, MapType type) {
+        mapTypes.put(name, type);
+    }
+
+    /**
+     * Create a strategy.
+     *
+     * @param kind The kind of strategy.
+     * @param name The name the strategy is stored under.
+     * @param parameters The strategy's parameters; empty if there are none.
+     * @param <T> The kind of strategy.
+     * @return The new strategy.
+     * @throws SOMError if no strategy of that kind has the name, or the
+     * parameters are not accepted.
+     */
+    public <T> T create(Class<T> kind, String name, String parameters) {
+        ConcurrentMap<String, Factory<?>> ofKind = factoriesOf(kind);
+        Factory<?> factory = ofKind.get(name);
+        if (factory == null) {
+            factory = find(kind, name);
+            ofKind.putIfAbsent(name, factory);
+        }
+        return kind.cast(factory.create(parameters));
+    }
+
+    /**
+     * Find a map type.
+     *
+     * @param name The name on the "Map type" line of the type's files.
+     * @return The map type.
+     * @throws SOMError if no map type has the name.
+     */
+    public MapType getMapType(String name) {
+        MapType type = mapTypes.get(name);
+        if (type == null) {
+            throw new SOMError("Map type " + name + " cannot be found.");
+        }
+        return type;
+    }
+
+    /**
+     * Register the strategies and map types of every provider listed with
+     * {@link ServiceLoader} by a class loader.
+     *
+     * @param loader The class loader to search.
+     */
+    public void loadProviders(ClassLoader loader) {
+        for (Provider provider : ServiceLoader.load(Provider.class, loader)) {
+            provider.registerWith(this);
+        }
+    }
+
+    private ConcurrentMap<String, Factory<?>> factoriesOf(Class<?> kind) {
+        ConcurrentMap<String, Factory<?>> ofKind = factories.get(kind);
+        if (ofKind == null) {
+            ofKind = new ConcurrentHashMap<String, Factory<?>>();
+            ConcurrentMap<String, Factory<?>> raced =
+                    factories.putIfAbsent(kind, ofKind);
+            if (raced != null) {
+                ofKind = raced;
+            }
+        }
+        return ofKind;
+    }
+
+    private <T> Factory<T> find(Class<T> kind, String name) {
+        String pkg = packages.get(kind);
+        if (pkg == null) {
+            throw new SOMError("Cannot find " + kind.getSimpleName() + ' '
+                    + name);
+        }
+
+        String className = pkg + '.' + name;
+        Class<?> cls;
+        try {
+            cls = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new SOMError("Cannot find " + className);
+        }
+        if (!kind.isAssignableFrom(cls)) {
+            throw new SOMError(className + " is not a "
+                    + kind.getSimpleName());
+        }
+        return new ConstructorFactory<T>(cls.asSubclass(kind));
+    }
+
+    private void registerBuiltIns() {
+        setSearchPackage(DistanceMetric.class, "cs437.som.distancemetrics");
+        register(DistanceMetric.class, ChebyshevDistanceMetric.class);
+        register(DistanceMetric.class, EuclideanDistanceMetric.class);
+        register(DistanceMetric.class, ManhattanDistanceMetric.class);
+
+        setSearchPackage(LearningRateFunction.class, "cs437.som.learningrate");
+        register(LearningRateFunction.class, ConstantLearningRateFunction.class);
+        register(LearningRateFunction.class,
+                ExponentialDecayLearningRateFunction.class);
+        register(LearningRateFunction.class,
+                HyperbolicLearningRateFunction.class);
+
+        setSearchPackage(NeighborhoodWidthFunction.class,
+                "cs437.som.neighborhood");
+        register(NeighborhoodWidthFunction.class,
+                ConstantNeighborhoodWidthFunction.class);
+        register(NeighborhoodWidthFunction.class,
+                ExponentialDecayNeighborhoodWidth.class);
+        register(NeighborhoodWidthFunction.class,
+                GaussianNeighborhoodWidthFunction.class);
+        register(NeighborhoodWidthFunction.class,
+                HyperbolicNeighborhoodWidthFunction.class);
+        register(NeighborhoodWidthFunction.class,
+                LinearDecayNeighborhoodWidthFunction.class);
+        register(NeighborhoodWidthFunction.class,
+                MexicanHatNeighborhoodWidthFunction.class);
+
+        setSearchPackage(NeighborhoodMembershipFunction.class,
+                "cs437.som.membership");
+        register(NeighborhoodMembershipFunction.class,
+                ConstantNeighborhoodMembershipFunction.class);
+        register(NeighborhoodMembershipFunction.class,
+                ExponentialNeighborhoodMembershipFunction.class);
+        register(NeighborhoodMembershipFunction.class,
+                GeometricNeighborhoodMembershipFunction.class);
+        register(NeighborhoodMembershipFunction.class,
+                LinearNeighborhoodMembershipFunction.class);
+        register(NeighborhoodMembershipFunction.class,
+                RandomNeighborhoodMembershipFunction.class);
+
+        setSearchPackage(GridType.class, "cs437.som.topology");
+        register(GridType.class, Moore.class);
+        register(GridType.class, OffsetHexagonalGrid.class);
+        register(GridType.class, SkewHexagonalGrid.class);
+        register(GridType.class, SquareGrid.class);
+        register(GridType.class, ToroidalEuclideanSquare.class);
+        register(GridType.class, VonNeumann.class);
+
+        new NetworkMapTypes().registerWith(this);
+    }
+
+    @Override
+    public String toString() {
+        return "StrategyRegistry";
+    }
+
+    /** Builds the default registry the first time it is asked for. */
+    private static final class DefaultHolder {
+        static final StrategyRegistry registry = new StrategyRegistry();
+
+        static {
+            registry.registerBuiltIns();
+            registry.loadProviders(StrategyRegistry.class.getClassLoader());
+        }
+    }
+
+    /**
+     * Creates strategies with constructors looked up once, when the factory
+     * is created.
+     */
+    private static final class ConstructorFactory<T> implements Factory<T> {
+        private final String className;
+        private final Constructor<? extends T> noArguments;
+        private final Constructor<? extends T> fromString;
+        private final Constructor<? extends T> fromDouble;
+
+        ConstructorFactory(Class<? extends T> cls) {
+            className = cls.getName();
+            noArguments = constructor(cls);
+            fromString = constructor(cls, String.class);
+            fromDouble = constructor(cls, double.class);
+            if (noArguments == null && fromString == null && fromDouble == null) {
+                throw new SOMError("Cannot create " + className);
+            }
+        }
+
+        public T create(String parameters) {
+            if (parameters.length() == 0 && noArguments != null) {
+                return newInstance(noArguments);
+            }
+            if (fromString != null) {
+                return newInstance(fromString, parameters);
+            }
+            if (fromDouble != null) {
+                double argument;
+                try {
+                    argument = Double.parseDouble(parameters);
+                } catch (NumberFormatException e) {
+                    throw new SOMError("Cannot create " + className +
+                            ": bad arguments.");
+                }
+                return newInstance(fromDouble, argument);
+            }
+            throw new SOMError("Cannot create " + className +
+                    ": it takes no arguments.");
+        }
+
+        private T newInstance(Constructor<? extends T> ctor,
+                              Object... arguments) {
+            try {
+                return ctor.newInstance(arguments);
+            } catch (InstantiationException e) {
+                throw new SOMError("Cannot create " + className);
+            } catch (IllegalAccessException e) {
+                throw new SOMError("Cannot create " + className);
+            } catch (InvocationTargetException e) {
+                throw new SOMError("Cannot create " + className +
+                        ": bad arguments.");
+            }
+        }
+
+        private static <T> Constructor<? extends T> constructor(
+                Class<? extends T> cls, Class<?>... parameterTypes) {
+            try {
+                return cls.getConstructor(parameterTypes);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
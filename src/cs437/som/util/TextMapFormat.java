@@ -0,0 +1,428 @@
+package cs437.som.util;
+
+import cs437.som.SOMError;
+
+import java.math.BigInteger;
+import java.util.Locale;
+
+/**
+ * The tokens of the text map format, recognized by hand rather than with
+ * regular expressions.
+ *
+ * A map's configuration lines have the form {@code key: value}.  Keys are
+ * matched without regard to case or whitespace, so "Grid dimensions",
+ * "griddimensions" and "GRID DIMENSIONS" are the same key.  Weight vectors
+ * are lists of numbers separated by commas and whitespace, optionally in
+ * brackets, one neuron per line.
+ *
+ * Numbers are parsed in place, without creating substrings.  Numbers with at
+ * most 18 significant digits, which covers everything
+ * {@link Double#toString(double)} writes, are converted with a single
+ * multiplication: by an exactly representable power of ten when the digits
+ * fit in 53 bits (Clinger's fast path), and otherwise by a 128 bit
+ * approximation of the power of ten (Lemire's algorithm, as described in
+ * "Number Parsing at a Gigabyte per Second").  Subnormal numbers, overflow
+ * and longer mantissas are handed to {@link Double#parseDouble(String)}.
+ * Either way the result is the double nearest the text, so written weights
+ * read back unchanged.
+ */
+public final class TextMapFormat {
+    /** The largest mantissa converted without rounding (2^53). */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /** Powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The range of decimal exponents Lemire's algorithm is used for. */
+    private static final int SMALLEST_POWER_OF_TEN = -342;
+    private static final int LARGEST_POWER_OF_TEN = 308;
+
+    /**
+     * 128 bit approximations of the powers of five from 5^-342 to 5^308,
+     * normalized so that the top bit is set; the high word of each is
+     * followed by the low word.
+     */
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    private TextMapFormat() {
+    }
+
+    /**
+     * Find the key of a configuration line.
+     *
+     * @param line The line.
+     * @return The text before the line's first colon, in lower case with all
+     * whitespace removed, or {@code null} if the line has no colon.
+     */
+    public static String key(String line) {
+        int colon = line.indexOf(':');
+        return colon < 0 ? null : normalize(line.substring(0, colon));
+    }
+
+    /**
+     * Put text in the form keys are compared in.
+     *
+     * @param text The text.
+     * @return The text in lower case with all whitespace removed.
+     */
+    public static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the value of a configuration line.
+     *
+     * @param line The line.
+     * @return The text after the line's first colon, trimmed, or the empty
+     * string if the line has no colon.
+     */
+    public static String value(String line) {
+        int colon = line.indexOf(':');
+        return colon < 0 ? "" : line.substring(colon + 1).trim();
+    }
+
+    /**
+     * Split off the first word of a value, such as a strategy's class name.
+     *
+     * @param value A trimmed value.
+     * @return The value up to its first whitespace.
+     */
+    public static String firstWord(String value) {
+        int end = 0;
+        while (end < value.length() && !Character.isWhitespace(value.charAt(end))) {
+            end++;
+        }
+        return value.substring(0, end);
+    }
+
+    /**
+     * Get the rest of a value after its first word, such as a strategy's
+     * parameters.
+     *
+     * @param value A trimmed value.
+     * @return The value after its first word, trimmed; empty if there is
+     * nothing more.
+     */
+    public static String afterFirstWord(String value) {
+        return value.substring(firstWord(value).length()).trim();
+    }
+
+    /**
+     * Parse a non-negative decimal integer.
+     *
+     * @param text The text holding the integer.
+     * @param from The index of the first character.
+     * @param to The index after the last character.
+     * @return The integer.
+     * @throws SOMError if the text is not an integer in range.
+     */
+    public static int parseInt(CharSequence text, int from, int to) {
+        long result = parseLong(text, from, to);
+        if (result > Integer.MAX_VALUE || result < Integer.MIN_VALUE) {
+            throw new SOMError("Number out of range: "
+                    + text.subSequence(from, to));
+        }
+        return (int) result;
+    }
+
+    /**
+     * Parse a decimal integer with an optional sign.
+     *
+     * @param text The text holding the integer.
+     * @param from The index of the first character.
+     * @param to The index after the last character.
+     * @return The integer.
+     * @throws SOMError if the text is not an integer in range.
+     */
+    public static long parseLong(CharSequence text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i == to) {
+            throw new SOMError("Expected a number: "
+                    + text.subSequence(from, to));
+        }
+
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new SOMError("Expected a number: "
+                        + text.subSequence(from, to));
+            }
+            // Accumulate negatively so that Long.MIN_VALUE fits.
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                throw new SOMError("Number out of range: "
+                        + text.subSequence(from, to));
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                throw new SOMError("Number out of range: "
+                        + text.subSequence(from, to));
+            }
+            return -result;
+        }
+        return result;
+    }
+
+    /**
+     * Parse a whole string as a decimal integer with an optional sign.
+     *
+     * @param text The integer.
+     * @return The integer.
+     * @throws SOMError if the text is not an integer in range.
+     */
+    public static long parseLong(String text) {
+        return parseLong(text, 0, text.length());
+    }
+
+    /**
+     * Parse a number as written by {@link Double#toString(double)}, or in
+     * plain decimal or scientific notation.
+     *
+     * @param text The text holding the number.
+     * @param from The index of the first character.
+     * @param to The index after the last character.
+     * @return The double nearest the number.
+     * @throws SOMError if the text is not a number.
+     */
+    public static double parseDouble(CharSequence text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    // Leading zeros are not significant.
+                    if (seenPoint) {
+                        scale--;
+                    }
+                } else if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (seenPoint) {
+                        scale--;
+                    }
+                } else {
+                    // Too many digits to convert exactly; let the JDK do it.
+                    return slowParse(text, from, to);
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return slowParse(text, from, to);
+        }
+
+        if (i < to) {
+            char c = text.charAt(i);
+            if (c != 'e' && c != 'E') {
+                throw new SOMError("Expected a number: "
+                        + text.subSequence(from, to));
+            }
+            scale += parseInt(text, i + 1, to);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (mantissa < MAX_EXACT_MANTISSA && scale >= -22 && scale <= 22) {
+            // Both the mantissa and the power of ten are exact, so the one
+            // rounding of the multiplication or division gives the nearest
+            // double.
+            double value = scale < 0
+                    ? mantissa / POWERS_OF_TEN[-scale]
+                    : mantissa * POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+
+        long bits = toDoubleBits(mantissa, scale);
+        if (bits < 0) {
+            return slowParse(text, from, to);
+        }
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    /**
+     * Find the double nearest mantissa * 10^scale by Lemire's algorithm.
+     *
+     * @param mantissa The decimal mantissa, positive and less than 10^19.
+     * @param scale The decimal exponent.
+     * @return The bits of the positive double nearest the number, or -1 if
+     * the number is out of the algorithm's range or would be subnormal or
+     * infinite.
+     */
+    private static long toDoubleBits(long mantissa, int scale) {
+        if (scale < SMALLEST_POWER_OF_TEN || scale > LARGEST_POWER_OF_TEN) {
+            return -1;
+        }
+
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        long w = mantissa << leadingZeros;
+        int index = 2 * (scale - SMALLEST_POWER_OF_TEN);
+
+        // The top 55 bits of w * 5^scale decide the result; when the bits
+        // below them in the first product are all ones a carry from the low
+        // word of the power could still reach them.
+        long high = multiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        if ((high & 0x1FFL) == 0x1FFL) {
+            long carry = multiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += carry;
+            if (unsignedLess(low, carry)) {
+                high++;
+            }
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 9;
+        long result = high >>> shift;
+        int exponent = (((152170 + 65536) * scale) >> 16) + 63 + upperBit
+                - leadingZeros + 1023;
+        if (exponent <= 0) {
+            return -1;
+        }
+
+        // Round half to even: when nothing but zeros was shifted out, the
+        // number lies exactly between two doubles.
+        if ((low == 0 || low == 1) && scale >= -4 && scale <= 23
+                && (result & 3) == 1 && (result << shift) == high) {
+            result &= ~1L;
+        }
+        result += result & 1;
+        result >>>= 1;
+        if (result >= (2L << 52)) {
+            result = 1L << 52;
+            exponent++;
+        }
+        if (exponent >= 0x7FF) {
+            return -1;
+        }
+        return ((long) exponent << 52) | (result & ~(1L << 52));
+    }
+
+    /**
+     * @return The high 64 bits of the unsigned 128 bit product of x and y.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long t = x1 * y0 + ((x0 * y0) >>> 32);
+        long w1 = x0 * y1 + (t & 0xFFFFFFFFL);
+        return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+    }
+
+    private static boolean unsignedLess(long a, long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+
+    private static long[] powersOfFive() {
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        BigInteger five = BigInteger.valueOf(5);
+
+        long[] table = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+            BigInteger c;
+            if (q < 0) {
+                // Reciprocals are rounded up.
+                BigInteger power = five.pow(-q);
+                int z = power.bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                while (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            } else {
+                // Powers are truncated.
+                c = five.pow(q);
+                while (c.compareTo(two127) < 0) {
+                    c = c.shiftLeft(1);
+                }
+                while (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            }
+            int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+            table[index] = c.shiftRight(64).longValue();
+            table[index + 1] = c.and(mask).longValue();
+        }
+        return table;
+    }
+
+    /**
+     * Parse the numbers of a weight vector line into an array.  Numbers may
+     * be separated by commas and whitespace, and the list may be surrounded
+     * by brackets.
+     *
+     * @param line The line.
+     * @param values The array to fill; its length is the number of values
+     * expected.
+     * @throws SOMError if the line holds too few numbers.
+     */
+    public static void parseVector(String line, double[] values) {
+        int length = line.length();
+        int i = 0;
+        for (int k = 0; k < values.length; k++) {
+            while (i < length && isSeparator(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSeparator(line.charAt(i))
+                    && line.charAt(i) != ']') {
+                i++;
+            }
+            if (start == i) {
+                throw new SOMError("Expected " + values.length
+                        + " weights: " + line);
+            }
+            values[k] = parseDouble(line, start, i);
+        }
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || c == '[' || c == ' ' || c == '\t' || c == '\r'
+                || c == '\n';
+    }
+
+    private static double slowParse(CharSequence text, int from, int to) {
+        try {
+            return Double.parseDouble(text.subSequence(from, to).toString());
+        } catch (NumberFormatException e) {
+            throw new SOMError("Expected a number: "
+                    + text.subSequence(from, to));
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package cs437.som.util;
+
+/**
+ * Inner loops shared by the distance metrics and the weight stores.
+ *
+ * The summing reductions are unrolled four ways into independent accumulators, so
+ * that each addition no longer waits on the one before it and the processor
+ * can keep several in flight; the JIT compiler also packs the independent
+ * lanes into SIMD instructions where it can.  Because the partial sums are
+ * added in a different order, results may differ from a simple loop in the
+ * last bits.  Short vectors (color maps, for instance) gain nothing from the
+ * split, so vectors shorter than {@link #UNROLL_MIN_LENGTH} are summed in
+ * order and give exactly the same results as a simple loop.
+ *
+ * None of these methods check their arguments: the second vector's length is
+ * the number of elements processed, and the first vector, starting at
+ * {@code offset}, must be at least that long.
+ */
+public final class VectorKernels {
+    /** The shortest vector whose reductions are split across accumulators. */
+    public static final int UNROLL_MIN_LENGTH = 16;
+
+    /**
+     * How many elements the bounded reductions process between checks of
+     * their running sum against the limit.  Must be a power of two, at least 4.
+     */
+    public static final int CHECK_INTERVAL = 16;
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Calculate the squared Euclidean distance between a vector stored inside
+     * a larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The sum of the squared component differences.
+     */
+    public static double squaredDistance(double[] v0, int offset, double[] v1) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            double d0 = v0[offset + i] - v1[i];
+            double d1 = v0[offset + i + 1] - v1[i + 1];
+            double d2 = v0[offset + i + 2] - v1[i + 2];
+            double d3 = v0[offset + i + 3] - v1[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (int i = end; i < length; i++) {
+            double d = v0[offset + i] - v1[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the squared Euclidean distance between a single precision
+     * vector stored inside a larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The sum of the squared component differences.
+     */
+    public static double squaredDistance(float[] v0, int offset, double[] v1) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            double d0 = v0[offset + i] - v1[i];
+            double d1 = v0[offset + i + 1] - v1[i + 1];
+            double d2 = v0[offset + i + 2] - v1[i + 2];
+            double d3 = v0[offset + i + 3] - v1[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (int i = end; i < length; i++) {
+            double d = v0[offset + i] - v1[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the squared Euclidean distance between a vector stored inside
+     * a larger array and a second vector, giving up once the sum passes a
+     * limit.  The running sum is checked every {@link #CHECK_INTERVAL}
+     * elements; vectors too short to be unrolled are never abandoned.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param limit The sum beyond which the result is no longer needed.
+     * @return The sum of the squared component differences, exactly as
+     * {@link #squaredDistance(double[], int, double[])} computes it, or a
+     * partial sum greater than {@code limit}.
+     */
+    public static double squaredDistance(double[] v0, int offset, double[] v1,
+                                         double limit) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            double d0 = v0[offset + i] - v1[i];
+            double d1 = v0[offset + i + 1] - v1[i + 1];
+            double d2 = v0[offset + i + 2] - v1[i + 2];
+            double d3 = v0[offset + i + 3] - v1[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+            if ((i & (CHECK_INTERVAL - 1)) == CHECK_INTERVAL - 4) {
+                double partial = (s0 + s1) + (s2 + s3);
+                if (partial > limit) {
+                    return partial;
+                }
+            }
+        }
+        for (int i = end; i < length; i++) {
+            double d = v0[offset + i] - v1[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the squared Euclidean distance between a single precision vector stored inside
+     * a larger array and a second vector, giving up once the sum passes a
+     * limit.  The running sum is checked every {@link #CHECK_INTERVAL}
+     * elements; vectors too short to be unrolled are never abandoned.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param limit The sum beyond which the result is no longer needed.
+     * @return The sum of the squared component differences, exactly as
+     * {@link #squaredDistance(float[], int, double[])} computes it, or a
+     * partial sum greater than {@code limit}.
+     */
+    public static double squaredDistance(float[] v0, int offset, double[] v1,
+                                         double limit) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            double d0 = v0[offset + i] - v1[i];
+            double d1 = v0[offset + i + 1] - v1[i + 1];
+            double d2 = v0[offset + i + 2] - v1[i + 2];
+            double d3 = v0[offset + i + 3] - v1[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+            if ((i & (CHECK_INTERVAL - 1)) == CHECK_INTERVAL - 4) {
+                double partial = (s0 + s1) + (s2 + s3);
+                if (partial > limit) {
+                    return partial;
+                }
+            }
+        }
+        for (int i = end; i < length; i++) {
+            double d = v0[offset + i] - v1[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the Manhattan distance between a vector stored inside a
+     * larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The sum of the absolute component differences.
+     */
+    public static double manhattan(double[] v0, int offset, double[] v1) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+            s1 += Math.abs(v0[offset + i + 1] - v1[i + 1]);
+            s2 += Math.abs(v0[offset + i + 2] - v1[i + 2]);
+            s3 += Math.abs(v0[offset + i + 3] - v1[i + 3]);
+        }
+        for (int i = end; i < length; i++) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the Manhattan distance between a single precision vector
+     * stored inside a larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The sum of the absolute component differences.
+     */
+    public static double manhattan(float[] v0, int offset, double[] v1) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+            s1 += Math.abs(v0[offset + i + 1] - v1[i + 1]);
+            s2 += Math.abs(v0[offset + i + 2] - v1[i + 2]);
+            s3 += Math.abs(v0[offset + i + 3] - v1[i + 3]);
+        }
+        for (int i = end; i < length; i++) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the Manhattan distance between a vector stored inside a
+     * larger array and a second vector, giving up once the sum passes a
+     * limit.  The running sum is checked every {@link #CHECK_INTERVAL}
+     * elements; vectors too short to be unrolled are never abandoned.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param limit The sum beyond which the result is no longer needed.
+     * @return The sum of the absolute component differences, exactly as
+     * {@link #manhattan(double[], int, double[])} computes it, or a partial
+     * sum greater than {@code limit}.
+     */
+    public static double manhattan(double[] v0, int offset, double[] v1,
+                                   double limit) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+            s1 += Math.abs(v0[offset + i + 1] - v1[i + 1]);
+            s2 += Math.abs(v0[offset + i + 2] - v1[i + 2]);
+            s3 += Math.abs(v0[offset + i + 3] - v1[i + 3]);
+            if ((i & (CHECK_INTERVAL - 1)) == CHECK_INTERVAL - 4) {
+                double partial = (s0 + s1) + (s2 + s3);
+                if (partial > limit) {
+                    return partial;
+                }
+            }
+        }
+        for (int i = end; i < length; i++) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the Manhattan distance between a single precision vector stored inside a
+     * larger array and a second vector, giving up once the sum passes a
+     * limit.  The running sum is checked every {@link #CHECK_INTERVAL}
+     * elements; vectors too short to be unrolled are never abandoned.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @param limit The sum beyond which the result is no longer needed.
+     * @return The sum of the absolute component differences, exactly as
+     * {@link #manhattan(float[], int, double[])} computes it, or a partial
+     * sum greater than {@code limit}.
+     */
+    public static double manhattan(float[] v0, int offset, double[] v1,
+                                   double limit) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+            s1 += Math.abs(v0[offset + i + 1] - v1[i + 1]);
+            s2 += Math.abs(v0[offset + i + 2] - v1[i + 2]);
+            s3 += Math.abs(v0[offset + i + 3] - v1[i + 3]);
+            if ((i & (CHECK_INTERVAL - 1)) == CHECK_INTERVAL - 4) {
+                double partial = (s0 + s1) + (s2 + s3);
+                if (partial > limit) {
+                    return partial;
+                }
+            }
+        }
+        for (int i = end; i < length; i++) {
+            s0 += Math.abs(v0[offset + i] - v1[i]);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the Chebyshev distance between a vector stored inside a
+     * larger array and a second vector.  Splitting the maximum across lanes
+     * only adds compares, so this stays a single loop.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The largest absolute component difference.
+     */
+    public static double chebyshev(double[] v0, int offset, double[] v1) {
+        double max = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            double difference = Math.abs(v0[offset + i] - v1[i]);
+            if (difference > max) {
+                max = difference;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Calculate the Chebyshev distance between a single precision vector
+     * stored inside a larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The largest absolute component difference.
+     */
+    public static double chebyshev(float[] v0, int offset, double[] v1) {
+        double max = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            double difference = Math.abs(v0[offset + i] - v1[i]);
+            if (difference > max) {
+                max = difference;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Calculate the dot product of a vector stored inside a larger array and
+     * a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The sum of the component products.
+     */
+    public static double dot(double[] v0, int offset, double[] v1) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            s0 += v0[offset + i] * v1[i];
+            s1 += v0[offset + i + 1] * v1[i + 1];
+            s2 += v0[offset + i + 2] * v1[i + 2];
+            s3 += v0[offset + i + 3] * v1[i + 3];
+        }
+        for (int i = end; i < length; i++) {
+            s0 += v0[offset + i] * v1[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Calculate the dot product of a single precision vector stored inside a
+     * larger array and a second vector.
+     *
+     * @param v0 The array holding the first vector.
+     * @param offset The index of the first vector's first element in v0.
+     * @param v1 The second vector.
+     * @return The sum of the component products.
+     */
+    public static double dot(float[] v0, int offset, double[] v1) {
+        int length = v1.length;
+        int end = length < UNROLL_MIN_LENGTH ? 0 : length & ~3;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for (int i = 0; i < end; i += 4) {
+            s0 += v0[offset + i] * v1[i];
+            s1 += v0[offset + i + 1] * v1[i + 1];
+            s2 += v0[offset + i + 2] * v1[i + 2];
+            s3 += v0[offset + i + 3] * v1[i + 3];
+        }
+        for (int i = end; i < length; i++) {
+            s0 += v0[offset + i] * v1[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Move a vector stored inside a larger array towards a second vector.
+     * Each element w is replaced by {@code w + rate * (target - w)}.  The
+     * elements are independent, so the JIT compiler vectorizes this simple
+     * loop without help.
+     *
+     * @param v0 The array holding the vector to move.
+     * @param offset The index of the moving vector's first element in v0.
+     * @param v1 The vector to move towards.
+     * @param rate The fraction of the difference to move by.
+     */
+    public static void adjust(double[] v0, int offset, double[] v1, double rate) {
+        for (int i = 0; i < v1.length; i++) {
+            v0[offset + i] += rate * (v1[i] - v0[offset + i]);
+        }
+    }
+
+    /**
+     * Move a single precision vector stored inside a larger array towards a
+     * second vector.  Each element w is replaced by
+     * {@code w + rate * (target - w)}.
+     *
+     * @param v0 The array holding the vector to move.
+     * @param offset The index of the moving vector's first element in v0.
+     * @param v1 The vector to move towards.
+     * @param rate The fraction of the difference to move by.
+     */
+    public static void adjust(float[] v0, int offset, double[] v1, double rate) {
+        for (int i = 0; i < v1.length; i++) {
+            v0[offset + i] += (float) (rate * (v1[i] - v0[offset + i]));
+        }
+    }
+}
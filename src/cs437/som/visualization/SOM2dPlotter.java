@@ -46,6 +46,17 @@ public class SOM2dPlotter extends JFrame {
      * Draw the current "locations" of the SOM's neurons.
      */
     public void draw() {
+        draw(som);
+    }
+
+    /**
+     * Draw the "locations" of the neurons of a copy of the SOM, such as a
+     * snapshot published while it trains, so that no weights change while
+     * they are drawn.
+     *
+     * @param map The copy to draw, with the plotted SOM's neuron count.
+     */
+    public void draw(SelfOrganizingMap map) {
         Graphics g = getBufferStrategy().getDrawGraphics();
         g.setColor(Color.white);
         g.fillRect(0, 0, getWidth(), getHeight());
@@ -57,8 +68,8 @@ public class SOM2dPlotter extends JFrame {
         double xmin = Double.MAX_VALUE, xmax = Double.MIN_VALUE;
         double ymin = Double.MAX_VALUE, ymax = Double.MIN_VALUE;
         for (int i = 0; i < neuronCount; i++) {
-            points[i][0] = som.getWeight(i, 0);
-            points[i][1] = som.getWeight(i, 1);
+            points[i][0] = map.getWeight(i, 0);
+            points[i][1] = map.getWeight(i, 1);
             xmin = Math.min(xmin, points[i][0]);
             ymin = Math.min(ymin, points[i][1]);
             xmax = Math.max(xmax, points[i][0]);
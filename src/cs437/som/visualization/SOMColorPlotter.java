@@ -61,15 +61,25 @@ public class SOMColorPlotter extends JFrame {
      * Draw the current weights of the SOM's neurons.
      */
     public void draw() {
+        draw(som);
+    }
+
+    /**
+     * Draw the weights of a copy of the SOM, such as a snapshot published
+     * while it trains, so that no weights change while they are drawn.
+     *
+     * @param map The copy to draw, with the plotted SOM's grid size.
+     */
+    public void draw(SelfOrganizingMap map) {
         Graphics g = getBufferStrategy().getDrawGraphics();
 
         int[] pts = new int[neuronCount];
 
         for (int i = 0; i < neuronCount; i++) {
             pts[i] = MAX_ALPHA;
-            pts[i] |= (int)(som.getWeight(i, 0) * BYTE_MAX) << (2 * BYTE_WIDTH);
-            pts[i] |= (int)(som.getWeight(i, 1) * BYTE_MAX) << BYTE_WIDTH;
-            pts[i] |= (int)(som.getWeight(i, 2) * BYTE_MAX);
+            pts[i] |= (int)(map.getWeight(i, 0) * BYTE_MAX) << (2 * BYTE_WIDTH);
+            pts[i] |= (int)(map.getWeight(i, 1) * BYTE_MAX) << BYTE_WIDTH;
+            pts[i] |= (int)(map.getWeight(i, 2) * BYTE_MAX);
         }
 
         img.setRGB(0,0, dims.x, dims.y, pts, 0, dims.x);
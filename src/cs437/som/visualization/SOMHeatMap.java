@@ -71,14 +71,27 @@ public class SOMHeatMap extends JFrame {
      *               correspondence.
      */
     public void refresh(double[] sample) {
+        refresh(som, sample);
+    }
+
+    /**
+     * Update the visualization from a copy of the SOM, such as a snapshot
+     * published while it trains, so that no weights change while the heat
+     * is measured.
+     *
+     * @param map The copy to measure, with the visualized SOM's grid size.
+     * @param sample The vector components to which the heat will
+     *               correspondence.
+     */
+    public void refresh(SelfOrganizingMap map, double[] sample) {
         double[] distances = new double[neuronCount];
         int[] pts = new int[neuronCount];
 
-        max = Math.max(som.distanceToInput(0, sample), max);
+        max = Math.max(map.distanceToInput(0, sample), max);
         double min = 0;
 
         for (int i = 1; i < neuronCount; i++) {
-            double dist = som.distanceToInput(i, sample);
+            double dist = map.distanceToInput(i, sample);
             distances[i] = dist;
             if (dist > max)
                 max = dist;
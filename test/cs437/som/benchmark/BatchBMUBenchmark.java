@@ -0,0 +1,79 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.Random;
+
+/**
+ * Compares matching a block of inputs one at a time with
+ * {@code getBestMatchingNeuron} against a single
+ * {@code getBestMatchingNeurons} call.
+ *
+ * Run with {@code java cs437.som.benchmark.BatchBMUBenchmark [side]
+ * [inputLength] [batchSize]}; the defaults are a 100x100 map with 32 inputs
+ * and batches of 1024 vectors.
+ */
+public class BatchBMUBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 10;
+
+    private final CustomizableSOM som;
+    private final double[][] inputs;
+
+    private BatchBMUBenchmark(int side, int inputLength, int batchSize) {
+        som = new CustomizableSOM(new Dimension(side, side), inputLength, 1);
+        Random r = new Random(1);
+        inputs = new double[batchSize][inputLength];
+        for (double[] input : inputs) {
+            for (int j = 0; j < inputLength; j++) {
+                input[j] = r.nextDouble();
+            }
+        }
+    }
+
+    private long time(boolean batch) {
+        long sink = 0;
+        long start = System.nanoTime();
+        if (batch) {
+            for (int best : som.getBestMatchingNeurons(inputs)) {
+                sink += best;
+            }
+        } else {
+            for (double[] input : inputs) {
+                sink += som.getBestMatchingNeuron(input);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == -1) {
+            System.out.println(sink);
+        }
+        return elapsed / inputs.length;
+    }
+
+    private void run() {
+        long single = Long.MAX_VALUE;
+        long batch = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            long s = time(false);
+            long b = time(true);
+            if (round >= WARMUP_ROUNDS) {
+                single = Math.min(single, s);
+                batch = Math.min(batch, b);
+            }
+        }
+
+        System.out.printf("%d neurons, %d inputs, batches of %d%n",
+                som.getNeuronCount(), som.getInputLength(), inputs.length);
+        System.out.printf("  one at a time %,12d ns/vector%n", single);
+        System.out.printf("  batch         %,12d ns/vector%n", batch);
+        System.out.printf("  speedup       %.2fx%n", single / (double) batch);
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        new BatchBMUBenchmark(side, inputLength, batchSize).run();
+    }
+}
@@ -0,0 +1,92 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.network.BatchTrainer;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.Random;
+
+/**
+ * Compares an epoch of online training, one {@code trainWith} call per
+ * sample, against a {@link BatchTrainer} epoch run on one thread and on the
+ * shared pool, and prints the quantization error each reaches.
+ *
+ * Run with {@code java cs437.som.benchmark.BatchTrainerBenchmark [side]
+ * [inputLength] [samples]}; the defaults are a 100x100 map with 16 inputs
+ * and 20000 samples.
+ */
+public class BatchTrainerBenchmark {
+    private static final int EPOCHS = 3;
+
+    private final Dimension gridSize;
+    private final int inputLength;
+    private final double[][] data;
+
+    private BatchTrainerBenchmark(int side, int inputLength, int samples) {
+        gridSize = new Dimension(side, side);
+        this.inputLength = inputLength;
+        Random r = new Random(1);
+        data = new double[samples][inputLength];
+        for (double[] sample : data) {
+            for (int j = 0; j < inputLength; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+    }
+
+    private CustomizableSOM createMap() {
+        CustomizableSOM som = new CustomizableSOM(gridSize, inputLength,
+                data.length * EPOCHS);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(gridSize.x / 4.0));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+        return som;
+    }
+
+    private void report(String name, long elapsed, CustomizableSOM som) {
+        double error = new BatchTrainer(som).trainEpoch(data);
+        System.out.printf("  %-16s %,8d ms per epoch  final error %.4f%n",
+                name, elapsed / EPOCHS / 1000000, error);
+    }
+
+    private void online() {
+        CustomizableSOM som = createMap();
+        long start = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            for (double[] sample : data) {
+                som.trainWith(sample);
+            }
+        }
+        report("online", System.nanoTime() - start, som);
+    }
+
+    private void batch(boolean parallel) {
+        CustomizableSOM som = createMap();
+        BatchTrainer trainer = new BatchTrainer(som);
+        trainer.setParallel(parallel);
+        long start = System.nanoTime();
+        trainer.train(data, EPOCHS);
+        report(parallel ? "batch, parallel" : "batch, 1 thread",
+                System.nanoTime() - start, som);
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int samples = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        System.out.printf("%d neurons, %d inputs, %d samples, %d threads%n",
+                side * side, inputLength, samples,
+                Runtime.getRuntime().availableProcessors());
+
+        BatchTrainerBenchmark benchmark =
+                new BatchTrainerBenchmark(side, inputLength, samples);
+        for (int round = 0; round < 2; round++) {
+            benchmark.online();
+            benchmark.batch(false);
+            benchmark.batch(true);
+        }
+    }
+}
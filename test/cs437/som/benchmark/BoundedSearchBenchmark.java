@@ -0,0 +1,118 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.Random;
+
+/**
+ * Compares best matching unit searches that stop measuring a neuron once it
+ * can no longer win against an exhaustive scan of full distances.
+ *
+ * The map is first trained on clustered data, so that, as in a real map,
+ * neurons near the input are much closer than the rest.  Run with
+ * {@code java cs437.som.benchmark.BoundedSearchBenchmark [side]
+ * [inputLength]}; the defaults are a 60x60 map with 200 inputs.
+ */
+public class BoundedSearchBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 10;
+    private static final int CLUSTERS = 16;
+    private static final int QUERIES = 64;
+
+    private final DistanceMetric metric;
+    private final CustomizableSOM som;
+    private final double[][] queries;
+
+    private BoundedSearchBenchmark(int side, int inputLength,
+                                   DistanceMetric metric) {
+        this.metric = metric;
+        Random r = new Random(1);
+        double[][] centers = new double[CLUSTERS][inputLength];
+        for (double[] center : centers) {
+            for (int j = 0; j < inputLength; j++) {
+                center[j] = r.nextDouble();
+            }
+        }
+
+        int iterations = side * side * 2;
+        som = new CustomizableSOM(new Dimension(side, side), inputLength,
+                iterations);
+        som.setDistanceMetricStrategy(metric);
+        for (int i = 0; i < iterations; i++) {
+            som.trainWith(sample(centers, r));
+        }
+
+        queries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = sample(centers, r);
+        }
+    }
+
+    private static double[] sample(double[][] centers, Random r) {
+        double[] center = centers[r.nextInt(centers.length)];
+        double[] sample = new double[center.length];
+        for (int j = 0; j < sample.length; j++) {
+            sample[j] = center[j] + 0.05 * r.nextGaussian();
+        }
+        return sample;
+    }
+
+    private int exhaustiveSearch(double[] input) {
+        int best = 0;
+        double lowest = som.distanceToInput(0, input);
+        for (int i = 1; i < som.getNeuronCount(); i++) {
+            double distance = som.distanceToInput(i, input);
+            if (distance < lowest) {
+                lowest = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private long time(boolean bounded) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (double[] query : queries) {
+            sink += bounded
+                    ? som.getBestMatchingNeuron(query) : exhaustiveSearch(query);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == -1) {
+            System.out.println(sink);
+        }
+        return elapsed / queries.length;
+    }
+
+    private void run() {
+        long exhaustive = Long.MAX_VALUE;
+        long bounded = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            long e = time(false);
+            long b = time(true);
+            if (round >= WARMUP_ROUNDS) {
+                exhaustive = Math.min(exhaustive, e);
+                bounded = Math.min(bounded, b);
+            }
+        }
+
+        System.out.printf("  %-26s exhaustive %,10d ns  bounded %,10d ns  %.2fx%n",
+                metric, exhaustive, bounded, exhaustive / (double) bounded);
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        System.out.printf("%d neurons, %d inputs%n", side * side, inputLength);
+        DistanceMetric[] metrics = {new EuclideanDistanceMetric(),
+                new ManhattanDistanceMetric(), new ChebyshevDistanceMetric()};
+        for (DistanceMetric metric : metrics) {
+            new BoundedSearchBenchmark(side, inputLength, metric).run();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.network.BatchTrainer;
+import cs437.som.network.ConcurrentTrainer;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.Random;
+
+/**
+ * Measures the throughput of {@link ConcurrentTrainer} with increasing
+ * numbers of threads against training on one thread with
+ * {@code trainWith}, and the quantization error each run reaches.
+ *
+ * Run with {@code java cs437.som.benchmark.ConcurrentTrainerBenchmark [side]
+ * [inputLength] [samples] [maxThreads]}; the defaults are a 200x200 map with
+ * 16 inputs, 20000 samples and up to as many threads as processors.
+ */
+public class ConcurrentTrainerBenchmark {
+    private final Dimension gridSize;
+    private final int inputLength;
+    private final double[][] data;
+
+    private ConcurrentTrainerBenchmark(int side, int inputLength, int samples) {
+        gridSize = new Dimension(side, side);
+        this.inputLength = inputLength;
+        Random r = new Random(1);
+        data = new double[samples][inputLength];
+        for (double[] sample : data) {
+            for (int j = 0; j < inputLength; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+    }
+
+    private CustomizableSOM createMap() {
+        CustomizableSOM som = new CustomizableSOM(gridSize, inputLength,
+                data.length);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(gridSize.x / 10.0));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+        return som;
+    }
+
+    private void report(String name, long elapsed, CustomizableSOM som) {
+        // A batch epoch reports the error before it changes anything.
+        double error = new BatchTrainer(som).trainEpoch(data);
+        System.out.printf("  %-12s %,10.0f samples/s  error %.4f%n", name,
+                data.length / (elapsed / 1.0e9), error);
+    }
+
+    private void single() {
+        CustomizableSOM som = createMap();
+        long start = System.nanoTime();
+        for (double[] sample : data) {
+            som.trainWith(sample);
+        }
+        report("trainWith", System.nanoTime() - start, som);
+    }
+
+    private void concurrent(final int threadCount) throws InterruptedException {
+        CustomizableSOM som = createMap();
+        final ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int first = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = first; i < data.length; i += threadCount) {
+                        trainer.trainWith(data[i]);
+                    }
+                }
+            };
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report(threadCount + " threads", System.nanoTime() - start, som);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int samples = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d neurons, %d inputs, %d samples%n", side * side,
+                inputLength, samples);
+
+        ConcurrentTrainerBenchmark benchmark =
+                new ConcurrentTrainerBenchmark(side, inputLength, samples);
+        for (int round = 0; round < 2; round++) {
+            benchmark.single();
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                benchmark.concurrent(threads);
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.demo.EdgeDetector;
+import cs437.som.network.CustomizableSOM;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times edge detection on a synthetic image: the per-pixel implementation
+ * EdgeDetector used to have, against the banded implementation on one thread
+ * and on the shared pool, and the fused single mapping pass.  All of them
+ * look pixels up in the compiled table.
+ *
+ * The image is a field of overlapping rectangles with some noise, so that
+ * it has both flat areas and edges.  Run with {@code java
+ * cs437.som.benchmark.EdgeDetectorBenchmark [width] [height] [side]}; the
+ * defaults are a 3840x2160 (4K) image and a 10x10 map.
+ */
+public class EdgeDetectorBenchmark {
+    private static final int ROUNDS = 3;
+
+    static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Random r = new Random(1);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = 0x202020;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        for (int i = 0; i < 400; i++) {
+            int x0 = r.nextInt(width);
+            int y0 = r.nextInt(height);
+            int w = Math.min(width - x0, 1 + r.nextInt(width / 4));
+            int h = Math.min(height - y0, 1 + r.nextInt(height / 4));
+            int color = r.nextInt(0x1000000);
+            for (int y = y0; y < y0 + h; y++) {
+                for (int x = 0; x < w; x++) {
+                    row[x] = r.nextInt(50) == 0 ? color ^ 0x3F3F3F : color;
+                }
+                image.setRGB(x0, y, w, 1, row, 0, w);
+            }
+        }
+        return image;
+    }
+
+    /** EdgeDetector's image processing before it was split into bands. */
+    private static final class PerPixel {
+        private final int[] table;
+        private final int neurons;
+        private Object pixelData = null;
+
+        PerPixel(CustomizableSOM som) {
+            neurons = som.getNeuronCount();
+            table = new int[EdgeDetector.threeRaiseNine];
+            int[] matrix = new int[9];
+            for (int i = 0; i < table.length; i++) {
+                int factor = 1;
+                for (int j = 0; j < 9; j++) {
+                    matrix[j] = i / factor % 3 - 1;
+                    factor *= 3;
+                }
+                table[i] = som.getBestMatchingNeuron(matrix);
+            }
+        }
+
+        BufferedImage run(BufferedImage image) {
+            int height = image.getHeight();
+            int width = image.getWidth();
+            BufferedImage out = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_RGB);
+            int colorStep = 33554431 / neurons;
+            WritableRaster raster = out.getRaster();
+            ColorModel model = out.getColorModel();
+            Object outData = null;
+            for (int y = 1; y < height; y++) {
+                for (int x = 1; x < width; x++) {
+                    int best = table[index(image, x, y)];
+                    outData = model.getDataElements(colorStep * best, outData);
+                    raster.setDataElements(x, y, outData);
+                }
+            }
+            return out;
+        }
+
+        private int index(BufferedImage img, int x, int y) {
+            int center = pixel(img, x, y);
+            int index = 0;
+            int factor = 1;
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    int pixel = pixel(img, x + j - 1, y + i - 1);
+                    if (pixel != -1) {
+                        int dr = ((center >> 16) & 0xFF) - ((pixel >> 16) & 0xFF);
+                        int dg = ((center >> 8) & 0xFF) - ((pixel >> 8) & 0xFF);
+                        int db = (center & 0xFF) - (pixel & 0xFF);
+                        index += dr * dr + dg * dg + db * db < 3600
+                                ? factor : 2 * factor;
+                    }
+                    factor *= 3;
+                }
+            }
+            return index;
+        }
+
+        private int pixel(BufferedImage image, int x, int y) {
+            if (x < 0 || x > image.getWidth() - 1 || y < 0
+                    || y > image.getHeight() - 1)
+                return -1;
+            pixelData = image.getRaster().getDataElements(x, y, pixelData);
+            return image.getColorModel().getRGB(pixelData);
+        }
+
+        BufferedImage normalize(BufferedImage image) {
+            Map<Integer, Integer> colorFrequency =
+                    new HashMap<Integer, Integer>(neurons);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int color = image.getRGB(x, y);
+                    if (colorFrequency.containsKey(color))
+                        colorFrequency.put(color, colorFrequency.get(color) + 1);
+                    else
+                        colorFrequency.put(color, 1);
+                }
+            }
+            int mostCommonColor = -1;
+            int max = 0;
+            for (Integer integer : colorFrequency.keySet()) {
+                int count = colorFrequency.get(integer);
+                if (count > max) {
+                    max = count;
+                    mostCommonColor = integer;
+                }
+            }
+
+            BufferedImage out = new BufferedImage(image.getWidth(),
+                    image.getHeight(), image.getType());
+            int black = Color.black.getRGB();
+            int white = Color.white.getRGB();
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    out.setRGB(x, y, image.getRGB(x, y) == mostCommonColor
+                            ? black : white);
+                }
+            }
+            return out;
+        }
+    }
+
+    private static void report(String name, long[] times, double pixels) {
+        System.out.printf("%-20s run %,6d ms (%5.1f ns/pixel)  "
+                + "normalize %,6d ms (%5.1f ns/pixel)%n", name,
+                times[0] / 1000000, times[0] / pixels,
+                times[1] / 1000000, times[1] / pixels);
+    }
+
+    private static long[] timePerPixel(PerPixel ed, BufferedImage image) {
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            BufferedImage out = ed.run(image);
+            long ran = System.nanoTime();
+            BufferedImage normalized = ed.normalize(out);
+            long end = System.nanoTime();
+            best[0] = Math.min(best[0], ran - start);
+            best[1] = Math.min(best[1], end - ran);
+            if (normalized.getRGB(0, 0) == 42) {
+                System.out.println(normalized);
+            }
+        }
+        return best;
+    }
+
+    private static long[] time(EdgeDetector ed, BufferedImage image) {
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            BufferedImage out = ed.runOnImage(image);
+            long ran = System.nanoTime();
+            BufferedImage normalized = ed.normalizeImage(out);
+            long end = System.nanoTime();
+            best[0] = Math.min(best[0], ran - start);
+            best[1] = Math.min(best[1], end - ran);
+            if (normalized.getRGB(0, 0) == 42) {
+                System.out.println(normalized);
+            }
+        }
+        return best;
+    }
+
+    private static long timeFused(EdgeDetector ed, BufferedImage image) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            BufferedImage edges = ed.detectEdges(image);
+            best = Math.min(best, System.nanoTime() - start);
+            if (edges.getRGB(0, 0) == 42) {
+                System.out.println(edges);
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 2160;
+        int side = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Logger.getLogger("EdgeDetector").setLevel(Level.WARNING);
+
+        BufferedImage image = createImage(width, height);
+        CustomizableSOM som = new CustomizableSOM(new Dimension(side, side),
+                9, 5000);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 5000, 1L);
+        ed.compile();
+        PerPixel perPixel = new PerPixel(som);
+
+        double pixels = (double) width * height;
+        System.out.printf("%dx%d image, %dx%d map, %d processors%n", width,
+                height, side, side, Runtime.getRuntime().availableProcessors());
+        report("per pixel", timePerPixel(perPixel, image), pixels);
+        ed.setParallel(false);
+        long[] banded = time(ed, image);
+        report("bands, one thread", banded, pixels);
+        long fused = timeFused(ed, image);
+        System.out.printf("%-20s %,6d ms (%5.1f ns/pixel) against %,d ms%n",
+                "fused, one thread", fused / 1000000, fused / pixels,
+                (banded[0] + banded[1]) / 1000000);
+        ed.setParallel(true);
+        report("bands, parallel", time(ed, image), pixels);
+        fused = timeFused(ed, image);
+        System.out.printf("%-20s %,6d ms (%5.1f ns/pixel)%n",
+                "fused, parallel", fused / 1000000, fused / pixels);
+    }
+}
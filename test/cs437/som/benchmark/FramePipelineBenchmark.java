@@ -0,0 +1,82 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.demo.EdgeDetector;
+import cs437.som.demo.FramePipeline;
+import cs437.som.network.CustomizableSOM;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares detecting the edges in a directory of frames one frame after
+ * another against the frame pipeline, and prints what each pipeline stage
+ * did.
+ *
+ * Run with {@code java cs437.som.benchmark.FramePipelineBenchmark [frames]
+ * [width] [height] [capacity]}; the defaults are 24 1920x1080 PNG frames and
+ * queues of 4 frames.
+ */
+public class FramePipelineBenchmark {
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1920;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 1080;
+        int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        Logger.getLogger("EdgeDetector").setLevel(Level.WARNING);
+        Logger.getLogger("FramePipeline").setLevel(Level.WARNING);
+
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(
+                new CustomizableSOM(new Dimension(10, 10), 9, 5000), 5000, 1L);
+        ed.compile();
+
+        File frames = Files.createTempDirectory("frames").toFile();
+        File edges = new File(frames, "edges");
+        try {
+            for (int i = 0; i < count; i++) {
+                ImageIO.write(EdgeDetectorBenchmark.createImage(width, height),
+                        "png", new File(frames,
+                                String.format("frame%04d.png", i)));
+            }
+            edges.mkdir();
+            System.out.printf("%d %dx%d frames, %d processors%n", count,
+                    width, height, Runtime.getRuntime().availableProcessors());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                String name = String.format("frame%04d.png", i);
+                ImageIO.write(ed.detectEdges(ImageIO.read(
+                        new File(frames, name))), "png", new File(edges, name));
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-10s %,7d ms (%.2f frames/s)%n", "sequential",
+                    elapsed / 1000000, count * 1e9 / elapsed);
+
+            FramePipeline pipeline = new FramePipeline(ed, capacity);
+            start = System.nanoTime();
+            pipeline.run(frames, edges);
+            elapsed = System.nanoTime() - start;
+            System.out.printf("%-10s %,7d ms (%.2f frames/s)%n", "pipelined",
+                    elapsed / 1000000, count * 1e9 / elapsed);
+            for (FramePipeline.StageMetrics m : pipeline.getMetrics()) {
+                System.out.println("  " + m);
+            }
+        } finally {
+            delete(frames);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares best matching unit searches on a trained CustomizableSOM with
+ * those on its frozen copy, for each of the built-in metrics, and measures
+ * the query throughput of a frozen map shared by several threads.
+ *
+ * Run with {@code java cs437.som.benchmark.FrozenSOMBenchmark [side]
+ * [inputLength] [threads]}; the defaults are a 60x60 map with 64 inputs
+ * queried from 8 threads.
+ */
+public class FrozenSOMBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 10;
+    private static final int QUERIES = 256;
+
+    private static double[][] randomInputs(int count, int length, Random r) {
+        double[][] inputs = new double[count][length];
+        for (double[] input : inputs) {
+            for (int j = 0; j < length; j++) {
+                input[j] = r.nextDouble();
+            }
+        }
+        return inputs;
+    }
+
+    private static long time(SelfOrganizingMap map, double[][] queries) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (double[] query : queries) {
+            sink += map.getBestMatchingNeuron(query);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == -1) {
+            System.out.println(sink);
+        }
+        return elapsed / queries.length;
+    }
+
+    private static long best(SelfOrganizingMap map, double[][] queries) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            time(map, queries);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+            best = Math.min(best, time(map, queries));
+        }
+        return best;
+    }
+
+    private static double throughput(final SelfOrganizingMap map,
+                                     final double[][] queries, int threads)
+            throws Exception {
+        final int rounds = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(new Callable<Long>() {
+                    public Long call() {
+                        long sink = 0;
+                        for (int i = 0; i < rounds; i++) {
+                            for (double[] query : queries) {
+                                sink += map.getBestMatchingNeuron(query);
+                            }
+                        }
+                        return sink;
+                    }
+                });
+            }
+            pool.invokeAll(tasks);
+            long start = System.nanoTime();
+            long sink = 0;
+            for (Future<Long> result : pool.invokeAll(tasks)) {
+                sink += result.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (sink == -1) {
+                System.out.println(sink);
+            }
+            return (double) threads * rounds * queries.length
+                    / (elapsed / 1.0e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        Random r = new Random(1);
+        double[][] queries = randomInputs(QUERIES, inputLength, r);
+        DistanceMetric[] metrics = {new EuclideanDistanceMetric(),
+                new ManhattanDistanceMetric(), new ChebyshevDistanceMetric()};
+        for (DistanceMetric metric : metrics) {
+            int iterations = side * side;
+            CustomizableSOM som = new CustomizableSOM(
+                    new Dimension(side, side), inputLength, iterations);
+            som.setDistanceMetricStrategy(metric);
+            for (double[] sample : randomInputs(iterations, inputLength, r)) {
+                som.trainWith(sample);
+            }
+            SelfOrganizingMap frozen = som.freeze();
+
+            long mutable = best(som, queries);
+            long immutable = best(frozen, queries);
+            System.out.printf("%-26s map %,8d ns  frozen %,8d ns  (%.2fx)%n",
+                    metric, mutable, immutable, (double) mutable / immutable);
+            System.out.printf("%-26s %d threads: map %,10.0f/s  "
+                    + "frozen %,10.0f/s%n", "", threads,
+                    throughput(som, queries, threads),
+                    throughput(frozen, queries, threads));
+        }
+    }
+}
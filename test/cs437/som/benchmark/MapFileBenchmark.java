@@ -0,0 +1,109 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.network.BinaryMapFile;
+import cs437.som.network.CustomizableSOM;
+import cs437.som.util.FileReader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * Compares saving and loading a map in the text format against the binary
+ * format, and the time from opening a binary map to answering its first
+ * query.
+ *
+ * Run with {@code java cs437.som.benchmark.MapFileBenchmark [side]
+ * [inputLength]}; the defaults are a 256x256 map with 64 inputs (32 MB of
+ * weights).
+ */
+public class MapFileBenchmark {
+    private static final int ROUNDS = 3;
+
+    private final CustomizableSOM som;
+    private final File text;
+    private final File binary;
+    private final double[] query;
+
+    private MapFileBenchmark(int side, int inputLength) throws IOException {
+        som = new CustomizableSOM(new Dimension(side, side), inputLength, 1);
+        som.setRandomSeed(1);
+        text = File.createTempFile("map", ".txt");
+        binary = File.createTempFile("map", ".som");
+        text.deleteOnExit();
+        binary.deleteOnExit();
+        query = new double[inputLength];
+    }
+
+    private long writeText() throws IOException {
+        long start = System.nanoTime();
+        OutputStreamWriter writer = new OutputStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(text)), "UTF-8");
+        try {
+            som.write(writer);
+        } finally {
+            writer.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long writeBinary() throws IOException {
+        long start = System.nanoTime();
+        BinaryMapFile.write(som, binary);
+        return System.nanoTime() - start;
+    }
+
+    private static long read(File file) throws IOException {
+        long start = System.nanoTime();
+        SelfOrganizingMap read = FileReader.read(file);
+        long elapsed = System.nanoTime() - start;
+        if (read.getNeuronCount() == 0) {
+            System.out.println(read);
+        }
+        return elapsed;
+    }
+
+    private long readAndQuery() throws IOException {
+        long start = System.nanoTime();
+        SelfOrganizingMap read = FileReader.read(binary);
+        int best = read.getBestMatchingNeuron(query);
+        long elapsed = System.nanoTime() - start;
+        if (best < 0) {
+            System.out.println(best);
+        }
+        return elapsed;
+    }
+
+    private void run() throws IOException {
+        long textWrite = Long.MAX_VALUE;
+        long textRead = Long.MAX_VALUE;
+        long binaryWrite = Long.MAX_VALUE;
+        long binaryRead = Long.MAX_VALUE;
+        long firstQuery = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            textWrite = Math.min(textWrite, writeText());
+            textRead = Math.min(textRead, read(text));
+            binaryWrite = Math.min(binaryWrite, writeBinary());
+            binaryRead = Math.min(binaryRead, read(binary));
+            firstQuery = Math.min(firstQuery, readAndQuery());
+        }
+
+        System.out.printf("  text:   %,12d bytes  write %,8d ms  read %,8d ms%n",
+                text.length(), textWrite / 1000000, textRead / 1000000);
+        System.out.printf("  binary: %,12d bytes  write %,8d ms  read %,8d ms"
+                + "  read and query %,8d ms%n", binary.length(),
+                binaryWrite / 1000000, binaryRead / 1000000,
+                firstQuery / 1000000);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        System.out.printf("%d neurons, %d inputs%n", side * side, inputLength);
+        new MapFileBenchmark(side, inputLength).run();
+    }
+}
@@ -0,0 +1,57 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.network.CustomizableSOM;
+import cs437.som.network.TrainingProfile;
+import cs437.som.topology.OffsetHexagonalGrid;
+
+import java.util.Random;
+
+/**
+ * Trains the map {@code ColorMapDemo} uses, with sequential and with
+ * parallel neighborhood updates, and prints how the time of each step
+ * splits between the best matching unit search and the update.
+ *
+ * Run with {@code java cs437.som.benchmark.ParallelUpdateBenchmark [side]
+ * [iterations]}; the defaults are a 300x300 map and 200 iterations, over
+ * which the neighborhood shrinks from two thirds of the map.
+ */
+public class ParallelUpdateBenchmark {
+    private static void run(int side, int iterations, boolean parallel) {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(side, side), 3,
+                iterations);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction((2.0 / 3) * side));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(0.75));
+        som.setGridTypeStrategy(new OffsetHexagonalGrid());
+        som.setParallelUpdate(parallel);
+
+        TrainingProfile profile = new TrainingProfile();
+        som.setTrainingProfile(profile);
+        Random r = new Random(1);
+        for (int i = 0; i < iterations; i++) {
+            som.trainWith(new double[]{r.nextDouble(), r.nextDouble(),
+                    r.nextDouble()});
+        }
+
+        System.out.printf("  %-10s %,8.1f ms  %s%n",
+                parallel ? "parallel" : "sequential",
+                (profile.getSearchNanos() + profile.getUpdateNanos()) / 1.0e6,
+                profile);
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        System.out.printf("%d neurons, %d iterations, %d threads%n",
+                side * side, iterations,
+                Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 3; round++) {
+            run(side, iterations, false);
+            run(side, iterations, true);
+        }
+    }
+}
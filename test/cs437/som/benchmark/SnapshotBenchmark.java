@@ -0,0 +1,50 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.Random;
+
+/**
+ * Measures what publishing snapshots costs a trainer, for several snapshot
+ * intervals.
+ *
+ * Run with {@code java cs437.som.benchmark.SnapshotBenchmark [side]
+ * [inputLength]}; the defaults are a 100x100 map with 3 inputs, as in the
+ * color map demo.
+ */
+public class SnapshotBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 2000;
+    private static final int[] INTERVALS = {0, 1000, 100, 10, 1};
+
+    private static long time(int side, int inputLength, int interval) {
+        Random r = new Random(1);
+        CustomizableSOM som = new CustomizableSOM(new Dimension(side, side),
+                inputLength, ITERATIONS);
+        som.setSnapshotInterval(interval);
+        double[] input = new double[inputLength];
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (int j = 0; j < inputLength; j++) {
+                input[j] = r.nextDouble();
+            }
+            som.trainWith(input);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        for (int interval : INTERVALS) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                best = Math.min(best, time(side, inputLength, interval));
+            }
+            System.out.printf("snapshot interval %5s: %,9d ns per iteration%n",
+                    interval == 0 ? "none" : String.valueOf(interval), best);
+        }
+    }
+}
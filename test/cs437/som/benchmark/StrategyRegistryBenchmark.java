@@ -0,0 +1,113 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.GridType;
+import cs437.som.LearningRateFunction;
+import cs437.som.NeighborhoodWidthFunction;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.network.CustomizableSOM;
+import cs437.som.util.FileReader;
+import cs437.som.util.Reflector;
+import cs437.som.util.StrategyRegistry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * Measures creating strategies by name, reflectively as map files used to be
+ * read and through the cached factories of a {@link StrategyRegistry}, and
+ * the time to load many small map files.
+ *
+ * Run with {@code java cs437.som.benchmark.StrategyRegistryBenchmark
+ * [maps]}; the default is 2000 maps.
+ */
+public class StrategyRegistryBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int CREATIONS = 200000;
+
+    private static long reflective() {
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int i = 0; i < CREATIONS; i++) {
+            hash += Reflector.instantiateFromString("cs437.som.learningrate",
+                    "HyperbolicLearningRateFunction", "0.5 0.01").hashCode();
+            hash += Reflector.instantiateFromString("cs437.som.neighborhood",
+                    "LinearDecayNeighborhoodWidthFunction", "3.0").hashCode();
+            hash += Reflector.instantiateClass("cs437.som.topology",
+                    "SquareGrid").hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (hash == 42) {
+            System.out.println(hash);
+        }
+        return elapsed;
+    }
+
+    private static long registered() {
+        StrategyRegistry registry = StrategyRegistry.getDefault();
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int i = 0; i < CREATIONS; i++) {
+            hash += registry.create(LearningRateFunction.class,
+                    "HyperbolicLearningRateFunction", "0.5 0.01").hashCode();
+            hash += registry.create(NeighborhoodWidthFunction.class,
+                    "LinearDecayNeighborhoodWidthFunction", "3.0").hashCode();
+            hash += registry.create(GridType.class,
+                    "SquareGrid", "").hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (hash == 42) {
+            System.out.println(hash);
+        }
+        return elapsed;
+    }
+
+    private static long load(File[] files) throws IOException {
+        long start = System.nanoTime();
+        int neurons = 0;
+        for (File file : files) {
+            SelfOrganizingMap map = FileReader.read(file);
+            neurons += map.getNeuronCount();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (neurons == 0) {
+            System.out.println(neurons);
+        }
+        return elapsed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        File[] files = new File[maps];
+        CustomizableSOM som = new CustomizableSOM(new Dimension(4, 4), 3, 100);
+        for (int i = 0; i < maps; i++) {
+            files[i] = File.createTempFile("small", ".txt");
+            files[i].deleteOnExit();
+            OutputStreamWriter writer = new OutputStreamWriter(
+                    new FileOutputStream(files[i]));
+            try {
+                som.write(writer);
+            } finally {
+                writer.close();
+            }
+        }
+
+        long reflective = Long.MAX_VALUE;
+        long registered = Long.MAX_VALUE;
+        long loading = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            reflective = Math.min(reflective, reflective());
+            registered = Math.min(registered, registered());
+            loading = Math.min(loading, load(files));
+        }
+
+        System.out.printf("strategy creation: reflective %,6d ns"
+                + "  registry %,6d ns%n", reflective / (3L * CREATIONS),
+                registered / (3L * CREATIONS));
+        System.out.printf("%,d small maps loaded in %,d ms (%,d us each)%n",
+                maps, loading / 1000000, loading / 1000 / maps);
+    }
+}
@@ -0,0 +1,87 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.demo.EdgeDetector;
+import cs437.som.network.CustomizableSOM;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares detecting the edges in an image file by decoding it whole against
+ * streaming it through in strips, in time and in the most heap used.
+ *
+ * Run with {@code java cs437.som.benchmark.StreamingEdgeBenchmark [width]
+ * [height] [streamed]}; the defaults are a 3840x8640 image, four 4K frames
+ * tall.  Passing {@code streamed} skips decoding the image whole, so that the
+ * streamed run can be tried with a heap too small for the whole image.
+ */
+public class StreamingEdgeBenchmark {
+    private static void resetPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void report(String name, long start, long peak) {
+        System.out.printf("%-10s %,7d ms, peak heap %,6d MB%n", name,
+                (System.nanoTime() - start) / 1000000, peak >> 20);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 8640;
+        boolean whole = args.length < 3 || !"streamed".equals(args[2]);
+        Logger.getLogger("EdgeDetector").setLevel(Level.WARNING);
+
+        CustomizableSOM som = new CustomizableSOM(new Dimension(10, 10),
+                9, 5000);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 5000, 1L);
+        ed.compile();
+
+        File input = File.createTempFile("image", ".png");
+        File output = File.createTempFile("edges", ".png");
+        try {
+            ImageIO.write(EdgeDetectorBenchmark.createImage(width, height),
+                    "png", input);
+            System.out.printf("%dx%d image, %,d KB as PNG%n", width, height,
+                    input.length() >> 10);
+
+            if (whole) {
+                resetPeaks();
+                long start = System.nanoTime();
+                ImageIO.write(ed.detectEdges(ImageIO.read(input)), "png",
+                        output);
+                report("whole", start, peakHeap());
+            }
+
+            resetPeaks();
+            long start = System.nanoTime();
+            ed.detectEdges(input, output, "png");
+            report("streamed", start, peakHeap());
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.network.CustomizableSOM;
+import cs437.som.util.FileReader;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the throughput of writing and reading maps in the text format,
+ * against the per-neuron {@code String.format} writer and regular expression
+ * reader it replaced.
+ *
+ * Run with {@code java cs437.som.benchmark.TextMapBenchmark [side]
+ * [inputLength]}; the defaults are a 256x256 map with 64 inputs.
+ */
+public class TextMapBenchmark {
+    private static final int ROUNDS = 3;
+    private static final Pattern weightVectorRegEx = Pattern.compile(
+            "([+-]?[0-9]*\\.?[0-9]+(?:[Ee][+-]?[0-9]+)?)(?:,?\\s*)?");
+
+    private final CustomizableSOM som;
+    private final File file;
+    private final int inputLength;
+
+    private TextMapBenchmark(int side, int inputLength) throws IOException {
+        this.inputLength = inputLength;
+        som = new CustomizableSOM(new Dimension(side, side), inputLength, 1);
+        som.setRandomSeed(1);
+        file = File.createTempFile("map", ".txt");
+        file.deleteOnExit();
+    }
+
+    private long write() throws IOException {
+        long start = System.nanoTime();
+        OutputStreamWriter writer = new OutputStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            som.write(writer);
+        } finally {
+            writer.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Write the weights the way maps were written before. */
+    private long writeFormatted() throws IOException {
+        long start = System.nanoTime();
+        OutputStreamWriter writer = new OutputStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            double[] row = new double[inputLength];
+            writer.write(String.format("Weights:%n"));
+            for (int i = 0; i < som.getNeuronCount(); i++) {
+                for (int j = 0; j < inputLength; j++) {
+                    row[j] = som.getWeight(i, j);
+                }
+                writer.write(String.format("\t%s%n", Arrays.toString(row)));
+            }
+            writer.write(String.format("end weights%n"));
+        } finally {
+            writer.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long read() throws IOException {
+        long start = System.nanoTime();
+        SelfOrganizingMap read = FileReader.read(file);
+        long elapsed = System.nanoTime() - start;
+        if (read.getNeuronCount() == 0) {
+            System.out.println(read);
+        }
+        return elapsed;
+    }
+
+    /** Read the weights the way maps were read before. */
+    private long readMatched() throws IOException {
+        long start = System.nanoTime();
+        BufferedReader input = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file)));
+        double sum = 0.0;
+        try {
+            String line = input.readLine();
+            while (line != null && !line.startsWith("Weights:")) {
+                line = input.readLine();
+            }
+            line = input.readLine();
+            for (int i = 0; i < som.getNeuronCount() && line != null; i++) {
+                Matcher weightMatch = weightVectorRegEx.matcher(line);
+                for (int j = 0; j < inputLength; j++) {
+                    weightMatch.find();
+                    sum += Double.parseDouble(weightMatch.group(1));
+                }
+                line = input.readLine();
+            }
+        } finally {
+            input.close();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == 0.0) {
+            System.out.println(sum);
+        }
+        return elapsed;
+    }
+
+    private void run() throws IOException {
+        long formatted = Long.MAX_VALUE;
+        long matched = Long.MAX_VALUE;
+        long written = Long.MAX_VALUE;
+        long read = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            formatted = Math.min(formatted, writeFormatted());
+            matched = Math.min(matched, readMatched());
+            written = Math.min(written, write());
+            read = Math.min(read, read());
+        }
+
+        double megabytes = file.length() / 1e6;
+        System.out.printf("  %,.1f MB of text%n", megabytes);
+        System.out.printf("  before: write %,8d ms (%6.1f MB/s)"
+                + "  read %,8d ms (%6.1f MB/s)%n",
+                formatted / 1000000, megabytes * 1e9 / formatted,
+                matched / 1000000, megabytes * 1e9 / matched);
+        System.out.printf("  after:  write %,8d ms (%6.1f MB/s)"
+                + "  read %,8d ms (%6.1f MB/s)%n",
+                written / 1000000, megabytes * 1e9 / written,
+                read / 1000000, megabytes * 1e9 / read);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        System.out.printf("%d neurons, %d inputs%n", side * side, inputLength);
+        new TextMapBenchmark(side, inputLength).run();
+    }
+}
@@ -0,0 +1,123 @@
+package cs437.som.benchmark;
+
+import cs437.som.Dimension;
+import cs437.som.learningrate.HyperbolicLearningRateFunction;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.ConstantNeighborhoodWidthFunction;
+import cs437.som.network.CustomizableSOM;
+
+import java.util.Random;
+
+/**
+ * Compares training steps that evaluate the learning rate, neighborhood width
+ * and membership for every updated neuron against the current steps, which
+ * evaluate the schedules once per iteration and memberships once per
+ * distinct grid distance.
+ *
+ * The maps use a {@link HyperbolicLearningRateFunction} and a
+ * {@link GeometricNeighborhoodMembershipFunction}, both of which call
+ * {@code Math.pow}.  Run with
+ * {@code java cs437.som.benchmark.TrainingStepBenchmark [side] [width]};
+ * the defaults are a 100x100 map, a neighborhood width of 40 and inputs of
+ * length 3.
+ */
+public class TrainingStepBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 10;
+    private static final int SAMPLES = 200;
+    private static final int INPUT_LENGTH = 3;
+    private static final int ITERATIONS = 1000000;
+
+    /* Evaluates every schedule per neuron, as training steps used to. */
+    private static class UnhoistedSOM extends CustomizableSOM {
+        private final int[] neighbors;
+        private final double[] distances;
+
+        UnhoistedSOM(Dimension gridSize) {
+            super(gridSize, INPUT_LENGTH, ITERATIONS);
+            neighbors = new int[gridSize.area + 1];
+            distances = new double[gridSize.area + 1];
+        }
+
+        @Override
+        protected void adjustNeighborsOf(int neuron, double[] input) {
+            double width = neighborhoodWidth.neighborhoodWidth(time);
+            int count = gridType.neighborsWithin(neuron, width, neighbors,
+                    distances);
+            for (int k = 0; k < count; k++) {
+                double membership = neighborhoodMembership
+                        .neighborhoodMembership(distances[k], width);
+                if (neighbors[k] != neuron && membership > 0) {
+                    adjustNeuronWeights(neighbors[k], input, membership);
+                }
+            }
+        }
+
+        @Override
+        protected void adjustNeuronWeights(int neuron, double[] input,
+                                           double membership) {
+            for (int j = 0; j < input.length; j++) {
+                double weight = weights.get(neuron, j);
+                weights.set(neuron, j, weight
+                        + learningRate.learningRate(time) * membership
+                        * (input[j] - weight));
+            }
+        }
+    }
+
+    private final CustomizableSOM som;
+    private final double[][] samples;
+
+    private TrainingStepBenchmark(CustomizableSOM som, double width) {
+        this.som = som;
+        som.setLearningRateFunctionStrategy(
+                new HyperbolicLearningRateFunction(0.8, 0.01));
+        som.setNeighborhoodWidthFunctionStrategy(
+                new ConstantNeighborhoodWidthFunction(width));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+
+        Random r = new Random(1);
+        samples = new double[SAMPLES][INPUT_LENGTH];
+        for (double[] sample : samples) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+    }
+
+    private long time() {
+        long start = System.nanoTime();
+        for (double[] sample : samples) {
+            som.trainWith(sample);
+        }
+        return (System.nanoTime() - start) / samples.length;
+    }
+
+    private long run() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            long t = time();
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, t);
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        double width = args.length > 1 ? Double.parseDouble(args[1]) : 40;
+        Dimension gridSize = new Dimension(side, side);
+
+        long unhoisted = new TrainingStepBenchmark(
+                new UnhoistedSOM(gridSize), width).run();
+        long hoisted = new TrainingStepBenchmark(new CustomizableSOM(gridSize,
+                INPUT_LENGTH, ITERATIONS), width).run();
+
+        System.out.printf("%d neurons, neighborhood width %.1f%n",
+                side * side, width);
+        System.out.printf("  per neuron %,10d ns  per iteration %,10d ns  %.2fx%n",
+                unhoisted, hoisted, unhoisted / (double) hoisted);
+    }
+}
@@ -0,0 +1,165 @@
+package cs437.som.benchmark;
+
+import cs437.som.util.VectorKernels;
+
+import java.util.Random;
+
+/**
+ * Compares the simple loops the distance metrics and weight stores used to
+ * run against {@link VectorKernels}, scanning a flat matrix of one million
+ * weights with input lengths from 3 (color maps) to 1024 (embeddings).
+ *
+ * Run with {@code java cs437.som.benchmark.VectorKernelsBenchmark [lengths]},
+ * where lengths is a comma separated list.
+ */
+public class VectorKernelsBenchmark {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 30;
+    private static final int WEIGHTS = 1 << 20;
+    private static final double RATE = 1.0e-3;
+
+    private static final String[] NAMES = {"euclidean", "manhattan",
+            "chebyshev", "dot", "adjust"};
+
+    private final int length;
+    private final int rows;
+    private final double[] matrix;
+    private final double[] input;
+
+    private VectorKernelsBenchmark(int length) {
+        this.length = length;
+        rows = WEIGHTS / length;
+        matrix = new double[rows * length];
+        input = new double[length];
+        Random r = new Random(1);
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = r.nextDouble();
+        }
+        for (int i = 0; i < length; i++) {
+            input[i] = r.nextDouble();
+        }
+    }
+
+    private static double simpleSquared(double[] v0, int offset, double[] v1) {
+        double sum = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            double difference = v0[offset + i] - v1[i];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+    private static double simpleManhattan(double[] v0, int offset, double[] v1) {
+        double sum = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            sum += Math.abs(v0[offset + i] - v1[i]);
+        }
+        return sum;
+    }
+
+    private static double simpleChebyshev(double[] v0, int offset, double[] v1) {
+        double max = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            double difference = Math.abs(v0[offset + i] - v1[i]);
+            if (difference > max) {
+                max = difference;
+            }
+        }
+        return max;
+    }
+
+    private static double simpleDot(double[] v0, int offset, double[] v1) {
+        double sum = 0.0;
+        for (int i = 0; i < v1.length; i++) {
+            sum += v0[offset + i] * v1[i];
+        }
+        return sum;
+    }
+
+    private static void simpleAdjust(double[] v0, int offset, double[] v1,
+                                     double rate) {
+        for (int i = 0; i < v1.length; i++) {
+            v0[offset + i] += rate * (v1[i] - v0[offset + i]);
+        }
+    }
+
+    private double scan(int which, boolean kernel) {
+        double sink = 0.0;
+        for (int n = 0; n < rows; n++) {
+            int offset = n * length;
+            switch (which) {
+                case 0:
+                    sink += kernel
+                            ? VectorKernels.squaredDistance(matrix, offset, input)
+                            : simpleSquared(matrix, offset, input);
+                    break;
+                case 1:
+                    sink += kernel
+                            ? VectorKernels.manhattan(matrix, offset, input)
+                            : simpleManhattan(matrix, offset, input);
+                    break;
+                case 2:
+                    sink += kernel
+                            ? VectorKernels.chebyshev(matrix, offset, input)
+                            : simpleChebyshev(matrix, offset, input);
+                    break;
+                case 3:
+                    sink += kernel
+                            ? VectorKernels.dot(matrix, offset, input)
+                            : simpleDot(matrix, offset, input);
+                    break;
+                default:
+                    if (kernel) {
+                        VectorKernels.adjust(matrix, offset, input, RATE);
+                    } else {
+                        simpleAdjust(matrix, offset, input, RATE);
+                    }
+                    break;
+            }
+        }
+        return sink;
+    }
+
+    private long time(int which, boolean kernel) {
+        long start = System.nanoTime();
+        double sink = scan(which, kernel);
+        long elapsed = System.nanoTime() - start;
+        if (sink == -1.0) {
+            System.out.println(sink);
+        }
+        return elapsed;
+    }
+
+    private void run() {
+        long[][] best = new long[NAMES.length][2];
+        for (long[] pair : best) {
+            pair[0] = Long.MAX_VALUE;
+            pair[1] = Long.MAX_VALUE;
+        }
+
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            for (int which = 0; which < NAMES.length; which++) {
+                for (int k = 0; k < 2; k++) {
+                    long t = time(which, k == 1);
+                    if (round >= WARMUP_ROUNDS && t < best[which][k]) {
+                        best[which][k] = t;
+                    }
+                }
+            }
+        }
+
+        System.out.printf("input length %d (%d rows)%n", length, rows);
+        for (int i = 0; i < NAMES.length; i++) {
+            System.out.printf("  %-10s simple %,10d ns  kernel %,10d ns  %.2fx%n",
+                    NAMES[i], best[i][0], best[i][1],
+                    best[i][0] / (double) best[i][1]);
+        }
+    }
+
+    public static void main(String[] args) {
+        String lengths = args.length > 0 ? args[0] : "3,16,64,256,1024";
+        for (String length : lengths.split(",")) {
+            new VectorKernelsBenchmark(Integer.parseInt(length.trim())).run();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package cs437.som.benchmark;
+
+import cs437.som.network.FlatWeightStore;
+
+import java.util.Random;
+
+/**
+ * Compares best matching unit scans and weight updates over the old
+ * array-of-arrays weight layout against {@link FlatWeightStore}.
+ *
+ * Run with {@code java cs437.som.benchmark.WeightStoreBenchmark [side]
+ * [inputLength] [scatter]}; the defaults are a 300x300 map with 3 inputs,
+ * matching ColorMapDemo.  In a fresh heap the nested rows are allocated back
+ * to back and behave much like a flat array; passing {@code scatter}
+ * allocates them in a shuffled order with other objects in between, which
+ * is closer to the layout of a long-running application's heap.
+ */
+public class WeightStoreBenchmark {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 50;
+    private static final double RATE = 0.05;
+
+    private final int neuronCount;
+    private final int inputLength;
+    private final double[][] nested;
+    private final FlatWeightStore flat;
+    private final double[][] inputs;
+    private final Object[] filler;
+
+    private WeightStoreBenchmark(int neuronCount, int inputLength,
+                                 boolean scatter) {
+        this.neuronCount = neuronCount;
+        this.inputLength = inputLength;
+        Random r = new Random(1);
+
+        nested = new double[neuronCount][];
+        filler = new Object[scatter ? neuronCount : 0];
+        int[] order = new int[neuronCount];
+        for (int i = 0; i < neuronCount; i++) {
+            order[i] = i;
+        }
+        if (scatter) {
+            for (int i = neuronCount - 1; i > 0; i--) {
+                int j = r.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+        }
+        for (int i = 0; i < neuronCount; i++) {
+            nested[order[i]] = new double[inputLength];
+            if (scatter) {
+                filler[i] = new long[1 + r.nextInt(16)];
+            }
+        }
+
+        flat = new FlatWeightStore(neuronCount, inputLength);
+        for (int i = 0; i < neuronCount; i++) {
+            for (int j = 0; j < inputLength; j++) {
+                double w = r.nextDouble();
+                nested[i][j] = w;
+                flat.set(i, j, w);
+            }
+        }
+
+        inputs = new double[16][inputLength];
+        for (double[] input : inputs) {
+            for (int j = 0; j < inputLength; j++) {
+                input[j] = r.nextDouble();
+            }
+        }
+    }
+
+    private int nestedScan(double[] input) {
+        int best = 0;
+        double lowest = Double.MAX_VALUE;
+        for (int i = 0; i < neuronCount; i++) {
+            double[] w = nested[i];
+            double sum = 0.0;
+            for (int j = 0; j < inputLength; j++) {
+                double difference = input[j] - w[j];
+                sum += difference * difference;
+            }
+            if (sum < lowest) {
+                lowest = sum;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int flatScan(double[] input) {
+        int best = 0;
+        double lowest = Double.MAX_VALUE;
+        for (int i = 0; i < neuronCount; i++) {
+            double sum = flat.squaredDistance(i, input);
+            if (sum < lowest) {
+                lowest = sum;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private void nestedUpdate(double[] input) {
+        for (int i = 0; i < neuronCount; i++) {
+            double[] w = nested[i];
+            for (int j = 0; j < inputLength; j++) {
+                w[j] += RATE * (input[j] - w[j]);
+            }
+        }
+    }
+
+    private void flatUpdate(double[] input) {
+        for (int i = 0; i < neuronCount; i++) {
+            flat.adjust(i, input, RATE);
+        }
+    }
+
+    private long time(int which) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (double[] input : inputs) {
+            switch (which) {
+                case 0: sink += nestedScan(input); break;
+                case 1: sink += flatScan(input); break;
+                case 2: nestedUpdate(input); break;
+                default: flatUpdate(input); break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == -1) {
+            System.out.println(sink);
+        }
+        return elapsed / inputs.length;
+    }
+
+    private void run() {
+        String[] names = {"nested scan", "flat scan", "nested update",
+                "flat update"};
+        long[] best = new long[names.length];
+        for (int i = 0; i < best.length; i++) {
+            best[i] = Long.MAX_VALUE;
+        }
+
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            for (int which = 0; which < names.length; which++) {
+                long t = time(which);
+                if (round >= WARMUP_ROUNDS && t < best[which]) {
+                    best[which] = t;
+                }
+            }
+        }
+
+        System.out.printf("%d neurons, %d inputs%s%n", neuronCount,
+                inputLength, filler.length > 0 ? ", scattered rows" : "");
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("  %-14s %,12d ns/sample%n", names[i], best[i]);
+        }
+        System.out.printf("  scan speedup   %.2fx%n", best[0] / (double) best[1]);
+        System.out.printf("  update speedup %.2fx%n", best[2] / (double) best[3]);
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int inputLength = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        boolean scatter = args.length > 2 && args[2].equals("scatter");
+        new WeightStoreBenchmark(side * side, inputLength, scatter).run();
+    }
+}
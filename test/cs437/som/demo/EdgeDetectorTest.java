@@ -0,0 +1,389 @@
+package cs437.som.demo;
+
+import cs437.som.Dimension;
+import cs437.som.network.CustomizableSOM;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class EdgeDetectorTest {
+    private static final int SIZE = 200;
+
+    private static BufferedImage randomImage(int type) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, type);
+        Random r = new Random(0);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                image.setRGB(x, y, r.nextInt(2) == 0 ? 0x101010 : 0xF0F0F0);
+            }
+        }
+        return image;
+    }
+
+    private static EdgeDetector createDetector() {
+        return EdgeDetector.trainRandomlyFromMap(
+                new CustomizableSOM(new Dimension(6, 6), 9, 500), 500);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void testSameOutputForEveryImageType() throws Exception {
+        EdgeDetector ed = createDetector();
+        BufferedImage ints = ed.runOnImage(
+                randomImage(BufferedImage.TYPE_INT_RGB));
+        BufferedImage bytes = ed.runOnImage(
+                randomImage(BufferedImage.TYPE_3BYTE_BGR));
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(bytes.getRGB(x, y), ints.getRGB(x, y));
+            }
+        }
+    }
+
+    /* Colors at, just inside and well either side of the minimum color
+     * distance from each other, and white, which reads as off the image. */
+    private static final int[] COLORS = {0x000000, 0x3B0000, 0x3C0000,
+            0x101010, 0x2A2A2A, 0x404040, 0xF0F0F0, 0xFFFFFF};
+
+    @Test
+    public void testCompiledMatchesSearch() throws Exception {
+        BufferedImage image = new BufferedImage(SIZE, SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        Random r = new Random(1);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                image.setRGB(x, y, COLORS[r.nextInt(COLORS.length)]);
+            }
+        }
+
+        EdgeDetector ed = createDetector();
+        BufferedImage searched = ed.runOnImage(image);
+        ed.compile();
+        BufferedImage compiled = ed.runOnImage(image);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(compiled.getRGB(x, y), searched.getRGB(x, y));
+            }
+        }
+    }
+
+    private static BufferedImage colorImage(int width, int height, int type,
+                                            long seed) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random r = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = r.nextInt(4) == 0 ? r.nextInt(256) << 24
+                        : 0xFF000000;
+                image.setRGB(x, y, alpha | COLORS[r.nextInt(COLORS.length)]);
+            }
+        }
+        return image;
+    }
+
+    /* Edge detection as first written, one getRGB at a time. */
+    private static BufferedImage referenceRun(CustomizableSOM som,
+                                              BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage out = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        int colorStep = 33554431 / som.getNeuronCount();
+        int[] matrix = new int[9];
+        for (int y = 1; y < height; y++) {
+            for (int x = 1; x < width; x++) {
+                int center = image.getRGB(x, y);
+                for (int i = 0; i < 3; i++) {
+                    for (int j = 0; j < 3; j++) {
+                        int px = x + j - 1;
+                        int py = y + i - 1;
+                        int pixel = px >= width || py >= height
+                                ? -1 : image.getRGB(px, py);
+                        if (pixel == -1) {
+                            matrix[i * 3 + j] = -1;
+                        } else {
+                            int dr = ((center >> 16) & 0xFF)
+                                    - ((pixel >> 16) & 0xFF);
+                            int dg = ((center >> 8) & 0xFF)
+                                    - ((pixel >> 8) & 0xFF);
+                            int db = (center & 0xFF) - (pixel & 0xFF);
+                            matrix[i * 3 + j] = Math.sqrt(
+                                    dr * dr + dg * dg + db * db) < 60 ? 0 : 1;
+                        }
+                    }
+                }
+                out.setRGB(x, y, colorStep * som.getBestMatchingNeuron(matrix));
+            }
+        }
+        return out;
+    }
+
+    private static BufferedImage referenceNormalize(BufferedImage image) {
+        Map<Integer, Integer> frequency = new HashMap<Integer, Integer>(36);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int color = image.getRGB(x, y);
+                Integer count = frequency.get(color);
+                frequency.put(color, count == null ? 1 : count + 1);
+            }
+        }
+        int mostCommon = -1;
+        int max = 0;
+        for (Integer color : frequency.keySet()) {
+            if (frequency.get(color) > max) {
+                max = frequency.get(color);
+                mostCommon = color;
+            }
+        }
+
+        BufferedImage out = new BufferedImage(image.getWidth(),
+                image.getHeight(), image.getType());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                out.setRGB(x, y, image.getRGB(x, y) == mostCommon
+                        ? 0xFF000000 : 0xFFFFFFFF);
+            }
+        }
+        return out;
+    }
+
+    private static void assertSameImage(BufferedImage actual,
+                                        BufferedImage expected) {
+        assertEquals(actual.getWidth(), expected.getWidth());
+        assertEquals(actual.getHeight(), expected.getHeight());
+        assertEquals(actual.getType(), expected.getType());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(actual.getRGB(x, y), expected.getRGB(x, y),
+                        "(" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesReference() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(6, 6), 9, 500);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 500, 3L);
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_3BYTE_BGR};
+        int[][] sizes = {{67, 45}, {1, 40}, {40, 1}, {33, 100}, {4, 3},
+                {3, 4}, {5, 5}};
+
+        List<BufferedImage> images = new ArrayList<BufferedImage>();
+        long seed = 0;
+        for (int type : types) {
+            for (int[] size : sizes) {
+                images.add(colorImage(size[0], size[1], type, seed++));
+            }
+        }
+        images.add(colorImage(90, 80, BufferedImage.TYPE_INT_RGB, seed)
+                .getSubimage(7, 5, 61, 70));
+
+        for (boolean compiled : new boolean[]{false, true}) {
+            if (compiled) {
+                ed.compile();
+            }
+            for (BufferedImage image : images) {
+                BufferedImage expected = referenceRun(som, image);
+                for (boolean parallel : new boolean[]{false, true}) {
+                    ed.setParallel(parallel);
+                    BufferedImage detected = ed.runOnImage(image);
+                    assertSameImage(detected, expected);
+                    assertSameImage(ed.normalizeImage(detected),
+                            referenceNormalize(expected));
+                    assertSameImage(ed.detectEdges(image),
+                            referenceNormalize(expected));
+                    assertSameImage(ed.normalizeImage(image),
+                            referenceNormalize(image));
+                }
+            }
+        }
+    }
+
+    /* Small images often have colors that are equally common. */
+    @Test
+    public void testFusedBreaksTiesAsNormalizing() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(3, 3), 9, 200);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 200, 5L);
+        ed.compile();
+        Random r = new Random(2);
+        for (int i = 0; i < 300; i++) {
+            BufferedImage image = colorImage(2 + r.nextInt(6),
+                    2 + r.nextInt(6), BufferedImage.TYPE_INT_RGB, i);
+            BufferedImage expected =
+                    referenceNormalize(referenceRun(som, image));
+            assertSameImage(ed.detectEdges(image), expected);
+        }
+    }
+
+    /* PNG images are read back as bytes. */
+    private static BufferedImage readRGB(File file) throws Exception {
+        BufferedImage read = ImageIO.read(file);
+        BufferedImage image = new BufferedImage(read.getWidth(),
+                read.getHeight(), BufferedImage.TYPE_INT_RGB);
+        image.getGraphics().drawImage(read, 0, 0, null);
+        return image;
+    }
+
+    private static BufferedImage streamEdges(EdgeDetector ed, File input,
+                                             int stripRows) throws Exception {
+        return streamEdges(ed, input, stripRows, null);
+    }
+
+    private static BufferedImage streamEdges(EdgeDetector ed, File input,
+            int stripRows, IIOReadProgressListener listener) throws Exception {
+        File output = File.createTempFile("edges", ".png");
+        try {
+            ImageInputStream in = ImageIO.createImageInputStream(input);
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            reader.setInput(in, true, true);
+            if (listener != null) {
+                reader.addIIOReadProgressListener(listener);
+            }
+            ImageWriter writer =
+                    ImageIO.getImageWritersByFormatName("png").next();
+            output.delete();
+            ImageOutputStream out = ImageIO.createImageOutputStream(output);
+            writer.setOutput(out);
+            try {
+                ed.detectEdges(reader, writer, stripRows);
+            } finally {
+                out.close();
+                in.close();
+                writer.dispose();
+                reader.dispose();
+            }
+            return readRGB(output);
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testStreamingMatchesInMemory() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(6, 6), 9, 500);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 500, 3L);
+        ed.compile();
+        int[][] sizes = {{67, 101}, {1, 40}, {40, 1}, {33, 70}, {4, 3}};
+        int[] stripRows = {1, 2, 7, 32, 200};
+
+        File input = File.createTempFile("image", ".png");
+        try {
+            long seed = 0;
+            for (int[] size : sizes) {
+                BufferedImage image = colorImage(size[0], size[1],
+                        BufferedImage.TYPE_INT_RGB, seed++);
+                ImageIO.write(image, "png", input);
+                BufferedImage expected = ed.detectEdges(image);
+                for (int rows : stripRows) {
+                    assertSameImage(streamEdges(ed, input, rows), expected);
+                }
+            }
+
+            File output = File.createTempFile("edges", ".png");
+            try {
+                ed.detectEdges(input, output, "png");
+                assertSameImage(readRGB(output),
+                        ed.detectEdges(ImageIO.read(input)));
+            } finally {
+                output.delete();
+            }
+        } finally {
+            input.delete();
+        }
+    }
+
+    /* Counts the reads made through a reader. */
+    private static final class ReadCounter implements IIOReadProgressListener {
+        int reads = 0;
+
+        public void imageStarted(ImageReader source, int imageIndex) {
+            reads++;
+        }
+
+        public void sequenceStarted(ImageReader source, int minIndex) { }
+        public void sequenceComplete(ImageReader source) { }
+        public void imageProgress(ImageReader source, float done) { }
+        public void imageComplete(ImageReader source) { }
+        public void thumbnailStarted(ImageReader source, int imageIndex,
+                                     int thumbnailIndex) { }
+        public void thumbnailProgress(ImageReader source, float done) { }
+        public void thumbnailComplete(ImageReader source) { }
+        public void readAborted(ImageReader source) { }
+    }
+
+    @Test
+    public void testStreamingDecodesEachStripOnce() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(3, 3), 9, 200);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 200, 4L);
+        ed.compile();
+        ReadCounter counter = new ReadCounter();
+
+        File input = File.createTempFile("image", ".png");
+        try {
+            BufferedImage image =
+                    colorImage(20, 45, BufferedImage.TYPE_INT_RGB, 9L);
+            ImageIO.write(image, "png", input);
+            assertSameImage(streamEdges(ed, input, 4, counter),
+                    ed.detectEdges(image));
+            assertEquals(counter.reads, 12);
+        } finally {
+            input.delete();
+        }
+    }
+
+    @Test
+    public void testStreamingSpillsWideNeuronIndices() throws Exception {
+        CustomizableSOM som =
+                new CustomizableSOM(new Dimension(17, 17), 9, 100);
+        EdgeDetector ed = EdgeDetector.trainRandomlyFromMap(som, 100, 6L);
+        ed.compile();
+
+        File input = File.createTempFile("image", ".png");
+        try {
+            BufferedImage image =
+                    colorImage(30, 25, BufferedImage.TYPE_INT_RGB, 11L);
+            ImageIO.write(image, "png", input);
+            assertSameImage(streamEdges(ed, input, 6), ed.detectEdges(image));
+        } finally {
+            input.delete();
+        }
+    }
+
+    @Test
+    public void testNoAllocationPerPixel() throws Exception {
+        EdgeDetector ed = createDetector();
+        ed.setParallel(false);
+        BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB);
+        ed.runOnImage(image);
+
+        long before = allocatedBytes();
+        ed.runOnImage(image);
+        long allocated = allocatedBytes() - before;
+
+        // The output image itself, and a little for logging.
+        assertTrue(allocated < SIZE * SIZE * 4 + 16384, allocated + " bytes");
+    }
+}
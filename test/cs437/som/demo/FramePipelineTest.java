@@ -0,0 +1,192 @@
+package cs437.som.demo;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import cs437.som.network.CustomizableSOM;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class FramePipelineTest {
+    private static final int CAPACITY = 2;
+
+    private File frames;
+    private File edges;
+    private EdgeDetector detector;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        frames = Files.createTempDirectory("frames").toFile();
+        edges = new File(frames, "edges");
+        detector = EdgeDetector.trainRandomlyFromMap(
+                new CustomizableSOM(new Dimension(6, 6), 9, 500), 500, 3L);
+        detector.compile();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        delete(frames);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /* Blocks of a few colors, so that frames have flat areas and edges. */
+    private static BufferedImage frame(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Random r = new Random(seed);
+        int[] colors = {0x000000, 0x808080, 0x3C0000, 0xF0F0F0};
+        for (int y = 0; y < height; y += 4) {
+            for (int x = 0; x < width; x += 4) {
+                int color = colors[r.nextInt(colors.length)];
+                for (int i = y; i < Math.min(height, y + 4); i++) {
+                    for (int j = x; j < Math.min(width, x + 4); j++) {
+                        image.setRGB(j, i, color);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameImage(BufferedImage actual,
+                                        BufferedImage expected) {
+        assertEquals(actual.getWidth(), expected.getWidth());
+        assertEquals(actual.getHeight(), expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(actual.getRGB(x, y), expected.getRGB(x, y),
+                        "(" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesDetectEdges() throws Exception {
+        int count = 9;
+        for (int i = 0; i < count; i++) {
+            String name = String.format("frame%02d.%s", i,
+                    i % 3 == 0 ? "jpg" : "png");
+            ImageIO.write(frame(37 + i, 41, i), i % 3 == 0 ? "jpg" : "png",
+                    new File(frames, name));
+        }
+        new File(frames, "notes.txt").createNewFile();
+
+        FramePipeline pipeline = new FramePipeline(detector, CAPACITY);
+        pipeline.run(frames, edges);
+
+        for (int i = 0; i < count; i++) {
+            File input = new File(frames, String.format("frame%02d.%s", i,
+                    i % 3 == 0 ? "jpg" : "png"));
+            File output = new File(edges, String.format("frame%02d.png", i));
+            assertSameImage(ImageIO.read(output),
+                    detector.detectEdges(ImageIO.read(input)));
+        }
+        assertEquals(edges.list().length, count);
+
+        List<FramePipeline.StageMetrics> metrics = pipeline.getMetrics();
+        assertEquals(metrics.size(), 4);
+        for (FramePipeline.StageMetrics m : metrics) {
+            assertEquals(m.getFrames(), count, m.getName());
+            assertTrue(m.getBusyNanos() > 0, m.getName());
+            assertTrue(m.getBusyNanos() + m.getStarvedNanos()
+                    + m.getBlockedNanos() <= m.getElapsedNanos(),
+                    m.getName());
+            assertTrue(m.getMaxQueueDepth() <= m.getQueueCapacity(),
+                    m.getName());
+            assertTrue(m.getThroughput() > 0, m.getName());
+        }
+        assertEquals(metrics.get(0).getQueueCapacity(), count + 1);
+        assertEquals(metrics.get(1).getQueueCapacity(), CAPACITY);
+    }
+
+    @Test
+    public void testFailureStopsPipeline() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            File file = new File(frames, String.format("frame%02d.png", i));
+            if (i == 3) {
+                FileOutputStream out = new FileOutputStream(file);
+                try {
+                    out.write(new byte[]{1, 2, 3});
+                } finally {
+                    out.close();
+                }
+            } else {
+                ImageIO.write(frame(20, 20, i), "png", file);
+            }
+        }
+
+        FramePipeline pipeline = new FramePipeline(detector, CAPACITY);
+        try {
+            pipeline.run(frames, edges);
+            fail("A frame that cannot be decoded should fail the run.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("frame03"), e.getMessage());
+        }
+        assertFalse(new File(edges, "frame19.png").exists());
+        assertEquals(pipeline.getMetrics().get(0).getFrames(), 3);
+    }
+
+    @Test
+    public void testSharedBaseNamesAreRejected() throws Exception {
+        ImageIO.write(frame(24, 20, 1), "png", new File(frames, "a.png"));
+        ImageIO.write(frame(24, 20, 2), "jpg", new File(frames, "a.jpg"));
+        ImageIO.write(frame(24, 20, 3), "png", new File(frames, "b.png"));
+
+        FramePipeline pipeline = new FramePipeline(detector, CAPACITY);
+        try {
+            pipeline.run(frames, edges);
+            fail("a.jpg and a.png should not share an output.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("a.png."), e.getMessage());
+        }
+        assertFalse(edges.exists());
+    }
+
+    @Test
+    public void testDistinctBaseNamesAreAccepted() throws Exception {
+        File other = new File(frames, "other");
+        assertTrue(other.mkdir());
+        File first = new File(frames, "a.png");
+        File second = new File(other, "a.b.png");
+        ImageIO.write(frame(20, 20, 1), "png", first);
+        ImageIO.write(frame(20, 20, 2), "png", second);
+
+        new FramePipeline(detector, CAPACITY).run(
+                Arrays.asList(first, second), edges);
+
+        assertSameImage(ImageIO.read(new File(edges, "a.png")),
+                detector.detectEdges(ImageIO.read(first)));
+        assertSameImage(ImageIO.read(new File(edges, "a.b.png")),
+                detector.detectEdges(ImageIO.read(second)));
+        assertEquals(edges.list().length, 2);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testQueueCapacityMustBePositive() {
+        new FramePipeline(detector, 0);
+    }
+}
@@ -2,6 +2,8 @@ package cs437.som.distancemetrics;
 
 import org.testng.annotations.Test;
 
+import java.util.Random;
+
 import static org.testng.Assert.assertEquals;
 
 public class EuclideanDistanceMetricTest {
@@ -26,4 +28,31 @@ public class EuclideanDistanceMetricTest {
         assertEquals(edm.distance(v20, v21), v2, MAX_DIFFERENCE);
         assertEquals(edm.distance(v50, v51), v5, MAX_DIFFERENCE);
     }
+
+    @Test
+    public void testBoundedDistance() throws Exception {
+        EuclideanDistanceMetric edm = new EuclideanDistanceMetric();
+        assertEquals(edm.distance(v50, v51, v5), v5, MAX_DIFFERENCE);
+        assertEquals(edm.distance(v50, v51, 10.0), v5, MAX_DIFFERENCE);
+        assertEquals(edm.distance(v50, v51, v5 / 2),
+                Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void testBoundedDistanceOfLongVectors() throws Exception {
+        EuclideanDistanceMetric edm = new EuclideanDistanceMetric();
+        Random r = new Random(0);
+        double[] v0 = new double[200];
+        double[] v1 = new double[200];
+        for (int i = 0; i < v0.length; i++) {
+            v0[i] = r.nextDouble();
+            v1[i] = r.nextDouble();
+        }
+
+        double distance = edm.distance(v0, v1);
+        assertEquals(edm.distance(v0, v1, distance), distance);
+        assertEquals(edm.distance(v0, v1, Double.POSITIVE_INFINITY), distance);
+        assertEquals(edm.distance(v0, v1, distance * 0.99),
+                Double.POSITIVE_INFINITY);
+    }
 }
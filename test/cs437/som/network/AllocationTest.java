@@ -0,0 +1,103 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class AllocationTest {
+    private static final Dimension dimension = new Dimension(20, 20);
+    private static final int INPUT_LENGTH = 9;
+    private static final int WARMUP_STEPS = 5000;
+    private static final int STEPS = 1000;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+                    ManagementFactory.getThreadMXBean();
+
+    private CustomizableSOM som;
+    private double[][] doubles;
+    private int[][] ints;
+    private byte[][] bytes;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                2 * (WARMUP_STEPS + STEPS));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+
+        Random r = new Random(0);
+        doubles = new double[64][INPUT_LENGTH];
+        ints = new int[64][INPUT_LENGTH];
+        bytes = new byte[64][INPUT_LENGTH];
+        for (int i = 0; i < doubles.length; i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                doubles[i][j] = r.nextDouble();
+                ints[i][j] = r.nextInt(3) - 1;
+                bytes[i][j] = (byte) (r.nextInt(3) - 1);
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /* Run a number of steps of one kind: 0 trains with doubles, 1 with ints
+     * and 2 with bytes; 3 to 5 search likewise. */
+    private long run(int kind, int steps) {
+        long sink = 0;
+        for (int i = 0; i < steps; i++) {
+            int k = i % doubles.length;
+            switch (kind) {
+                case 0:
+                    som.trainWith(doubles[k]);
+                    break;
+                case 1:
+                    som.trainWith(ints[k]);
+                    break;
+                case 2:
+                    som.trainWith(bytes[k]);
+                    break;
+                case 3:
+                    sink += som.getBestMatchingNeuron(doubles[k]);
+                    break;
+                case 4:
+                    sink += som.getBestMatchingNeuron(ints[k]);
+                    break;
+                default:
+                    sink += som.getBestMatchingNeuron(bytes[k]);
+                    break;
+            }
+        }
+        return sink;
+    }
+
+    private long allocationOf(int kind) {
+        run(kind, WARMUP_STEPS);
+        long overhead = -allocatedBytes() + allocatedBytes();
+        long before = allocatedBytes();
+        run(kind, STEPS);
+        return allocatedBytes() - before - overhead;
+    }
+
+    @Test
+    public void testTrainingDoesNotAllocate() throws Exception {
+        assertEquals(allocationOf(0), 0);
+        assertEquals(allocationOf(1), 0);
+        assertEquals(allocationOf(2), 0);
+    }
+
+    @Test
+    public void testSearchDoesNotAllocate() throws Exception {
+        assertEquals(allocationOf(3), 0);
+        assertEquals(allocationOf(4), 0);
+        assertEquals(allocationOf(5), 0);
+    }
+}
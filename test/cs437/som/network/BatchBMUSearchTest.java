@@ -0,0 +1,131 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class BatchBMUSearchTest {
+    private static final Dimension dimension = new Dimension(60, 50);
+    private static final int INPUT_LENGTH = 3;
+    private static final int QUERIES = 300;
+    private static final double DELTA = 1.0e-9;
+
+    private Random r;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        r = new Random(0);
+    }
+
+    private double[][] randomInputs() {
+        double[][] inputs = new double[QUERIES][INPUT_LENGTH];
+        for (double[] input : inputs) {
+            for (int i = 0; i < INPUT_LENGTH; i++) {
+                input[i] = r.nextDouble();
+            }
+        }
+        return inputs;
+    }
+
+    /*
+     * The dot product form rounds differently from the direct distance, so
+     * an input almost exactly between two neurons may legitimately match
+     * either; compare the distances to the chosen neurons instead.
+     */
+    private static void assertMatchesSequential(NetworkBase som,
+                                                double[][] inputs) {
+        int[] batch = som.getBestMatchingNeurons(inputs);
+        assertEquals(batch.length, inputs.length);
+        for (int i = 0; i < inputs.length; i++) {
+            int sequential = som.getBestMatchingNeuron(inputs[i]);
+            assertEquals(som.distanceToInput(batch[i], inputs[i]),
+                    som.distanceToInput(sequential, inputs[i]), DELTA);
+        }
+    }
+
+    @Test
+    public void testCustomizableSOMMatchesSequentialSearch() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        assertMatchesSequential(som, randomInputs());
+    }
+
+    @Test
+    public void testBasicSOMMatchesSequentialSearch() throws Exception {
+        BasicSquareGridSOM som =
+                new BasicSquareGridSOM(dimension, INPUT_LENGTH, 100);
+        assertMatchesSequential(som, randomInputs());
+    }
+
+    @Test
+    public void testSinglePrecisionMatchesSequentialSearch() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100,
+                WeightPrecision.SINGLE);
+        assertMatchesSequential(som, randomInputs());
+    }
+
+    @Test
+    public void testParallelMatchesSequentialSearch() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        som.setParallelSearch(true);
+        som.setParallelSearchThreshold(0);
+        assertMatchesSequential(som, randomInputs());
+    }
+
+    @Test
+    public void testOtherMetricsSearchEachInput() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        som.setDistanceMetricStrategy(new ManhattanDistanceMetric());
+        double[][] inputs = randomInputs();
+        int[] batch = som.getBestMatchingNeurons(inputs);
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(batch[i], som.getBestMatchingNeuron(inputs[i]));
+        }
+    }
+
+    @Test
+    public void testNormsFollowTraining() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        double[][] inputs = randomInputs();
+        som.getBestMatchingNeurons(inputs);
+        for (int i = 0; i < 50; i++) {
+            som.trainWith(inputs[i]);
+        }
+        assertMatchesSequential(som, inputs);
+    }
+
+    @Test
+    public void testNormsFollowReseeding() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        double[][] inputs = randomInputs();
+        som.getBestMatchingNeurons(inputs);
+        som.setRandomSeed(7L);
+        assertMatchesSequential(som, inputs);
+    }
+
+    @Test
+    public void testNormsFollowConcurrentTraining() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        double[][] inputs = randomInputs();
+        ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+        trainer.trainWith(inputs[0]);
+        som.getBestMatchingNeurons(inputs);
+
+        // A late update from an earlier iteration leaves the time as it is.
+        som.time = 0;
+        trainer = new ConcurrentTrainer(som);
+        trainer.trainWith(inputs[1]);
+        assertEquals(som.time, 1);
+        assertMatchesSequential(som, inputs);
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        assertEquals(som.getBestMatchingNeurons(new double[0][]).length, 0);
+    }
+}
@@ -0,0 +1,187 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.ConstantNeighborhoodWidthFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class BatchTrainerTest {
+    private static final Dimension dimension = new Dimension(24, 20);
+    private static final int INPUT_LENGTH = 5;
+    private static final int SAMPLES = 3000;
+    private static final int EPOCHS = 8;
+
+    private double[][] data;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Random r = new Random(0);
+        double[][] centers = new double[6][INPUT_LENGTH];
+        for (double[] center : centers) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                center[j] = r.nextDouble();
+            }
+        }
+        data = new double[SAMPLES][INPUT_LENGTH];
+        for (double[] sample : data) {
+            double[] center = centers[r.nextInt(centers.length)];
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = center[j] + 0.05 * r.nextGaussian();
+            }
+        }
+    }
+
+    private static CustomizableSOM createMap() {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                SAMPLES * EPOCHS);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(8));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+        return som;
+    }
+
+    private static void copyWeights(CustomizableSOM from, CustomizableSOM to) {
+        for (int i = 0; i < from.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                to.weights.set(i, j, from.getWeight(i, j));
+            }
+        }
+    }
+
+    private static void assertSameWeights(CustomizableSOM a,
+                                          CustomizableSOM b) {
+        for (int i = 0; i < a.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(a.getWeight(i, j), b.getWeight(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testErrorDecreases() throws Exception {
+        CustomizableSOM som = createMap();
+        double[] errors = new BatchTrainer(som).train(data, EPOCHS);
+
+        assertEquals(errors.length, EPOCHS);
+        assertEquals(som.time, SAMPLES * EPOCHS);
+        assertTrue(errors[EPOCHS - 1] < errors[0] / 2,
+                errors[0] + " -> " + errors[EPOCHS - 1]);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        CustomizableSOM parallel = createMap();
+        CustomizableSOM sequential = createMap();
+        copyWeights(parallel, sequential);
+
+        BatchTrainer sequentialTrainer = new BatchTrainer(sequential);
+        sequentialTrainer.setParallel(false);
+        assertEquals(new BatchTrainer(parallel).train(data, 3),
+                sequentialTrainer.train(data, 3));
+        assertSameWeights(parallel, sequential);
+    }
+
+    @Test
+    public void testOtherMetrics() throws Exception {
+        CustomizableSOM parallel = createMap();
+        CustomizableSOM sequential = createMap();
+        parallel.setDistanceMetricStrategy(new ManhattanDistanceMetric());
+        sequential.setDistanceMetricStrategy(new ManhattanDistanceMetric());
+        copyWeights(parallel, sequential);
+
+        BatchTrainer sequentialTrainer = new BatchTrainer(sequential);
+        sequentialTrainer.setParallel(false);
+        double[] errors = new BatchTrainer(parallel).train(data, 3);
+        assertEquals(errors, sequentialTrainer.train(data, 3));
+        assertSameWeights(parallel, sequential);
+        assertTrue(errors[2] < errors[0]);
+    }
+
+    @Test
+    public void testRandomMembershipMatchesSequential() throws Exception {
+        // Each neuron draws from its own stream, so the order the neurons
+        // are updated in does not matter.
+        CustomizableSOM parallel = createMap();
+        CustomizableSOM sequential = createMap();
+        parallel.setNeighborhoodMembershipFunctionStrategy(
+                new RandomNeighborhoodMembershipFunction());
+        sequential.setNeighborhoodMembershipFunctionStrategy(
+                new RandomNeighborhoodMembershipFunction());
+        parallel.setRandomSeed(11);
+        sequential.setRandomSeed(11);
+        copyWeights(parallel, sequential);
+
+        BatchTrainer sequentialTrainer = new BatchTrainer(sequential);
+        sequentialTrainer.setParallel(false);
+        assertEquals(new BatchTrainer(parallel).train(data, 3),
+                sequentialTrainer.train(data, 3));
+        assertSameWeights(parallel, sequential);
+    }
+
+    @Test
+    public void testNarrowNeighborhoodTakesMeans() throws Exception {
+        // With only the neuron itself in its neighborhood, an epoch moves
+        // each neuron to the mean of the samples it matched.
+        assertEpochTakesMeans(0.5);
+    }
+
+    @Test
+    public void testZeroWidthTakesMeans() throws Exception {
+        // Even the neuron itself is at no distance less than a width of 0,
+        // but its own samples still count.
+        assertEpochTakesMeans(0.0);
+    }
+
+    private void assertEpochTakesMeans(double width) {
+        CustomizableSOM som = createMap();
+        som.setNeighborhoodWidthFunctionStrategy(
+                new ConstantNeighborhoodWidthFunction(width));
+
+        int[] bmus = som.getBestMatchingNeurons(data);
+        double[][] means = new double[som.getNeuronCount()][INPUT_LENGTH];
+        int[] counts = new int[som.getNeuronCount()];
+        for (int i = 0; i < data.length; i++) {
+            counts[bmus[i]]++;
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                means[bmus[i]][j] += data[i][j];
+            }
+        }
+        double[][] before = new double[som.getNeuronCount()][INPUT_LENGTH];
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                before[i][j] = som.getWeight(i, j);
+            }
+        }
+
+        new BatchTrainer(som).trainEpoch(data);
+
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                double expected = counts[i] == 0
+                        ? before[i][j] : means[i][j] / counts[i];
+                assertEquals(som.getWeight(i, j), expected, 1.0e-12);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testEmptyData() throws Exception {
+        new BatchTrainer(createMap()).trainEpoch(new double[0][]);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testWrongInputLength() throws Exception {
+        new BatchTrainer(createMap()).trainEpoch(new double[][]{{1.0}});
+    }
+}
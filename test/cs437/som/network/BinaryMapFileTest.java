@@ -0,0 +1,183 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.learningrate.ExponentialDecayLearningRateFunction;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.topology.OffsetHexagonalGrid;
+import cs437.som.util.FileReader;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class BinaryMapFileTest {
+    private static final Dimension dimension = new Dimension(9, 7);
+    private static final int INPUT_LENGTH = 5;
+    private static final int ITERATIONS = 1000;
+
+    private double[][] data;
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Random r = new Random(0);
+        data = new double[ITERATIONS][INPUT_LENGTH];
+        for (double[] sample : data) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+        file = File.createTempFile("map", ".som");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private static CustomizableSOM createMap(WeightPrecision precision) {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS, precision);
+        som.setDistanceMetricStrategy(new ManhattanDistanceMetric());
+        som.setLearningRateFunctionStrategy(
+                new ExponentialDecayLearningRateFunction(0.5));
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(3));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+        som.setGridTypeStrategy(new OffsetHexagonalGrid());
+        som.setRandomSeed(1);
+        return som;
+    }
+
+    private void train(TrainableSelfOrganizingMap som, int from, int to) {
+        for (int i = from; i < to; i++) {
+            som.trainWith(data[i]);
+        }
+    }
+
+    private static void assertSameWeights(TrainableSelfOrganizingMap actual,
+                                          TrainableSelfOrganizingMap expected) {
+        assertEquals(actual.getNeuronCount(), expected.getNeuronCount());
+        for (int i = 0; i < expected.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(actual.getWeight(i, j), expected.getWeight(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testCustomizableMapRoundTrip() throws Exception {
+        CustomizableSOM original = createMap(WeightPrecision.DOUBLE);
+        train(original, 0, ITERATIONS / 2);
+        BinaryMapFile.write(original, file);
+
+        TrainableSelfOrganizingMap read = FileReader.read(file);
+        assertTrue(read instanceof CustomizableSOM);
+        CustomizableSOM restored = (CustomizableSOM) read;
+        assertEquals(restored.time, original.time);
+        assertEquals(restored.toString(), original.toString());
+        assertTrue(restored.weights instanceof MappedWeightStore);
+        assertSameWeights(restored, original);
+
+        // The strategies, progress and random state all carry over.
+        train(original, ITERATIONS / 2, ITERATIONS);
+        train(restored, ITERATIONS / 2, ITERATIONS);
+        assertSameWeights(restored, original);
+    }
+
+    @Test
+    public void testSinglePrecisionRoundTrip() throws Exception {
+        CustomizableSOM original = createMap(WeightPrecision.SINGLE);
+        train(original, 0, ITERATIONS);
+        BinaryMapFile.write(original, file);
+        assertTrue(file.length() < 32 + 512
+                + 4L * dimension.area * INPUT_LENGTH);
+
+        CustomizableSOM restored = (CustomizableSOM) BinaryMapFile.read(file);
+        assertEquals(restored.getPrecision(), WeightPrecision.SINGLE);
+        assertSameWeights(restored, original);
+    }
+
+    @Test
+    public void testBasicMapRoundTrip() throws Exception {
+        BasicHexGridSOM original =
+                new BasicHexGridSOM(dimension, INPUT_LENGTH, ITERATIONS);
+        train(original, 0, ITERATIONS / 2);
+        BinaryMapFile.write(original, file);
+
+        TrainableSelfOrganizingMap restored = FileReader.read(file);
+        assertTrue(restored instanceof BasicHexGridSOM);
+        assertEquals(restored.getExpectedIterations(), ITERATIONS);
+        assertSameWeights(restored, original);
+
+        train(original, ITERATIONS / 2, ITERATIONS);
+        train(restored, ITERATIONS / 2, ITERATIONS);
+        assertSameWeights(restored, original);
+    }
+
+    @Test
+    public void testOffHeapMapRoundTrip() throws Exception {
+        OffHeapSOM original = new OffHeapSOM(dimension, INPUT_LENGTH,
+                ITERATIONS);
+        try {
+            train(original, 0, ITERATIONS);
+            BinaryMapFile.write(original, file);
+
+            OffHeapSOM restored = (OffHeapSOM) FileReader.read(file);
+            try {
+                assertSameWeights(restored, original);
+            } finally {
+                restored.close();
+            }
+        } finally {
+            original.close();
+        }
+    }
+
+    @Test
+    public void testTrainingLeavesFileUnchanged() throws Exception {
+        CustomizableSOM original = createMap(WeightPrecision.DOUBLE);
+        BinaryMapFile.write(original, file);
+
+        TrainableSelfOrganizingMap restored = FileReader.read(file);
+        train(restored, 0, ITERATIONS);
+        assertSameWeights(FileReader.read(file), original);
+    }
+
+    @Test
+    public void testTextFilesStillRead() throws Exception {
+        CustomizableSOM original = createMap(WeightPrecision.DOUBLE);
+        train(original, 0, ITERATIONS / 2);
+        OutputStreamWriter writer = new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8");
+        original.write(writer);
+        writer.close();
+
+        assertSameWeights(FileReader.read(file), original);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testTruncatedFileRejected() throws Exception {
+        BinaryMapFile.write(createMap(WeightPrecision.DOUBLE), file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 8);
+        } finally {
+            raf.close();
+        }
+        BinaryMapFile.read(file);
+    }
+}
@@ -0,0 +1,104 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class BoundedSearchTest {
+    private static final Dimension dimension = new Dimension(20, 20);
+    private static final int INPUT_LENGTH = 200;
+    private static final int QUERIES = 50;
+
+    private Random r;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        r = new Random(0);
+    }
+
+    private double[] randomInput() {
+        double[] input = new double[INPUT_LENGTH];
+        for (int i = 0; i < INPUT_LENGTH; i++) {
+            input[i] = r.nextDouble();
+        }
+        return input;
+    }
+
+    /* The neuron an exhaustive, unbounded scan picks. */
+    private static int exhaustiveSearch(NetworkBase som, double[] input) {
+        int best = 0;
+        double lowest = som.distanceToInput(0, input);
+        for (int i = 1; i < som.getNeuronCount(); i++) {
+            double distance = som.distanceToInput(i, input);
+            if (distance < lowest) {
+                lowest = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private void assertMatchesExhaustiveSearch(NetworkBase som) {
+        for (int i = 0; i < QUERIES; i++) {
+            double[] input = randomInput();
+            assertEquals(som.getBestMatchingNeuron(input),
+                    exhaustiveSearch(som, input));
+        }
+    }
+
+    @Test
+    public void testBasicSOM() throws Exception {
+        assertMatchesExhaustiveSearch(
+                new BasicSquareGridSOM(dimension, INPUT_LENGTH, 100));
+    }
+
+    @Test
+    public void testEveryMetric() throws Exception {
+        DistanceMetric[] metrics = {new EuclideanDistanceMetric(),
+                new ManhattanDistanceMetric(), new ChebyshevDistanceMetric()};
+        for (DistanceMetric metric : metrics) {
+            CustomizableSOM som =
+                    new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+            som.setDistanceMetricStrategy(metric);
+            assertMatchesExhaustiveSearch(som);
+        }
+    }
+
+    @Test
+    public void testSinglePrecision() throws Exception {
+        assertMatchesExhaustiveSearch(new CustomizableSOM(dimension,
+                INPUT_LENGTH, 100, WeightPrecision.SINGLE));
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+        OffHeapSOM som = new OffHeapSOM(dimension, INPUT_LENGTH, 100);
+        try {
+            assertMatchesExhaustiveSearch(som);
+        } finally {
+            som.close();
+        }
+    }
+
+    @Test
+    public void testTrainingSearchFindsMinimum() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] input = randomInput();
+            int best = som.getBMUDuringTraining(input);
+            double lowest = som.distanceToInput(exhaustiveSearch(som, input),
+                    input);
+            assertTrue(som.distanceToInput(best, input)
+                    < lowest + NetworkBase.TIE_TOLERANCE);
+        }
+    }
+}
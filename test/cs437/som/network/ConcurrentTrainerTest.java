@@ -0,0 +1,127 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ConcurrentTrainerTest {
+    private static final Dimension dimension = new Dimension(30, 30);
+    private static final int INPUT_LENGTH = 4;
+    private static final int SAMPLES = 20000;
+    private static final int THREADS = 4;
+
+    private double[][] data;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Random r = new Random(0);
+        double[][] centers = new double[8][INPUT_LENGTH];
+        for (double[] center : centers) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                center[j] = r.nextDouble();
+            }
+        }
+        data = new double[SAMPLES][INPUT_LENGTH];
+        for (double[] sample : data) {
+            double[] center = centers[r.nextInt(centers.length)];
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = center[j] + 0.05 * r.nextGaussian();
+            }
+        }
+    }
+
+    private static CustomizableSOM createMap() {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                SAMPLES);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(10));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+        return som;
+    }
+
+    private double quantizationError(CustomizableSOM som) {
+        double total = 0.0;
+        for (double[] sample : data) {
+            total += som.distanceToInput(som.getBestMatchingNeuron(sample),
+                    sample);
+        }
+        return total / data.length;
+    }
+
+    /* Train with the samples split between several threads. */
+    private void trainConcurrently(final ConcurrentTrainer trainer)
+            throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int first = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = first; i < SAMPLES; i += THREADS) {
+                        trainer.trainWith(data[i]);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testIterationsCounted() throws Exception {
+        CustomizableSOM som = createMap();
+        som.trainWith(data[0]);
+        ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+        trainConcurrently(trainer);
+
+        assertEquals(trainer.getTime(), SAMPLES + 1);
+        assertEquals(som.time, SAMPLES + 1);
+    }
+
+    @Test
+    public void testQualityMatchesSingleThread() throws Exception {
+        CustomizableSOM single = createMap();
+        for (double[] sample : data) {
+            single.trainWith(sample);
+        }
+
+        CustomizableSOM concurrent = createMap();
+        trainConcurrently(new ConcurrentTrainer(concurrent));
+
+        double expected = quantizationError(single);
+        double actual = quantizationError(concurrent);
+        assertTrue(actual < expected * 1.25, actual + " vs " + expected);
+    }
+
+    @Test
+    public void testWeightsStayBounded() throws Exception {
+        CustomizableSOM som = createMap();
+        double low = 0.0;
+        double high = 1.0;
+        for (double[] sample : data) {
+            for (double value : sample) {
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+            }
+        }
+
+        trainConcurrently(new ConcurrentTrainer(som));
+
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                double weight = som.getWeight(i, j);
+                assertTrue(low <= weight && weight <= high);
+            }
+        }
+    }
+}
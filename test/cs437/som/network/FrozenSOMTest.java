@@ -0,0 +1,220 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
+import cs437.som.SOMError;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class FrozenSOMTest {
+    private static final Dimension dimension = new Dimension(16, 12);
+    private static final int INPUT_LENGTH = 40;
+    private static final int QUERIES = 200;
+
+    private Random r;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        r = new Random(0);
+    }
+
+    private double[] randomInput() {
+        double[] input = new double[INPUT_LENGTH];
+        for (int i = 0; i < INPUT_LENGTH; i++) {
+            input[i] = r.nextDouble();
+        }
+        return input;
+    }
+
+    private void train(NetworkBase som, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            som.trainWith(randomInput());
+        }
+    }
+
+    private void assertMatchesSource(NetworkBase som) {
+        train(som, 100);
+        SelfOrganizingMap frozen = som.freeze();
+        assertEquals(frozen.getNeuronCount(), som.getNeuronCount());
+        assertEquals(frozen.getInputLength(), som.getInputLength());
+
+        double[][] inputs = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            inputs[i] = randomInput();
+            int bmu = som.getBestMatchingNeuron(inputs[i]);
+            assertEquals(frozen.getBestMatchingNeuron(inputs[i]), bmu);
+            assertEquals(frozen.distanceToInput(bmu, inputs[i]),
+                    som.distanceToInput(bmu, inputs[i]));
+        }
+        assertEquals(frozen.getBestMatchingNeurons(inputs),
+                som.getBestMatchingNeurons(inputs));
+    }
+
+    @Test
+    public void testBasicSOM() throws Exception {
+        assertMatchesSource(new BasicSquareGridSOM(dimension, INPUT_LENGTH,
+                100));
+    }
+
+    @Test
+    public void testEveryMetric() throws Exception {
+        DistanceMetric[] metrics = {new EuclideanDistanceMetric(),
+                new ManhattanDistanceMetric(), new ChebyshevDistanceMetric(),
+                new ManhattanDistanceMetric() {
+                    @Override
+                    public String toString() {
+                        return "ManhattanSubclass";
+                    }
+                }};
+        for (DistanceMetric metric : metrics) {
+            CustomizableSOM som =
+                    new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+            som.setDistanceMetricStrategy(metric);
+            assertMatchesSource(som);
+        }
+    }
+
+    @Test
+    public void testSinglePrecision() throws Exception {
+        assertMatchesSource(new CustomizableSOM(dimension, INPUT_LENGTH, 100,
+                WeightPrecision.SINGLE));
+    }
+
+    @Test
+    public void testIntegerInputs() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, 3, 100);
+        SelfOrganizingMap frozen = som.freeze();
+        for (int i = 0; i < QUERIES; i++) {
+            int[] ints = {r.nextInt(256), r.nextInt(256), r.nextInt(256)};
+            byte[] bytes = {(byte) ints[0], (byte) ints[1], (byte) ints[2]};
+            assertEquals(frozen.getBestMatchingNeuron(ints),
+                    som.getBestMatchingNeuron(ints));
+            assertEquals(frozen.getBestMatchingNeuron(bytes),
+                    som.getBestMatchingNeuron(bytes));
+        }
+    }
+
+    @Test
+    public void testUnaffectedByTraining() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 200);
+        train(som, 50);
+        SelfOrganizingMap frozen = som.freeze();
+        double[] weights = new double[som.getNeuronCount() * INPUT_LENGTH];
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                weights[i * INPUT_LENGTH + j] = som.getWeight(i, j);
+            }
+        }
+
+        train(som, 150);
+        boolean changed = false;
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(frozen.getWeight(i, j),
+                        weights[i * INPUT_LENGTH + j]);
+                changed |= som.getWeight(i, j) != weights[i * INPUT_LENGTH + j];
+            }
+        }
+        assertTrue(changed);
+    }
+
+    @Test
+    public void testWritesSourceMap() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        train(som, 20);
+        SelfOrganizingMap frozen = som.freeze();
+        String expected = write(som);
+        train(som, 20);
+        assertEquals(write(frozen), expected);
+        assertFalse(write(som).equals(expected));
+    }
+
+    @Test
+    public void testDoesNotKeepSourceMap() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        train(som, 20);
+        String expected = write(som);
+        SelfOrganizingMap frozen = som.freeze();
+        WeakReference<CustomizableSOM> source =
+                new WeakReference<CustomizableSOM>(som);
+        som = null;
+        for (int i = 0; i < 20 && source.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(source.get() == null, "The source map is still reachable.");
+        assertEquals(write(frozen), expected);
+    }
+
+    private static String write(SelfOrganizingMap map) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, "UTF-8");
+        map.write(writer);
+        writer.close();
+        return bytes.toString("UTF-8");
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        train(som, 100);
+        final SelfOrganizingMap frozen = som.freeze();
+        final double[][] inputs = new double[QUERIES][];
+        final int[] expected = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            inputs[i] = randomInput();
+            expected[i] = som.getBestMatchingNeuron(inputs[i]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 32; t++) {
+                final int start = t;
+                results.add(pool.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int mismatches = 0;
+                        for (int i = 0; i < 20 * QUERIES; i++) {
+                            int q = (start + i) % QUERIES;
+                            if (frozen.getBestMatchingNeuron(inputs[q])
+                                    != expected[q]) {
+                                mismatches++;
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(result.get().intValue(), 0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testWrongInputLength() throws Exception {
+        new CustomizableSOM(dimension, INPUT_LENGTH, 100).freeze()
+                .getBestMatchingNeuron(new double[INPUT_LENGTH - 1]);
+    }
+}
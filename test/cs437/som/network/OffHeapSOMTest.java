@@ -0,0 +1,169 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import cs437.som.SelfOrganizingMap;
+import cs437.som.util.SOMFileReader;
+import cs437.som.util.StrategyRegistry;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class OffHeapSOMTest {
+    private static final Dimension dimension = new Dimension(12, 10);
+    private static final int INPUT_LENGTH = 4;
+    private static final int ITERATIONS = 400;
+
+    private OffHeapSOM som;
+    private double[][] data;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Random r = new Random(0);
+        data = new double[ITERATIONS][INPUT_LENGTH];
+        for (double[] sample : data) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+        som = new OffHeapSOM(dimension, INPUT_LENGTH, ITERATIONS);
+        for (int i = 0; i < ITERATIONS / 2; i++) {
+            som.trainWith(data[i]);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        som.close();
+    }
+
+    private static String text(SelfOrganizingMap map) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, "UTF-8");
+        map.write(writer);
+        writer.close();
+        return bytes.toString("UTF-8");
+    }
+
+    /* The map's text without its "Map type" line. */
+    private String body() throws Exception {
+        String text = text(som);
+        return text.substring(text.indexOf('\n') + 1);
+    }
+
+    @Test
+    public void testTextWeightsAreParsedOffHeap() throws Exception {
+        String body = body();
+        SOMFileReader sfr = StrategyRegistry.getDefault()
+                .getMapType("OffHeapSOM").createReader();
+        sfr.parse(new BufferedReader(new StringReader(body)));
+        assertTrue(sfr.getWeights() instanceof DirectWeightStore,
+                String.valueOf(sfr.getWeights()));
+
+        OffHeapSOM read = OffHeapSOM.read(
+                new BufferedReader(new StringReader(body)));
+        try {
+            for (int i = 0; i < som.getNeuronCount(); i++) {
+                for (int j = 0; j < INPUT_LENGTH; j++) {
+                    assertEquals(read.getWeight(i, j), som.getWeight(i, j));
+                }
+            }
+            assertEquals(read.time, som.time);
+        } finally {
+            read.close();
+        }
+    }
+
+    /* The bytes held by direct buffers that have not been freed. */
+    private static long directBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(
+                BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getTotalCapacity();
+            }
+        }
+        throw new AssertionError("No direct buffer pool.");
+    }
+
+    @Test
+    public void testCloseFreesMemory() throws Exception {
+        // 32 MB, which the map still references when it is closed, so only
+        // an explicit free can return it.
+        OffHeapSOM large = new OffHeapSOM(new Dimension(256, 256), 64, 10);
+        long bytes = 256L * 256 * 64 * (Double.SIZE / Byte.SIZE);
+        long open = directBytes();
+        large.close();
+        assertTrue(open - directBytes() >= bytes,
+                (open - directBytes()) + " of " + bytes + " bytes freed");
+        assertTrue(large.isClosed());
+    }
+
+    @Test
+    public void testFrozenCopyWritesAfterClose() throws Exception {
+        String expected = text(som);
+        FrozenSOM frozen = som.freeze();
+        som.close();
+        assertEquals(text(frozen), expected);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testClosedMapRejectsBatchTraining() throws Exception {
+        BatchTrainer trainer = new BatchTrainer(som);
+        som.close();
+        trainer.trainEpoch(data);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testClosedMapRejectsConcurrentTraining() throws Exception {
+        ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+        som.close();
+        trainer.trainWith(data[0]);
+    }
+
+    @Test
+    public void testCloseWhileTraining() throws Exception {
+        final ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+        final List<Throwable> unexpected = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; ; i = (i + 1) % data.length) {
+                            trainer.trainWith(data[i]);
+                            som.getBestMatchingNeuron(data[i]);
+                        }
+                    } catch (SOMError expected) {
+                        // The map was closed.
+                    } catch (Throwable t) {
+                        synchronized (unexpected) {
+                            unexpected.add(t);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        Thread.sleep(100);
+        som.close();
+        for (Thread thread : threads) {
+            thread.join(10000);
+            assertTrue(!thread.isAlive(), thread + " still training");
+        }
+        assertTrue(unexpected.isEmpty(), unexpected.toString());
+    }
+}
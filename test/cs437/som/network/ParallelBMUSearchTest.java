@@ -0,0 +1,78 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelBMUSearchTest {
+    private static final Dimension dimension = new Dimension(150, 120);
+    private static final int INPUT_LENGTH = 3;
+    private static final int QUERIES = 200;
+
+    private CustomizableSOM som;
+    private Random r;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        som = new CustomizableSOM(dimension, INPUT_LENGTH, QUERIES);
+        som.setParallelSearchThreshold(0);
+        r = new Random(0);
+    }
+
+    private double[] randomInput() {
+        double[] input = new double[INPUT_LENGTH];
+        for (int i = 0; i < INPUT_LENGTH; i++) {
+            input[i] = r.nextDouble();
+        }
+        return input;
+    }
+
+    @Test
+    public void testMatchesSequentialSearch() throws Exception {
+        for (int i = 0; i < QUERIES; i++) {
+            double[] input = randomInput();
+            som.setParallelSearch(false);
+            int sequential = som.getBestMatchingNeuron(input);
+            som.setParallelSearch(true);
+            assertEquals(som.getBestMatchingNeuron(input), sequential);
+        }
+    }
+
+    @Test
+    public void testTrainingSearchFindsMinimum() throws Exception {
+        som.setParallelSearch(true);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] input = randomInput();
+            int best = som.getBMUDuringTraining(input);
+            double lowest = som.distanceToInput(best, input);
+            for (int j = 0; j < som.getNeuronCount(); j++) {
+                assertTrue(som.distanceToInput(j, input)
+                        > lowest - NetworkBase.TIE_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void testTrainingSearchBreaksTiesRandomly() throws Exception {
+        // Make every neuron identical, so that all of them tie.
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                som.weights.set(i, j, 0.5);
+            }
+        }
+
+        som.setParallelSearch(true);
+        double[] input = randomInput();
+        int first = som.getBMUDuringTraining(input);
+        boolean differs = false;
+        for (int i = 0; i < QUERIES && !differs; i++) {
+            differs = som.getBMUDuringTraining(input) != first;
+        }
+        assertTrue(differs);
+    }
+}
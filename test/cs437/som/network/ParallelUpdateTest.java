@@ -0,0 +1,103 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.topology.OffsetHexagonalGrid;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelUpdateTest {
+    private static final Dimension dimension = new Dimension(60, 50);
+    private static final int INPUT_LENGTH = 3;
+    private static final int ITERATIONS = 200;
+
+    private static CustomizableSOM createMap() {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(40));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(0.75));
+        som.setGridTypeStrategy(new OffsetHexagonalGrid());
+        return som;
+    }
+
+    @Test
+    public void testMatchesSequentialUpdate() throws Exception {
+        assertMatchesSequentialUpdate(true);
+    }
+
+    @Test
+    public void testMatchesSequentialUpdateWithoutDistanceCache()
+            throws Exception {
+        // Without a distance table there is no membership kernel, so the
+        // workers evaluate the membership function themselves.
+        assertMatchesSequentialUpdate(false);
+    }
+
+    private static void assertMatchesSequentialUpdate(boolean cached) {
+        CustomizableSOM sequential = createMap();
+        CustomizableSOM parallel = createMap();
+        sequential.gridType.setDistanceCacheEnabled(cached);
+        parallel.gridType.setDistanceCacheEnabled(cached);
+        parallel.setParallelUpdate(true);
+        parallel.setParallelUpdateThreshold(1000);
+        for (int i = 0; i < parallel.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sequential.weights.set(i, j, parallel.getWeight(i, j));
+            }
+        }
+
+        TrainingProfile profile = new TrainingProfile();
+        parallel.setTrainingProfile(profile);
+        Random r = new Random(0);
+        for (int i = 0; i < ITERATIONS; i++) {
+            double[] sample = {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+            sequential.trainWith(sample);
+            parallel.trainWith(sample);
+        }
+
+        for (int i = 0; i < parallel.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(parallel.getWeight(i, j),
+                        sequential.getWeight(i, j));
+            }
+        }
+
+        // The neighborhood shrinks from most of the map to a few neurons, so
+        // some, but not all, updates go parallel.
+        assertEquals(profile.getSamples(), ITERATIONS);
+        assertTrue(profile.getParallelUpdates() > 0);
+        assertTrue(profile.getParallelUpdates() < ITERATIONS);
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        CustomizableSOM som = createMap();
+        TrainingProfile profile = new TrainingProfile();
+        som.setTrainingProfile(profile);
+        for (int i = 0; i < 10; i++) {
+            som.trainWith(new double[]{0.1 * i, 0.5, 0.5});
+        }
+
+        assertEquals(profile.getSamples(), 10);
+        assertEquals(profile.getParallelUpdates(), 0);
+        assertTrue(profile.getSearchNanos() > 0);
+        assertTrue(profile.getUpdateNanos() > 0);
+        double fraction = profile.getSearchFraction();
+        assertTrue(fraction > 0 && fraction < 1);
+
+        som.setTrainingProfile(null);
+        som.trainWith(new double[]{0.5, 0.5, 0.5});
+        assertEquals(profile.getSamples(), 10);
+
+        profile.reset();
+        assertEquals(profile.getSamples(), 0);
+        assertEquals(profile.getSearchFraction(), 0.0);
+    }
+}
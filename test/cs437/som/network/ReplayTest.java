@@ -0,0 +1,142 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class ReplayTest {
+    private static final Dimension dimension = new Dimension(8, 8);
+    private static final int INPUT_LENGTH = 9;
+    private static final int ITERATIONS = 2000;
+    private static final long SEED = 437;
+
+    private int[][] data;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        // Inputs of -1, 0 and 1 tie often, so tie-breaking is exercised.
+        Random r = new Random(0);
+        data = new int[ITERATIONS][INPUT_LENGTH];
+        for (int[] sample : data) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = r.nextInt(3) - 1;
+            }
+        }
+    }
+
+    private static CustomizableSOM createMap() {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(4));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new RandomNeighborhoodMembershipFunction());
+        som.setRandomSeed(SEED);
+        return som;
+    }
+
+    /* Wide enough that early neighborhoods are split between tasks. */
+    private static CustomizableSOM createWideMap() {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(40, 40),
+                INPUT_LENGTH, ITERATIONS / 4);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(40));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new RandomNeighborhoodMembershipFunction());
+        som.setRandomSeed(SEED);
+        return som;
+    }
+
+    private void train(NetworkBase som, int from, int to) {
+        for (int i = from; i < to; i++) {
+            som.trainWith(data[i]);
+        }
+    }
+
+    /* Write a map out and return a reader positioned after its type line. */
+    private static BufferedReader save(NetworkBase som) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, "UTF-8");
+        som.write(writer);
+        writer.flush();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes.toByteArray()), "UTF-8"));
+        reader.readLine();
+        return reader;
+    }
+
+    private static void assertSameWeights(NetworkBase actual,
+                                          NetworkBase expected) {
+        assertEquals(actual.time, expected.time);
+        for (int i = 0; i < expected.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(actual.getWeight(i, j), expected.getWeight(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testSameSeedTrainsIdentically() throws Exception {
+        CustomizableSOM first = createMap();
+        CustomizableSOM second = createMap();
+        assertSameWeights(second, first);
+
+        train(first, 0, ITERATIONS);
+        train(second, 0, ITERATIONS);
+        assertSameWeights(second, first);
+    }
+
+    @Test
+    public void testParallelUpdateReplays() throws Exception {
+        CustomizableSOM sequential = createWideMap();
+        CustomizableSOM parallel = createWideMap();
+        parallel.setParallelUpdate(true);
+        parallel.setParallelUpdateThreshold(1);
+
+        train(sequential, 0, ITERATIONS / 4);
+        train(parallel, 0, ITERATIONS / 4);
+        assertSameWeights(parallel, sequential);
+    }
+
+    @Test
+    public void testSavedMapReplays() throws Exception {
+        CustomizableSOM original = createMap();
+        train(original, 0, ITERATIONS / 2);
+
+        CustomizableSOM restored = CustomizableSOM.read(save(original));
+        assertSameWeights(restored, original);
+        assertEquals(restored.getRandomSource().getSeed(), SEED);
+
+        train(original, ITERATIONS / 2, ITERATIONS);
+        train(restored, ITERATIONS / 2, ITERATIONS);
+        assertSameWeights(restored, original);
+    }
+
+    @Test
+    public void testSavedBasicMapReplays() throws Exception {
+        BasicSquareGridSOM original =
+                new BasicSquareGridSOM(dimension, INPUT_LENGTH, ITERATIONS);
+        original.setRandomSeed(SEED);
+        train(original, 0, ITERATIONS / 2);
+
+        BasicSquareGridSOM restored = BasicSquareGridSOM.read(save(original));
+        assertEquals(restored.getExpectedIterations(), ITERATIONS);
+        assertSameWeights(restored, original);
+
+        train(original, ITERATIONS / 2, ITERATIONS);
+        train(restored, ITERATIONS / 2, ITERATIONS);
+        assertSameWeights(restored, original);
+    }
+}
@@ -0,0 +1,108 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.membership.LinearNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class SinglePrecisionTest {
+    private static final Dimension dimension = new Dimension(12, 10);
+    private static final int INPUT_LENGTH = 4;
+    private static final int ITERATIONS = 2000;
+    private static final double MAX_WEIGHT_DRIFT = 1.0e-4;
+    private static final double MAX_ERROR_DRIFT = 1.0e-4;
+
+    private CustomizableSOM doubleMap;
+    private CustomizableSOM singleMap;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        doubleMap = createMap(WeightPrecision.DOUBLE);
+        singleMap = createMap(WeightPrecision.SINGLE);
+
+        // Start both maps from the same (single precision) weights.
+        for (int i = 0; i < doubleMap.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                doubleMap.weights.set(i, j, singleMap.getWeight(i, j));
+            }
+        }
+    }
+
+    private static CustomizableSOM createMap(WeightPrecision precision) {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS, precision);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(4));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new LinearNeighborhoodMembershipFunction());
+        som.setRandomSeed(1);
+        return som;
+    }
+
+    @Test
+    public void testPrecision() throws Exception {
+        assertEquals(doubleMap.getPrecision(), WeightPrecision.DOUBLE);
+        assertEquals(singleMap.getPrecision(), WeightPrecision.SINGLE);
+    }
+
+    @Test
+    public void testQuantizationErrorDrift() throws Exception {
+        Random r = new Random(0);
+        double[][] samples = new double[ITERATIONS][INPUT_LENGTH];
+        for (double[] sample : samples) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+
+        for (double[] sample : samples) {
+            doubleMap.trainWith(sample);
+            singleMap.trainWith(sample);
+        }
+
+        double maxDrift = 0.0;
+        for (int i = 0; i < doubleMap.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                double drift = Math.abs(
+                        doubleMap.getWeight(i, j) - singleMap.getWeight(i, j));
+                maxDrift = Math.max(maxDrift, drift);
+            }
+        }
+        assertTrue(maxDrift < MAX_WEIGHT_DRIFT, "weights drifted " + maxDrift);
+
+        assertEquals(quantizationError(singleMap, samples),
+                quantizationError(doubleMap, samples), MAX_ERROR_DRIFT);
+    }
+
+    @Test
+    public void testPrecisionIsWritten() throws Exception {
+        assertTrue(written(singleMap).contains("Precision: single"));
+        assertTrue(!written(doubleMap).contains("Precision"));
+    }
+
+    private static double quantizationError(CustomizableSOM som,
+                                            double[][] samples) {
+        double sum = 0.0;
+        for (double[] sample : samples) {
+            int best = som.getBestMatchingNeuron(sample);
+            sum += som.distanceToInput(best, sample);
+        }
+        return sum / samples.length;
+    }
+
+    private static String written(CustomizableSOM som) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes);
+        som.write(writer);
+        writer.close();
+        return bytes.toString();
+    }
+}
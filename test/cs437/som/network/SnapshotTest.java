@@ -0,0 +1,240 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class SnapshotTest {
+    private static final Dimension dimension = new Dimension(10, 10);
+    private static final int INPUT_LENGTH = 64;
+
+    private static double[][] weightsOf(NetworkBase som) {
+        double[][] weights = new double[som.getNeuronCount()][INPUT_LENGTH];
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                weights[i][j] = som.getWeight(i, j);
+            }
+        }
+        return weights;
+    }
+
+    private static void assertHoldsWeights(FrozenSOM snapshot,
+                                           double[][] weights) {
+        for (int i = 0; i < weights.length; i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(snapshot.getWeight(i, j), weights[i][j]);
+            }
+        }
+    }
+
+    @Test
+    public void testPublishesAtInterval() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        assertNull(som.getSnapshot());
+        Random r = new Random(0);
+        double[] input = new double[INPUT_LENGTH];
+
+        som.setSnapshotInterval(10);
+        assertHoldsWeights(som.getSnapshot(), weightsOf(som));
+        double[][] published = null;
+        for (int i = 0; i < 25; i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                input[j] = r.nextDouble();
+            }
+            som.trainWith(input);
+            if (som.time == 20) {
+                published = weightsOf(som);
+            }
+        }
+        assertHoldsWeights(som.getSnapshot(), published);
+
+        som.setSnapshotInterval(0);
+        FrozenSOM last = som.getSnapshot();
+        for (int i = 0; i < 20; i++) {
+            som.trainWith(input);
+        }
+        assertSame(som.getSnapshot(), last);
+    }
+
+    @Test
+    public void testBatchTrainerPublishes() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        som.setSnapshotInterval(16);
+        FrozenSOM first = som.getSnapshot();
+        Random r = new Random(0);
+        double[][] data = new double[10][INPUT_LENGTH];
+        for (double[] sample : data) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = r.nextDouble();
+            }
+        }
+
+        BatchTrainer trainer = new BatchTrainer(som);
+        trainer.trainEpoch(data);
+        assertSame(som.getSnapshot(), first);
+        trainer.trainEpoch(data);
+        assertHoldsWeights(som.getSnapshot(), weightsOf(som));
+    }
+
+    @Test
+    public void testConcurrentTrainerPublishes() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH, 100);
+        som.setSnapshotInterval(16);
+        FrozenSOM first = som.getSnapshot();
+        Random r = new Random(0);
+        double[] input = new double[INPUT_LENGTH];
+
+        ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+        for (int i = 0; i < 16; i++) {
+            assertSame(som.getSnapshot(), first);
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                input[j] = r.nextDouble();
+            }
+            trainer.trainWith(input);
+        }
+        assertHoldsWeights(som.getSnapshot(), weightsOf(som));
+    }
+
+    @Test
+    public void testConcurrentSnapshotsMoveForward() throws Exception {
+        final CustomizableSOM som =
+                new CustomizableSOM(dimension, INPUT_LENGTH, 400);
+        som.setSnapshotInterval(50);
+        final ConcurrentTrainer trainer = new ConcurrentTrainer(som);
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++) {
+                final Random r = new Random(t);
+                done.add(threads.submit(new Runnable() {
+                    public void run() {
+                        double[] input = new double[INPUT_LENGTH];
+                        for (int i = 0; i < 100; i++) {
+                            for (int j = 0; j < INPUT_LENGTH; j++) {
+                                input[j] = r.nextDouble();
+                            }
+                            trainer.trainWith(input);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        // The last snapshot was taken as the count reached 400, after every
+        // iteration before it had finished.
+        assertEquals(som.time, 400);
+        assertTrue(text(som.getSnapshot()).contains("Iterations: 400 of 400"));
+        assertHoldsWeights(som.getSnapshot(), weightsOf(som));
+    }
+
+    private static String text(FrozenSOM snapshot) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, "UTF-8");
+        snapshot.write(writer);
+        writer.close();
+        return bytes.toString("UTF-8");
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testNegativeInterval() throws Exception {
+        new CustomizableSOM(dimension, INPUT_LENGTH, 100)
+                .setSnapshotInterval(-1);
+    }
+
+    /*
+     * Every neuron starts with all of its weights equal and is trained only
+     * with inputs whose components are all equal, so every consistent view
+     * of a neuron has equal weights; a view taken part way through an update
+     * would not.
+     */
+    @Test
+    public void testReadersNeverSeeTornVectors() throws Exception {
+        final CustomizableSOM som =
+                new CustomizableSOM(dimension, INPUT_LENGTH, 20000);
+        Random r = new Random(0);
+        for (int i = 0; i < som.getNeuronCount(); i++) {
+            double value = r.nextDouble();
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                som.weights.set(i, j, value);
+            }
+        }
+        som.setSnapshotInterval(1);
+
+        final AtomicBoolean training = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> versions = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 4; t++) {
+                versions.add(readers.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int seen = 0;
+                        FrozenSOM last = null;
+                        while (training.get()) {
+                            FrozenSOM snapshot = som.getSnapshot();
+                            if (snapshot != last) {
+                                seen++;
+                                last = snapshot;
+                            }
+                            assertConsistent(snapshot);
+                        }
+                        return seen;
+                    }
+                }));
+            }
+
+            double[] input = new double[INPUT_LENGTH];
+            for (int i = 0; i < 2000; i++) {
+                double value = r.nextDouble();
+                for (int j = 0; j < INPUT_LENGTH; j++) {
+                    input[j] = value;
+                }
+                som.trainWith(input);
+                if (i % 100 == 0) {
+                    Thread.yield();
+                }
+            }
+            training.set(false);
+
+            for (Future<Integer> seen : versions) {
+                assertTrue(seen.get() >= 1);
+            }
+        } finally {
+            training.set(false);
+            readers.shutdown();
+        }
+        assertNotNull(som.getSnapshot());
+        assertConsistent(som.getSnapshot());
+    }
+
+    private static void assertConsistent(FrozenSOM snapshot) {
+        for (int i = 0; i < snapshot.getNeuronCount(); i++) {
+            double first = snapshot.getWeight(i, 0);
+            for (int j = 1; j < INPUT_LENGTH; j++) {
+                assertEquals(snapshot.getWeight(i, j), first);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.SOMError;
+import cs437.som.TrainableSelfOrganizingMap;
+import cs437.som.distancemetrics.ChebyshevDistanceMetric;
+import cs437.som.learningrate.HyperbolicLearningRateFunction;
+import cs437.som.membership.LinearNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.CompoundNeighborhood;
+import cs437.som.neighborhood.ExponentialDecayNeighborhoodWidth;
+import cs437.som.neighborhood.HyperbolicNeighborhoodWidthFunction;
+import cs437.som.topology.SkewHexagonalGrid;
+import cs437.som.util.FileReader;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.testng.Assert.assertEquals;
+
+public class TextMapFileTest {
+    private static final Dimension dimension = new Dimension(120, 100);
+    private static final int INPUT_LENGTH = 24;
+    private static final int ITERATIONS = 1000;
+    private static final int TRAINED = 50;
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = File.createTempFile("map", ".txt");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private static CustomizableSOM createMap(WeightPrecision precision) {
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS, precision);
+        som.setRandomSeed(7);
+        som.setDistanceMetricStrategy(new ChebyshevDistanceMetric());
+        som.setLearningRateFunctionStrategy(
+                new HyperbolicLearningRateFunction(0.5, 0.01));
+        HyperbolicNeighborhoodWidthFunction first =
+                new HyperbolicNeighborhoodWidthFunction(20, 2);
+        first.setExpectedIterations(ITERATIONS);
+        ExponentialDecayNeighborhoodWidth second =
+                new ExponentialDecayNeighborhoodWidth(4);
+        second.setExpectedIterations(ITERATIONS);
+        CompoundNeighborhood compound = new CompoundNeighborhood(first);
+        compound.addNeighborhood(second, ITERATIONS / 2);
+        som.setNeighborhoodWidthFunctionStrategy(compound);
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new LinearNeighborhoodMembershipFunction());
+        som.setGridTypeStrategy(new SkewHexagonalGrid());
+        return som;
+    }
+
+    private static void train(TrainableSelfOrganizingMap som) {
+        double[] sample = new double[INPUT_LENGTH];
+        for (int i = 0; i < TRAINED; i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                sample[j] = Math.sin(i * 31 + j);
+            }
+            som.trainWith(sample);
+        }
+    }
+
+    private static String text(NetworkBase som) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, "UTF-8");
+        som.write(writer);
+        writer.close();
+        return bytes.toString("UTF-8");
+    }
+
+    private void writeFile(NetworkBase som) throws IOException {
+        OutputStreamWriter writer = new OutputStreamWriter(
+                new FileOutputStream(file));
+        try {
+            som.write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void assertSameWeights(TrainableSelfOrganizingMap actual,
+                                          TrainableSelfOrganizingMap expected) {
+        assertEquals(actual.getNeuronCount(), expected.getNeuronCount());
+        for (int i = 0; i < expected.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(actual.getWeight(i, j), expected.getWeight(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeMapRoundTrip() throws Exception {
+        CustomizableSOM som = createMap(WeightPrecision.DOUBLE);
+        train(som);
+        writeFile(som);
+
+        CustomizableSOM read = (CustomizableSOM) FileReader.read(file);
+        assertSameWeights(read, som);
+        assertEquals(text(read), text(som));
+    }
+
+    @Test
+    public void testSinglePrecisionRoundTrip() throws Exception {
+        CustomizableSOM som = createMap(WeightPrecision.SINGLE);
+        train(som);
+        writeFile(som);
+
+        CustomizableSOM read = (CustomizableSOM) FileReader.read(file);
+        assertEquals(read.getPrecision(), WeightPrecision.SINGLE);
+        assertSameWeights(read, som);
+        assertEquals(text(read), text(som));
+    }
+
+    @Test
+    public void testReadMapContinuesTraining() throws Exception {
+        CustomizableSOM som = createMap(WeightPrecision.DOUBLE);
+        train(som);
+        writeFile(som);
+        CustomizableSOM read = (CustomizableSOM) FileReader.read(file);
+
+        train(som);
+        train(read);
+        assertSameWeights(read, som);
+    }
+
+    @Test
+    public void testBasicMapRoundTrip() throws Exception {
+        BasicHexGridSOM som = new BasicHexGridSOM(dimension, INPUT_LENGTH,
+                ITERATIONS);
+        som.setRandomSeed(3);
+        train(som);
+        writeFile(som);
+
+        BasicHexGridSOM read = (BasicHexGridSOM) FileReader.read(file);
+        assertSameWeights(read, som);
+        assertEquals(text(read), text(som));
+    }
+
+    @Test
+    public void testReadsWithoutReadyInput() throws Exception {
+        CustomizableSOM som = createMap(WeightPrecision.DOUBLE);
+        train(som);
+        String text = text(som);
+        String body = text.substring(text.indexOf('\n') + 1);
+
+        CustomizableSOM read = CustomizableSOM.read(
+                new BufferedReader(new TrickleReader(body), 7));
+        assertSameWeights(read, som);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testTruncatedMatrixIsRejected() throws Exception {
+        String body = body(createMap(WeightPrecision.DOUBLE));
+        int matrix = body.indexOf("Weights:");
+        int cut = body.lastIndexOf('\n', (matrix + body.length()) / 2);
+        CustomizableSOM.read(new BufferedReader(
+                new StringReader(body.substring(0, cut + 1))));
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testMissingMatrixIsRejected() throws Exception {
+        String body = body(createMap(WeightPrecision.DOUBLE));
+        CustomizableSOM.read(new BufferedReader(
+                new StringReader(body.substring(0, body.indexOf("Weights:")))));
+    }
+
+    /* The text of a map without its leading map type line. */
+    private static String body(NetworkBase som) throws IOException {
+        String text = text(som);
+        return text.substring(text.indexOf('\n') + 1);
+    }
+
+    /**
+     * A reader that hands out one character at a time and never claims to be
+     * ready, like a slow pipe or socket.
+     */
+    private static class TrickleReader extends Reader {
+        private final Reader text;
+
+        TrickleReader(String text) {
+            this.text = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return text.read(cbuf, off, Math.min(len, 1));
+        }
+
+        @Override
+        public boolean ready() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            text.close();
+        }
+    }
+}
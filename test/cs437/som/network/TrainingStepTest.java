@@ -0,0 +1,262 @@
+package cs437.som.network;
+
+import cs437.som.Dimension;
+import cs437.som.GridType;
+import cs437.som.NeighborhoodMembershipFunction;
+import cs437.som.learningrate.HyperbolicLearningRateFunction;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.membership.RandomNeighborhoodMembershipFunction;
+import cs437.som.neighborhood.ConstantNeighborhoodWidthFunction;
+import cs437.som.neighborhood.LinearDecayNeighborhoodWidthFunction;
+import cs437.som.topology.OffsetHexagonalGrid;
+import cs437.som.topology.SquareGrid;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TrainingStepTest {
+    private static final Dimension dimension = new Dimension(15, 12);
+    private static final int INPUT_LENGTH = 3;
+    private static final int ITERATIONS = 500;
+
+    /* Counts how often it is asked for a membership. */
+    private static class CountingMembership
+            implements NeighborhoodMembershipFunction {
+        private final NeighborhoodMembershipFunction function =
+                new GeometricNeighborhoodMembershipFunction(2);
+        int calls = 0;
+
+        @Override
+        public double neighborhoodMembership(double distance, double width) {
+            calls++;
+            return function.neighborhoodMembership(distance, width);
+        }
+    }
+
+    /* Evaluates the schedules for every neuron, as training used to. */
+    private static class UnhoistedSOM extends CustomizableSOM {
+        private final int[] neighbors = new int[dimension.area + 1];
+        private final double[] distances = new double[dimension.area + 1];
+
+        UnhoistedSOM() {
+            super(dimension, INPUT_LENGTH, ITERATIONS);
+        }
+
+        @Override
+        protected void adjustNeighborsOf(int neuron, double[] input) {
+            double width = neighborhoodWidth.neighborhoodWidth(time);
+            int count = gridType.neighborsWithin(neuron, width, neighbors,
+                    distances);
+            for (int k = 0; k < count; k++) {
+                double membership = neighborhoodMembership
+                        .neighborhoodMembership(distances[k], width);
+                if (neighbors[k] != neuron && membership > 0) {
+                    weights.adjust(neighbors[k], input,
+                            learningRate.learningRate(time) * membership);
+                }
+            }
+        }
+    }
+
+    private static void configure(CustomizableSOM som) {
+        som.setLearningRateFunctionStrategy(
+                new HyperbolicLearningRateFunction(0.8, 0.01));
+        som.setNeighborhoodWidthFunctionStrategy(
+                new LinearDecayNeighborhoodWidthFunction(8));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new GeometricNeighborhoodMembershipFunction(2));
+    }
+
+    @Test
+    public void testMembershipMatchesFunction() throws Exception {
+        NeighborhoodMembershipFunction function =
+                new GeometricNeighborhoodMembershipFunction(3);
+        TrainingStep step = new TrainingStep();
+        Random r = new Random(0);
+        for (int time = 0; time < 5; time++) {
+            double width = 100.0 / (time + 1);
+            step.begin(time, 0.5, width, function, true);
+            assertEquals(step.time(), time);
+            assertEquals(step.width(), width);
+            // Enough distinct distances to outgrow the table, each asked for
+            // more than once.
+            for (int i = 0; i < 2000; i++) {
+                double distance = r.nextInt(1000) / 10.0;
+                assertEquals(step.membership(distance),
+                        function.neighborhoodMembership(distance, width));
+            }
+        }
+    }
+
+    @Test
+    public void testMembershipComputedOncePerDistance() throws Exception {
+        CountingMembership function = new CountingMembership();
+        TrainingStep step = new TrainingStep();
+        step.begin(0, 0.5, 10.0, function, true);
+        for (int i = 0; i < 100; i++) {
+            step.membership(i % 7);
+        }
+        assertEquals(function.calls, 7);
+
+        step.begin(1, 0.5, 9.0, function, true);
+        step.membership(3);
+        assertEquals(function.calls, 8);
+
+        step.begin(2, 0.5, 8.0, function, false);
+        step.membership(3);
+        step.membership(3);
+        assertEquals(function.calls, 10);
+    }
+
+    @Test
+    public void testKernelMatchesFunction() throws Exception {
+        NeighborhoodMembershipFunction function =
+                new GeometricNeighborhoodMembershipFunction(3);
+        GridType[] grids = {new SquareGrid(), new OffsetHexagonalGrid()};
+        TrainingStep step = new TrainingStep();
+        for (GridType grid : grids) {
+            grid.setNeuronCount(dimension);
+            for (double width : new double[] {0.5, 2.5, 7.0, 100.0}) {
+                step.begin(0, 0.5, width, function, true, grid);
+                for (int n = 0; n < dimension.area; n++) {
+                    int count = step.findNeighbors(grid, n);
+                    for (int k = 0; k < count; k++) {
+                        assertEquals(step.neighborMembership(k),
+                                function.neighborhoodMembership(
+                                        step.neighborDistance(k), width));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKernelComputedOncePerDistanceClass() throws Exception {
+        CountingMembership function = new CountingMembership();
+        GridType grid = new SquareGrid();
+        grid.setNeuronCount(dimension);
+        double width = 4.5;
+        int inside = 0;
+        for (double distance : grid.getDistanceClasses()) {
+            if (distance < width) {
+                inside++;
+            }
+        }
+
+        TrainingStep step = new TrainingStep();
+        step.begin(0, 0.5, width, function, true, grid);
+        assertEquals(function.calls, inside);
+        for (int n = 0; n < dimension.area; n++) {
+            int count = step.findNeighbors(grid, n);
+            for (int k = 0; k < count; k++) {
+                step.neighborMembership(k);
+            }
+        }
+        assertEquals(function.calls, inside);
+    }
+
+    @Test
+    public void testKernelFallsBackWithoutDistanceClasses() throws Exception {
+        CountingMembership function = new CountingMembership();
+        GridType grid = new SquareGrid();
+        grid.setDistanceCacheEnabled(false);
+        grid.setNeuronCount(dimension);
+        assertNull(grid.getDistanceClasses());
+
+        TrainingStep step = new TrainingStep();
+        step.begin(0, 0.5, 3.0, function, true, grid);
+        assertEquals(function.calls, 0);
+        int count = step.findNeighbors(grid, dimension.area / 2);
+        for (int k = 0; k < count; k++) {
+            assertEquals(step.neighborMembership(k),
+                    new GeometricNeighborhoodMembershipFunction(2)
+                            .neighborhoodMembership(
+                                    step.neighborDistance(k), 3.0));
+        }
+        // Memoized by distance: 0, 1, sqrt 2, 2, sqrt 5 and sqrt 8.
+        assertEquals(function.calls, 6);
+    }
+
+    @Test
+    public void testSharedMembershipLeavesMemoAlone() throws Exception {
+        CountingMembership function = new CountingMembership();
+        GridType grid = new SquareGrid();
+        grid.setNeuronCount(dimension);
+        TrainingStep step = new TrainingStep();
+        step.begin(0, 0.5, 3.0, function, true, grid);
+        int calls = function.calls;
+        int count = step.findNeighbors(grid, dimension.area / 2);
+        for (int k = 0; k < count; k++) {
+            assertEquals(step.sharedMembership(k), step.neighborMembership(k));
+        }
+        assertEquals(function.calls, calls);
+
+        // Without a kernel, the memberships are found once, before they are
+        // shared, and reading them evaluates nothing.
+        grid.setDistanceCacheEnabled(false);
+        step.begin(1, 0.5, 3.0, function, true, grid);
+        count = step.findNeighbors(grid, dimension.area / 2);
+        step.shareMemberships(count);
+        int shared = function.calls;
+        for (int k = 0; k < count; k++) {
+            assertEquals(step.sharedMembership(k), step.neighborMembership(k));
+        }
+        assertEquals(function.calls, shared);
+    }
+
+    @Test
+    public void testRandomMembershipIsNotReused() throws Exception {
+        final int[] calls = {0};
+        CustomizableSOM som = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS);
+        som.setNeighborhoodWidthFunctionStrategy(
+                new ConstantNeighborhoodWidthFunction(5));
+        som.setNeighborhoodMembershipFunctionStrategy(
+                new RandomNeighborhoodMembershipFunction() {
+                    @Override
+                    public double neighborhoodMembership(double distance,
+                                                         double width) {
+                        calls[0]++;
+                        return super.neighborhoodMembership(distance, width);
+                    }
+                });
+
+        double[] sample = {0.5, 0.5, 0.5};
+        int best = som.getBestMatchingNeuron(sample);
+        int neighbors = som.gridType.neighborsWithin(best, 5, new int[0],
+                new double[0]);
+        som.trainWith(sample);
+        assertEquals(calls[0], neighbors);
+    }
+
+    @Test
+    public void testTrainingMatchesUnhoistedSchedules() throws Exception {
+        CustomizableSOM hoisted = new CustomizableSOM(dimension, INPUT_LENGTH,
+                ITERATIONS);
+        CustomizableSOM unhoisted = new UnhoistedSOM();
+        configure(hoisted);
+        configure(unhoisted);
+        for (int i = 0; i < hoisted.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                unhoisted.weights.set(i, j, hoisted.getWeight(i, j));
+            }
+        }
+
+        Random r = new Random(0);
+        for (int i = 0; i < ITERATIONS; i++) {
+            double[] sample = {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+            hoisted.trainWith(sample);
+            unhoisted.trainWith(sample);
+        }
+
+        for (int i = 0; i < hoisted.getNeuronCount(); i++) {
+            for (int j = 0; j < INPUT_LENGTH; j++) {
+                assertEquals(hoisted.getWeight(i, j),
+                        unhoisted.getWeight(i, j));
+            }
+        }
+    }
+}
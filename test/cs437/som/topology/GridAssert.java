@@ -0,0 +1,109 @@
+package cs437.som.topology;
+
+import cs437.som.Dimension;
+import cs437.som.GridType;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks grid types' distance caches and neighborhood enumerations against
+ * their plain grid distances.
+ */
+final class GridAssert {
+    private static final double[] RADII =
+            {-1.0, 0.0, 0.5, 1.0, 1.5, 2.0, 2.5, 3.7, 1000.0};
+
+    private GridAssert() {
+    }
+
+    /**
+     * Assert that, for every neuron and a range of radii, neighborsWithin
+     * finds exactly the neuron itself and the neurons whose grid distance is
+     * less than the radius, with the same distances, and that the distance classes it reports name
+     * those distances.
+     */
+    static void assertNeighborsMatchGridDistance(GridType grid,
+                                                 Dimension dimension) {
+        grid.setNeuronCount(dimension);
+        int neuronCount = dimension.area;
+        int[] neurons = new int[neuronCount];
+        double[] distances = new double[neuronCount];
+        int[] classes = new int[neuronCount];
+
+        double[] distinct = grid.getDistanceClasses();
+        if (distinct != null) {
+            for (int c = 1; c < distinct.length; c++) {
+                assertTrue(distinct[c - 1] < distinct[c],
+                        grid + ": distance classes out of order");
+            }
+        }
+
+        for (int neuron = 0; neuron < neuronCount; neuron++) {
+            for (double radius : RADII) {
+                int count = grid.neighborsWithin(neuron, radius, neurons,
+                        distances, classes);
+
+                boolean[] found = new boolean[neuronCount];
+                for (int k = 0; k < count; k++) {
+                    assertTrue(!found[neurons[k]], "neuron listed twice");
+                    found[neurons[k]] = true;
+                    assertEquals(distances[k],
+                            grid.gridDistance(neuron, neurons[k]));
+                    if (distinct != null) {
+                        assertEquals(distinct[classes[k]], distances[k]);
+                    }
+                }
+                for (int i = 0; i < neuronCount; i++) {
+                    assertEquals(found[i], i == neuron
+                            || grid.gridDistance(neuron, i) < radius,
+                            grid + ": neuron " + i + " around " + neuron
+                                    + " at radius " + radius);
+                }
+            }
+        }
+    }
+
+    /**
+     * Assert that arrays too small for the neighborhood still give the full
+     * count, filled as far as they go.
+     */
+    static void assertShortArraysGiveFullCount(GridType grid,
+                                               Dimension dimension) {
+        grid.setNeuronCount(dimension);
+        int center = dimension.area / 2;
+        int[] all = new int[dimension.area];
+        double[] allDistances = new double[dimension.area];
+        int count = grid.neighborsWithin(center, 2.5, all, allDistances);
+
+        int[] some = new int[2];
+        double[] someDistances = new double[2];
+        assertEquals(grid.neighborsWithin(center, 2.5, some, someDistances),
+                count);
+        assertEquals(some, Arrays.copyOf(all, 2));
+    }
+
+    /**
+     * Assert that a grid type gives the same distances, for every pair of
+     * neurons, with its distance cache enabled and disabled.
+     */
+    static void assertCacheMatchesGridDistance(GridType cached,
+                                               GridType uncached,
+                                               Dimension dimension) {
+        cached.setDistanceCacheEnabled(true);
+        cached.setNeuronCount(dimension);
+        uncached.setDistanceCacheEnabled(false);
+        uncached.setNeuronCount(dimension);
+
+        // The grid types accept one past the last neuron.
+        for (int i = 0; i <= dimension.area; i++) {
+            for (int j = 0; j <= dimension.area; j++) {
+                assertEquals(cached.gridDistance(i, j),
+                        uncached.gridDistance(i, j),
+                        cached + ": neurons " + i + " and " + j);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cs437.som.topology;
+
+import cs437.som.Dimension;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class MooreTest {
+    private static final Dimension dimension = new Dimension(5, 4);
+    private static final Moore grid = new Moore();
+    private static final double MAX_DISTANCE = 0.001;
+
+    @BeforeMethod
+    public void setUp() {
+        grid.setNeuronCount(dimension);
+    }
+
+    @Test
+    public void testGridDistance() throws Exception {
+        assertEquals(grid.gridDistance(0, 0), 0, MAX_DISTANCE);
+        assertEquals(grid.gridDistance(0, 1), 1, MAX_DISTANCE);
+        assertEquals(grid.gridDistance(0, 6), 1, MAX_DISTANCE);
+        assertEquals(grid.gridDistance(0, 12), 2, MAX_DISTANCE);
+        assertEquals(grid.gridDistance(7, 14), 2, MAX_DISTANCE);
+        assertEquals(grid.gridDistance(3, 19), 3, MAX_DISTANCE);
+    }
+
+    @Test
+    public void testNeighborsWithin() throws Exception {
+        GridAssert.assertNeighborsMatchGridDistance(
+                new Moore(), new Dimension(7, 5));
+        GridAssert.assertNeighborsMatchGridDistance(
+                new Moore(), new Dimension(6, 4));
+        GridAssert.assertShortArraysGiveFullCount(
+                new Moore(), new Dimension(7, 5));
+    }
+
+    @Test
+    public void testDistanceCache() throws Exception {
+        GridAssert.assertCacheMatchesGridDistance(
+                new Moore(), new Moore(), new Dimension(7, 5));
+        GridAssert.assertCacheMatchesGridDistance(
+                new Moore(), new Moore(), new Dimension(6, 4));
+    }
+}
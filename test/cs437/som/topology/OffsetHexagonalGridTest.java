@@ -38,4 +38,22 @@ public class OffsetHexagonalGridTest {
         assertEquals(grid.gridDistance(24, 38), 2, MAX_DISTANCE);
         assertEquals(grid.gridDistance(24, 39), 2, MAX_DISTANCE);
     }
+
+    @Test
+    public void testNeighborsWithin() throws Exception {
+        GridAssert.assertNeighborsMatchGridDistance(
+                new OffsetHexagonalGrid(), new Dimension(7, 5));
+        GridAssert.assertNeighborsMatchGridDistance(
+                new OffsetHexagonalGrid(), new Dimension(6, 4));
+        GridAssert.assertShortArraysGiveFullCount(
+                new OffsetHexagonalGrid(), new Dimension(7, 5));
+    }
+
+    @Test
+    public void testDistanceCache() throws Exception {
+        GridAssert.assertCacheMatchesGridDistance(
+                new OffsetHexagonalGrid(), new OffsetHexagonalGrid(), new Dimension(7, 5));
+        GridAssert.assertCacheMatchesGridDistance(
+                new OffsetHexagonalGrid(), new OffsetHexagonalGrid(), new Dimension(6, 4));
+    }
 }
@@ -29,4 +29,22 @@ public class SkewHexagonalGridTest {
         assertEquals(hexGrid.gridDistance(14, 9), 1, MAX_DISTANCE);
         assertEquals(hexGrid.gridDistance(14, 2), 4, MAX_DISTANCE);
     }
+
+    @Test
+    public void testNeighborsWithin() throws Exception {
+        GridAssert.assertNeighborsMatchGridDistance(
+                new SkewHexagonalGrid(), new Dimension(7, 5));
+        GridAssert.assertNeighborsMatchGridDistance(
+                new SkewHexagonalGrid(), new Dimension(6, 4));
+        GridAssert.assertShortArraysGiveFullCount(
+                new SkewHexagonalGrid(), new Dimension(7, 5));
+    }
+
+    @Test
+    public void testDistanceCache() throws Exception {
+        GridAssert.assertCacheMatchesGridDistance(
+                new SkewHexagonalGrid(), new SkewHexagonalGrid(), new Dimension(7, 5));
+        GridAssert.assertCacheMatchesGridDistance(
+                new SkewHexagonalGrid(), new SkewHexagonalGrid(), new Dimension(6, 4));
+    }
 }
@@ -29,4 +29,22 @@ public class SquareGridTest {
         assertEquals(squareGrid.gridDistance(14, 9), 1, MAX_DISTANCE);
         assertEquals(squareGrid.gridDistance(14, 13), 1, MAX_DISTANCE);
     }
+
+    @Test
+    public void testNeighborsWithin() throws Exception {
+        GridAssert.assertNeighborsMatchGridDistance(
+                new SquareGrid(), new Dimension(7, 5));
+        GridAssert.assertNeighborsMatchGridDistance(
+                new SquareGrid(), new Dimension(6, 4));
+        GridAssert.assertShortArraysGiveFullCount(
+                new SquareGrid(), new Dimension(7, 5));
+    }
+
+    @Test
+    public void testDistanceCache() throws Exception {
+        GridAssert.assertCacheMatchesGridDistance(
+                new SquareGrid(), new SquareGrid(), new Dimension(7, 5));
+        GridAssert.assertCacheMatchesGridDistance(
+                new SquareGrid(), new SquareGrid(), new Dimension(6, 4));
+    }
 }
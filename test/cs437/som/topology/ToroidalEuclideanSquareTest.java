@@ -58,4 +58,22 @@ public class ToroidalEuclideanSquareTest {
 //        assertEquals(bigGrid.gridDistance(0, 55), 5 * ROOT_2, MAX_DISTANCE);
         assertEquals(bigGrid.gridDistance(0, 66), 4 * ROOT_2, MAX_DISTANCE);
     }
+
+    @Test
+    public void testNeighborsWithin() throws Exception {
+        GridAssert.assertNeighborsMatchGridDistance(
+                new ToroidalEuclideanSquare(), new Dimension(7, 5));
+        GridAssert.assertNeighborsMatchGridDistance(
+                new ToroidalEuclideanSquare(), new Dimension(6, 4));
+        GridAssert.assertShortArraysGiveFullCount(
+                new ToroidalEuclideanSquare(), new Dimension(7, 5));
+    }
+
+    @Test
+    public void testDistanceCache() throws Exception {
+        GridAssert.assertCacheMatchesGridDistance(
+                new ToroidalEuclideanSquare(), new ToroidalEuclideanSquare(), new Dimension(7, 5));
+        GridAssert.assertCacheMatchesGridDistance(
+                new ToroidalEuclideanSquare(), new ToroidalEuclideanSquare(), new Dimension(6, 4));
+    }
 }
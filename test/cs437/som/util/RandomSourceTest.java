@@ -0,0 +1,84 @@
+package cs437.som.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RandomSourceTest {
+    private static final int DRAWS = 10000;
+
+    @Test
+    public void testSameSeedSameSequence() throws Exception {
+        RandomSource a = new RandomSource(42);
+        RandomSource b = new RandomSource(42);
+        for (int i = 0; i < DRAWS; i++) {
+            assertEquals(a.nextLong(), b.nextLong());
+        }
+        assertEquals(a.getSeed(), 42L);
+    }
+
+    @Test
+    public void testDifferentSeedsDiffer() throws Exception {
+        RandomSource a = new RandomSource(1);
+        RandomSource b = new RandomSource(2);
+        int same = 0;
+        for (int i = 0; i < DRAWS; i++) {
+            if (a.nextLong() == b.nextLong()) {
+                same++;
+            }
+        }
+        assertEquals(same, 0);
+    }
+
+    @Test
+    public void testStateRestores() throws Exception {
+        RandomSource a = new RandomSource(7);
+        for (int i = 0; i < 100; i++) {
+            a.nextDouble();
+            a.nextGaussian();
+        }
+
+        RandomSource b = new RandomSource(0);
+        b.setState(a.getState());
+        for (int i = 0; i < DRAWS; i++) {
+            assertEquals(a.nextGaussian(), b.nextGaussian());
+            assertEquals(a.nextInt(17), b.nextInt(17));
+        }
+    }
+
+    @Test
+    public void testSplitIsReproducibleAndIndependent() throws Exception {
+        RandomSource a = new RandomSource(3);
+        RandomSource b = new RandomSource(3);
+        RandomSource splitA = a.split();
+        RandomSource splitB = b.split();
+
+        int same = 0;
+        for (int i = 0; i < DRAWS; i++) {
+            long value = splitA.nextLong();
+            assertEquals(value, splitB.nextLong());
+            if (value == a.nextLong()) {
+                same++;
+            }
+        }
+        assertEquals(same, 0);
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        RandomSource r = new RandomSource(11);
+        double total = 0.0;
+        int[] counts = new int[3];
+        for (int i = 0; i < DRAWS; i++) {
+            double d = r.nextDouble();
+            assertTrue(0.0 <= d && d < 1.0);
+            total += d;
+            counts[r.nextInt(3)]++;
+        }
+        assertEquals(total / DRAWS, 0.5, 0.02);
+        for (int count : counts) {
+            assertEquals(count, DRAWS / 3, DRAWS / 30);
+        }
+    }
+}
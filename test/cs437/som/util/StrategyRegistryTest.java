@@ -0,0 +1,166 @@
+package cs437.som.util;
+
+import cs437.som.Dimension;
+import cs437.som.DistanceMetric;
+import cs437.som.GridType;
+import cs437.som.LearningRateFunction;
+import cs437.som.NeighborhoodMembershipFunction;
+import cs437.som.NeighborhoodWidthFunction;
+import cs437.som.SOMError;
+import cs437.som.distancemetrics.EuclideanDistanceMetric;
+import cs437.som.distancemetrics.ManhattanDistanceMetric;
+import cs437.som.membership.GeometricNeighborhoodMembershipFunction;
+import cs437.som.network.CustomizableSOM;
+import cs437.som.topology.SquareGrid;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+public class StrategyRegistryTest {
+    @Test
+    public void testBuiltInStrategies() {
+        StrategyRegistry registry = StrategyRegistry.getDefault();
+        assertTrue(registry.create(DistanceMetric.class,
+                "ManhattanDistanceMetric", "") instanceof ManhattanDistanceMetric);
+        assertEquals(registry.create(LearningRateFunction.class,
+                "HyperbolicLearningRateFunction", "0.5 0.01").toString(),
+                "HyperbolicLearningRateFunction 0.5 0.01");
+        assertEquals(registry.create(NeighborhoodWidthFunction.class,
+                "GaussianNeighborhoodWidthFunction", "2.5").toString(),
+                "GaussianNeighborhoodWidthFunction 2.5");
+        assertEquals(registry.create(NeighborhoodMembershipFunction.class,
+                "GeometricNeighborhoodMembershipFunction", "3.0").toString(),
+                "GeometricNeighborhoodMembershipFunction 3.0");
+        assertEquals(registry.create(NeighborhoodMembershipFunction.class,
+                "LinearNeighborhoodMembershipFunction", "").toString(),
+                "LinearNeighborhoodMembershipFunction");
+        assertTrue(registry.create(GridType.class, "SquareGrid", "")
+                instanceof SquareGrid);
+    }
+
+    @Test
+    public void testCreatesNewInstances() {
+        StrategyRegistry registry = StrategyRegistry.getDefault();
+        assertNotSame(registry.create(GridType.class, "SquareGrid", ""),
+                registry.create(GridType.class, "SquareGrid", ""));
+    }
+
+    @Test
+    public void testSearchPackage() {
+        StrategyRegistry registry = new StrategyRegistry();
+        registry.setSearchPackage(NeighborhoodMembershipFunction.class,
+                "cs437.som.membership");
+        assertTrue(registry.create(NeighborhoodMembershipFunction.class,
+                "GeometricNeighborhoodMembershipFunction", "2.0")
+                instanceof GeometricNeighborhoodMembershipFunction);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testUnknownName() {
+        StrategyRegistry.getDefault().create(DistanceMetric.class,
+                "NoSuchDistanceMetric", "");
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testWrongKind() {
+        StrategyRegistry registry = new StrategyRegistry();
+        registry.setSearchPackage(DistanceMetric.class, "cs437.som.topology");
+        registry.create(DistanceMetric.class, "SquareGrid", "");
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testBadParameters() {
+        StrategyRegistry.getDefault().create(LearningRateFunction.class,
+                "ConstantLearningRateFunction", "fast");
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testUnknownMapType() {
+        StrategyRegistry.getDefault().getMapType("NoSuchSOM");
+    }
+
+    @Test
+    public void testReaderUsesItsRegistry() throws Exception {
+        CustomizableSOM som = new CustomizableSOM(new Dimension(3, 2), 2, 10);
+        som.setDistanceMetricStrategy(new EuclideanDistanceMetric());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, "UTF-8");
+        som.write(writer);
+        writer.close();
+        String text = bytes.toString("UTF-8").replace(
+                "EuclideanDistanceMetric", "Cityblock");
+
+        StrategyRegistry registry = new StrategyRegistry();
+        new BuiltInProvider().registerWith(registry);
+        registry.register(DistanceMetric.class, "Cityblock",
+                new StrategyRegistry.Factory<DistanceMetric>() {
+                    public DistanceMetric create(String parameters) {
+                        return new ManhattanDistanceMetric();
+                    }
+                });
+        CustomSOMFileReader sfr = new CustomSOMFileReader(registry);
+        sfr.parse(new BufferedReader(new StringReader(text)));
+        assertTrue(sfr.getDistanceMetric() instanceof ManhattanDistanceMetric);
+    }
+
+    @Test
+    public void testProvidersAreDiscovered() throws Exception {
+        File directory = File.createTempFile("providers", "");
+        directory.delete();
+        File services = new File(directory, "META-INF/services");
+        assertTrue(services.mkdirs());
+        File listing = new File(services,
+                StrategyRegistry.Provider.class.getName());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(listing),
+                "UTF-8");
+        try {
+            writer.write(BuiltInProvider.class.getName() + "\n");
+        } finally {
+            writer.close();
+        }
+
+        try {
+            URLClassLoader loader = new URLClassLoader(
+                    new URL[]{directory.toURI().toURL()},
+                    getClass().getClassLoader());
+            StrategyRegistry registry = new StrategyRegistry();
+            registry.loadProviders(loader);
+            assertTrue(registry.create(DistanceMetric.class, "Taxicab", "")
+                    instanceof ManhattanDistanceMetric);
+        } finally {
+            listing.delete();
+            services.delete();
+            services.getParentFile().delete();
+            directory.delete();
+        }
+    }
+
+    /** Registers the built-in strategies, plus a metric under a new name. */
+    public static class BuiltInProvider implements StrategyRegistry.Provider {
+        public void registerWith(StrategyRegistry registry) {
+            registry.setSearchPackage(DistanceMetric.class,
+                    "cs437.som.distancemetrics");
+            registry.setSearchPackage(LearningRateFunction.class,
+                    "cs437.som.learningrate");
+            registry.setSearchPackage(NeighborhoodWidthFunction.class,
+                    "cs437.som.neighborhood");
+            registry.setSearchPackage(NeighborhoodMembershipFunction.class,
+                    "cs437.som.membership");
+            registry.setSearchPackage(GridType.class, "cs437.som.topology");
+            registry.register(DistanceMetric.class, "Taxicab",
+                    ManhattanDistanceMetric.class);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package cs437.som.util;
+
+import cs437.som.SOMError;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class TextMapFormatTest {
+    private static final int SAMPLES = 200000;
+
+    private static double parse(String text) {
+        return TextMapFormat.parseDouble(text, 0, text.length());
+    }
+
+    private static void assertParsesExactly(String text) {
+        assertEquals(Double.doubleToRawLongBits(parse(text)),
+                Double.doubleToRawLongBits(Double.parseDouble(text)), text);
+    }
+
+    @Test
+    public void testWrittenDoublesParseExactly() {
+        Random r = new Random(0);
+        for (int i = 0; i < SAMPLES; i++) {
+            assertParsesExactly(Double.toString(r.nextDouble()));
+            assertParsesExactly(Double.toString((float) r.nextDouble()));
+            assertParsesExactly(Double.toString(r.nextGaussian() * 1e6));
+            assertParsesExactly(Double.toString(
+                    Double.longBitsToDouble(r.nextLong())));
+        }
+    }
+
+    @Test
+    public void testNumberForms() {
+        String[] forms = {"0", "-0.0", "+1.5", "1.", ".25", "007.5", "1e3",
+                "1.0E-5", "-2.5e+10", "123456789012345678901234567890",
+                "0.1000000000000000055511151231257827", "4.9E-324",
+                "1.7976931348623157E308", "Infinity", "-Infinity", "NaN",
+                "9007199254740993", "9007199254740995", "1e23",
+                "2.2250738585072014E-308", "2.225073858507201E-308",
+                "1.7976931348623158e308", "1e-400", "123456789012345678e-20"};
+        for (String form : forms) {
+            assertParsesExactly(form);
+        }
+    }
+
+    @Test
+    public void testRandomDecimalsParseExactly() {
+        Random r = new Random(2);
+        for (int i = 0; i < SAMPLES; i++) {
+            long mantissa = (r.nextLong() >>> 1) % 1000000000000000000L;
+            int digits = 1 + r.nextInt(18);
+            for (int d = Long.toString(mantissa).length(); d > digits; d--) {
+                mantissa /= 10;
+            }
+            int exponent = r.nextInt(660) - 350;
+            assertParsesExactly(mantissa + "e" + exponent);
+        }
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testRejectsGarbage() {
+        parse("0.5x");
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testRejectsEmptyExponent() {
+        parse("1e");
+    }
+
+    @Test
+    public void testParseVector() {
+        double[] values = new double[3];
+        TextMapFormat.parseVector("\t[0.5, -1.0E-5, 3.0]", values);
+        assertEquals(values, new double[]{0.5, -1.0E-5, 3.0});
+        TextMapFormat.parseVector("1 2,3", values);
+        assertEquals(values, new double[]{1, 2, 3});
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testShortVector() {
+        TextMapFormat.parseVector("[0.5, 1.0]", new double[3]);
+    }
+
+    @Test
+    public void testKeys() {
+        assertEquals(TextMapFormat.key("Grid dimensions: 4, 5"),
+                "griddimensions");
+        assertEquals(TextMapFormat.key("  INPUT  Length :3"), "inputlength");
+        assertEquals(TextMapFormat.key("end weights"), null);
+        assertEquals(TextMapFormat.value("Learning rate function: "
+                + "HyperbolicLearningRateFunction 0.5 0.01 "),
+                "HyperbolicLearningRateFunction 0.5 0.01");
+        assertEquals(TextMapFormat.firstWord("Hyperbolic 0.5 0.01"),
+                "Hyperbolic");
+        assertEquals(TextMapFormat.afterFirstWord("Hyperbolic 0.5  0.01"),
+                "0.5  0.01");
+        assertEquals(TextMapFormat.afterFirstWord("Linear"), "");
+    }
+
+    @Test
+    public void testParseLong() {
+        assertEquals(TextMapFormat.parseLong(Long.toString(Long.MIN_VALUE)),
+                Long.MIN_VALUE);
+        assertEquals(TextMapFormat.parseLong(Long.toString(Long.MAX_VALUE)),
+                Long.MAX_VALUE);
+        assertEquals(TextMapFormat.parseLong("-42"), -42);
+    }
+
+    @Test(expectedExceptions = SOMError.class)
+    public void testParseLongOverflow() {
+        TextMapFormat.parseLong("9223372036854775808");
+    }
+
+    @Test
+    public void testNumberWriterMatchesToString() throws IOException {
+        Random r = new Random(1);
+        StringWriter out = new StringWriter();
+        StringBuilder expected = new StringBuilder();
+        NumberWriter numbers = new NumberWriter(out);
+        for (int i = 0; i < SAMPLES; i++) {
+            double value = r.nextGaussian();
+            numbers.append(value).append(", ");
+            expected.append(Double.toString(value)).append(", ");
+        }
+        numbers.append(-7L).newLine();
+        expected.append(-7L).append(System.lineSeparator());
+        numbers.flush();
+        assertEquals(out.toString(), expected.toString());
+    }
+}